@@ -0,0 +1,138 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.oozie.benchmark;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import org.apache.oozie.service.LiteWorkflowStoreService;
+import org.apache.oozie.util.XConfiguration;
+import org.apache.oozie.workflow.WorkflowException;
+import org.apache.oozie.workflow.lite.ActionNodeDef;
+import org.apache.oozie.workflow.lite.EndNodeDef;
+import org.apache.oozie.workflow.lite.KillNodeDef;
+import org.apache.oozie.workflow.lite.LiteWorkflowApp;
+import org.apache.oozie.workflow.lite.StartNodeDef;
+
+/**
+ * Synthetic, but production shaped, payloads shared by the benchmarks.
+ */
+public final class BenchmarkData {
+
+    private BenchmarkData() {
+    }
+
+    /**
+     * Create a job configuration with the given number of properties.
+     *
+     * @param properties number of properties.
+     * @return the configuration.
+     */
+    public static XConfiguration configuration(int properties) {
+        XConfiguration conf = new XConfiguration();
+        conf.set("user.name", "oozie");
+        conf.set("oozie.wf.application.path", "hdfs://namenode:8020/user/oozie/apps/benchmark");
+        for (int i = 0; i < properties; i++) {
+            conf.set("benchmark.property." + i, "hdfs://namenode:8020/user/oozie/data/" + i + "/${YEAR}/${MONTH}");
+        }
+        return conf;
+    }
+
+    /**
+     * Return the XML of a job configuration with the given number of properties.
+     *
+     * @param properties number of properties.
+     * @return the configuration XML.
+     * @throws IOException thrown if the configuration could not be written.
+     */
+    public static String configurationXml(int properties) throws IOException {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        configuration(properties).writeXml(baos);
+        return baos.toString("UTF-8");
+    }
+
+    /**
+     * Return the action XML of a java action, the bulk of a workflow definition.
+     *
+     * @param name action name.
+     * @return the action XML.
+     */
+    public static String javaActionXml(String name) {
+        StringBuilder sb = new StringBuilder();
+        sb.append("<java xmlns=\"uri:oozie:workflow:0.5\">");
+        sb.append("<job-tracker>${jobTracker}</job-tracker><name-node>${nameNode}</name-node>");
+        sb.append("<prepare><delete path=\"${nameNode}/user/${wf:user()}/").append(name).append("/output\"/></prepare>");
+        sb.append("<configuration>");
+        for (int i = 0; i < 10; i++) {
+            sb.append("<property><name>mapred.").append(name).append(".property.").append(i).append("</name>");
+            sb.append("<value>${wf:conf('benchmark.property.").append(i).append("')}</value></property>");
+        }
+        sb.append("</configuration>");
+        sb.append("<main-class>org.apache.oozie.example.DemoJavaMain</main-class>");
+        sb.append("<arg>${nameNode}/user/${wf:user()}/").append(name).append("/input</arg>");
+        sb.append("<arg>${nameNode}/user/${wf:user()}/").append(name).append("/output</arg>");
+        sb.append("</java>");
+        return sb.toString();
+    }
+
+    /**
+     * Return a workflow definition XML with a chain of the given number of java actions.
+     *
+     * @param actions number of actions.
+     * @return the workflow XML.
+     */
+    public static String workflowXml(int actions) {
+        StringBuilder sb = new StringBuilder();
+        sb.append("<workflow-app xmlns=\"uri:oozie:workflow:0.5\" name=\"benchmark-wf\">");
+        sb.append("<start to=\"action-0\"/>");
+        for (int i = 0; i < actions; i++) {
+            String next = (i + 1 < actions) ? "action-" + (i + 1) : "end";
+            sb.append("<action name=\"action-").append(i).append("\">");
+            sb.append(javaActionXml("action-" + i));
+            sb.append("<ok to=\"").append(next).append("\"/><error to=\"fail\"/>");
+            sb.append("</action>");
+        }
+        sb.append("<kill name=\"fail\"><message>failed [${wf:errorMessage(wf:lastErrorNode())}]</message></kill>");
+        sb.append("<end name=\"end\"/>");
+        sb.append("</workflow-app>");
+        return sb.toString();
+    }
+
+    /**
+     * Return a parsed workflow application with a chain of the given number of java actions.
+     * <p>
+     * It requires the <code>ConfigurationService</code> to be running.
+     *
+     * @param actions number of actions.
+     * @return the workflow application.
+     * @throws WorkflowException thrown if a node could not be added to the application.
+     */
+    public static LiteWorkflowApp workflowApp(int actions) throws WorkflowException {
+        LiteWorkflowApp app = new LiteWorkflowApp("benchmark-wf", workflowXml(actions),
+                new StartNodeDef(LiteWorkflowStoreService.LiteControlNodeHandler.class, "action-0"));
+        for (int i = 0; i < actions; i++) {
+            String next = (i + 1 < actions) ? "action-" + (i + 1) : "end";
+            app.addNode(new ActionNodeDef("action-" + i, javaActionXml("action-" + i),
+                    LiteWorkflowStoreService.LiteActionHandler.class, next, "fail"));
+        }
+        app.addNode(new KillNodeDef("fail", "failed", LiteWorkflowStoreService.LiteControlNodeHandler.class));
+        app.addNode(new EndNodeDef("end", LiteWorkflowStoreService.LiteControlNodeHandler.class));
+        return app;
+    }
+}
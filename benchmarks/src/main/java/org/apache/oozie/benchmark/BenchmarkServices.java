@@ -0,0 +1,129 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.oozie.benchmark;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.util.Collections;
+import java.util.Map;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.oozie.service.ConfigurationService;
+import org.apache.oozie.service.JPAService;
+import org.apache.oozie.service.Service;
+import org.apache.oozie.service.Services;
+import org.apache.oozie.service.UUIDService;
+import org.apache.oozie.service.XLogService;
+
+/**
+ * Bootstraps an in-memory {@link Services} instance for the benchmarks.
+ * <p>
+ * A throw-away Oozie home directory is created under the temp directory and only the given services are started, so
+ * the benchmarks run on a laptop without a cluster. If the {@link JPAService} is one of them it runs against an
+ * in-memory HSQLDB database.
+ */
+public final class BenchmarkServices {
+
+    static final String HSQLDB_DRIVER = "org.hsqldb.jdbcDriver";
+    static final String HSQLDB_URL = "jdbc:hsqldb:mem:oozie-benchmark;create=true";
+
+    private BenchmarkServices() {
+    }
+
+    /**
+     * Start the given services with the default configuration.
+     * <p>
+     * The built-in {@link XLogService} and {@link ConfigurationService} are always started.
+     *
+     * @param serviceClasses services to start, in initialization order.
+     * @return the initialized services.
+     * @throws Exception thrown if the services could not be initialized.
+     */
+    @SafeVarargs
+    public static Services start(Class<? extends Service>... serviceClasses) throws Exception {
+        return start(Collections.<String, String>emptyMap(), serviceClasses);
+    }
+
+    /**
+     * Start the given services with the default configuration plus the given overrides.
+     *
+     * @param overrides configuration properties to set in the <code>oozie-site.xml</code>.
+     * @param serviceClasses services to start, in initialization order.
+     * @return the initialized services.
+     * @throws Exception thrown if the services could not be initialized.
+     */
+    @SafeVarargs
+    public static Services start(Map<String, String> overrides, Class<? extends Service>... serviceClasses)
+            throws Exception {
+        File home = Files.createTempDirectory("oozie-benchmark").toFile();
+        File confDir = new File(home, "conf");
+        File logDir = new File(home, "logs");
+        if (!confDir.mkdirs() || !logDir.mkdirs()) {
+            throw new IOException("Could not create Oozie home under " + home);
+        }
+        System.setProperty(Services.OOZIE_HOME_DIR, home.getAbsolutePath());
+        System.setProperty(XLogService.OOZIE_LOG_DIR, logDir.getAbsolutePath());
+        System.setProperty(ConfigurationService.OOZIE_DATA_DIR, home.getAbsolutePath());
+
+        // an empty service list would fall back to the oozie-default.xml one, the UUIDService has no dependencies
+        if (serviceClasses.length == 0) {
+            serviceClasses = new Class[] {UUIDService.class};
+        }
+        Configuration siteConf = new Configuration(false);
+        StringBuilder sb = new StringBuilder();
+        String separator = "";
+        for (Class<? extends Service> klass : serviceClasses) {
+            sb.append(separator).append(klass.getName());
+            separator = ",";
+        }
+        siteConf.set(Services.CONF_SERVICE_CLASSES, sb.toString());
+        siteConf.set(JPAService.CONF_DRIVER, HSQLDB_DRIVER);
+        siteConf.set(JPAService.CONF_URL, HSQLDB_URL);
+        siteConf.set(JPAService.CONF_CREATE_DB_SCHEMA, "true");
+        siteConf.set(Services.CONF_DELETE_RUNTIME_DIR, "true");
+        for (Map.Entry<String, String> entry : overrides.entrySet()) {
+            siteConf.set(entry.getKey(), entry.getValue());
+        }
+        OutputStream os = new FileOutputStream(new File(confDir, ConfigurationService.SITE_CONFIG_FILE));
+        try {
+            siteConf.writeXml(os);
+        }
+        finally {
+            os.close();
+        }
+
+        Services services = new Services();
+        services.init();
+        return services;
+    }
+
+    /**
+     * Destroy services started with {@link #start(Class[])}.
+     *
+     * @param services services to destroy, it may be <code>null</code>.
+     */
+    public static void stop(Services services) {
+        if (services != null) {
+            services.destroy();
+        }
+    }
+}
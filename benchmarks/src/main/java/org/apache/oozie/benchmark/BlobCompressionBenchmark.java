@@ -0,0 +1,113 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.oozie.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.oozie.BinaryBlob;
+import org.apache.oozie.StringBlob;
+import org.apache.oozie.compression.CodecFactory;
+import org.apache.oozie.compression.GzipCompressionCodec;
+import org.apache.oozie.service.DagXLogInfoService;
+import org.apache.oozie.service.Services;
+import org.apache.oozie.util.WritableUtils;
+import org.apache.oozie.workflow.lite.LiteWorkflowInstance;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the compression and decompression of {@link StringBlob} (configurations, action XML) and
+ * {@link BinaryBlob} (<code>wfInstance</code>) columns through the configured {@link CodecFactory} codec.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BlobCompressionBenchmark {
+
+    /**
+     * Output codec, <code>NONE</code> disables compression.
+     */
+    @Param({"NONE", GzipCompressionCodec.CODEC_NAME})
+    public String codec;
+
+    @Param({"50", "2000"})
+    public int confProperties;
+
+    private Services services;
+    private String string;
+    private byte[] bytes;
+    private byte[] compressedString;
+    private byte[] compressedBytes;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        services = BenchmarkServices.start(DagXLogInfoService.class);
+        Configuration conf = new Configuration(false);
+        conf.set(CodecFactory.COMPRESSION_CODECS, GzipCompressionCodec.CODEC_NAME + "="
+                + GzipCompressionCodec.class.getName());
+        conf.set(CodecFactory.COMPRESSION_OUTPUT_CODEC, codec);
+        CodecFactory.initialize(conf);
+
+        string = BenchmarkData.configurationXml(confProperties);
+        bytes = WritableUtils.toByteArray(new LiteWorkflowInstance(BenchmarkData.workflowApp(20),
+                BenchmarkData.configuration(confProperties), "0000001-170101000000000-oozie-oozi-W"));
+        compressedString = new StringBlob(string).getRawBlob();
+        compressedBytes = new BinaryBlob(bytes, true).getRawBlob();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        BenchmarkServices.stop(services);
+    }
+
+    @Benchmark
+    public byte[] stringBlobCompress() {
+        return new StringBlob(string).getRawBlob();
+    }
+
+    @Benchmark
+    public String stringBlobDecompress() {
+        return new StringBlob(compressedString).getString();
+    }
+
+    @Benchmark
+    public byte[] binaryBlobCompress() {
+        return new BinaryBlob(bytes, true).getRawBlob();
+    }
+
+    @Benchmark
+    public byte[] binaryBlobDecompress() {
+        return new BinaryBlob(compressedBytes, false).getBytes();
+    }
+}
@@ -0,0 +1,109 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.oozie.benchmark;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.oozie.service.CallableQueueService;
+import org.apache.oozie.service.Services;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the throughput of {@link CallableQueueService#queue(org.apache.oozie.util.XCallable, long)} with
+ * concurrent producers while the executor threads drain the queue, the way command submission saturates it during
+ * recovery storms and materialization bursts.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(8)
+public class CallableQueueServiceBenchmark {
+    private static final String[] TYPES = {"signal", "action.start", "action.end", "action.check", "coord_action_input"};
+
+    @Param({"10", "50"})
+    public int executorThreads;
+
+    /**
+     * Percentage of the callables queued with a delay, like requeues and input checks.
+     */
+    @Param({"0", "20"})
+    public int delayedPercentage;
+
+    private final AtomicLong keys = new AtomicLong();
+    private Services services;
+    private CallableQueueService callableQueueService;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        Map<String, String> conf = new HashMap<String, String>();
+        conf.put(CallableQueueService.CONF_THREADS, Integer.toString(executorThreads));
+        conf.put(CallableQueueService.CONF_QUEUE_SIZE, "1000000");
+        conf.put(CallableQueueService.CONF_CALLABLE_CONCURRENCY, Integer.toString(executorThreads));
+        services = BenchmarkServices.start(conf, CallableQueueService.class);
+        callableQueueService = services.get(CallableQueueService.class);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        BenchmarkServices.stop(services);
+    }
+
+    @Benchmark
+    public boolean queue() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        String type = TYPES[random.nextInt(TYPES.length)];
+        long delay = (random.nextInt(100) < delayedPercentage) ? random.nextInt(1, 1000) : 0;
+        NoopCallable callable = new NoopCallable(type, type + "-" + keys.incrementAndGet(), random.nextInt(3));
+        return callableQueueService.queue(callable, delay);
+    }
+
+    @Benchmark
+    public boolean queueDuplicate() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        String type = TYPES[random.nextInt(TYPES.length)];
+        // a small key space, most of the callables are filtered by the uniqueness check
+        NoopCallable callable = new NoopCallable(type, type + "-" + random.nextInt(64), 1);
+        return callableQueueService.queue(callable);
+    }
+
+    @Benchmark
+    public int queueSize() {
+        return callableQueueService.queueSize();
+    }
+}
@@ -0,0 +1,121 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.oozie.benchmark;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.oozie.client.OozieClient;
+import org.apache.oozie.coord.CoordELFunctions;
+import org.apache.oozie.coord.SyncCoordAction;
+import org.apache.oozie.coord.SyncCoordDataset;
+import org.apache.oozie.service.ELService;
+import org.apache.oozie.service.Services;
+import org.apache.oozie.util.DateUtils;
+import org.apache.oozie.util.ELEvaluator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures {@link ELEvaluator#evaluate(String, Class)} with the {@link CoordELFunctions} of the
+ * <code>coord-action-create</code> group, the EL resolution done for every materialized coordinator action.
+ * <p>
+ * An expression cache size of <code>0</code> evaluates the expressions with the commons-el evaluator, the baseline of
+ * the cache of parsed expressions.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CoordELEvaluatorBenchmark {
+    private static final Map<String, String> EXPRESSIONS = new HashMap<String, String>();
+
+    static {
+        EXPRESSIONS.put("current", "${coord:current(-1)}");
+        EXPRESSIONS.put("currentRange", "${coord:currentRange(-23, 0)}");
+        EXPRESSIONS.put("hoursInDay", "${coord:hoursInDay(0)}");
+        EXPRESSIONS.put("formatTime", "${coord:formatTime('2009-09-09T23:59Z', 'yyyyMMdd')}");
+        EXPRESSIONS.put("template", "hdfs://namenode:8020/data/${coord:formatTime('2009-09-09T23:59Z', 'yyyy')}/"
+                + "${coord:formatTime('2009-09-09T23:59Z', 'MM')}/${coord:current(0)}");
+    }
+
+    @Param({"current", "currentRange", "hoursInDay", "formatTime", "template"})
+    public String expression;
+
+    @Param({"10000", "0"})
+    public int expressionCacheSize;
+
+    private Services services;
+    private ELEvaluator evaluator;
+    private String expr;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        Map<String, String> conf = new HashMap<String, String>();
+        conf.put(ELService.CONF_EXPRESSION_CACHE_SIZE, Integer.toString(expressionCacheSize));
+        services = BenchmarkServices.start(conf, ELService.class);
+        evaluator = services.get(ELService.class).createEvaluator("coord-action-create");
+        evaluator.setVariable(OozieClient.USER_NAME, "oozie");
+        evaluator.setVariable(OozieClient.GROUP_NAME, "oozie");
+
+        SyncCoordDataset ds = new SyncCoordDataset();
+        ds.setName("benchmark");
+        ds.setType("SYNC");
+        ds.setFrequency(1);
+        ds.setTimeUnit(org.apache.oozie.coord.TimeUnit.HOUR);
+        ds.setInitInstance(DateUtils.parseDateOozieTZ("2009-01-01T00:00Z"));
+        ds.setTimeZone(DateUtils.getTimeZone("UTC"));
+        ds.setUriTemplate("hdfs://namenode:8020/data/${YEAR}/${MONTH}/${DAY}/${HOUR}");
+        ds.setDoneFlag("");
+
+        SyncCoordAction appInst = new SyncCoordAction();
+        appInst.setActionId("0000001-170101000000000-oozie-oozi-C@1");
+        appInst.setName("benchmark-coord");
+        appInst.setNominalTime(DateUtils.parseDateOozieTZ("2009-09-09T23:00Z"));
+        appInst.setActualTime(DateUtils.parseDateOozieTZ("2009-09-10T00:00Z"));
+        appInst.setTimeZone(DateUtils.getTimeZone("UTC"));
+        CoordELFunctions.configureEvaluator(evaluator, ds, appInst);
+
+        expr = EXPRESSIONS.get(expression);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        BenchmarkServices.stop(services);
+    }
+
+    @Benchmark
+    public String evaluate() throws Exception {
+        return evaluator.evaluate(expr, String.class);
+    }
+}
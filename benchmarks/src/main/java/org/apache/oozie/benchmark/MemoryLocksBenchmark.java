@@ -0,0 +1,98 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.oozie.benchmark;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.oozie.lock.LockToken;
+import org.apache.oozie.lock.MemoryLocks;
+import org.apache.oozie.service.MemoryLocksService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures {@link MemoryLocks#getLock(String, MemoryLocksService.Type, long)} followed by the token release, the
+ * lock cycle every command does on its job id.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(8)
+public class MemoryLocksBenchmark {
+
+    /**
+     * Number of distinct job ids the commands lock on.
+     */
+    @Param({"100", "100000"})
+    public int jobs;
+
+    private MemoryLocks locks;
+    private String[] jobIds;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        locks = new MemoryLocks();
+        jobIds = new String[jobs];
+        for (int i = 0; i < jobs; i++) {
+            jobIds[i] = String.format("%07d-170101000000000-oozie-oozi-W", i);
+        }
+    }
+
+    private String nextJobId() {
+        return jobIds[ThreadLocalRandom.current().nextInt(jobs)];
+    }
+
+    @Benchmark
+    public boolean writeLock() throws InterruptedException {
+        LockToken token = locks.getLock(nextJobId(), MemoryLocksService.Type.WRITE, -1);
+        token.release();
+        return token != null;
+    }
+
+    @Benchmark
+    public boolean writeLockNoWait() throws InterruptedException {
+        LockToken token = locks.getLock(nextJobId(), MemoryLocksService.Type.WRITE, 0);
+        if (token != null) {
+            token.release();
+        }
+        return token != null;
+    }
+
+    @Benchmark
+    public boolean readLock() throws InterruptedException {
+        LockToken token = locks.getLock(nextJobId(), MemoryLocksService.Type.READ, -1);
+        token.release();
+        return token != null;
+    }
+}
@@ -0,0 +1,87 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.oozie.benchmark;
+
+import org.apache.oozie.util.XCallable;
+
+/**
+ * No-op {@link XCallable} used to measure the queueing overhead without any command work.
+ */
+public class NoopCallable implements XCallable<Void> {
+    private final String type;
+    private final String key;
+    private final int priority;
+    private final long createdTime;
+
+    public NoopCallable(String type, String key, int priority) {
+        this.type = type;
+        this.key = key;
+        this.priority = priority;
+        this.createdTime = System.currentTimeMillis();
+    }
+
+    @Override
+    public Void call() throws Exception {
+        return null;
+    }
+
+    @Override
+    public String getName() {
+        return type;
+    }
+
+    @Override
+    public int getPriority() {
+        return priority;
+    }
+
+    @Override
+    public String getType() {
+        return type;
+    }
+
+    @Override
+    public long getCreatedTime() {
+        return createdTime;
+    }
+
+    @Override
+    public String getKey() {
+        return key;
+    }
+
+    @Override
+    public String getEntityKey() {
+        return key;
+    }
+
+    @Override
+    public void setInterruptMode(boolean mode) {
+    }
+
+    @Override
+    public boolean inInterruptMode() {
+        return false;
+    }
+
+    @Override
+    public String toString() {
+        return key;
+    }
+}
@@ -0,0 +1,107 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.oozie.benchmark;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.oozie.util.ConcurrentPriorityDelayQueue;
+import org.apache.oozie.util.PriorityDelayQueue;
+import org.apache.oozie.util.PriorityDelayQueue.QueueElement;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures {@link PriorityDelayQueue#offer(QueueElement)} and {@link PriorityDelayQueue#poll()} with concurrent
+ * producers and consumers, the access pattern of the <code>CallableQueueService</code> executor, for the lock based
+ * {@link PriorityDelayQueue} and the lock-free {@link ConcurrentPriorityDelayQueue}.
+ */
+@State(Scope.Group)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PriorityDelayQueueBenchmark {
+    private static final int PRIORITIES = 3;
+
+    /**
+     * Percentage of the elements offered with a delay.
+     */
+    @Param({"0", "20"})
+    public int delayedPercentage;
+
+    /**
+     * Elements already in the queue when the measurement starts.
+     */
+    @Param({"0", "10000"})
+    public int backlog;
+
+    /**
+     * Queue implementation, <code>locked</code> or <code>concurrent</code>.
+     */
+    @Param({"locked", "concurrent"})
+    public String implementation;
+
+    private PriorityDelayQueue<Void> queue;
+
+    @Setup(Level.Iteration)
+    public void setUp() {
+        queue = "concurrent".equals(implementation)
+                ? new ConcurrentPriorityDelayQueue<Void>(PRIORITIES, 30, TimeUnit.SECONDS, -1)
+                : new PriorityDelayQueue<Void>(PRIORITIES, 30, TimeUnit.SECONDS, -1);
+        for (int i = 0; i < backlog; i++) {
+            queue.offer(newElement(ThreadLocalRandom.current(), i));
+        }
+    }
+
+    private QueueElement<Void> newElement(ThreadLocalRandom random, long id) {
+        long delay = (random.nextInt(100) < delayedPercentage) ? random.nextInt(1, 1000) : 0;
+        int priority = random.nextInt(PRIORITIES);
+        return new QueueElement<Void>(new NoopCallable("noop", Long.toString(id), priority), priority, delay,
+                TimeUnit.MILLISECONDS);
+    }
+
+    @Benchmark
+    @Group("offerPoll")
+    @GroupThreads(4)
+    public boolean offer() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        return queue.offer(newElement(random, random.nextLong()));
+    }
+
+    @Benchmark
+    @Group("offerPoll")
+    @GroupThreads(4)
+    public QueueElement<Void> poll() {
+        return queue.poll();
+    }
+}
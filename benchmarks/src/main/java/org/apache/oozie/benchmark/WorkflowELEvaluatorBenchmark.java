@@ -0,0 +1,115 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.oozie.benchmark;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.oozie.DagELFunctions;
+import org.apache.oozie.WorkflowActionBean;
+import org.apache.oozie.WorkflowJobBean;
+import org.apache.oozie.service.DagXLogInfoService;
+import org.apache.oozie.service.ELService;
+import org.apache.oozie.service.Services;
+import org.apache.oozie.util.ELEvaluator;
+import org.apache.oozie.util.XConfiguration;
+import org.apache.oozie.workflow.lite.LiteWorkflowInstance;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures {@link ELEvaluator#evaluate(String, Class)} with the {@link DagELFunctions} of the <code>workflow</code>
+ * group, the EL resolution done for the decision nodes and the configuration of every workflow action.
+ * <p>
+ * An expression cache size of <code>0</code> evaluates the expressions with the commons-el evaluator, the baseline of
+ * the cache of parsed expressions.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class WorkflowELEvaluatorBenchmark {
+    private static final Map<String, String> EXPRESSIONS = new HashMap<String, String>();
+
+    static {
+        EXPRESSIONS.put("id", "${wf:id()}");
+        EXPRESSIONS.put("decision", "${wf:user() eq 'oozie' and queueName ne 'default'}");
+        EXPRESSIONS.put("template", "${nameNode}/user/${wf:user()}/${wf:name()}/output/${wf:id()}");
+    }
+
+    @Param({"id", "decision", "template"})
+    public String expression;
+
+    @Param({"10000", "0"})
+    public int expressionCacheSize;
+
+    private Services services;
+    private ELEvaluator evaluator;
+    private String expr;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        Map<String, String> conf = new HashMap<String, String>();
+        conf.put(ELService.CONF_EXPRESSION_CACHE_SIZE, Integer.toString(expressionCacheSize));
+        services = BenchmarkServices.start(conf, DagXLogInfoService.class, ELService.class);
+        evaluator = services.get(ELService.class).createEvaluator("workflow");
+
+        XConfiguration jobConf = BenchmarkData.configuration(10);
+        jobConf.set("nameNode", "hdfs://namenode:8020");
+        jobConf.set("queueName", "benchmark");
+        WorkflowJobBean workflow = new WorkflowJobBean();
+        workflow.setId("0000001-170101000000000-oozie-oozi-W");
+        workflow.setAppName("benchmark-wf");
+        workflow.setUser("oozie");
+        workflow.setConf(jobConf.toXmlString(false));
+        workflow.setProtoActionConf(new XConfiguration().toXmlString(false));
+        workflow.setWorkflowInstance(new LiteWorkflowInstance(BenchmarkData.workflowApp(1), jobConf,
+                workflow.getId()));
+        WorkflowActionBean action = new WorkflowActionBean();
+        action.setId(workflow.getId() + "@action-0");
+        action.setName("action-0");
+        DagELFunctions.configureEvaluator(evaluator, workflow, action);
+
+        expr = EXPRESSIONS.get(expression);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        BenchmarkServices.stop(services);
+    }
+
+    @Benchmark
+    public String evaluate() throws Exception {
+        return evaluator.evaluate(expr, String.class);
+    }
+}
@@ -0,0 +1,92 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.oozie.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.apache.oozie.service.DagXLogInfoService;
+import org.apache.oozie.service.Services;
+import org.apache.oozie.util.WritableUtils;
+import org.apache.oozie.workflow.WorkflowInstance;
+import org.apache.oozie.workflow.lite.LiteWorkflowInstance;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures {@link LiteWorkflowInstance#write(java.io.DataOutput)} and
+ * {@link LiteWorkflowInstance#readFields(java.io.DataInput)}, the serialization of the <code>wfInstance</code> blob
+ * done on every workflow signal.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class WorkflowInstanceBenchmark {
+
+    @Param({"5", "100"})
+    public int actions;
+
+    @Param({"50", "2000"})
+    public int confProperties;
+
+    private Services services;
+    private LiteWorkflowInstance instance;
+    private byte[] serialized;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        services = BenchmarkServices.start(DagXLogInfoService.class);
+        instance = new LiteWorkflowInstance(BenchmarkData.workflowApp(actions),
+                BenchmarkData.configuration(confProperties), "0000001-170101000000000-oozie-oozi-W");
+        for (int i = 0; i < actions; i++) {
+            String node = "action-" + i + WorkflowInstance.NODE_VAR_SEPARATOR;
+            instance.setVar(node + "oozie.action.id", "0000001-170101000000000-oozie-oozi-W@action-" + i);
+            instance.setVar(node + "transition.to", (i + 1 < actions) ? "action-" + (i + 1) : "end");
+        }
+        serialized = WritableUtils.toByteArray(instance);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        BenchmarkServices.stop(services);
+    }
+
+    @Benchmark
+    public byte[] write() {
+        return WritableUtils.toByteArray(instance);
+    }
+
+    @Benchmark
+    public LiteWorkflowInstance readFields() {
+        return WritableUtils.fromByteArray(serialized, LiteWorkflowInstance.class);
+    }
+}
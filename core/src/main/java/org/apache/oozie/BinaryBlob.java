@@ -26,6 +26,9 @@ import org.apache.oozie.compression.CompressionCodec;
 
 /**
  * BinaryBlob to maintain compress and uncompressed data
+ * <p>
+ * The data is decompressed on the first call to {@link #getBytes()} only, the compressed data is kept so an unmodified blob
+ * is written back without being compressed again. {@link #setBytes} discards it.
  */
 public class BinaryBlob {
 
@@ -75,16 +78,18 @@ public class BinaryBlob {
             CompressionCodec codec = CodecFactory.getDeCompressionCodec(dais);
             if (codec != null) {
                 bytes = codec.decompressToBytes(dais);
+                CodecFactory.incrDecompressions();
             }
             else {
                 bytes = rawBlob;
+                // written back compressed if compression is enabled
+                rawBlob = null;
             }
             dais.close();
         }
         catch (IOException ex) {
             throw new RuntimeException(ex);
         }
-        rawBlob = null;
         return bytes;
 
     }
@@ -96,6 +101,9 @@ public class BinaryBlob {
      */
     public byte[] getRawBlob() {
         if (rawBlob != null) {
+            if (bytes != null) {
+                CodecFactory.incrUnchangedWrites();
+            }
             return rawBlob;
         }
         if (bytes == null) {
@@ -104,6 +112,7 @@ public class BinaryBlob {
         if (CodecFactory.isCompressionEnabled()) {
             byte[] headerBytes = CodecFactory.getHeaderBytes();
             try {
+                CodecFactory.incrCompressions();
                 rawBlob = CodecFactory.getCompressionCodec().compressBytes(headerBytes, bytes);
             }
             catch (IOException ex) {
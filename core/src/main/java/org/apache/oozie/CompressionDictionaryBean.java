@@ -0,0 +1,126 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.oozie;
+
+import java.sql.Timestamp;
+import java.util.Date;
+
+import javax.persistence.Basic;
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.Lob;
+import javax.persistence.NamedQueries;
+import javax.persistence.NamedQuery;
+import javax.persistence.Table;
+
+import org.apache.oozie.client.rest.JsonBean;
+import org.apache.oozie.client.rest.JsonUtils;
+import org.apache.oozie.util.DateUtils;
+import org.json.simple.JSONObject;
+
+/**
+ * Preset dictionary of a compression codec, referenced by its id from the header of the blobs compressed with it.
+ * <p>
+ * The dictionary is stored as is, not as a {@link BinaryBlob}, as it is needed to decompress the blobs.
+ */
+@Entity
+@NamedQueries({
+        @NamedQuery(name = "GET_COMPRESSION_DICT", query = "select OBJECT(d) from CompressionDictionaryBean d "
+                + "where d.id = :id"),
+        @NamedQuery(name = "GET_COMPRESSION_DICTS", query = "select OBJECT(d) from CompressionDictionaryBean d")})
+@Table(name = "COMPRESSION_DICTS")
+public class CompressionDictionaryBean implements JsonBean {
+
+    @Id
+    @Basic
+    @Column(name = "id")
+    private String id;
+
+    @Basic
+    @Column(name = "codec")
+    private String codec = null;
+
+    @Basic
+    @Column(name = "created_time")
+    private java.sql.Timestamp createdTimestamp = null;
+
+    @Basic
+    @Column(name = "dictionary")
+    @Lob
+    private byte[] dictionary;
+
+    public CompressionDictionaryBean() {
+    }
+
+    public CompressionDictionaryBean(String id, String codec, byte[] dictionary) {
+        this.id = id;
+        this.codec = codec;
+        this.dictionary = dictionary;
+        this.createdTimestamp = new Timestamp(System.currentTimeMillis());
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public void setId(String id) {
+        this.id = id;
+    }
+
+    public String getCodec() {
+        return codec;
+    }
+
+    public void setCodec(String codec) {
+        this.codec = codec;
+    }
+
+    public Date getCreatedTime() {
+        return DateUtils.toDate(createdTimestamp);
+    }
+
+    public void setCreatedTime(Date createdTime) {
+        this.createdTimestamp = DateUtils.convertDateToTimestamp(createdTime);
+    }
+
+    public byte[] getDictionary() {
+        return dictionary;
+    }
+
+    public void setDictionary(byte[] dictionary) {
+        this.dictionary = dictionary;
+    }
+
+    @Override
+    public JSONObject toJSONObject() {
+        return toJSONObject("GMT");
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public JSONObject toJSONObject(String timeZoneId) {
+        JSONObject json = new JSONObject();
+        json.put("id", id);
+        json.put("codec", codec);
+        json.put("createdTime", JsonUtils.formatDateRfc822(getCreatedTime(), timeZoneId));
+        json.put("size", (dictionary == null) ? 0 : dictionary.length);
+        return json;
+    }
+}
@@ -0,0 +1,139 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.oozie;
+
+import java.util.Date;
+
+import javax.persistence.Basic;
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.NamedQueries;
+import javax.persistence.NamedQuery;
+import javax.persistence.Table;
+
+import org.apache.oozie.client.rest.JsonBean;
+import org.apache.oozie.client.rest.JsonUtils;
+import org.apache.oozie.util.DateUtils;
+import org.json.simple.JSONObject;
+
+/**
+ * Progress of a purge run, so a purge interrupted by a restart resumes where it stopped.
+ * <p>
+ * The purge processes the jobs phase by phase, in the order of their ids: the checkpoint holds the current phase and
+ * the id of the last job of that phase whose hierarchy was purged. The parameters of the run are kept so a purge with
+ * different parameters does not resume it.
+ */
+@Entity
+@NamedQueries({
+        @NamedQuery(name = "GET_PURGE_CHECKPOINT", query = "select OBJECT(w) from PurgeCheckpointBean w where w.id = :id"),
+        @NamedQuery(name = "DELETE_PURGE_CHECKPOINT", query = "delete from PurgeCheckpointBean w where w.id = :id"),
+        @NamedQuery(name = "GET_PURGE_CHECKPOINTS", query = "select OBJECT(w) from PurgeCheckpointBean w")})
+@Table(name = "PURGE_CHECKPOINTS")
+public class PurgeCheckpointBean implements JsonBean {
+
+    @Id
+    @Basic
+    @Column(name = "id")
+    private String id;
+
+    @Basic
+    @Column(name = "params")
+    private String params = null;
+
+    @Basic
+    @Column(name = "phase")
+    private String phase = null;
+
+    @Basic
+    @Column(name = "last_id")
+    private String lastId = null;
+
+    @Basic
+    @Column(name = "last_modified_time")
+    private java.sql.Timestamp lastModifiedTimestamp = null;
+
+    public PurgeCheckpointBean() {
+    }
+
+    public PurgeCheckpointBean(String id, String params, String phase, String lastId) {
+        this.id = id;
+        this.params = params;
+        this.phase = phase;
+        this.lastId = lastId;
+        this.lastModifiedTimestamp = DateUtils.convertDateToTimestamp(new Date());
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public void setId(String id) {
+        this.id = id;
+    }
+
+    public String getParams() {
+        return params;
+    }
+
+    public void setParams(String params) {
+        this.params = params;
+    }
+
+    public String getPhase() {
+        return phase;
+    }
+
+    public void setPhase(String phase) {
+        this.phase = phase;
+    }
+
+    public String getLastId() {
+        return lastId;
+    }
+
+    public void setLastId(String lastId) {
+        this.lastId = lastId;
+    }
+
+    public Date getLastModifiedTime() {
+        return DateUtils.toDate(lastModifiedTimestamp);
+    }
+
+    public void setLastModifiedTime(Date lastModifiedTime) {
+        this.lastModifiedTimestamp = DateUtils.convertDateToTimestamp(lastModifiedTime);
+    }
+
+    @Override
+    public JSONObject toJSONObject() {
+        return toJSONObject("GMT");
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public JSONObject toJSONObject(String timeZoneId) {
+        JSONObject json = new JSONObject();
+        json.put("id", id);
+        json.put("params", params);
+        json.put("phase", phase);
+        json.put("lastId", lastId);
+        json.put("lastModifiedTime", JsonUtils.formatDateRfc822(getLastModifiedTime(), timeZoneId));
+        return json;
+    }
+}
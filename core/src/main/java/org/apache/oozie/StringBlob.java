@@ -28,6 +28,9 @@ import org.apache.oozie.compression.CompressionCodec;
 
 /**
  * StringBlob to maintain compress and uncompressed data
+ * <p>
+ * The data is decompressed on the first call to {@link #getString()} only, the compressed data is kept so an unmodified blob
+ * is written back without being compressed again. {@link #setString} discards it.
  */
 public class StringBlob {
 
@@ -80,9 +83,12 @@ public class StringBlob {
             CompressionCodec codec = CodecFactory.getDeCompressionCodec(dais);
             if (codec != null) {
                 string = codec.decompressToString(dais);
+                CodecFactory.incrDecompressions();
             }
             else {
                 string = new String(rawBlob, CodecFactory.UTF_8_ENCODING);
+                // written back compressed if compression is enabled
+                rawBlob = null;
             }
             dais.close();
 
@@ -90,7 +96,6 @@ public class StringBlob {
         catch (IOException ex) {
             throw new RuntimeException(ex);
         }
-        rawBlob = null;
         return string;
     }
 
@@ -101,6 +106,9 @@ public class StringBlob {
      */
     public byte[] getRawBlob() {
         if (rawBlob != null) {
+            if (string != null) {
+                CodecFactory.incrUnchangedWrites();
+            }
             return rawBlob;
         }
         if (string == null) {
@@ -109,6 +117,7 @@ public class StringBlob {
         if (CodecFactory.isCompressionEnabled()) {
             byte[] bytes = CodecFactory.getHeaderBytes();
             try {
+                CodecFactory.incrCompressions();
                 rawBlob = CodecFactory.getCompressionCodec().compressString(bytes, string);
             }
             catch (IOException ex) {
@@ -84,6 +84,8 @@ import org.json.simple.JSONObject;
 
     @NamedQuery(name = "GET_ACTION", query = "select OBJECT(a) from WorkflowActionBean a where a.id = :id"),
 
+    @NamedQuery(name = "GET_ACTIONS_STATUS_FOR_IDS", query = "select a.id, a.statusStr from WorkflowActionBean a where a.id IN (:ids)"),
+
     @NamedQuery(name = "GET_ACTION_ID_TYPE_LASTCHECK", query = "select a.id, a.type, a.lastCheckTimestamp from WorkflowActionBean a where a.id = :id"),
 
     @NamedQuery(name = "GET_ACTION_FAIL", query = "select a.id, a.wfId, a.name, a.statusStr, a.pending, a.type, a.logToken, a.transition, a.errorCode, a.errorMessage from WorkflowActionBean a where a.id = :id"),
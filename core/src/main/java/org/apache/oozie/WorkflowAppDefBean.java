@@ -0,0 +1,148 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.oozie;
+
+import java.sql.Timestamp;
+import java.util.Date;
+
+import javax.persistence.Basic;
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.Lob;
+import javax.persistence.NamedQueries;
+import javax.persistence.NamedQuery;
+import javax.persistence.Table;
+
+import org.apache.oozie.client.rest.JsonBean;
+import org.apache.oozie.client.rest.JsonTags;
+import org.apache.oozie.client.rest.JsonUtils;
+import org.apache.oozie.util.DateUtils;
+import org.apache.openjpa.persistence.jdbc.Strategy;
+import org.json.simple.JSONObject;
+
+/**
+ * Workflow application definition shared by the workflow instances serialized in the compact format, keyed by its
+ * content hash.
+ * <p>
+ * The last used time is refreshed when workflow instances referring to the definition are written, at most once per
+ * {@link org.apache.oozie.service.WorkflowAppDefService#LAST_USED_INTERVAL}. The definitions no workflow refers to and
+ * not used for a while are deleted by the purge.
+ */
+@Entity
+@NamedQueries({
+        @NamedQuery(name = "GET_WF_APP_DEF", query = "select OBJECT(w) from WorkflowAppDefBean w where w.id = :id"),
+        @NamedQuery(name = "GET_WF_APP_DEFS", query = "select OBJECT(w) from WorkflowAppDefBean w"),
+        @NamedQuery(name = "UPDATE_WF_APP_DEF_LAST_USED", query = "update WorkflowAppDefBean w set "
+                + "w.lastUsedTimestamp = :lastUsedTime where w.id = :id"),
+        @NamedQuery(name = "DELETE_UNUSED_WF_APP_DEFS", query = "delete from WorkflowAppDefBean w where "
+                + "w.lastUsedTimestamp < :lastUsedTime and not exists (select j.id from WorkflowJobBean j where "
+                + "j.appDefId = w.id)")})
+@Table(name = "WF_APP_DEFS")
+public class WorkflowAppDefBean implements JsonBean {
+
+    @Id
+    @Basic
+    @Column(name = "id")
+    private String id;
+
+    @Basic
+    @Column(name = "app_name")
+    private String appName = null;
+
+    @Basic
+    @Column(name = "created_time")
+    private java.sql.Timestamp createdTimestamp = null;
+
+    @Basic
+    @Column(name = "last_used_time")
+    private java.sql.Timestamp lastUsedTimestamp = null;
+
+    @Basic
+    @Column(name = "app_def")
+    @Lob
+    @Strategy("org.apache.oozie.executor.jpa.BinaryBlobValueHandler")
+    private BinaryBlob appDef;
+
+    public WorkflowAppDefBean() {
+    }
+
+    public WorkflowAppDefBean(String id, String appName, byte[] appDef) {
+        this.id = id;
+        this.appName = appName;
+        this.appDef = new BinaryBlob(appDef, true);
+        this.createdTimestamp = new Timestamp(System.currentTimeMillis());
+        this.lastUsedTimestamp = this.createdTimestamp;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public void setId(String id) {
+        this.id = id;
+    }
+
+    public String getAppName() {
+        return appName;
+    }
+
+    public void setAppName(String appName) {
+        this.appName = appName;
+    }
+
+    public Date getCreatedTime() {
+        return DateUtils.toDate(createdTimestamp);
+    }
+
+    public void setCreatedTime(Date createdTime) {
+        this.createdTimestamp = DateUtils.convertDateToTimestamp(createdTime);
+    }
+
+    public Date getLastUsedTime() {
+        return DateUtils.toDate(lastUsedTimestamp);
+    }
+
+    public void setLastUsedTime(Date lastUsedTime) {
+        this.lastUsedTimestamp = DateUtils.convertDateToTimestamp(lastUsedTime);
+    }
+
+    public byte[] getAppDef() {
+        return appDef == null ? null : appDef.getBytes();
+    }
+
+    public void setAppDef(byte[] appDef) {
+        this.appDef = new BinaryBlob(appDef, true);
+    }
+
+    @Override
+    public JSONObject toJSONObject() {
+        return toJSONObject("GMT");
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public JSONObject toJSONObject(String timeZoneId) {
+        JSONObject json = new JSONObject();
+        json.put(JsonTags.WORKFLOW_ID, id);
+        json.put(JsonTags.WORKFLOW_APP_NAME, appName);
+        json.put(JsonTags.WORKFLOW_CREATED_TIME, JsonUtils.formatDateRfc822(getCreatedTime(), timeZoneId));
+        return json;
+    }
+}
@@ -24,10 +24,16 @@ import org.apache.oozie.client.WorkflowJob;
 import org.apache.oozie.client.rest.JsonBean;
 import org.apache.oozie.client.rest.JsonTags;
 import org.apache.oozie.client.rest.JsonUtils;
+import org.apache.oozie.executor.jpa.JPAExecutorException;
+import org.apache.oozie.executor.jpa.WorkflowJobQueryExecutor;
+import org.apache.oozie.executor.jpa.WorkflowJobQueryExecutor.WorkflowJobQuery;
+import org.apache.oozie.service.Services;
+import org.apache.oozie.service.WorkflowAppDefService;
 import org.apache.oozie.util.DateUtils;
 import org.apache.oozie.util.WritableUtils;
 import org.apache.oozie.workflow.WorkflowInstance;
 import org.apache.oozie.workflow.lite.LiteWorkflowInstance;
+import org.apache.oozie.workflow.lite.LiteWorkflowInstanceSerializer;
 import org.apache.openjpa.persistence.jdbc.Index;
 import org.apache.openjpa.persistence.jdbc.Strategy;
 import org.json.simple.JSONArray;
@@ -55,7 +61,7 @@ import java.util.List;
 
 @NamedQueries({
 
-    @NamedQuery(name = "UPDATE_WORKFLOW", query = "update WorkflowJobBean w set w.appName = :appName, w.appPath = :appPath, w.conf = :conf, w.group = :groupName, w.run = :run, w.user = :user, w.createdTimestamp = :createdTime, w.endTimestamp = :endTime, w.externalId = :externalId, w.lastModifiedTimestamp = :lastModTime,w.logToken = :logToken, w.protoActionConf = :protoActionConf, w.slaXml =:slaXml, w.startTimestamp = :startTime, w.statusStr = :status, w.wfInstance = :wfInstance where w.id = :id"),
+    @NamedQuery(name = "UPDATE_WORKFLOW", query = "update WorkflowJobBean w set w.appName = :appName, w.appPath = :appPath, w.conf = :conf, w.group = :groupName, w.run = :run, w.user = :user, w.createdTimestamp = :createdTime, w.endTimestamp = :endTime, w.externalId = :externalId, w.lastModifiedTimestamp = :lastModTime,w.logToken = :logToken, w.protoActionConf = :protoActionConf, w.slaXml =:slaXml, w.startTimestamp = :startTime, w.statusStr = :status, w.wfInstance = :wfInstance, w.appDefId = :appDefId where w.id = :id"),
 
     @NamedQuery(name = "UPDATE_WORKFLOW_MODTIME", query = "update WorkflowJobBean w set w.lastModifiedTimestamp = :lastModTime where w.id = :id"),
 
@@ -63,13 +69,13 @@ import java.util.List;
 
     @NamedQuery(name = "UPDATE_WORKFLOW_PARENT_MODIFIED", query = "update WorkflowJobBean w set w.parentId = :parentId, w.lastModifiedTimestamp = :lastModTime where w.id = :id"),
 
-    @NamedQuery(name = "UPDATE_WORKFLOW_STATUS_INSTANCE_MODIFIED", query = "update WorkflowJobBean w set w.statusStr = :status, w.wfInstance = :wfInstance, w.lastModifiedTimestamp = :lastModTime where w.id = :id"),
+    @NamedQuery(name = "UPDATE_WORKFLOW_STATUS_INSTANCE_MODIFIED", query = "update WorkflowJobBean w set w.statusStr = :status, w.wfInstance = :wfInstance, w.appDefId = :appDefId, w.lastModifiedTimestamp = :lastModTime where w.id = :id"),
 
-    @NamedQuery(name = "UPDATE_WORKFLOW_STATUS_INSTANCE_MOD_END", query = "update WorkflowJobBean w set w.statusStr = :status, w.wfInstance = :wfInstance, w.lastModifiedTimestamp = :lastModTime, w.endTimestamp = :endTime where w.id = :id"),
+    @NamedQuery(name = "UPDATE_WORKFLOW_STATUS_INSTANCE_MOD_END", query = "update WorkflowJobBean w set w.statusStr = :status, w.wfInstance = :wfInstance, w.appDefId = :appDefId, w.lastModifiedTimestamp = :lastModTime, w.endTimestamp = :endTime where w.id = :id"),
 
-    @NamedQuery(name = "UPDATE_WORKFLOW_STATUS_INSTANCE_MOD_START_END", query = "update WorkflowJobBean w set w.statusStr = :status, w.wfInstance = :wfInstance, w.lastModifiedTimestamp = :lastModTime, w.startTimestamp = :startTime, w.endTimestamp = :endTime where w.id = :id"),
+    @NamedQuery(name = "UPDATE_WORKFLOW_STATUS_INSTANCE_MOD_START_END", query = "update WorkflowJobBean w set w.statusStr = :status, w.wfInstance = :wfInstance, w.appDefId = :appDefId, w.lastModifiedTimestamp = :lastModTime, w.startTimestamp = :startTime, w.endTimestamp = :endTime where w.id = :id"),
 
-    @NamedQuery(name = "UPDATE_WORKFLOW_RERUN", query = "update WorkflowJobBean w set w.appName = :appName, w.protoActionConf = :protoActionConf, w.appPath = :appPath, w.conf = :conf, w.logToken = :logToken, w.user = :user, w.group = :group, w.externalId = :externalId, w.endTimestamp = :endTime, w.run = :run, w.statusStr = :status, w.wfInstance = :wfInstance, w.lastModifiedTimestamp = :lastModTime where w.id = :id"),
+    @NamedQuery(name = "UPDATE_WORKFLOW_RERUN", query = "update WorkflowJobBean w set w.appName = :appName, w.protoActionConf = :protoActionConf, w.appPath = :appPath, w.conf = :conf, w.logToken = :logToken, w.user = :user, w.group = :group, w.externalId = :externalId, w.endTimestamp = :endTime, w.run = :run, w.statusStr = :status, w.wfInstance = :wfInstance, w.appDefId = :appDefId, w.lastModifiedTimestamp = :lastModTime where w.id = :id"),
 
     @NamedQuery(name = "DELETE_WORKFLOW", query = "delete from WorkflowJobBean w where w.id IN (:id)"),
 
@@ -85,6 +91,15 @@ import java.util.List;
 
     @NamedQuery(name = "GET_COMPLETED_COORD_WORKFLOWS_OLDER_THAN", query = "select w.id, w.parentId from WorkflowJobBean w where w.endTimestamp < :endTime and w.parentId like '%C@%'"),
 
+    // Select queries used by the purge, paginated on the job id
+    @NamedQuery(name = "GET_COMPLETED_WORKFLOWS_WITH_NO_PARENT_OLDER_THAN_AFTER_ID", query = "select w.id from WorkflowJobBean w where w.endTimestamp < :endTime and w.parentId is null and w.id > :lastId order by w.id"),
+
+    @NamedQuery(name = "GET_COMPLETED_COORD_WORKFLOWS_OLDER_THAN_AFTER_ID", query = "select w.id, w.parentId from WorkflowJobBean w where w.endTimestamp < :endTime and w.parentId like '%C@%' and w.id > :lastId order by w.id"),
+
+    @NamedQuery(name = "GET_COMPLETED_WORKFLOWS_WITH_NO_PARENT_OLDER_THAN_COUNT", query = "select count(w) from WorkflowJobBean w where w.endTimestamp < :endTime and w.parentId is null and w.id > :lastId"),
+
+    @NamedQuery(name = "GET_COMPLETED_COORD_WORKFLOWS_OLDER_THAN_COUNT", query = "select count(w) from WorkflowJobBean w where w.endTimestamp < :endTime and w.parentId like '%C@%' and w.id > :lastId"),
+
     @NamedQuery(name = "GET_WORKFLOW", query = "select OBJECT(w) from WorkflowJobBean w where w.id = :id"),
 
     @NamedQuery(name = "GET_WORKFLOW_STARTTIME", query = "select w.id, w.startTimestamp from WorkflowJobBean w where w.id = :id"),
@@ -93,7 +108,7 @@ import java.util.List;
 
     @NamedQuery(name = "GET_WORKFLOW_USER_GROUP", query = "select w.user, w.group from WorkflowJobBean w where w.id = :id"),
 
-    @NamedQuery(name = "GET_WORKFLOW_SUSPEND", query = "select w.id, w.user, w.group, w.appName, w.statusStr, w.parentId, w.startTimestamp, w.endTimestamp, w.logToken, w.wfInstance  from WorkflowJobBean w where w.id = :id"),
+    @NamedQuery(name = "GET_WORKFLOW_SUSPEND", query = "select w.id, w.user, w.group, w.appName, w.statusStr, w.parentId, w.startTimestamp, w.endTimestamp, w.logToken, w.wfInstance from WorkflowJobBean w where w.id = :id"),
 
     @NamedQuery(name = "GET_WORKFLOW_RERUN", query = "select w.id, w.user, w.group, w.appName, w.statusStr, w.run, w.logToken, w.wfInstance, w.parentId from WorkflowJobBean w where w.id = :id"),
 
@@ -121,12 +136,18 @@ import java.util.List;
 
     @NamedQuery(name = "GET_WORKFLOWS_BASIC_INFO_BY_PARENT_ID", query = "select w.id, w.statusStr, w.endTimestamp from WorkflowJobBean w where w.parentId = :parentId"),
 
+    @NamedQuery(name = "GET_WORKFLOWS_BASIC_INFO_BY_PARENT_IDS", query = "select w.id, w.statusStr, w.endTimestamp, w.parentId from WorkflowJobBean w where w.parentId IN (:parentIds)"),
+
     @NamedQuery(name = "GET_WORKFLOWS_BASIC_INFO_BY_COORD_PARENT_ID", query = "select w.id,  w.statusStr, w.endTimestamp from WorkflowJobBean w where w.parentId like :parentId"),
 
     @NamedQuery(name = "GET_WORKFLOW_FOR_USER", query = "select w.user from WorkflowJobBean w where w.id = :id"),
 
     @NamedQuery(name = "GET_WORKFLOW_STATUS", query = "select w.statusStr from WorkflowJobBean w where w.id = :id"),
 
+    @NamedQuery(name = "GET_WORKFLOW_CONF", query = "select w.conf from WorkflowJobBean w where w.id = :id"),
+
+    @NamedQuery(name = "GET_WORKFLOWS_STATUS_FOR_IDS", query = "select w.id, w.statusStr from WorkflowJobBean w where w.id IN (:ids)"),
+
     @NamedQuery(name = "GET_WORKFLOWS_PARENT_COORD_RERUN", query = "select w.id, w.statusStr, w.startTimestamp, w.endTimestamp "
             + "from WorkflowJobBean w where w.parentId = :parentId order by w.createdTimestamp")})
 @Table(name = "WF_JOBS")
@@ -179,6 +200,11 @@ public class WorkflowJobBean implements Writable, WorkflowJob, JsonBean {
     @Strategy("org.apache.oozie.executor.jpa.BinaryBlobValueHandler")
     private BinaryBlob wfInstance ;
 
+    @Basic
+    @Index
+    @Column(name = "app_def_id")
+    private String appDefId;
+
     @Basic
     @Column(name = "sla_xml")
     @Lob
@@ -345,16 +371,42 @@ public class WorkflowJobBean implements Writable, WorkflowJob, JsonBean {
     }
 
     public void setWorkflowInstance(WorkflowInstance workflowInstance) {
+        byte[] array = toByteArray((LiteWorkflowInstance) workflowInstance, getConf());
         if (this.wfInstance == null) {
-            this.wfInstance = new BinaryBlob(WritableUtils.toByteArray((LiteWorkflowInstance) workflowInstance), true);
+            this.wfInstance = new BinaryBlob(array, true);
         }
         else {
-            this.wfInstance.setBytes(WritableUtils.toByteArray((LiteWorkflowInstance) workflowInstance));
+            this.wfInstance.setBytes(array);
         }
+        this.appDefId = getAppDefId(array);
     }
 
     public void setWfInstanceBlob(BinaryBlob wfInstance) {
         this.wfInstance = wfInstance;
+        this.appDefId = null;
+    }
+
+    /**
+     * Return the id of the application definition the workflow instance refers to, read from the workflow instance if
+     * it was not serialized by this bean.
+     *
+     * @return the id of the application definition, <code>null</code> if the workflow instance is in the legacy
+     * format.
+     */
+    public String getAppDefId() {
+        if (appDefId == null && wfInstance != null) {
+            appDefId = getAppDefId(wfInstance.getBytes());
+        }
+        return appDefId;
+    }
+
+    private static String getAppDefId(byte[] array) {
+        try {
+            return (array == null) ? null : LiteWorkflowInstanceSerializer.getAppDefId(array);
+        }
+        catch (IOException ex) {
+            throw new RuntimeException(ex);
+        }
     }
 
     public String getProtoActionConf() {
@@ -458,8 +510,53 @@ public class WorkflowJobBean implements Writable, WorkflowJob, JsonBean {
     }
 
     private WorkflowInstance get(byte[] array) {
-        LiteWorkflowInstance pInstance = WritableUtils.fromByteArray(array, LiteWorkflowInstance.class);
-        return pInstance;
+        try {
+            WorkflowAppDefService appDefService = getWorkflowAppDefService();
+            if (appDefService == null) {
+                return LiteWorkflowInstanceSerializer.fromByteArray(array, null);
+            }
+            // the projections loading the workflow instance do not load the job configuration, it is loaded only if
+            // the instance configuration is accessed
+            return appDefService.fromByteArray(array, new LiteWorkflowInstanceSerializer.JobConfLoader() {
+                @Override
+                public String getJobConf() throws IOException {
+                    return loadConf();
+                }
+            });
+        }
+        catch (IOException ex) {
+            throw new RuntimeException(ex);
+        }
+    }
+
+    private String loadConf() throws IOException {
+        if (conf == null && id != null) {
+            try {
+                conf = WorkflowJobQueryExecutor.getInstance().get(WorkflowJobQuery.GET_WORKFLOW_CONF, id).getConfBlob();
+            }
+            catch (JPAExecutorException ex) {
+                throw new IOException(ex);
+            }
+        }
+        return getConf();
+    }
+
+    private static byte[] toByteArray(LiteWorkflowInstance workflowInstance, String jobConf) {
+        WorkflowAppDefService appDefService = getWorkflowAppDefService();
+        if (appDefService == null) {
+            return WritableUtils.toByteArray(workflowInstance);
+        }
+        try {
+            return appDefService.toByteArray(workflowInstance, jobConf);
+        }
+        catch (IOException ex) {
+            throw new RuntimeException(ex);
+        }
+    }
+
+    private static WorkflowAppDefService getWorkflowAppDefService() {
+        Services services = Services.get();
+        return (services != null) ? services.get(WorkflowAppDefService.class) : null;
     }
 
     public JSONObject toJSONObject() {
@@ -19,54 +19,118 @@
 package org.apache.oozie.command;
 
 import org.apache.oozie.ErrorCode;
+import org.apache.oozie.PurgeCheckpointBean;
 import org.apache.oozie.WorkflowJobBean;
 import org.apache.oozie.XException;
 import org.apache.oozie.executor.jpa.BundleJobsDeleteJPAExecutor;
 import org.apache.oozie.executor.jpa.BundleJobsGetForPurgeJPAExecutor;
 import org.apache.oozie.executor.jpa.CoordActionsDeleteJPAExecutor;
 import org.apache.oozie.executor.jpa.CoordActionsGetFromCoordJobIdJPAExecutor;
-import org.apache.oozie.executor.jpa.CoordJobsCountNotForPurgeFromParentIdJPAExecutor;
 import org.apache.oozie.executor.jpa.CoordJobsDeleteJPAExecutor;
 import org.apache.oozie.executor.jpa.CoordJobsGetForPurgeJPAExecutor;
 import org.apache.oozie.executor.jpa.CoordJobsGetFromParentIdJPAExecutor;
+import org.apache.oozie.executor.jpa.CoordJobsGetParentIdsNotForPurgeJPAExecutor;
 import org.apache.oozie.executor.jpa.JPAExecutorException;
+import org.apache.oozie.executor.jpa.JobsCountForPurgeJPAExecutor;
+import org.apache.oozie.executor.jpa.JobsCountForPurgeJPAExecutor.JobType;
+import org.apache.oozie.executor.jpa.PurgeCheckpointDeleteJPAExecutor;
+import org.apache.oozie.executor.jpa.PurgeCheckpointGetJPAExecutor;
+import org.apache.oozie.executor.jpa.PurgeCheckpointUpdateJPAExecutor;
 import org.apache.oozie.executor.jpa.WorkflowJobQueryExecutor;
 import org.apache.oozie.executor.jpa.WorkflowJobQueryExecutor.WorkflowJobQuery;
-import org.apache.oozie.executor.jpa.WorkflowJobsBasicInfoFromCoordParentIdJPAExecutor;
+import org.apache.oozie.executor.jpa.WorkflowAppDefsDeleteJPAExecutor;
 import org.apache.oozie.executor.jpa.WorkflowJobsBasicInfoFromWorkflowParentIdJPAExecutor;
 import org.apache.oozie.executor.jpa.WorkflowJobsDeleteJPAExecutor;
 import org.apache.oozie.executor.jpa.WorkflowJobsGetForPurgeJPAExecutor;
+import org.apache.oozie.service.ConfigurationService;
 import org.apache.oozie.service.JPAService;
+import org.apache.oozie.service.PurgeService;
 import org.apache.oozie.service.Services;
+import org.apache.oozie.util.NamedThreadFactory;
 import org.eclipse.jgit.util.StringUtils;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
-import java.util.Collection;
 import java.util.Collections;
 import java.util.Date;
-import java.util.Iterator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * This class is used to purge workflows, coordinators, and bundles.  It takes into account the relationships between workflows and
  * coordinators, and coordinators and bundles.  It also only acts on 'limit' number of items at a time to not overtax the DB and in
  * case something gets rolled back.  Also, children are always deleted before their parents in case of a rollback.
+ * <p>
+ * The parentless jobs to purge are read in chunks of 'limit' jobs ordered by id, each chunk starting after the last id of the
+ * previous one, and the children of a chunk are read with one query per level of the hierarchy and batch of 'limit' parents.
+ * The chunks are purged in parallel by {@link PurgeService#PURGE_THREADS} threads, and the deleted rows per second are capped by
+ * {@link PurgeService#PURGE_MAX_ROWS_PER_SECOND}. Once a chunk and all the chunks before it are purged, the last id of the chunk
+ * is saved in a checkpoint, so a purge stopped by a restart resumes after it instead of reading all the jobs again.
+ * <p>
+ * Once the jobs are purged, the workflow application definitions no workflow refers to anymore are deleted, if they were not
+ * used for the workflow purge age, and for at least one day so that the definitions of the workflows being submitted are kept.
  */
 public class PurgeXCommand extends XCommand<Void> {
+    public static final String INSTRUMENTATION_GROUP = "purge";
+    public static final String INSTR_DELETED_ROWS = "deleted-rows";
+    public static final String INSTR_BACKLOG = "backlog";
+    public static final String INSTR_ROWS_PER_SECOND = "rows-per-second";
+
+    static final String CHECKPOINT_ID = "purge";
+
+    /**
+     * Id the first chunk starts after. Oozie ids start with a digit and sort after it, the empty string cannot be used as it is
+     * NULL for Oracle.
+     */
+    static final String FIRST_ID = "0";
+
+    /**
+     * Phases of a purge, each one processing one kind of parentless jobs.
+     */
+    enum Phase {
+        WORKFLOWS(JobType.WORKFLOW),
+        COORD_WORKFLOWS(JobType.COORD_WORKFLOW),
+        COORDINATORS(JobType.COORDINATOR),
+        BUNDLES(JobType.BUNDLE);
+
+        private final JobType jobType;
+
+        Phase(JobType jobType) {
+            this.jobType = jobType;
+        }
+    }
+
+    private static final AtomicLong backlog = new AtomicLong();
+    private static volatile long rowsPerSecond;
+
     private JPAService jpaService = null;
     private int wfOlderThan;
     private int coordOlderThan;
     private int bundleOlderThan;
     private boolean purgeOldCoordAction = false;
     private final int limit;
-    private List<String> wfList;
-    private List<String> coordActionList;
-    private List<String> coordList;
-    private List<String> bundleList;
-    private int wfDel;
-    private int coordDel;
-    private int coordActionDel;
-    private int bundleDel;
+    private int threads;
+    private int maxRowsPerSecond;
+    private boolean checkpointEnabled;
+    private PurgeCheckpointBean checkpoint;
+    private final AtomicInteger wfDel = new AtomicInteger();
+    private final AtomicInteger coordDel = new AtomicInteger();
+    private final AtomicInteger coordActionDel = new AtomicInteger();
+    private final AtomicInteger bundleDel = new AtomicInteger();
+    private int appDefDel;
+    private final AtomicLong deletedRows = new AtomicLong();
+    private long startTime;
     private static final long DAY_IN_MS = 24 * 60 * 60 * 1000;
 
     public PurgeXCommand(int wfOlderThan, int coordOlderThan, int bundleOlderThan, int limit) {
@@ -80,13 +144,24 @@ public class PurgeXCommand extends XCommand<Void> {
         this.bundleOlderThan = bundleOlderThan;
         this.purgeOldCoordAction = purgeOldCoordAction;
         this.limit = limit;
-        wfList = new ArrayList<String>();
-        coordActionList = new ArrayList<String>();
-        coordList = new ArrayList<String>();
-        bundleList = new ArrayList<String>();
-        wfDel = 0;
-        coordDel = 0;
-        bundleDel = 0;
+    }
+
+    /**
+     * Return the number of parentless jobs left to process by the running purge phase.
+     *
+     * @return the number of parentless jobs left to process, 0 if no purge is running.
+     */
+    public static long getBacklog() {
+        return backlog.get();
+    }
+
+    /**
+     * Return the rows deleted per second by the running or the last purge.
+     *
+     * @return the rows deleted per second.
+     */
+    public static long getRowsPerSecond() {
+        return rowsPerSecond;
     }
 
     /* (non-Javadoc)
@@ -94,47 +169,24 @@ public class PurgeXCommand extends XCommand<Void> {
      */
     @Override
     protected void loadState() throws CommandException {
-        try {
-            jpaService = Services.get().get(JPAService.class);
-
-            if (jpaService != null) {
-                // Get the lists of workflows, coordinators, and bundles that can be purged (and have no parents)
-                int size;
-                do {
-                    size = wfList.size();
-                    wfList.addAll(jpaService.execute(new WorkflowJobsGetForPurgeJPAExecutor(wfOlderThan, wfList.size(), limit)));
-                } while(size != wfList.size());
-                if (purgeOldCoordAction) {
-                    LOG.debug("Purging workflows of long running coordinators is turned on");
-                    do {
-                        size = coordActionList.size();
-                        long olderThan = wfOlderThan;
-                        List<WorkflowJobBean> jobBeans = WorkflowJobQueryExecutor.getInstance().getList(
-                                WorkflowJobQuery.GET_COMPLETED_COORD_WORKFLOWS_OLDER_THAN, olderThan,
-                                coordActionList.size(), limit);
-                        for (WorkflowJobBean bean : jobBeans) {
-                            coordActionList.add(bean.getParentId());
-                            wfList.add(bean.getId());
-                        }
-                    } while(size != coordActionList.size());
-                }
-                do {
-                    size = coordList.size();
-                    coordList.addAll(jpaService.execute(
-                            new CoordJobsGetForPurgeJPAExecutor(coordOlderThan, coordList.size(), limit)));
-                } while(size != coordList.size());
-                do {
-                    size = bundleList.size();
-                    bundleList.addAll(jpaService.execute(
-                            new BundleJobsGetForPurgeJPAExecutor(bundleOlderThan, bundleList.size(), limit)));
-                } while(size != bundleList.size());
+        jpaService = Services.get().get(JPAService.class);
+        if (jpaService == null) {
+            throw new CommandException(ErrorCode.E0610);
+        }
+        threads = Math.max(1, ConfigurationService.getInt(PurgeService.PURGE_THREADS));
+        maxRowsPerSecond = ConfigurationService.getInt(PurgeService.PURGE_MAX_ROWS_PER_SECOND);
+        checkpointEnabled = ConfigurationService.getBoolean(PurgeService.PURGE_CHECKPOINT_ENABLED);
+        if (checkpointEnabled) {
+            try {
+                checkpoint = jpaService.execute(new PurgeCheckpointGetJPAExecutor(CHECKPOINT_ID));
             }
-            else {
-                throw new CommandException(ErrorCode.E0610);
+            catch (XException ex) {
+                throw new CommandException(ex);
+            }
+            if (checkpoint != null && !getParams().equals(checkpoint.getParams())) {
+                LOG.info("Ignoring the checkpoint of a purge with different parameters [{0}]", checkpoint.getParams());
+                checkpoint = null;
             }
-        }
-        catch (XException ex) {
-            throw new CommandException(ex);
         }
     }
 
@@ -145,100 +197,249 @@ public class PurgeXCommand extends XCommand<Void> {
     protected Void execute() throws CommandException {
         LOG.info("STARTED Purge to purge Workflow Jobs older than [{0}] days, Coordinator Jobs older than [{1}] days, and Bundle"
                 + " jobs older than [{2}] days.", wfOlderThan, coordOlderThan, bundleOlderThan);
-
-        // Process parentless workflows to purge them and their children
-        if (!wfList.isEmpty()) {
-            try {
-                processWorkflows(wfList);
+        startTime = System.currentTimeMillis();
+        rowsPerSecond = 0;
+        ExecutorService executor = Executors.newFixedThreadPool(threads, new NamedThreadFactory("PurgeXCommand"));
+        try {
+            Phase checkpointPhase = getCheckpointPhase();
+            for (Phase phase : Phase.values()) {
+                if (phase == Phase.COORD_WORKFLOWS && !purgeOldCoordAction) {
+                    continue;
+                }
+                String lastId = FIRST_ID;
+                if (checkpointPhase != null) {
+                    if (phase.ordinal() < checkpointPhase.ordinal()) {
+                        continue;
+                    }
+                    if (phase == checkpointPhase) {
+                        lastId = checkpoint.getLastId();
+                        LOG.info("Resuming purge of [{0}] after [{1}]", phase, lastId);
+                    }
+                }
+                if (phase == Phase.COORD_WORKFLOWS) {
+                    LOG.debug("Purging workflows of long running coordinators is turned on");
+                }
+                purge(executor, phase, lastId);
             }
-            catch (JPAExecutorException je) {
-                throw new CommandException(je);
+            purgeWorkflowAppDefs();
+            if (checkpointEnabled) {
+                jpaService.execute(new PurgeCheckpointDeleteJPAExecutor(CHECKPOINT_ID));
             }
         }
+        catch (JPAExecutorException je) {
+            throw new CommandException(je);
+        }
+        finally {
+            executor.shutdownNow();
+            backlog.set(0);
+        }
 
-        // Process coordinator actions of long running coordinators and purge them
-        if (!coordActionList.isEmpty()) {
+        LOG.info("ENDED Purge deleted [{0}] workflows, [{1}] coordinatorActions, [{2}] coordinators, [{3}] bundles, [{4}]"
+                + " workflow application definitions, [{5}] rows at [{6}] rows per second", wfDel, coordActionDel, coordDel,
+                bundleDel, appDefDel, deletedRows, rowsPerSecond);
+        return null;
+    }
+
+    private Phase getCheckpointPhase() {
+        if (checkpoint != null) {
             try {
-                purgeCoordActions(coordActionList);
+                return Phase.valueOf(checkpoint.getPhase());
             }
-            catch (JPAExecutorException je) {
-                throw new CommandException(je);
+            catch (IllegalArgumentException ex) {
+                LOG.warn("Ignoring the checkpoint of unknown purge phase [{0}]", checkpoint.getPhase());
             }
         }
-        // Processs parentless coordinators to purge them and their children
-        if (!coordList.isEmpty()) {
-            try {
-                processCoordinators(coordList);
-            }
-            catch (JPAExecutorException je) {
-                throw new CommandException(je);
+        return null;
+    }
+
+    private String getParams() {
+        return "wf=" + wfOlderThan + ",coord=" + coordOlderThan + ",bundle=" + bundleOlderThan + ",oldCoordAction="
+                + purgeOldCoordAction;
+    }
+
+    /**
+     * Purge the parentless jobs of a phase, in chunks of 'limit' jobs starting after the given id. At most 'threads' chunks are
+     * purged at the same time, the checkpoint is saved when the oldest chunk is done.
+     *
+     * @param executor executor purging the chunks
+     * @param phase phase to run
+     * @param lastId id to start after
+     * @throws JPAExecutorException If a JPA executor has a problem
+     * @throws CommandException If a chunk could not be purged
+     */
+    private void purge(ExecutorService executor, final Phase phase, String lastId) throws JPAExecutorException,
+            CommandException {
+        backlog.set(jpaService.execute(new JobsCountForPurgeJPAExecutor(phase.jobType, getOlderThan(phase), lastId)));
+        Deque<Chunk> chunks = new ArrayDeque<Chunk>();
+        List<String> jobs;
+        do {
+            final List<String> parents = new ArrayList<String>();
+            jobs = getJobsForPurge(phase, lastId, parents);
+            if (!jobs.isEmpty()) {
+                lastId = jobs.get(jobs.size() - 1);
+                final List<String> chunkJobs = jobs;
+                Future<Void> future = executor.submit(new Callable<Void>() {
+                    @Override
+                    public Void call() throws Exception {
+                        purgeChunk(phase, chunkJobs, parents);
+                        return null;
+                    }
+                });
+                chunks.add(new Chunk(lastId, jobs.size(), future));
+                if (chunks.size() >= threads) {
+                    complete(phase, chunks.poll());
+                }
             }
+        } while (jobs.size() == limit);
+        while (!chunks.isEmpty()) {
+            complete(phase, chunks.poll());
         }
+    }
 
-        // Process bundles to purge them and their children
-        if (!bundleList.isEmpty()) {
-            try {
-                processBundles(bundleList);
-            }
-            catch (JPAExecutorException je) {
-                throw new CommandException(je);
-            }
+    private int getOlderThan(Phase phase) {
+        switch (phase) {
+            case COORDINATORS:
+                return coordOlderThan;
+            case BUNDLES:
+                return bundleOlderThan;
+            default:
+                return wfOlderThan;
         }
+    }
 
-        LOG.info("ENDED Purge deleted [{0}] workflows, [{1}] coordinatorActions, [{2}] coordinators, [{3}] bundles",
-                wfDel, coordActionDel, coordDel, bundleDel);
-        return null;
+    /**
+     * Return the next chunk of parentless jobs of a phase.
+     *
+     * @param phase phase
+     * @param lastId id to start after
+     * @param parents filled with the parent coordinator actions of the workflows of long running coordinators
+     * @return the ids of the jobs of the chunk
+     * @throws JPAExecutorException If a JPA executor has a problem
+     */
+    private List<String> getJobsForPurge(Phase phase, String lastId, List<String> parents) throws JPAExecutorException {
+        switch (phase) {
+            case WORKFLOWS:
+                return jpaService.execute(new WorkflowJobsGetForPurgeJPAExecutor(wfOlderThan, lastId, limit));
+            case COORD_WORKFLOWS:
+                List<String> wfs = new ArrayList<String>();
+                List<WorkflowJobBean> jobBeans = WorkflowJobQueryExecutor.getInstance().getList(
+                        WorkflowJobQuery.GET_COMPLETED_COORD_WORKFLOWS_OLDER_THAN_AFTER_ID, (long) wfOlderThan, lastId, limit);
+                for (WorkflowJobBean bean : jobBeans) {
+                    wfs.add(bean.getId());
+                    parents.add(bean.getParentId());
+                }
+                return wfs;
+            case COORDINATORS:
+                return jpaService.execute(new CoordJobsGetForPurgeJPAExecutor(coordOlderThan, lastId, limit));
+            default:
+                return jpaService.execute(new BundleJobsGetForPurgeJPAExecutor(bundleOlderThan, lastId, limit));
+        }
+    }
+
+    private void purgeChunk(Phase phase, List<String> jobs, List<String> parents) throws JPAExecutorException,
+            InterruptedException {
+        LOG.debug("Purging chunk of [{0}] {1} from [{2}] to [{3}]", jobs.size(), phase, jobs.get(0), jobs.get(jobs.size() - 1));
+        switch (phase) {
+            case WORKFLOWS:
+                processWorkflows(jobs);
+                break;
+            case COORD_WORKFLOWS:
+                processWorkflows(jobs);
+                purgeCoordActions(parents);
+                break;
+            case COORDINATORS:
+                processCoordinators(jobs);
+                break;
+            default:
+                processBundles(jobs);
+        }
     }
 
     /**
-     * Process workflows to purge them and their children.  Uses the processWorkflowsHelper method to help via recursion to make
-     * sure that the workflow children are deleted before their parents.
+     * Wait for a chunk to be purged and save the checkpoint after it.
+     */
+    private void complete(Phase phase, Chunk chunk) throws JPAExecutorException, CommandException {
+        try {
+            chunk.future.get();
+        }
+        catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new CommandException(ErrorCode.E0607, getName(), "interrupted");
+        }
+        catch (ExecutionException ex) {
+            if (ex.getCause() instanceof JPAExecutorException) {
+                throw (JPAExecutorException) ex.getCause();
+            }
+            throw new CommandException(ErrorCode.E0607, getName(), ex.getCause().toString(), ex.getCause());
+        }
+        backlog.addAndGet(-chunk.size);
+        if (checkpointEnabled) {
+            jpaService.execute(new PurgeCheckpointUpdateJPAExecutor(new PurgeCheckpointBean(CHECKPOINT_ID, getParams(),
+                    phase.name(), chunk.lastId)));
+        }
+    }
+
+    /**
+     * Process workflows to purge them and their children.  Uses the getWorkflowsToPurge method to make sure that the workflow
+     * children are deleted before their parents.
      *
      * @param wfs List of workflows to process
      * @throws JPAExecutorException If a JPA executor has a problem
+     * @throws InterruptedException If interrupted while throttled
      */
-    private void processWorkflows(List<String> wfs) throws JPAExecutorException {
-        List<String> wfsToPurge = processWorkflowsHelper(wfs);
+    private void processWorkflows(List<String> wfs) throws JPAExecutorException, InterruptedException {
+        List<String> wfsToPurge = getWorkflowsToPurge(wfs);
         purgeWorkflows(wfsToPurge);
     }
 
     /**
-     * Used by the processWorkflows method and via recursion.
+     * Walk the sub-workflows of the workflows, one level of the hierarchy at a time.  A workflow is purged if all its
+     * sub-workflows are ready to be purged, the sub-workflows are then processed in turn.
      *
      * @param wfs List of workflows to process
-     * @return List of workflows to purge
+     * @return List of workflows to purge, parents before their children
      * @throws JPAExecutorException If a JPA executor has a problem
      */
-    private List<String> processWorkflowsHelper(List<String> wfs) throws JPAExecutorException {
-        // If the list is empty, then we've finished recursing
-        if (wfs.isEmpty()) {
-            return wfs;
-        }
-        List<String> subwfs = new ArrayList<String>();
+    private List<String> getWorkflowsToPurge(List<String> wfs) throws JPAExecutorException {
         List<String> wfsToPurge = new ArrayList<String>();
-        for (String wfId : wfs) {
-            int size;
-            List<WorkflowJobBean> swfBeanList = new ArrayList<WorkflowJobBean>();
-            do {
-                size = swfBeanList.size();
-                swfBeanList.addAll(jpaService.execute(
-                        new WorkflowJobsBasicInfoFromWorkflowParentIdJPAExecutor(wfId, swfBeanList.size(), limit)));
-            } while (size != swfBeanList.size());
-
-            // Checking if sub workflow is ready to purge
-            List<String> children = fetchTerminatedWorkflow(swfBeanList);
-
-            // if all sub workflow ready to purge add them all and add current workflow
-            if(children.size() == swfBeanList.size()) {
-                subwfs.addAll(children);
-                wfsToPurge.add(wfId);
+        while (!wfs.isEmpty()) {
+            Map<String, List<WorkflowJobBean>> subwfsByParent = getChildWorkflows(wfs);
+            List<String> subwfs = new ArrayList<String>();
+            for (String wfId : wfs) {
+                List<WorkflowJobBean> swfBeanList = getOrEmpty(subwfsByParent, wfId);
+
+                // Checking if sub workflow is ready to purge
+                List<String> children = fetchTerminatedWorkflow(swfBeanList);
+
+                // if all sub workflow ready to purge add them all and add current workflow
+                if (children.size() == swfBeanList.size()) {
+                    subwfs.addAll(children);
+                    wfsToPurge.add(wfId);
+                }
             }
+            // Continue with the children we just found to process their children
+            wfs = subwfs;
         }
-        // Recurse on the children we just found to process their children
-        wfsToPurge.addAll(processWorkflowsHelper(subwfs));
         return wfsToPurge;
     }
 
+    /**
+     * Return the workflows with any of the given parents, grouped by parent, with one query per batch of 'limit' parents.
+     *
+     * @param parentIds ids of the parent workflows or coordinator actions
+     * @return the child workflows by parent id
+     * @throws JPAExecutorException If a JPA executor has a problem
+     */
+    private Map<String, List<WorkflowJobBean>> getChildWorkflows(List<String> parentIds) throws JPAExecutorException {
+        Map<String, List<WorkflowJobBean>> children = new HashMap<String, List<WorkflowJobBean>>();
+        for (List<String> batch : batches(parentIds)) {
+            for (WorkflowJobBean bean : jpaService.execute(new WorkflowJobsBasicInfoFromWorkflowParentIdJPAExecutor(batch))) {
+                add(children, bean.getParentId(), bean);
+            }
+        }
+        return children;
+    }
+
     /**
      * This method will return all terminate workflow ids from wfBeanlist for purge.
      * @param wfBeanList
@@ -268,20 +469,28 @@ public class PurgeXCommand extends XCommand<Void> {
      *
      * @param coords List of coordinators to process
      * @throws JPAExecutorException If a JPA executor has a problem
+     * @throws InterruptedException If interrupted while throttled
      */
-    private void processCoordinators(List<String> coords) throws JPAExecutorException {
+    private void processCoordinators(List<String> coords) throws JPAExecutorException, InterruptedException {
         List<String> wfsToPurge = new ArrayList<String>();
         List<String> actionsToPurge = new ArrayList<String>();
         List<String> coordsToPurge = new ArrayList<String>();
+        // Get all of the direct actionChildren and workflowChildren of the coords
+        Map<String, List<String>> actionsByCoord = new HashMap<String, List<String>>();
+        List<String> actions = new ArrayList<String>();
+        for (List<String> batch : batches(coords)) {
+            for (String actionId : jpaService.execute(new CoordActionsGetFromCoordJobIdJPAExecutor(batch))) {
+                add(actionsByCoord, actionId.substring(0, actionId.indexOf('@')), actionId);
+                actions.add(actionId);
+            }
+        }
+        Map<String, List<WorkflowJobBean>> wfsByAction = getChildWorkflows(actions);
         for (String coordId : coords) {
-            // Get all of the direct workflowChildren for this coord
+            List<String> actionChildren = getOrEmpty(actionsByCoord, coordId);
             List<WorkflowJobBean> wfjBeanList = new ArrayList<WorkflowJobBean>();
-            int size;
-            do {
-                size = wfjBeanList.size();
-                wfjBeanList.addAll(jpaService.execute(
-                        new WorkflowJobsBasicInfoFromCoordParentIdJPAExecutor(coordId, wfjBeanList.size(), limit)));
-            } while (size != wfjBeanList.size());
+            for (String actionId : actionChildren) {
+                wfjBeanList.addAll(getOrEmpty(wfsByAction, actionId));
+            }
 
             // Checking if workflow is ready to purge
             List<String> workflowChildren = fetchTerminatedWorkflow(wfjBeanList);
@@ -291,13 +500,6 @@ public class PurgeXCommand extends XCommand<Void> {
                 LOG.debug("Purging coordinator " + coordId);
                 wfsToPurge.addAll(workflowChildren);
                 coordsToPurge.add(coordId);
-                // Get all of the direct actionChildren for this coord
-                List<String> actionChildren = new ArrayList<String>();
-                do {
-                    size = actionChildren.size();
-                    actionChildren.addAll(jpaService.execute(
-                            new CoordActionsGetFromCoordJobIdJPAExecutor(coordId, actionChildren.size(), limit)));
-                } while (size != actionChildren.size());
                 actionsToPurge.addAll(actionChildren);
             }
         }
@@ -314,28 +516,26 @@ public class PurgeXCommand extends XCommand<Void> {
      *
      * @param bundles List of bundles to process
      * @throws JPAExecutorException If a JPA executor has a problem
+     * @throws InterruptedException If interrupted while throttled
      */
-    private void processBundles(List<String> bundles) throws JPAExecutorException {
-        List<String> coordsToPurge = new ArrayList<String>();
+    private void processBundles(List<String> bundles) throws JPAExecutorException, InterruptedException {
+        // We only purge the bundle and its children if they are all ready to be purged
+        Set<String> bundlesNotReady = new HashSet<String>();
+        for (List<String> batch : batches(bundles)) {
+            bundlesNotReady.addAll(jpaService.execute(new CoordJobsGetParentIdsNotForPurgeJPAExecutor(coordOlderThan, batch)));
+        }
         List<String> bundlesToPurge = new ArrayList<String>();
-        for (Iterator<String> it = bundles.iterator(); it.hasNext(); ) {
-            String bundleId = it.next();
-            // We only purge the bundle and its children if they are all ready to be purged
-            long numChildrenNotReady = jpaService.execute(
-                    new CoordJobsCountNotForPurgeFromParentIdJPAExecutor(coordOlderThan, bundleId));
-            if (numChildrenNotReady == 0) {
-                bundlesToPurge.add(bundleId);
+        for (String bundleId : bundles) {
+            if (!bundlesNotReady.contains(bundleId)) {
                 LOG.debug("Purging bundle " + bundleId);
-                // Get all of the direct children for this bundle
-                List<String> children = new ArrayList<String>();
-                int size;
-                do {
-                    size = children.size();
-                    children.addAll(jpaService.execute(new CoordJobsGetFromParentIdJPAExecutor(bundleId, children.size(), limit)));
-                } while (size != children.size());
-                coordsToPurge.addAll(children);
+                bundlesToPurge.add(bundleId);
             }
         }
+        // Get all of the direct children for these bundles
+        List<String> coordsToPurge = new ArrayList<String>();
+        for (List<String> batch : batches(bundlesToPurge)) {
+            coordsToPurge.addAll(jpaService.execute(new CoordJobsGetFromParentIdJPAExecutor(batch)));
+        }
         // Process the children
         processCoordinators(coordsToPurge);
         // Now that all children have been purged, we can purge the bundles
@@ -348,17 +548,16 @@ public class PurgeXCommand extends XCommand<Void> {
      *
      * @param wfs List of workflows to purge
      * @throws JPAExecutorException If a JPA executor has a problem
+     * @throws InterruptedException If interrupted while throttled
      */
-    private void purgeWorkflows(List<String> wfs) throws JPAExecutorException {
-        wfDel += wfs.size();
+    private void purgeWorkflows(List<String> wfs) throws JPAExecutorException, InterruptedException {
+        wfDel.addAndGet(wfs.size());
         //To delete sub-workflows before deleting parent workflows
         Collections.reverse(wfs);
-        for (int startIndex = 0; startIndex < wfs.size(); ) {
-            int endIndex = (startIndex + limit < wfs.size()) ? (startIndex + limit) : wfs.size();
-            List<String> wfsForDelete = wfs.subList(startIndex, endIndex);
+        for (List<String> wfsForDelete : batches(wfs)) {
             LOG.debug("Deleting workflows: " + StringUtils.join(wfsForDelete, ","));
-            jpaService.execute(new WorkflowJobsDeleteJPAExecutor(wfsForDelete));
-            startIndex = endIndex;
+            int actionsDeleted = jpaService.execute(new WorkflowJobsDeleteJPAExecutor(wfsForDelete));
+            deleted(wfsForDelete.size() + actionsDeleted);
         }
     }
 
@@ -367,15 +566,13 @@ public class PurgeXCommand extends XCommand<Void> {
      *
      * @param coordActions List of coordActions to purge
      * @throws JPAExecutorException If a JPA executor has a problem
+     * @throws InterruptedException If interrupted while throttled
      */
-    private void purgeCoordActions(List<String> coordActions) throws JPAExecutorException {
-        coordActionDel = coordActions.size();
-        for (int startIndex = 0; startIndex < coordActions.size(); ) {
-            int endIndex = (startIndex + limit < coordActions.size()) ? (startIndex + limit) : coordActions.size();
-            List<String> coordActionsForDelete = coordActions.subList(startIndex, endIndex);
+    private void purgeCoordActions(List<String> coordActions) throws JPAExecutorException, InterruptedException {
+        coordActionDel.addAndGet(coordActions.size());
+        for (List<String> coordActionsForDelete : batches(coordActions)) {
             LOG.debug("Deleting coordinator actions: " + StringUtils.join(coordActionsForDelete, ","));
-            jpaService.execute(new CoordActionsDeleteJPAExecutor(coordActionsForDelete));
-            startIndex = endIndex;
+            deleted(jpaService.execute(new CoordActionsDeleteJPAExecutor(coordActionsForDelete)));
         }
     }
     /**
@@ -383,15 +580,13 @@ public class PurgeXCommand extends XCommand<Void> {
      *
      * @param coords List of coordinators to purge
      * @throws JPAExecutorException If a JPA executor has a problem
+     * @throws InterruptedException If interrupted while throttled
      */
-    private void purgeCoordinators(List<String> coords) throws JPAExecutorException {
-        coordDel += coords.size();
-        for (int startIndex = 0; startIndex < coords.size(); ) {
-            int endIndex = (startIndex + limit < coords.size()) ? (startIndex + limit) : coords.size();
-            List<String> coordsForDelete = coords.subList(startIndex, endIndex);
+    private void purgeCoordinators(List<String> coords) throws JPAExecutorException, InterruptedException {
+        coordDel.addAndGet(coords.size());
+        for (List<String> coordsForDelete : batches(coords)) {
             LOG.debug("Deleting coordinators: " + StringUtils.join(coordsForDelete, ","));
-            jpaService.execute(new CoordJobsDeleteJPAExecutor(coordsForDelete));
-            startIndex = endIndex;
+            deleted(jpaService.execute(new CoordJobsDeleteJPAExecutor(coordsForDelete)));
         }
     }
 
@@ -400,15 +595,87 @@ public class PurgeXCommand extends XCommand<Void> {
      *
      * @param bundles List of bundles to purge
      * @throws JPAExecutorException If a JPA executor has a problem
+     * @throws InterruptedException If interrupted while throttled
      */
-    private void purgeBundles(List<String> bundles) throws JPAExecutorException {
-        bundleDel += bundles.size();
-        for (int startIndex = 0; startIndex < bundles.size(); ) {
-            int endIndex = (startIndex + limit < bundles.size()) ? (startIndex + limit) : bundles.size();
-            Collection<String> bundlesForDelete = bundles.subList(startIndex, endIndex);
+    private void purgeBundles(List<String> bundles) throws JPAExecutorException, InterruptedException {
+        bundleDel.addAndGet(bundles.size());
+        for (List<String> bundlesForDelete : batches(bundles)) {
             LOG.debug("Deleting bundles: " + StringUtils.join(bundlesForDelete, ","));
-            jpaService.execute(new BundleJobsDeleteJPAExecutor(bundlesForDelete));
-            startIndex = endIndex;
+            int actionsDeleted = jpaService.execute(new BundleJobsDeleteJPAExecutor(bundlesForDelete));
+            deleted(bundlesForDelete.size() + actionsDeleted);
+        }
+    }
+
+    /**
+     * Delete the workflow application definitions no workflow refers to and not used for 'wfOlderThan' days, at least one.
+     *
+     * @throws JPAExecutorException If a JPA executor has a problem
+     */
+    private void purgeWorkflowAppDefs() throws JPAExecutorException {
+        Date lastUsedBefore = new Date(System.currentTimeMillis() - Math.max(wfOlderThan, 1) * DAY_IN_MS);
+        appDefDel = jpaService.execute(new WorkflowAppDefsDeleteJPAExecutor(lastUsedBefore));
+        // a single statement, not throttled
+        deletedRows.addAndGet(appDefDel);
+        instrumentation.incr(INSTRUMENTATION_GROUP, INSTR_DELETED_ROWS, appDefDel);
+    }
+
+    /**
+     * Account for deleted rows, sleeping if the purge is deleting more than 'maxRowsPerSecond' rows per second since it
+     * started.
+     *
+     * @param rows number of rows deleted
+     * @throws InterruptedException If interrupted while throttled
+     */
+    private void deleted(long rows) throws InterruptedException {
+        long total = deletedRows.addAndGet(rows);
+        instrumentation.incr(INSTRUMENTATION_GROUP, INSTR_DELETED_ROWS, rows);
+        long elapsed = System.currentTimeMillis() - startTime;
+        rowsPerSecond = total * 1000 / Math.max(1, elapsed);
+        if (maxRowsPerSecond > 0) {
+            long wait = total * 1000 / maxRowsPerSecond - elapsed;
+            if (wait > 0) {
+                Thread.sleep(wait);
+            }
+        }
+    }
+
+    /**
+     * Split a list in consecutive batches of size 'limit'.
+     */
+    private List<List<String>> batches(List<String> list) {
+        List<List<String>> batches = new ArrayList<List<String>>();
+        for (int startIndex = 0; startIndex < list.size(); startIndex += limit) {
+            batches.add(list.subList(startIndex, Math.min(startIndex + limit, list.size())));
+        }
+        return batches;
+    }
+
+    private static <T> void add(Map<String, List<T>> map, String key, T value) {
+        List<T> values = map.get(key);
+        if (values == null) {
+            values = new ArrayList<T>();
+            map.put(key, values);
+        }
+        values.add(value);
+    }
+
+    private static <T> List<T> getOrEmpty(Map<String, List<T>> map, String key) {
+        List<T> values = map.get(key);
+        return (values == null) ? Collections.<T>emptyList() : values;
+    }
+
+    /**
+     * Chunk of parentless jobs being purged.
+     */
+    private static class Chunk {
+        private final String lastId;
+        private final int size;
+        private final Future<Void> future;
+
+        private Chunk(String lastId, int size, Future<Void> future) {
+            this.lastId = lastId;
+            this.size = size;
+            this.future = future;
         }
     }
 
@@ -20,13 +20,16 @@ package org.apache.oozie.command;
 
 import org.apache.commons.collections.CollectionUtils;
 import org.apache.oozie.BinaryBlob;
+import org.apache.oozie.CompressionDictionaryBean;
 import org.apache.oozie.BundleActionBean;
 import org.apache.oozie.BundleJobBean;
 import org.apache.oozie.CoordinatorActionBean;
 import org.apache.oozie.CoordinatorJobBean;
+import org.apache.oozie.PurgeCheckpointBean;
 import org.apache.oozie.SLAEventBean;
 import org.apache.oozie.StringBlob;
 import org.apache.oozie.WorkflowActionBean;
+import org.apache.oozie.WorkflowAppDefBean;
 import org.apache.oozie.WorkflowJobBean;
 import org.apache.oozie.client.rest.JsonBean;
 import org.apache.oozie.client.rest.JsonSLAEvent;
@@ -99,6 +102,9 @@ public class SchemaCheckXCommand extends XCommand<Void> {
             tableClasses.put(getTableName(SLASummaryBean.class), SLASummaryBean.class);
             tableClasses.put(getTableName(WorkflowActionBean.class), WorkflowActionBean.class);
             tableClasses.put(getTableName(WorkflowJobBean.class), WorkflowJobBean.class);
+            tableClasses.put(getTableName(WorkflowAppDefBean.class), WorkflowAppDefBean.class);
+            tableClasses.put(getTableName(PurgeCheckpointBean.class), PurgeCheckpointBean.class);
+            tableClasses.put(getTableName(CompressionDictionaryBean.class), CompressionDictionaryBean.class);
 
             boolean tableProblem = checkTables(metaData, catalog, tableClasses.keySet());
             problem = problem | tableProblem;
@@ -448,7 +454,7 @@ public class SchemaCheckXCommand extends XCommand<Void> {
                 }
                 return Types.VARCHAR;
             }
-            if (clazz.equals(StringBlob.class) || clazz.equals(BinaryBlob.class)) {
+            if (clazz.equals(StringBlob.class) || clazz.equals(BinaryBlob.class) || clazz.equals(byte[].class)) {
                 if (dbType.equals("mysql")) {
                     return Types.LONGVARBINARY;
                 }
@@ -28,15 +28,19 @@ import org.apache.oozie.service.InstrumentationService;
 import org.apache.oozie.service.MemoryLocksService;
 import org.apache.oozie.service.Services;
 import org.apache.oozie.util.Instrumentation;
+import org.apache.oozie.lock.CompositeLockToken;
 import org.apache.oozie.lock.LockToken;
 import org.apache.oozie.util.XCallable;
 import org.apache.oozie.util.XLog;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.TreeSet;
 import java.util.UUID;
 import java.util.concurrent.atomic.AtomicBoolean;
 
@@ -235,6 +239,72 @@ public abstract class XCommand<T> implements XCallable<T> {
         }
     }
 
+    /**
+     * Obtain exclusive locks on several entities, all of them or none, for commands on those entities this command
+     * calls synchronously, when the locks are leased.
+     * <p>
+     * The leases missing on this Oozie server are obtained with a single ZooKeeper transaction instead of one per
+     * called command, which re-enters the lock of its entity. The lock of an entity should be released with
+     * {@link #releaseLock(Map, String)} as soon as its command is done. Without leases nothing is locked, the called
+     * commands lock their entities one by one.
+     *
+     * @param entityKeys keys of the entities to lock.
+     * @return the lock tokens by entity key, empty if the locks are not leased or could not be obtained within
+     * {@link #getLockTimeOut}.
+     * @throws CommandException thrown if an interruption happened while trying to obtain the locks.
+     */
+    protected Map<String, LockToken> acquireLocks(Collection<String> entityKeys) throws CommandException {
+        Map<String, LockToken> tokens = new HashMap<String, LockToken>();
+        MemoryLocksService locksService = Services.get().get(MemoryLocksService.class);
+        if (entityKeys.isEmpty() || !locksService.isLeased()) {
+            return tokens;
+        }
+        CompositeLockToken locks;
+        try {
+            locks = locksService.getWriteLocks(entityKeys, getLockTimeOut());
+        }
+        catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new CommandException(ErrorCode.E0606, this.toString(), getLockTimeOut());
+        }
+        if (locks == null) {
+            LOG.debug("Could not get locks for [{0}] jobs in [{1}], locking them one by one", entityKeys.size(),
+                    getName());
+            return tokens;
+        }
+        // the tokens are in the natural order of the entity keys
+        Iterator<LockToken> it = locks.getTokens().iterator();
+        for (String entityKey : new TreeSet<String>(entityKeys)) {
+            tokens.put(entityKey, it.next());
+        }
+        return tokens;
+    }
+
+    /**
+     * Release the lock of an entity obtained with {@link #acquireLocks(Collection)}, if held.
+     *
+     * @param locks lock tokens by entity key.
+     * @param entityKey key of the entity.
+     */
+    protected void releaseLock(Map<String, LockToken> locks, String entityKey) {
+        LockToken lock = locks.remove(entityKey);
+        if (lock != null) {
+            lock.release();
+        }
+    }
+
+    /**
+     * Release the locks obtained with {@link #acquireLocks(Collection)} still held.
+     *
+     * @param locks lock tokens by entity key.
+     */
+    protected void releaseLocks(Map<String, LockToken> locks) {
+        for (LockToken lock : locks.values()) {
+            lock.release();
+        }
+        locks.clear();
+    }
+
     /**
      * Implements the XCommand life-cycle.
      *
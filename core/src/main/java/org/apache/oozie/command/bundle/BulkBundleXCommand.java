@@ -26,9 +26,11 @@ import org.apache.oozie.command.OperationType;
 import org.apache.oozie.command.PreconditionException;
 import org.apache.oozie.command.XCommand;
 import org.apache.oozie.executor.jpa.BundleJobInfoGetJPAExecutor;
+import org.apache.oozie.lock.LockToken;
 import org.apache.oozie.service.JPAService;
 import org.apache.oozie.service.Services;
 
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 
@@ -92,39 +94,58 @@ public class BulkBundleXCommand extends XCommand<BundleJobInfo> {
     @Override
     protected BundleJobInfo execute() throws CommandException {
         List<BundleJobBean> jobs = this.bundleJobInfo.getBundleJobs();
-        for (BundleJobBean job : jobs) {
-            switch (operation) {
-                case Kill:
-                    if (job.getStatus() != Job.Status.SUCCEEDED
-                            && job.getStatus() != Job.Status.FAILED
-                            && job.getStatus() != Job.Status.DONEWITHERROR
-                            && job.getStatus() != Job.Status.KILLED) {
-                        new BundleKillXCommand(job.getId()).call();
-                    }
-                    break;
-                case Suspend:
-                    if (job.getStatus() != Job.Status.SUCCEEDED
-                            && job.getStatus() != Job.Status.FAILED
-                            && job.getStatus() != Job.Status.KILLED
-                            && job.getStatus() != Job.Status.DONEWITHERROR) {
-                        new BundleJobSuspendXCommand(job.getId()).call();
-                    }
-                    break;
-                case Resume:
-                    if (job.getStatus() == Job.Status.SUSPENDED
-                            || job.getStatus() == Job.Status.SUSPENDEDWITHERROR
-                            || job.getStatus() == Job.Status.PREPSUSPENDED) {
-                        new BundleJobResumeXCommand(job.getId()).call();
+        Map<String, LockToken> locks = acquireLocks(getJobIds(jobs));
+        try {
+            for (BundleJobBean job : jobs) {
+                try {
+                    switch (operation) {
+                        case Kill:
+                            if (job.getStatus() != Job.Status.SUCCEEDED
+                                    && job.getStatus() != Job.Status.FAILED
+                                    && job.getStatus() != Job.Status.DONEWITHERROR
+                                    && job.getStatus() != Job.Status.KILLED) {
+                                new BundleKillXCommand(job.getId()).call();
+                            }
+                            break;
+                        case Suspend:
+                            if (job.getStatus() != Job.Status.SUCCEEDED
+                                    && job.getStatus() != Job.Status.FAILED
+                                    && job.getStatus() != Job.Status.KILLED
+                                    && job.getStatus() != Job.Status.DONEWITHERROR) {
+                                new BundleJobSuspendXCommand(job.getId()).call();
+                            }
+                            break;
+                        case Resume:
+                            if (job.getStatus() == Job.Status.SUSPENDED
+                                    || job.getStatus() == Job.Status.SUSPENDEDWITHERROR
+                                    || job.getStatus() == Job.Status.PREPSUSPENDED) {
+                                new BundleJobResumeXCommand(job.getId()).call();
+                            }
+                            break;
+                        default:
+                            throw new CommandException(ErrorCode.E1102, operation);
                     }
-                    break;
-                default:
-                    throw new CommandException(ErrorCode.E1102, operation);
+                }
+                finally {
+                    releaseLock(locks, job.getId());
+                }
             }
         }
+        finally {
+            releaseLocks(locks);
+        }
         loadBundleJobs();
         return this.bundleJobInfo;
     }
 
+    private static List<String> getJobIds(List<BundleJobBean> jobs) {
+        List<String> ids = new ArrayList<String>(jobs.size());
+        for (BundleJobBean job : jobs) {
+            ids.add(job.getId());
+        }
+        return ids;
+    }
+
     private void loadBundleJobs() throws CommandException {
         try {
             JPAService jpaService = Services.get().get(JPAService.class);
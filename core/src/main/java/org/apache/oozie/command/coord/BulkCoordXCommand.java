@@ -27,9 +27,11 @@ import org.apache.oozie.command.OperationType;
 import org.apache.oozie.command.PreconditionException;
 import org.apache.oozie.command.XCommand;
 import org.apache.oozie.executor.jpa.CoordJobInfoGetJPAExecutor;
+import org.apache.oozie.lock.LockToken;
 import org.apache.oozie.service.JPAService;
 import org.apache.oozie.service.Services;
 
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 
@@ -92,40 +94,59 @@ public class BulkCoordXCommand extends XCommand<CoordinatorJobInfo> {
     @Override
     protected CoordinatorJobInfo execute() throws CommandException {
         List<CoordinatorJobBean> jobs = this.coordinatorJobInfo.getCoordJobs();
-        for (CoordinatorJobBean job : jobs) {
-            switch (operation) {
-                case Kill:
-                    if (job.getStatus() != CoordinatorJob.Status.SUCCEEDED
-                            && job.getStatus() != CoordinatorJob.Status.FAILED
-                            && job.getStatus() != CoordinatorJob.Status.DONEWITHERROR
-                            && job.getStatus() != CoordinatorJob.Status.KILLED
-                            && job.getStatus() != CoordinatorJob.Status.IGNORED) {
-                        new CoordKillXCommand(job.getId()).call();
-                    }
-                    break;
-                case Suspend:
-                    if (job.getStatus() != CoordinatorJob.Status.SUCCEEDED
-                            && job.getStatus() != CoordinatorJob.Status.FAILED
-                            && job.getStatus() != CoordinatorJob.Status.KILLED
-                            && job.getStatus() != CoordinatorJob.Status.IGNORED) {
-                        new CoordSuspendXCommand(job.getId()).call();
-                    }
-                    break;
-                case Resume:
-                    if (job.getStatus() == CoordinatorJob.Status.SUSPENDED ||
-                            job.getStatus() == CoordinatorJob.Status.SUSPENDEDWITHERROR ||
-                            job.getStatus() == Job.Status.PREPSUSPENDED) {
-                        new CoordResumeXCommand(job.getId()).call();
+        Map<String, LockToken> locks = acquireLocks(getJobIds(jobs));
+        try {
+            for (CoordinatorJobBean job : jobs) {
+                try {
+                    switch (operation) {
+                        case Kill:
+                            if (job.getStatus() != CoordinatorJob.Status.SUCCEEDED
+                                    && job.getStatus() != CoordinatorJob.Status.FAILED
+                                    && job.getStatus() != CoordinatorJob.Status.DONEWITHERROR
+                                    && job.getStatus() != CoordinatorJob.Status.KILLED
+                                    && job.getStatus() != CoordinatorJob.Status.IGNORED) {
+                                new CoordKillXCommand(job.getId()).call();
+                            }
+                            break;
+                        case Suspend:
+                            if (job.getStatus() != CoordinatorJob.Status.SUCCEEDED
+                                    && job.getStatus() != CoordinatorJob.Status.FAILED
+                                    && job.getStatus() != CoordinatorJob.Status.KILLED
+                                    && job.getStatus() != CoordinatorJob.Status.IGNORED) {
+                                new CoordSuspendXCommand(job.getId()).call();
+                            }
+                            break;
+                        case Resume:
+                            if (job.getStatus() == CoordinatorJob.Status.SUSPENDED ||
+                                    job.getStatus() == CoordinatorJob.Status.SUSPENDEDWITHERROR ||
+                                    job.getStatus() == Job.Status.PREPSUSPENDED) {
+                                new CoordResumeXCommand(job.getId()).call();
+                            }
+                            break;
+                        default:
+                            throw new CommandException(ErrorCode.E1102, operation);
                     }
-                    break;
-                default:
-                    throw new CommandException(ErrorCode.E1102, operation);
+                }
+                finally {
+                    releaseLock(locks, job.getId());
+                }
             }
         }
+        finally {
+            releaseLocks(locks);
+        }
         loadJobs();
         return this.coordinatorJobInfo;
     }
 
+    private static List<String> getJobIds(List<CoordinatorJobBean> jobs) {
+        List<String> ids = new ArrayList<String>(jobs.size());
+        for (CoordinatorJobBean job : jobs) {
+            ids.add(job.getId());
+        }
+        return ids;
+    }
+
     private void loadJobs() throws CommandException {
         try {
             JPAService jpaService = Services.get().get(JPAService.class);
@@ -20,6 +20,7 @@ package org.apache.oozie.command.coord;
 
 import java.io.IOException;
 import java.io.StringReader;
+import java.net.URI;
 import java.util.Calendar;
 import java.util.Date;
 import java.util.List;
@@ -29,13 +30,18 @@ import org.apache.oozie.CoordinatorActionBean;
 import org.apache.oozie.CoordinatorJobBean;
 import org.apache.oozie.ErrorCode;
 import org.apache.oozie.client.CoordinatorAction;
+import org.apache.oozie.client.OozieClient;
 import org.apache.oozie.client.Job;
 import org.apache.oozie.command.CommandException;
 import org.apache.oozie.command.PreconditionException;
 import org.apache.oozie.coord.CoordELEvaluator;
 import org.apache.oozie.coord.CoordELFunctions;
+import org.apache.oozie.coord.CoordInstanceIndex;
 import org.apache.oozie.coord.ElException;
 import org.apache.oozie.coord.input.dependency.CoordInputDependency;
+import org.apache.oozie.coord.input.dependency.CoordOldInputDependency;
+import org.apache.oozie.dependency.FSURIHandler;
+import org.apache.oozie.dependency.URIHandler;
 import org.apache.oozie.executor.jpa.CoordActionGetForInputCheckJPAExecutor;
 import org.apache.oozie.executor.jpa.CoordActionQueryExecutor;
 import org.apache.oozie.executor.jpa.CoordActionQueryExecutor.CoordActionQuery;
@@ -45,9 +51,11 @@ import org.apache.oozie.executor.jpa.JPAExecutorException;
 import org.apache.oozie.service.CallableQueueService;
 import org.apache.oozie.service.ConfigurationService;
 import org.apache.oozie.service.EventHandlerService;
+import org.apache.oozie.service.FSDependencyManagerService;
 import org.apache.oozie.service.JPAService;
 import org.apache.oozie.service.Service;
 import org.apache.oozie.service.Services;
+import org.apache.oozie.service.URIHandlerService;
 import org.apache.oozie.util.DateUtils;
 import org.apache.oozie.util.ELEvaluator;
 import org.apache.oozie.util.LogUtils;
@@ -190,7 +198,7 @@ public class CoordActionInputCheckXCommand extends CoordinatorXCommand<Void> {
                             : ConfigurationService.getInt(CONF_COORD_INPUT_CHECK_REQUEUE_INTERVAL_ADDITIONAL_DELAY)
                                     * 1000L;
                     queue(new CoordActionInputCheckXCommand(coordAction.getId(), coordAction.getJobId()),
-                            addtionalDelay + getCoordInputCheckRequeueInterval());
+                            addtionalDelay + getRequeueInterval(actionConf, nonResolvedList));
                 }
                 updateCoordAction(coordAction, isChangeInDependency);
             }
@@ -303,6 +311,46 @@ public class CoordActionInputCheckXCommand extends CoordinatorXCommand<Void> {
         return requeueInterval;
     }
 
+    /**
+     * Register the action for the notification of its first missing dependency if supported, return the re-queue
+     * interval of the input check accordingly.
+     * <p>
+     * Only the actions without input logic nor unresolved instances are notified, as the missing dependencies of the
+     * other actions may be satisfied by other means than the arrival of their first missing dependency.
+     *
+     * @param actionConf action configuration
+     * @param nonResolvedList unresolved instances
+     * @return re-queue interval in ms
+     */
+    private long getRequeueInterval(Configuration actionConf, StringBuilder nonResolvedList) {
+        FSDependencyManagerService fsDependencyManager = Services.get().get(FSDependencyManagerService.class);
+        CoordInputDependency coordPullInputDependency = coordAction.getPullInputDependencies();
+        if (fsDependencyManager == null || nonResolvedList.length() > 0
+                || !(coordPullInputDependency instanceof CoordOldInputDependency)) {
+            return getCoordInputCheckRequeueInterval();
+        }
+        List<String> missingDependencies = coordPullInputDependency.getMissingDependenciesAsList();
+        if (missingDependencies.isEmpty()) {
+            return getCoordInputCheckRequeueInterval();
+        }
+        String firstMissingDependency = missingDependencies.get(0);
+        try {
+            URI uri = new URI(firstMissingDependency);
+            URIHandler handler = Services.get().get(URIHandlerService.class).getURIHandler(uri);
+            if (!(handler instanceof FSURIHandler)) {
+                return getCoordInputCheckRequeueInterval();
+            }
+            String user = ParamChecker.notEmpty(actionConf.get(OozieClient.USER_NAME), OozieClient.USER_NAME);
+            handler.registerForNotification(uri, actionConf, user, actionId);
+            LOG.debug("Registered [{0}] for notifications", firstMissingDependency);
+            return fsDependencyManager.getRequeueInterval();
+        }
+        catch (Exception e) {
+            LOG.warn("Exception while registering [{0}] for notifications", firstMissingDependency, e);
+            return getCoordInputCheckRequeueInterval();
+        }
+    }
+
     /**
      * To check the list of input paths if all of them exist
      *
@@ -332,7 +380,16 @@ public class CoordActionInputCheckXCommand extends CoordinatorXCommand<Void> {
             Configuration conf) throws Exception {
         Element eAction = XmlUtils.parseXml(actionXml.toString());
         LOG.debug("[" + actionId + "]::ActionInputCheck:: Checking Latest/future");
-        boolean allExist = checkUnresolvedInstances(coordAction, eAction, conf);
+        boolean allExist;
+        boolean indexOpened = CoordInstanceIndex.open();
+        try {
+            allExist = checkUnresolvedInstances(coordAction, eAction, conf);
+        }
+        finally {
+            if (indexOpened) {
+                CoordInstanceIndex.close();
+            }
+        }
         if (allExist) {
             actionXml.replace(0, actionXml.length(), XmlUtils.prettyPrint(eAction).toString());
         }
@@ -40,6 +40,7 @@ import org.apache.oozie.coord.CoordELFunctions;
 import org.apache.oozie.coord.CoordUtils;
 import org.apache.oozie.coord.CoordinatorJobException;
 import org.apache.oozie.coord.SyncCoordAction;
+import org.apache.oozie.coord.SyncCoordDataset;
 import org.apache.oozie.coord.TimeUnit;
 import org.apache.oozie.coord.input.logic.CoordInputLogicEvaluatorUtil;
 import org.apache.oozie.coord.input.dependency.CoordInputDependency;
@@ -521,9 +522,35 @@ public class CoordCommandUtils {
      * @return one materialized action for specific nominal time
      * @throws Exception
      */
-    @SuppressWarnings("unchecked")
     public static String materializeOneInstance(String jobId, boolean dryrun, Element eAction, Date nominalTime,
             Date actualTime, int instanceCount, Configuration conf, CoordinatorActionBean actionBean) throws Exception {
+        return materializeOneInstance(jobId, dryrun, eAction, nominalTime, actualTime, instanceCount, conf, actionBean,
+                null);
+    }
+
+    /**
+     * Materialize one instance for specific nominal time from the compiled plan of the coordinator job, see
+     * {@link #materializeOneInstance(String, boolean, Element, Date, Date, int, Configuration, CoordinatorActionBean)}.
+     *
+     * @param plan materialization plan of the coordinator job
+     * @param dryrun true if it is dryrun
+     * @param nominalTime materialization time
+     * @param actualTime action actual time
+     * @param instanceCount instance numbers
+     * @param actionBean CoordinatorActionBean to materialize
+     * @return one materialized action for specific nominal time
+     * @throws Exception
+     */
+    public static String materializeOneInstance(CoordMaterializationPlan plan, boolean dryrun, Date nominalTime,
+            Date actualTime, int instanceCount, CoordinatorActionBean actionBean) throws Exception {
+        return materializeOneInstance(plan.getJobId(), dryrun, plan.newActionElement(), nominalTime, actualTime,
+                instanceCount, plan.getJobConf(), actionBean, plan);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static String materializeOneInstance(String jobId, boolean dryrun, Element eAction, Date nominalTime,
+            Date actualTime, int instanceCount, Configuration conf, CoordinatorActionBean actionBean,
+            CoordMaterializationPlan plan) throws Exception {
         String actionId = Services.get().get(UUIDService.class).generateChildId(jobId, instanceCount + "");
         SyncCoordAction appInst = new SyncCoordAction();
         appInst.setActionId(actionId);
@@ -542,7 +569,7 @@ public class CoordCommandUtils {
         List<Element> dataInList = null;
         if (inputList != null) {
             dataInList = inputList.getChildren("data-in", eAction.getNamespace());
-            materializeInputDataEvents(dataInList, appInst, conf, actionBean, isInputLogicSpecified);
+            materializeInputDataEvents(dataInList, appInst, conf, actionBean, isInputLogicSpecified, plan);
         }
 
         if(isInputLogicSpecified){
@@ -553,7 +580,7 @@ public class CoordCommandUtils {
         List<Element> dataOutList = null;
         if (outputList != null) {
             dataOutList = outputList.getChildren("data-out", eAction.getNamespace());
-            materializeOutputDataEvents(dataOutList, appInst, conf);
+            materializeOutputDataEvents(dataOutList, appInst, conf, plan);
         }
 
         eAction.removeAttribute("start");
@@ -563,8 +590,9 @@ public class CoordCommandUtils {
         eAction.setAttribute("action-actual-time", DateUtils.formatDateOozieTZ(actualTime));
 
         // Setting up action bean
-        actionBean.setCreatedConf(XmlUtils.prettyPrint(conf).toString());
-        actionBean.setRunConf(XmlUtils.prettyPrint(conf).toString());
+        String confXml = (plan != null) ? plan.getJobConfXml() : XmlUtils.prettyPrint(conf).toString();
+        actionBean.setCreatedConf(confXml);
+        actionBean.setRunConf(confXml);
         actionBean.setCreatedTime(actualTime);
         actionBean.setJobId(jobId);
         actionBean.setId(actionId);
@@ -654,10 +682,11 @@ public class CoordCommandUtils {
      * @param events
      * @param appInst
      * @param conf
+     * @param plan materialization plan of the coordinator job, may be <code>null</code>
      * @throws Exception
      */
-    private static void materializeOutputDataEvents(List<Element> events, SyncCoordAction appInst, Configuration conf)
-            throws Exception {
+    private static void materializeOutputDataEvents(List<Element> events, SyncCoordAction appInst, Configuration conf,
+            CoordMaterializationPlan plan) throws Exception {
 
         if (events == null) {
             return;
@@ -665,7 +694,8 @@ public class CoordCommandUtils {
 
         for (Element event : events) {
             StringBuilder instances = new StringBuilder();
-            ELEvaluator eval = CoordELEvaluator.createInstancesELEvaluator(event, appInst, conf);
+            ELEvaluator eval = createInstancesELEvaluator(event, appInst, conf, plan,
+                    CoordMaterializationPlan.DATA_OUT);
             // Handle list of instance tag
             resolveInstances(event, instances, appInst, conf, eval);
             // Handle start-instance and end-instance
@@ -707,6 +737,12 @@ public class CoordCommandUtils {
 
     public static void materializeInputDataEvents(List<Element> events, SyncCoordAction appInst, Configuration conf,
             CoordinatorActionBean actionBean, boolean isInputLogicSpecified) throws Exception {
+        materializeInputDataEvents(events, appInst, conf, actionBean, isInputLogicSpecified, null);
+    }
+
+    private static void materializeInputDataEvents(List<Element> events, SyncCoordAction appInst, Configuration conf,
+            CoordinatorActionBean actionBean, boolean isInputLogicSpecified, CoordMaterializationPlan plan)
+            throws Exception {
 
         if (events == null) {
             return;
@@ -721,7 +757,7 @@ public class CoordCommandUtils {
 
         for (Element event : events) {
             StringBuilder instances = new StringBuilder();
-            ELEvaluator eval = CoordELEvaluator.createInstancesELEvaluator(event, appInst, conf);
+            ELEvaluator eval = createInstancesELEvaluator(event, appInst, conf, plan, CoordMaterializationPlan.DATA_IN);
             // Handle list of instance tag
             resolveInstances(event, instances, appInst, conf, eval);
             // Handle start-instance and end-instance
@@ -766,6 +802,19 @@ public class CoordCommandUtils {
         actionBean.setPushMissingDependencies(coordPushInputDependency.serialize());
 
     }
+    /**
+     * Create the evaluator of the instances of an event, from the dataset and configuration compiled in the plan of the
+     * coordinator job if any.
+     */
+    private static ELEvaluator createInstancesELEvaluator(Element event, SyncCoordAction appInst, Configuration conf,
+            CoordMaterializationPlan plan, String eventTag) throws Exception {
+        SyncCoordDataset ds = (plan != null) ? plan.getDataset(eventTag, event.getAttributeValue("name")) : null;
+        if (ds == null) {
+            return CoordELEvaluator.createInstancesELEvaluator(event, appInst, conf);
+        }
+        return CoordELEvaluator.createInstancesELEvaluator(appInst, ds, plan.getConfVariables());
+    }
+
     /**
      * Get resolved string from missDepList
      *
@@ -0,0 +1,328 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.oozie.command.coord;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TimeZone;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.oozie.CoordinatorJobBean;
+import org.apache.oozie.ErrorCode;
+import org.apache.oozie.command.CommandException;
+import org.apache.oozie.coord.CoordELEvaluator;
+import org.apache.oozie.coord.SyncCoordDataset;
+import org.apache.oozie.coord.TimeUnit;
+import org.apache.oozie.service.ConfigurationService;
+import org.apache.oozie.service.CoordMaterializeTriggerService;
+import org.apache.oozie.util.DateUtils;
+import org.apache.oozie.util.XConfiguration;
+import org.apache.oozie.util.XLog;
+import org.apache.oozie.util.XmlUtils;
+import org.jdom.Element;
+import org.jdom.JDOMException;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+/**
+ * Immutable materialization plan of a coordinator job, compiled once from the job configuration and XML and shared by the
+ * materializations of its actions.
+ * <p>
+ * The plan holds the parsed job configuration, its XML form and EL variables, the parsed job XML the action elements
+ * are cloned from, the datasets of the input and output events and the frequency calendar of the job. Materializing an
+ * action then only clones the job element and evaluates the instances of the action.
+ * <p>
+ * The plans are cached by job id, up to {@link #CONF_CACHE_SIZE} jobs, in a cache created when the
+ * {@link CoordMaterializeTriggerService} starts. A cached plan is used only if the job still has
+ * the configuration, XML, frequency, time zone and start time it was compiled from, as the updates of a job do not
+ * always change its last modified time.
+ */
+public class CoordMaterializationPlan {
+
+    /**
+     * Maximum number of coordinator job plans cached, 0 disables the cache.
+     */
+    public static final String CONF_CACHE_SIZE = CoordMaterializeTriggerService.CONF_PREFIX + "plan.cache.size";
+
+    static final String DATA_IN = "data-in";
+    static final String DATA_OUT = "data-out";
+
+    private static final XLog LOG = XLog.getLog(CoordMaterializationPlan.class);
+
+    private static volatile Cache<String, CoordMaterializationPlan> cache;
+
+    private final String jobId;
+    private final String conf;
+    private final String jobXml;
+    private final String frequency;
+    private final String timeUnitStr;
+    private final String timeZone;
+    private final Date startTime;
+
+    private final Configuration jobConf;
+    private final String jobConfXml;
+    private final Map<String, Object> confVariables;
+    private final Element eJob;
+    private final Map<String, SyncCoordDataset> datasets;
+    private final TimeZone appTz;
+    private final TimeUnit freqTimeUnit;
+    private final TimeUnit endOfDuration;
+    private final boolean cronFrequency;
+    private final int intFrequency;
+    private final Date origStart;
+
+    private CoordMaterializationPlan(CoordinatorJobBean coordJob) throws CommandException, JDOMException {
+        jobId = coordJob.getId();
+        conf = coordJob.getConf();
+        jobXml = coordJob.getJobXml();
+        frequency = coordJob.getFrequency();
+        timeUnitStr = coordJob.getTimeUnitStr();
+        timeZone = coordJob.getTimeZone();
+        startTime = coordJob.getStartTime();
+        try {
+            jobConf = new XConfiguration(new StringReader(conf));
+        }
+        catch (IOException ioe) {
+            LOG.warn("Configuration parse error. read from DB :" + conf, ioe);
+            throw new CommandException(ErrorCode.E1005, ioe.getMessage(), ioe);
+        }
+        jobConfXml = XmlUtils.prettyPrint(jobConf).toString();
+        Map<String, Object> variables = new HashMap<String, Object>();
+        for (Map.Entry<String, String> entry : jobConf) {
+            variables.put(entry.getKey(), entry.getValue().trim());
+        }
+        confVariables = Collections.unmodifiableMap(variables);
+        eJob = XmlUtils.parseXml(jobXml);
+        Map<String, SyncCoordDataset> eventDatasets = new HashMap<String, SyncCoordDataset>();
+        addDatasets(eventDatasets, "input-events", DATA_IN);
+        addDatasets(eventDatasets, "output-events", DATA_OUT);
+        datasets = Collections.unmodifiableMap(eventDatasets);
+        appTz = DateUtils.getTimeZone(timeZone);
+        freqTimeUnit = TimeUnit.valueOf(timeUnitStr);
+        endOfDuration = TimeUnit.valueOf(eJob.getAttributeValue("end_of_duration"));
+        int parsedFrequency;
+        boolean cron;
+        try {
+            parsedFrequency = Integer.parseInt(frequency);
+            cron = false;
+        }
+        catch (NumberFormatException e) {
+            parsedFrequency = 0;
+            cron = true;
+        }
+        intFrequency = parsedFrequency;
+        cronFrequency = cron;
+        Calendar start = Calendar.getInstance(appTz);
+        start.setTime(coordJob.getStartTimestamp());
+        // Move to the End of duration, if needed.
+        DateUtils.moveToEnd(start, endOfDuration);
+        origStart = start.getTime();
+    }
+
+    @SuppressWarnings("unchecked")
+    private void addDatasets(Map<String, SyncCoordDataset> eventDatasets, String eventsTag, String eventTag) {
+        Element events = eJob.getChild(eventsTag, eJob.getNamespace());
+        if (events != null) {
+            for (Element event : (List<Element>) events.getChildren(eventTag, eJob.getNamespace())) {
+                try {
+                    eventDatasets.put(eventTag + ":" + event.getAttributeValue("name"),
+                            CoordELEvaluator.getDSObject(event));
+                }
+                catch (Exception ex) {
+                    // reported when the action is materialized, as without a plan
+                    LOG.debug("Could not compile the dataset of [{0}]: {1}", event.getAttributeValue("name"),
+                            ex.getMessage());
+                }
+            }
+        }
+    }
+
+    /**
+     * Return the plan of a coordinator job, from the cache if it was compiled from the current definition of the job.
+     *
+     * @param coordJob the coordinator job
+     * @return the plan of the job.
+     * @throws CommandException thrown if the job configuration could not be parsed
+     * @throws JDOMException thrown if the job XML could not be parsed
+     */
+    public static CoordMaterializationPlan get(CoordinatorJobBean coordJob) throws CommandException, JDOMException {
+        Cache<String, CoordMaterializationPlan> plans = cache;
+        if (plans == null || coordJob.getId() == null) {
+            return compile(coordJob);
+        }
+        CoordMaterializationPlan plan = plans.getIfPresent(coordJob.getId());
+        if (plan == null || !plan.isCompiledFrom(coordJob)) {
+            plan = compile(coordJob);
+            plans.put(coordJob.getId(), plan);
+        }
+        return plan;
+    }
+
+    /**
+     * Compile the plan of a coordinator job, without caching it.
+     *
+     * @param coordJob the coordinator job
+     * @return the plan of the job.
+     * @throws CommandException thrown if the job configuration could not be parsed
+     * @throws JDOMException thrown if the job XML could not be parsed
+     */
+    public static CoordMaterializationPlan compile(CoordinatorJobBean coordJob) throws CommandException,
+            JDOMException {
+        return new CoordMaterializationPlan(coordJob);
+    }
+
+    /**
+     * Create the cache of the plans, discarding the plans cached so far.
+     *
+     * @param conf the Oozie configuration
+     */
+    public static void initCache(Configuration conf) {
+        int size = ConfigurationService.getInt(conf, CONF_CACHE_SIZE);
+        cache = (size > 0) ? CacheBuilder.newBuilder().maximumSize(size).<String, CoordMaterializationPlan>build() : null;
+    }
+
+    /**
+     * Drop the cache of the plans, the plans are then compiled each time they are needed.
+     */
+    public static void destroyCache() {
+        cache = null;
+    }
+
+    /**
+     * Return if the plan was compiled from the current definition of a job.
+     *
+     * @param coordJob the coordinator job
+     * @return <code>true</code> if the job has the definition the plan was compiled from.
+     */
+    boolean isCompiledFrom(CoordinatorJobBean coordJob) {
+        return jobId.equals(coordJob.getId()) && equals(frequency, coordJob.getFrequency())
+                && equals(timeUnitStr, coordJob.getTimeUnitStr()) && equals(timeZone, coordJob.getTimeZone())
+                && equals(startTime, coordJob.getStartTime()) && equals(conf, coordJob.getConf())
+                && equals(jobXml, coordJob.getJobXml());
+    }
+
+    private static boolean equals(Object o1, Object o2) {
+        return (o1 == null) ? o2 == null : o1.equals(o2);
+    }
+
+    public String getJobId() {
+        return jobId;
+    }
+
+    /**
+     * Return the job configuration. It must not be modified as it is shared.
+     *
+     * @return the job configuration.
+     */
+    public Configuration getJobConf() {
+        return jobConf;
+    }
+
+    /**
+     * Return the XML of the job configuration, as stored in the actions.
+     *
+     * @return the XML of the job configuration.
+     */
+    public String getJobConfXml() {
+        return jobConfXml;
+    }
+
+    /**
+     * Return the job configuration as EL variables.
+     *
+     * @return the job configuration properties with their values trimmed.
+     */
+    public Map<String, Object> getConfVariables() {
+        return confVariables;
+    }
+
+    /**
+     * Return a new action element to materialize an action from.
+     *
+     * @return a copy of the job element.
+     */
+    public Element newActionElement() {
+        return (Element) eJob.clone();
+    }
+
+    /**
+     * Return the dataset of an event of the job.
+     *
+     * @param eventTag {@link #DATA_IN} or {@link #DATA_OUT}
+     * @param name name of the event
+     * @return the dataset of the event, <code>null</code> if unknown.
+     */
+    public SyncCoordDataset getDataset(String eventTag, String name) {
+        return datasets.get(eventTag + ":" + name);
+    }
+
+    public TimeZone getTimeZone() {
+        return appTz;
+    }
+
+    public TimeUnit getFrequencyTimeUnit() {
+        return freqTimeUnit;
+    }
+
+    public TimeUnit getEndOfDuration() {
+        return endOfDuration;
+    }
+
+    /**
+     * Return if the frequency of the job is a cron expression.
+     *
+     * @return <code>true</code> for a cron frequency.
+     */
+    public boolean isCronFrequency() {
+        return cronFrequency;
+    }
+
+    /**
+     * Return the start time of the job, moved to the end of its duration.
+     *
+     * @return a new calendar in the job time zone.
+     */
+    public Calendar getStart() {
+        Calendar start = Calendar.getInstance(appTz);
+        start.setTime(origStart);
+        return start;
+    }
+
+    /**
+     * Return the nominal time of the action following a number of actions, for jobs with a fixed frequency.
+     *
+     * @param actionNumber the number of the actions before
+     * @return a new calendar in the job time zone.
+     */
+    public Calendar getNominalTime(int actionNumber) {
+        if (cronFrequency) {
+            throw new IllegalStateException("Nominal times of cron frequency jobs depend on the previous action");
+        }
+        Calendar nominalTime = getStart();
+        nominalTime.add(freqTimeUnit.getCalendarUnit(), actionNumber * intFrequency);
+        return nominalTime;
+    }
+}
@@ -0,0 +1,211 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.oozie.command.coord;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.oozie.ErrorCode;
+import org.apache.oozie.client.rest.JsonBean;
+import org.apache.oozie.command.CommandException;
+import org.apache.oozie.command.PreconditionException;
+import org.apache.oozie.command.XCommand;
+import org.apache.oozie.executor.jpa.BatchQueryExecutor;
+import org.apache.oozie.executor.jpa.BatchQueryExecutor.UpdateEntry;
+import org.apache.oozie.executor.jpa.CoordActionsActiveCountsJPAExecutor;
+import org.apache.oozie.executor.jpa.JPAExecutorException;
+import org.apache.oozie.lock.LockToken;
+import org.apache.oozie.service.ConfigurationService;
+import org.apache.oozie.service.CoordMaterializeTriggerService;
+import org.apache.oozie.service.JPAService;
+import org.apache.oozie.service.MemoryLocksService;
+import org.apache.oozie.service.Services;
+import org.apache.oozie.util.ParamChecker;
+
+/**
+ * Materialize the actions of several coordinator jobs and commit them in one batch.
+ * <p>
+ * The command locks the jobs that are not busy, without waiting, loads the number of running actions of all of them
+ * with one grouped query and runs a {@link CoordMaterializeTransitionXCommand} for each job. The action inserts and job
+ * updates of all the jobs are then written with a single {@link BatchQueryExecutor} call, before the commands of the
+ * new actions are queued, the bundles notified and the locks released. If the batch cannot be written, each job is
+ * written on its own so one bad job does not hold back the others.
+ * <p>
+ * The jobs whose lock is held by another command are materialized on their own right away. So are the jobs not
+ * materialized within {@link CoordMaterializeTriggerService#CONF_PIPELINE_BATCH_TIME_LIMIT}, whose locks are released
+ * early, so that the commands waiting for a job of the batch do not wait for the whole batch.
+ */
+public class CoordMaterializeBatchXCommand extends XCommand<Void> {
+
+    private final List<String> jobIds;
+    private final int materializationWindow;
+    private final List<CoordMaterializeTransitionXCommand> commands = new ArrayList<CoordMaterializeTransitionXCommand>();
+    private final List<JsonBean> insertList = new ArrayList<JsonBean>();
+    private final List<UpdateEntry> updateList = new ArrayList<UpdateEntry>();
+
+    /**
+     * The constructor for class {@link CoordMaterializeBatchXCommand}
+     *
+     * @param jobIds coordinator job ids
+     * @param materializationWindow materialization window to calculate end time
+     */
+    public CoordMaterializeBatchXCommand(List<String> jobIds, int materializationWindow) {
+        super("coord_mater_batch", "coord_mater_batch", 1);
+        this.jobIds = ParamChecker.notNull(jobIds, "jobIds");
+        this.materializationWindow = materializationWindow;
+    }
+
+    @Override
+    protected boolean isLockRequired() {
+        return false;
+    }
+
+    @Override
+    public String getEntityKey() {
+        return null;
+    }
+
+    @Override
+    protected void loadState() throws CommandException {
+    }
+
+    @Override
+    protected void verifyPrecondition() throws CommandException, PreconditionException {
+    }
+
+    @Override
+    protected Void execute() throws CommandException {
+        MemoryLocksService locksService = Services.get().get(MemoryLocksService.class);
+        Map<String, LockToken> locks = new LinkedHashMap<String, LockToken>();
+        try {
+            for (String jobId : jobIds) {
+                // no wait, a busy job would hold back the whole batch
+                LockToken lock = locksService.getWriteLock(jobId, 0);
+                if (lock != null) {
+                    locks.put(jobId, lock);
+                }
+                else {
+                    LOG.debug("Coord job [{0}] is locked, materializing it on its own", jobId);
+                    queue(new CoordMaterializeTransitionXCommand(jobId, materializationWindow));
+                }
+            }
+            List<String> lockedJobIds = new ArrayList<String>(locks.keySet());
+            Map<String, Integer> activeCounts = Services.get().get(JPAService.class)
+                    .execute(new CoordActionsActiveCountsJPAExecutor(lockedJobIds));
+            long deadline = System.currentTimeMillis()
+                    + ConfigurationService.getLong(CoordMaterializeTriggerService.CONF_PIPELINE_BATCH_TIME_LIMIT);
+            for (String jobId : lockedJobIds) {
+                if (System.currentTimeMillis() > deadline) {
+                    // nothing written for the job yet, another command may take it
+                    locks.remove(jobId).release();
+                    LOG.debug("Batch time limit reached, materializing coord job [{0}] on its own", jobId);
+                    queue(new CoordMaterializeTransitionXCommand(jobId, materializationWindow));
+                    continue;
+                }
+                try {
+                    new CoordMaterializeTransitionXCommand(jobId, materializationWindow, this, activeCounts.get(jobId))
+                            .call();
+                }
+                catch (CommandException ex) {
+                    LOG.warn("Could not materialize coord job [{0}]: {1}", jobId, ex.getMessage(), ex);
+                }
+            }
+            boolean batchWritten = writeBatch();
+            for (CoordMaterializeTransitionXCommand command : commands) {
+                if (!batchWritten) {
+                    try {
+                        command.performWritesAlone();
+                    }
+                    catch (JPAExecutorException ex) {
+                        LOG.warn("Could not write coord job [{0}]: {1}", command.getEntityKey(), ex.getMessage(), ex);
+                        continue;
+                    }
+                }
+                command.queueActionCommands();
+                try {
+                    command.updateBundleStatus();
+                }
+                catch (CommandException ex) {
+                    LOG.warn("Could not update bundle of coord job [{0}]: {1}", command.getEntityKey(),
+                            ex.getMessage(), ex);
+                }
+            }
+        }
+        catch (JPAExecutorException jex) {
+            throw new CommandException(jex);
+        }
+        catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new CommandException(ErrorCode.E0606, toString(), getLockTimeOut());
+        }
+        finally {
+            for (LockToken lock : locks.values()) {
+                lock.release();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Write the inserts and updates of all the jobs in one batch.
+     *
+     * @return true if the batch was written, false if the jobs have to be written one by one
+     */
+    private boolean writeBatch() {
+        if (insertList.isEmpty() && updateList.isEmpty()) {
+            return true;
+        }
+        try {
+            BatchQueryExecutor.getInstance().executeBatchInsertUpdateDelete(insertList, updateList, null);
+            LOG.info("Materialized [{0}] coord jobs, [{1}] inserts and [{2}] updates in one batch", commands.size(),
+                    insertList.size(), updateList.size());
+            return true;
+        }
+        catch (JPAExecutorException ex) {
+            LOG.warn("Could not write the batch of [{0}] coord jobs, writing them one by one: {1}", commands.size(),
+                    ex.getMessage(), ex);
+            return false;
+        }
+    }
+
+    /**
+     * Add the writes of a job materialization to the batch.
+     *
+     * @param command job materialization
+     * @param inserts action inserts of the job
+     * @param updates job updates
+     */
+    void addWrites(CoordMaterializeTransitionXCommand command, List<JsonBean> inserts, List<UpdateEntry> updates) {
+        commands.add(command);
+        insertList.addAll(inserts);
+        updateList.addAll(updates);
+    }
+
+    /**
+     * Queue a command of a materialized action, after the batch is written.
+     *
+     * @param command command to queue
+     * @param msDelay delay in milliseconds
+     */
+    void queueCommand(XCommand<?> command, long msDelay) {
+        queue(command, msDelay);
+    }
+}
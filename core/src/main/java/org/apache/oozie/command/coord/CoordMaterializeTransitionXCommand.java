@@ -32,7 +32,9 @@ import org.apache.oozie.client.rest.JsonBean;
 import org.apache.oozie.command.CommandException;
 import org.apache.oozie.command.MaterializeTransitionXCommand;
 import org.apache.oozie.command.PreconditionException;
+import org.apache.oozie.command.XCommand;
 import org.apache.oozie.command.bundle.BundleStatusUpdateXCommand;
+import org.apache.oozie.coord.CoordInstanceIndex;
 import org.apache.oozie.coord.CoordUtils;
 import org.apache.oozie.coord.TimeUnit;
 import org.apache.oozie.coord.input.logic.CoordInputLogicEvaluatorUtil;
@@ -54,14 +56,11 @@ import org.apache.oozie.util.Instrumentation;
 import org.apache.oozie.util.LogUtils;
 import org.apache.oozie.util.ParamChecker;
 import org.apache.oozie.util.StatusUtils;
-import org.apache.oozie.util.XConfiguration;
 import org.apache.oozie.util.XmlUtils;
 import org.apache.oozie.util.db.SLADbOperations;
 import org.jdom.Element;
 import org.jdom.JDOMException;
 
-import java.io.IOException;
-import java.io.StringReader;
 import java.sql.Timestamp;
 import java.util.Calendar;
 import java.util.Date;
@@ -81,6 +80,9 @@ public class CoordMaterializeTransitionXCommand extends MaterializeTransitionXCo
     private final int materializationWindow;
     private int lastActionNumber = 1; // over-ride by DB value
     private CoordinatorJob.Status prevStatus = null;
+    private CoordMaterializeBatchXCommand batch = null;
+    private boolean writesBatched = false;
+    private Integer activeActionsCount = null;
 
     static final private int lookAheadWindow = ConfigurationService.getInt(CoordMaterializeTriggerService
             .CONF_LOOKUP_INTERVAL);
@@ -102,6 +104,22 @@ public class CoordMaterializeTransitionXCommand extends MaterializeTransitionXCo
         this.materializationWindow = materializationWindow;
     }
 
+    /**
+     * The constructor for class {@link CoordMaterializeTransitionXCommand} run by a batch materialization, the writes
+     * of the command are committed by the batch.
+     *
+     * @param jobId coordinator job id
+     * @param materializationWindow materialization window to calculate end time
+     * @param batch batch materialization committing the writes
+     * @param activeActionsCount number of running actions of the job, loaded by the batch
+     */
+    CoordMaterializeTransitionXCommand(String jobId, int materializationWindow, CoordMaterializeBatchXCommand batch,
+            int activeActionsCount) {
+        this(jobId, materializationWindow);
+        this.batch = batch;
+        this.activeActionsCount = activeActionsCount;
+    }
+
     public CoordMaterializeTransitionXCommand(CoordinatorJobBean coordJob, int materializationWindow, Date startTime,
                                               Date endTime) {
         super("coord_mater", "coord_mater", 1);
@@ -132,36 +150,66 @@ public class CoordMaterializeTransitionXCommand extends MaterializeTransitionXCo
      */
     @Override
     public void performWrites() throws CommandException {
+        if (batch != null) {
+            batch.addWrites(this, insertList, updateList);
+            writesBatched = true;
+            return;
+        }
         try {
             BatchQueryExecutor.getInstance().executeBatchInsertUpdateDelete(insertList, updateList, null);
-            // register the partition related dependencies of actions
-            for (JsonBean actionBean : insertList) {
-                if (actionBean instanceof CoordinatorActionBean) {
-                    CoordinatorActionBean coordAction = (CoordinatorActionBean) actionBean;
-                    if (EventHandlerService.isEnabled()) {
-                        CoordinatorXCommand.generateEvent(coordAction, coordJob.getUser(), coordJob.getAppName(), null);
-                    }
-
-                    // TODO: time 100s should be configurable
-                    queue(new CoordActionNotificationXCommand(coordAction), 100);
-
-                    //Delay for input check = (nominal time - now)
-                    long checkDelay = coordAction.getNominalTime().getTime() - new Date().getTime();
-                    queue(new CoordActionInputCheckXCommand(coordAction.getId(), coordAction.getJobId()),
-                        Math.max(checkDelay, 0));
-
-                    if (!StringUtils.isEmpty(coordAction.getPushMissingDependencies())) {
-                        // TODO: Delay in catchup mode?
-                        queue(new CoordPushDependencyCheckXCommand(coordAction.getId(), true), 100);
-                    }
-                }
-            }
+            queueActionCommands();
         }
         catch (JPAExecutorException jex) {
             throw new CommandException(jex);
         }
     }
 
+    /**
+     * Write the job and its actions on their own, when the batch they were part of could not be written.
+     *
+     * @throws JPAExecutorException thrown if the writes failed
+     */
+    void performWritesAlone() throws JPAExecutorException {
+        BatchQueryExecutor.getInstance().executeBatchInsertUpdateDelete(insertList, updateList, null);
+    }
+
+    /**
+     * Queue the commands of the materialized actions, once they are written.
+     */
+    void queueActionCommands() {
+        // register the partition related dependencies of actions
+        for (JsonBean actionBean : insertList) {
+            if (actionBean instanceof CoordinatorActionBean) {
+                CoordinatorActionBean coordAction = (CoordinatorActionBean) actionBean;
+                if (EventHandlerService.isEnabled()) {
+                    CoordinatorXCommand.generateEvent(coordAction, coordJob.getUser(), coordJob.getAppName(), null);
+                }
+
+                // TODO: time 100s should be configurable
+                queueCommand(new CoordActionNotificationXCommand(coordAction), 100);
+
+                //Delay for input check = (nominal time - now)
+                long checkDelay = coordAction.getNominalTime().getTime() - new Date().getTime();
+                queueCommand(new CoordActionInputCheckXCommand(coordAction.getId(), coordAction.getJobId()),
+                    Math.max(checkDelay, 0));
+
+                if (!StringUtils.isEmpty(coordAction.getPushMissingDependencies())) {
+                    // TODO: Delay in catchup mode?
+                    queueCommand(new CoordPushDependencyCheckXCommand(coordAction.getId(), true), 100);
+                }
+            }
+        }
+    }
+
+    private void queueCommand(XCommand<?> command, long msDelay) {
+        if (batch != null) {
+            batch.queueCommand(command, msDelay);
+        }
+        else {
+            queue(command, msDelay);
+        }
+    }
+
     /* (non-Javadoc)
      * @see org.apache.oozie.command.XCommand#getEntityKey()
      */
@@ -357,6 +405,7 @@ public class CoordMaterializeTransitionXCommand extends MaterializeTransitionXCo
         Instrumentation.Cron cron = new Instrumentation.Cron();
         cron.start();
         try {
+            CoordMaterializeTriggerService.recordMaterializationLag(System.currentTimeMillis() - startMatdTime.getTime());
             materializeActions(false);
             updateJobMaterializeInfo(coordJob);
         }
@@ -390,23 +439,29 @@ public class CoordMaterializeTransitionXCommand extends MaterializeTransitionXCo
      * @throws Exception thrown if failed to materialize actions
      */
     protected String materializeActions(boolean dryrun) throws Exception {
-
-        Configuration jobConf = null;
+        // the actions resolving latest and future instances share the index of the dataset instances
+        boolean indexOpened = CoordInstanceIndex.open();
         try {
-            jobConf = new XConfiguration(new StringReader(coordJob.getConf()));
+            return materializeActionInstances(dryrun);
         }
-        catch (IOException ioe) {
-            LOG.warn("Configuration parse error. read from DB :" + coordJob.getConf(), ioe);
-            throw new CommandException(ErrorCode.E1005, ioe.getMessage(), ioe);
+        finally {
+            if (indexOpened) {
+                CoordInstanceIndex.close();
+            }
         }
+    }
 
-        String jobXml = coordJob.getJobXml();
-        Element eJob = XmlUtils.parseXml(jobXml);
-        TimeZone appTz = DateUtils.getTimeZone(coordJob.getTimeZone());
+    private String materializeActionInstances(boolean dryrun) throws Exception {
+
+        // the plan holds the parsed job definition shared by the materializations of the job
+        CoordMaterializationPlan plan = dryrun ? CoordMaterializationPlan.compile(coordJob)
+                : CoordMaterializationPlan.get(coordJob);
+        Configuration jobConf = plan.getJobConf();
+        TimeZone appTz = plan.getTimeZone();
 
         String frequency = coordJob.getFrequency();
-        TimeUnit freqTU = TimeUnit.valueOf(coordJob.getTimeUnitStr());
-        TimeUnit endOfFlag = TimeUnit.valueOf(eJob.getAttributeValue("end_of_duration"));
+        TimeUnit freqTU = plan.getFrequencyTimeUnit();
+        TimeUnit endOfFlag = plan.getEndOfDuration();
         Calendar start = Calendar.getInstance(appTz);
         start.setTime(startMatdTime);
         DateUtils.moveToEnd(start, endOfFlag);
@@ -417,11 +472,6 @@ public class CoordMaterializeTransitionXCommand extends MaterializeTransitionXCo
         LOG.info("materialize actions for tz=" + appTz.getDisplayName() + ",\n start=" + start.getTime() + ", end="
                 + end.getTime() + ",\n timeUnit " + freqTU.getCalendarUnit() + ",\n frequency :" + frequency + ":"
                 + freqTU + ",\n lastActionNumber " + lastActionNumber);
-        // Keep the actual start time
-        Calendar origStart = Calendar.getInstance(appTz);
-        origStart.setTime(coordJob.getStartTimestamp());
-        // Move to the End of duration, if needed.
-        DateUtils.moveToEnd(origStart, endOfFlag);
 
         StringBuilder actionStrings = new StringBuilder();
         Date jobPauseTime = coordJob.getPauseTime();
@@ -432,7 +482,8 @@ public class CoordMaterializeTransitionXCommand extends MaterializeTransitionXCo
         }
 
         String action = null;
-        int numWaitingActions = dryrun ? 0 : jpaService.execute(new CoordActionsActiveCountJPAExecutor(coordJob.getId()));
+        int numWaitingActions = dryrun ? 0 : (activeActionsCount != null) ? activeActionsCount
+                : jpaService.execute(new CoordActionsActiveCountJPAExecutor(coordJob.getId()));
         int maxActionToBeCreated = coordJob.getMatThrottling() - numWaitingActions;
         // If LAST_ONLY and all materialization is in the past, ignore maxActionsToBeCreated
         boolean ignoreMaxActions =
@@ -442,17 +493,9 @@ public class CoordMaterializeTransitionXCommand extends MaterializeTransitionXCo
         LOG.debug("Coordinator job :" + coordJob.getId() + ", maxActionToBeCreated :" + maxActionToBeCreated
                 + ", Mat_Throttle :" + coordJob.getMatThrottling() + ", numWaitingActions :" + numWaitingActions);
 
-        boolean isCronFrequency = false;
+        boolean isCronFrequency = plan.isCronFrequency();
 
-        Calendar effStart = (Calendar) start.clone();
-        try {
-            int intFrequency = Integer.parseInt(coordJob.getFrequency());
-            effStart = (Calendar) origStart.clone();
-            effStart.add(freqTU.getCalendarUnit(), lastActionNumber * intFrequency);
-        }
-        catch (NumberFormatException e) {
-            isCronFrequency = true;
-        }
+        Calendar effStart = isCronFrequency ? (Calendar) start.clone() : plan.getNominalTime(lastActionNumber);
 
         boolean firstMater = true;
         while (effStart.compareTo(end) < 0 && (ignoreMaxActions || maxActionToBeCreated-- > 0)) {
@@ -484,8 +527,8 @@ public class CoordMaterializeTransitionXCommand extends MaterializeTransitionXCo
                 LOG.debug("Materializing action for time=" + DateUtils.formatDateOozieTZ(effStart.getTime())
                         + ", lastactionnumber=" + lastActionNumber + " timeout=" + timeout + " minutes");
                 Date actualTime = new Date();
-                action = CoordCommandUtils.materializeOneInstance(jobId, dryrun, (Element) eJob.clone(),
-                        nextTime, actualTime, lastActionNumber, jobConf, actionBean);
+                action = CoordCommandUtils.materializeOneInstance(plan, dryrun, nextTime, actualTime,
+                        lastActionNumber, actionBean);
                 actionBean.setTimeOut(timeout);
                 if (!dryrun) {
                     storeToDB(actionBean, action, jobConf); // Storing to table
@@ -501,8 +544,7 @@ public class CoordMaterializeTransitionXCommand extends MaterializeTransitionXCo
             }
 
             if (!isCronFrequency) {
-                effStart = (Calendar) origStart.clone();
-                effStart.add(freqTU.getCalendarUnit(), lastActionNumber * Integer.parseInt(coordJob.getFrequency()));
+                effStart = plan.getNominalTime(lastActionNumber);
             }
         }
 
@@ -585,6 +627,18 @@ public class CoordMaterializeTransitionXCommand extends MaterializeTransitionXCo
      */
     @Override
     public void notifyParent() throws CommandException {
+        // the batch notifies the bundle once it has written the job
+        if (!writesBatched) {
+            updateBundleStatus();
+        }
+    }
+
+    /**
+     * Update the bundle action of the job, once the job is written.
+     *
+     * @throws CommandException thrown if the bundle status update failed
+     */
+    void updateBundleStatus() throws CommandException {
         // update bundle action only when status changes in coord job
         if (this.coordJob.getBundleId() != null) {
             if (!prevStatus.equals(coordJob.getStatus())) {
@@ -34,6 +34,7 @@ import org.apache.oozie.service.EventHandlerService;
 import org.apache.oozie.service.JPAService;
 import org.apache.oozie.service.Services;
 import org.apache.oozie.sla.SLACalcStatus;
+import org.apache.oozie.sla.SLARegistrationBean;
 import org.apache.oozie.sla.SLASummaryBean;
 
 public abstract class SLAJobEventXCommand extends XCommand<Void> {
@@ -43,6 +44,7 @@ public abstract class SLAJobEventXCommand extends XCommand<Void> {
     final static String SLA_LOCK_PREFIX = "sla_";
     private boolean isEnded = false;
     private boolean isEndMiss = false;
+    private SLARegistrationBean fullRegBean;
 
     public SLAJobEventXCommand(SLACalcStatus slaCalc, long lockTimeOut) {
         super("SLA.job.event", "SLA.job.event", 1);
@@ -113,6 +115,18 @@ public abstract class SLAJobEventXCommand extends XCommand<Void> {
      * @param event the event
      */
     private void queueEvent(SLACalcStatus event) {
+        if (event.isCompact()) {
+            try {
+                if (fullRegBean == null) {
+                    fullRegBean = slaCalc.getFullSLARegistrationBean();
+                }
+                event.setSLARegistrationBean(fullRegBean);
+            }
+            catch (JPAExecutorException e) {
+                LOG.warn("Could not read the SLA registration of job [{0}], the event is sent without it",
+                        slaCalc.getId(), e);
+            }
+        }
         Services.get().get(EventHandlerService.class).queueEvent(event);
     }
 
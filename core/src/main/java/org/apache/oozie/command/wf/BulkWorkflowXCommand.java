@@ -25,9 +25,11 @@ import org.apache.oozie.command.CommandException;
 import org.apache.oozie.command.OperationType;
 import org.apache.oozie.command.PreconditionException;
 import org.apache.oozie.executor.jpa.WorkflowsJobGetJPAExecutor;
+import org.apache.oozie.lock.LockToken;
 import org.apache.oozie.service.JPAService;
 import org.apache.oozie.service.Services;
 
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 
@@ -61,30 +63,41 @@ public class BulkWorkflowXCommand extends WorkflowXCommand<WorkflowsInfo> {
     protected WorkflowsInfo execute() throws CommandException {
         try {
             List<WorkflowJobBean> workflows = this.workflowsInfo.getWorkflows();
-            for (WorkflowJobBean job : workflows) {
-                switch (operation) {
-                    case Kill:
-                        if (job.getStatus() == WorkflowJob.Status.PREP
-                                || job.getStatus() == WorkflowJob.Status.RUNNING
-                                || job.getStatus() == WorkflowJob.Status.SUSPENDED
-                                || job.getStatus() == WorkflowJob.Status.FAILED) {
-                            new KillXCommand(job.getId()).call();
+            Map<String, LockToken> locks = acquireLocks(getJobIds(workflows));
+            try {
+                for (WorkflowJobBean job : workflows) {
+                    try {
+                        switch (operation) {
+                            case Kill:
+                                if (job.getStatus() == WorkflowJob.Status.PREP
+                                        || job.getStatus() == WorkflowJob.Status.RUNNING
+                                        || job.getStatus() == WorkflowJob.Status.SUSPENDED
+                                        || job.getStatus() == WorkflowJob.Status.FAILED) {
+                                    new KillXCommand(job.getId()).call();
+                                }
+                                break;
+                            case Suspend:
+                                if (job.getStatus() == WorkflowJob.Status.RUNNING) {
+                                    new SuspendXCommand(job.getId()).call();
+                                }
+                                break;
+                            case Resume:
+                                if (job.getStatus() == WorkflowJob.Status.SUSPENDED) {
+                                    new ResumeXCommand(job.getId()).call();
+                                }
+                                break;
+                            default:
+                                throw new CommandException(ErrorCode.E1102, operation);
                         }
-                        break;
-                    case Suspend:
-                        if (job.getStatus() == WorkflowJob.Status.RUNNING) {
-                            new SuspendXCommand(job.getId()).call();
-                        }
-                        break;
-                    case Resume:
-                        if (job.getStatus() == WorkflowJob.Status.SUSPENDED) {
-                            new ResumeXCommand(job.getId()).call();
-                        }
-                        break;
-                    default:
-                        throw new CommandException(ErrorCode.E1102, operation);
+                    }
+                    finally {
+                        releaseLock(locks, job.getId());
+                    }
                 }
             }
+            finally {
+                releaseLocks(locks);
+            }
             loadJobs();
             return this.workflowsInfo;
         }
@@ -124,6 +137,14 @@ public class BulkWorkflowXCommand extends WorkflowXCommand<WorkflowsInfo> {
     protected void verifyPrecondition() throws CommandException, PreconditionException {
     }
 
+    private static List<String> getJobIds(List<WorkflowJobBean> jobs) {
+        List<String> ids = new ArrayList<String>(jobs.size());
+        for (WorkflowJobBean job : jobs) {
+            ids.add(job.getId());
+        }
+        return ids;
+    }
+
     private void loadJobs() throws CommandException {
         try {
             JPAService jpaService = Services.get().get(JPAService.class);
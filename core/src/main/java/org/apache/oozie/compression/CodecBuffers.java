@@ -0,0 +1,53 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.oozie.compression;
+
+/**
+ * Per thread buffers reused by the codecs, so compressing and decompressing blobs does not allocate temporary buffers.
+ * <p>
+ * Buffers larger than {@link #MAX_POOLED_SIZE} are not kept, so a single large blob does not pin its buffer.
+ */
+class CodecBuffers {
+
+    static final int MIN_SIZE = 64 * 1024;
+    static final int MAX_POOLED_SIZE = 1024 * 1024;
+
+    private static final ThreadLocal<byte[]> BUFFERS = new ThreadLocal<byte[]>();
+
+    private CodecBuffers() {
+    }
+
+    /**
+     * Return a buffer of the current thread of at least the given size. The buffer must not be used after the codec
+     * call that got it returns.
+     *
+     * @param size minimum size of the buffer.
+     * @return the buffer.
+     */
+    static byte[] get(int size) {
+        byte[] buffer = BUFFERS.get();
+        if (buffer == null || buffer.length < size) {
+            buffer = new byte[Math.max(size, MIN_SIZE)];
+            if (buffer.length <= MAX_POOLED_SIZE) {
+                BUFFERS.set(buffer);
+            }
+        }
+        return buffer;
+    }
+}
@@ -25,6 +25,8 @@ import java.io.IOException;
 import java.io.UnsupportedEncodingException;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.apache.hadoop.conf.Configuration;
 import org.apache.oozie.util.XLog;
@@ -32,19 +34,46 @@ import org.apache.oozie.util.XLog;
 /**
  *  Utility class for maintaining list of codecs and providing facility
  *  for compressing and decompressing.
+ *  <p>
+ *  The gz, deflate and snappy codecs are always registered, so blobs written with any of them are read whatever the
+ *  output codec is. Blobs compressed with a preset dictionary reference the dictionary id in their header, the
+ *  dictionaries are loaded with the {@link DictionaryLoader} given at initialization.
  *
  */
 public class CodecFactory {
     private static final Map<String, CompressionCodec> REGISTERED = new HashMap<String, CompressionCodec>();
+    private static final Map<String, CompressionCodec> DICTIONARY_CODECS =
+            new ConcurrentHashMap<String, CompressionCodec>();
     public static final String COMPRESSION_CODECS = "oozie.compression.codecs";
     public static final String COMPRESSION_OUTPUT_CODEC = "oozie.output.compression.codec";
+    public static final String COMPRESSION_OUTPUT_DICTIONARY = "oozie.output.compression.dictionary";
     private static CompressionCodec outputCompressionCodec;
     public static final String COMPRESSION_MAGIC_DATA = "OBJ";
     public static final String COMPRESSION_KEY_HEADER = "codec";
+    public static final String COMPRESSION_DICT_HEADER = "dict";
     public static final String UTF_8_ENCODING = "UTF-8";
     private static boolean isEnabled;
     private static XLog LOG = XLog.getLog(CodecFactory.class);;
     private static byte[] headerBytes;
+    private static DictionaryLoader dictionaryLoader;
+    private static final AtomicLong COMPRESSIONS = new AtomicLong();
+    private static final AtomicLong DECOMPRESSIONS = new AtomicLong();
+    private static final AtomicLong UNCHANGED_WRITES = new AtomicLong();
+
+    /**
+     * Loads the dictionaries of the codecs supporting them.
+     */
+    public interface DictionaryLoader {
+
+        /**
+         * Load a dictionary.
+         *
+         * @param id id of the dictionary.
+         * @return the dictionary, <code>null</code> if unknown.
+         * @throws IOException thrown if the dictionary could not be loaded.
+         */
+        byte[] load(String id) throws IOException;
+    }
 
     /**
      * Initialize the codec factory to maintain list of codecs
@@ -52,6 +81,18 @@ public class CodecFactory {
      * @throws Exception if the codec couldn't be initialized
      */
     public static void initialize(Configuration conf) throws Exception {
+        initialize(conf, null);
+    }
+
+    /**
+     * Initialize the codec factory to maintain list of codecs
+     * @param conf the configuration
+     * @param loader loader of the dictionaries, may be <code>null</code> if no dictionary is used
+     * @throws Exception if the codec couldn't be initialized
+     */
+    public static void initialize(Configuration conf, DictionaryLoader loader) throws Exception {
+        dictionaryLoader = loader;
+        DICTIONARY_CODECS.clear();
         String outputCompressionStr = conf.get(COMPRESSION_OUTPUT_CODEC);
         if (outputCompressionStr == null || outputCompressionStr.trim().equalsIgnoreCase("NONE") ||
                 outputCompressionStr.trim().equalsIgnoreCase("")) {
@@ -62,17 +103,27 @@ public class CodecFactory {
             isEnabled = true;
         }
         String[] outputCompressionCodecs = conf.getStrings(COMPRESSION_CODECS);
-        for (String comp : outputCompressionCodecs) {
-            parseCompressionConfig(comp);
+        if (outputCompressionCodecs != null) {
+            for (String comp : outputCompressionCodecs) {
+                parseCompressionConfig(comp);
+            }
         }
+        registerIfAbsent(GzipCompressionCodec.CODEC_NAME, new GzipCompressionCodec());
+        registerIfAbsent(DeflateCompressionCodec.CODEC_NAME, new DeflateCompressionCodec());
+        registerIfAbsent(SnappyCompressionCodec.CODEC_NAME, new SnappyCompressionCodec());
+        String outputDictionary = conf.getTrimmed(COMPRESSION_OUTPUT_DICTIONARY, "");
         if (isEnabled) {
-            if (REGISTERED.get(GzipCompressionCodec.CODEC_NAME) == null) {
-                REGISTERED.put(GzipCompressionCodec.CODEC_NAME, new GzipCompressionCodec());
-            }
             outputCompressionCodec = REGISTERED.get(outputCompressionStr);
             if (outputCompressionCodec == null) {
                 throw new RuntimeException("No codec class found for codec " + outputCompressionStr);
             }
+            if (!outputDictionary.isEmpty()) {
+                outputCompressionCodec = getCodec(outputCompressionStr, outputDictionary);
+                LOG.info("Using dictionary [{0}] with output compression codec", outputDictionary);
+            }
+        }
+        else {
+            outputDictionary = "";
         }
         LOG.info("Using " + outputCompressionStr + " as output compression codec");
 
@@ -84,9 +135,13 @@ public class CodecFactory {
         // version
         daos.writeInt(1);
         // no of key value pairs
-        daos.writeInt(1);
+        daos.writeInt(outputDictionary.isEmpty() ? 1 : 2);
         daos.writeUTF(COMPRESSION_KEY_HEADER);
         daos.writeUTF(outputCompressionStr);
+        if (!outputDictionary.isEmpty()) {
+            daos.writeUTF(COMPRESSION_DICT_HEADER);
+            daos.writeUTF(outputDictionary);
+        }
         daos.close();
         headerBytes = baos.toByteArray();
 
@@ -106,6 +161,12 @@ public class CodecFactory {
         }
     }
 
+    private static void registerIfAbsent(String key, CompressionCodec codec) {
+        if (REGISTERED.get(key) == null) {
+            REGISTERED.put(key, codec);
+        }
+    }
+
     private static CompressionCodec getCodec(String key) {
         CompressionCodec codec = REGISTERED.get(key);
         if (codec != null) {
@@ -116,6 +177,24 @@ public class CodecFactory {
         }
     }
 
+    private static CompressionCodec getCodec(String key, String dictionaryId) throws IOException {
+        String codecKey = key + "/" + dictionaryId;
+        CompressionCodec codec = DICTIONARY_CODECS.get(codecKey);
+        if (codec == null) {
+            CompressionCodec baseCodec = getCodec(key);
+            if (!(baseCodec instanceof DictionaryCompressionCodec)) {
+                throw new IOException("Compression codec " + key + " does not support dictionaries");
+            }
+            byte[] dictionary = (dictionaryLoader != null) ? dictionaryLoader.load(dictionaryId) : null;
+            if (dictionary == null) {
+                throw new IOException("No compression dictionary found corresponding to " + dictionaryId);
+            }
+            codec = ((DictionaryCompressionCodec) baseCodec).withDictionary(dictionary);
+            DICTIONARY_CODECS.put(codecKey, codec);
+        }
+        return codec;
+    }
+
     /**
      * Check whether compression is enabled or not
      * @return true if compression is enabled
@@ -139,9 +218,10 @@ public class CodecFactory {
                 // read Version; need to handle if multiple versions are
                 // supported
                 dais.readInt();
-                // read no of key value pairs; need to handle if more than one
-                dais.readInt();
-                compressionProps.put(dais.readUTF(), dais.readUTF());
+                int pairs = dais.readInt();
+                for (int i = 0; i < pairs; i++) {
+                    compressionProps.put(dais.readUTF(), dais.readUTF());
+                }
             }
             else {
                 dais.reset();
@@ -151,6 +231,10 @@ public class CodecFactory {
         catch (UnsupportedEncodingException ex) {
             throw new RuntimeException(ex);
         }
+        String dictionaryId = compressionProps.get(COMPRESSION_DICT_HEADER);
+        if (dictionaryId != null) {
+            return getCodec(compressionProps.get(COMPRESSION_KEY_HEADER), dictionaryId);
+        }
         return getCodec(compressionProps.get(COMPRESSION_KEY_HEADER));
     }
 
@@ -170,4 +254,48 @@ public class CodecFactory {
         return headerBytes;
     }
 
+    /**
+     * Count a blob compression.
+     */
+    public static void incrCompressions() {
+        COMPRESSIONS.incrementAndGet();
+    }
+
+    /**
+     * Count a blob decompression.
+     */
+    public static void incrDecompressions() {
+        DECOMPRESSIONS.incrementAndGet();
+    }
+
+    /**
+     * Count a write of a decompressed but unmodified blob, written back without being compressed again.
+     */
+    public static void incrUnchangedWrites() {
+        UNCHANGED_WRITES.incrementAndGet();
+    }
+
+    /**
+     * Get the number of blob compressions
+     * @return the number of blob compressions
+     */
+    public static long getCompressions() {
+        return COMPRESSIONS.get();
+    }
+
+    /**
+     * Get the number of blob decompressions
+     * @return the number of blob decompressions
+     */
+    public static long getDecompressions() {
+        return DECOMPRESSIONS.get();
+    }
+
+    /**
+     * Get the number of writes of decompressed blobs not compressed again as unmodified
+     * @return the number of writes of unmodified blobs
+     */
+    public static long getUnchangedWrites() {
+        return UNCHANGED_WRITES.get();
+    }
 }
@@ -0,0 +1,143 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.oozie.compression;
+
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import org.apache.commons.io.IOUtils;
+
+/**
+ * Class to compress and decompress data using the Deflate codec, at the fastest compression level, optionally with a
+ * preset dictionary.
+ * <p>
+ * Oozie blobs are small and similar to each other, a dictionary holding their common strings lets the codec reference
+ * them from the first blob byte, see {@link DictionaryTrainer}. The <code>Deflater</code> and <code>Inflater</code>
+ * instances are reused per thread.
+ */
+public class DeflateCompressionCodec implements DictionaryCompressionCodec {
+
+    public static final String CODEC_NAME = "deflate";
+
+    /**
+     * Maximum size of a dictionary, the Deflate window size.
+     */
+    public static final int MAX_DICTIONARY_SIZE = 32 * 1024;
+
+    private static final ThreadLocal<Deflater> DEFLATERS = new ThreadLocal<Deflater>() {
+        @Override
+        protected Deflater initialValue() {
+            return new Deflater(Deflater.BEST_SPEED);
+        }
+    };
+
+    private static final ThreadLocal<Inflater> INFLATERS = new ThreadLocal<Inflater>() {
+        @Override
+        protected Inflater initialValue() {
+            return new Inflater();
+        }
+    };
+
+    private final byte[] dictionary;
+
+    public DeflateCompressionCodec() {
+        this(null);
+    }
+
+    private DeflateCompressionCodec(byte[] dictionary) {
+        if (dictionary != null && dictionary.length > MAX_DICTIONARY_SIZE) {
+            dictionary = Arrays.copyOfRange(dictionary, dictionary.length - MAX_DICTIONARY_SIZE, dictionary.length);
+        }
+        this.dictionary = dictionary;
+    }
+
+    @Override
+    public CompressionCodec withDictionary(byte[] dictionary) {
+        return new DeflateCompressionCodec(dictionary);
+    }
+
+    public byte[] compressBytes(byte[] header, byte[] data) throws IOException {
+        Deflater deflater = DEFLATERS.get();
+        deflater.reset();
+        if (dictionary != null) {
+            deflater.setDictionary(dictionary);
+        }
+        deflater.setInput(data);
+        deflater.finish();
+        byte[] buffer = CodecBuffers.get(header.length + data.length + (data.length >> 12) + (data.length >> 14) + 64);
+        System.arraycopy(header, 0, buffer, 0, header.length);
+        int length = header.length;
+        while (!deflater.finished()) {
+            if (length == buffer.length) {
+                buffer = Arrays.copyOf(buffer, buffer.length * 2);
+            }
+            length += deflater.deflate(buffer, length, buffer.length - length);
+        }
+        return Arrays.copyOf(buffer, length);
+    }
+
+    public byte[] compressString(byte[] header, String data) throws IOException {
+        return compressBytes(header, data.getBytes(CodecFactory.UTF_8_ENCODING));
+    }
+
+    public String decompressToString(DataInputStream dais) throws IOException {
+        return new String(decompressToBytes(dais), CodecFactory.UTF_8_ENCODING);
+    }
+
+    public byte[] decompressToBytes(DataInputStream dais) throws IOException {
+        Inflater inflater = INFLATERS.get();
+        inflater.reset();
+        inflater.setInput(IOUtils.toByteArray(dais));
+        byte[] buffer = CodecBuffers.get(0);
+        int length = 0;
+        try {
+            while (!inflater.finished()) {
+                if (length == buffer.length) {
+                    buffer = Arrays.copyOf(buffer, buffer.length * 2);
+                }
+                int inflated = inflater.inflate(buffer, length, buffer.length - length);
+                if (inflated == 0 && !inflater.finished()) {
+                    if (inflater.needsDictionary()) {
+                        if (dictionary == null) {
+                            throw new IOException("No dictionary to decompress data compressed with a dictionary");
+                        }
+                        inflater.setDictionary(dictionary);
+                    }
+                    else if (inflater.needsInput()) {
+                        throw new EOFException("Unexpected end of compressed data");
+                    }
+                }
+                length += inflated;
+            }
+        }
+        catch (DataFormatException ex) {
+            throw new IOException(ex);
+        }
+        catch (IllegalArgumentException ex) {
+            // thrown by setDictionary when the dictionary is not the one the data was compressed with
+            throw new IOException("Dictionary does not match the dictionary of the compressed data", ex);
+        }
+        return Arrays.copyOf(buffer, length);
+    }
+}
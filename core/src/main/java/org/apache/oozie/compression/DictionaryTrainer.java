@@ -0,0 +1,115 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.oozie.compression;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.oozie.util.ParamChecker;
+
+/**
+ * Trains a preset dictionary for {@link DictionaryCompressionCodec} from sample blobs.
+ * <p>
+ * The samples are split in segments ending at line breaks and between XML tags, the segments found in several samples
+ * are scored by their length times the number of other samples they are found in. The dictionary holds the best
+ * segments, the best ones last as the codecs find closer matches cheaper.
+ */
+public class DictionaryTrainer {
+
+    static final int MIN_SEGMENT_LENGTH = 8;
+    static final int MAX_SEGMENT_LENGTH = 1024;
+
+    private DictionaryTrainer() {
+    }
+
+    /**
+     * Train a dictionary.
+     *
+     * @param samples sample blobs, uncompressed.
+     * @param maxSize maximum size of the dictionary.
+     * @return the dictionary, empty if the samples have no common segments.
+     */
+    public static byte[] train(Iterable<byte[]> samples, int maxSize) {
+        ParamChecker.notNull(samples, "samples");
+        ParamChecker.checkGTZero(maxSize, "maxSize");
+        final Map<ByteBuffer, Integer> counts = new HashMap<ByteBuffer, Integer>();
+        for (byte[] sample : samples) {
+            // counted once per sample, a segment repeated within a sample is already compressed by the codec
+            for (ByteBuffer segment : split(sample)) {
+                Integer count = counts.get(segment);
+                counts.put(segment, (count == null) ? 1 : count + 1);
+            }
+        }
+        List<ByteBuffer> segments = new ArrayList<ByteBuffer>();
+        for (Map.Entry<ByteBuffer, Integer> entry : counts.entrySet()) {
+            if (entry.getValue() > 1) {
+                segments.add(entry.getKey());
+            }
+        }
+        Collections.sort(segments, new Comparator<ByteBuffer>() {
+            @Override
+            public int compare(ByteBuffer o1, ByteBuffer o2) {
+                int result = Long.compare(score(o2, counts.get(o2)), score(o1, counts.get(o1)));
+                return (result != 0) ? result : o1.compareTo(o2);
+            }
+        });
+        List<ByteBuffer> selected = new ArrayList<ByteBuffer>();
+        int size = 0;
+        for (ByteBuffer segment : segments) {
+            if (size + segment.remaining() <= maxSize) {
+                selected.add(segment);
+                size += segment.remaining();
+            }
+        }
+        ByteArrayOutputStream dictionary = new ByteArrayOutputStream(size);
+        for (int i = selected.size() - 1; i >= 0; i--) {
+            ByteBuffer segment = selected.get(i);
+            dictionary.write(segment.array(), segment.arrayOffset() + segment.position(), segment.remaining());
+        }
+        return dictionary.toByteArray();
+    }
+
+    private static long score(ByteBuffer segment, int count) {
+        return (long) segment.remaining() * (count - 1);
+    }
+
+    private static Set<ByteBuffer> split(byte[] sample) {
+        Set<ByteBuffer> segments = new HashSet<ByteBuffer>();
+        int start = 0;
+        for (int i = 0; i < sample.length; i++) {
+            boolean tagEnd = sample[i] == '>' && i + 1 < sample.length && sample[i + 1] == '<';
+            if (sample[i] == '\n' || tagEnd || i - start + 1 == MAX_SEGMENT_LENGTH || i == sample.length - 1) {
+                int length = i - start + 1;
+                if (length >= MIN_SEGMENT_LENGTH) {
+                    segments.add(ByteBuffer.wrap(sample, start, length).slice());
+                }
+                start = i + 1;
+            }
+        }
+        return segments;
+    }
+}
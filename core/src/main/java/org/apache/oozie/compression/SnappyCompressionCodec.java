@@ -0,0 +1,59 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.oozie.compression;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+import org.apache.commons.io.IOUtils;
+import org.xerial.snappy.Snappy;
+
+/**
+ * Class to compress and decompress data using the Snappy codec.
+ * <p>
+ * Snappy compresses less than Gzip but is several times faster on both ends, the compressed data is written into a
+ * buffer reused per thread.
+ */
+public class SnappyCompressionCodec implements CompressionCodec {
+
+    public static final String CODEC_NAME = "snappy";
+
+    public byte[] compressBytes(byte[] header, byte[] data) throws IOException {
+        byte[] buffer = CodecBuffers.get(header.length + Snappy.maxCompressedLength(data.length));
+        System.arraycopy(header, 0, buffer, 0, header.length);
+        int length = Snappy.compress(data, 0, data.length, buffer, header.length);
+        return Arrays.copyOf(buffer, header.length + length);
+    }
+
+    public byte[] compressString(byte[] header, String data) throws IOException {
+        return compressBytes(header, data.getBytes(CodecFactory.UTF_8_ENCODING));
+    }
+
+    public String decompressToString(DataInputStream dais) throws IOException {
+        return new String(decompressToBytes(dais), CodecFactory.UTF_8_ENCODING);
+    }
+
+    public byte[] decompressToBytes(DataInputStream dais) throws IOException {
+        byte[] compressed = IOUtils.toByteArray(dais);
+        byte[] decompressed = new byte[Snappy.uncompressedLength(compressed, 0, compressed.length)];
+        Snappy.uncompress(compressed, 0, compressed.length, decompressed, 0);
+        return decompressed;
+    }
+}
@@ -81,6 +81,23 @@ public class CoordELEvaluator {
         return eval;
     }
 
+    /**
+     * Create a new Evaluator to resolve the EL functions and variables using action creation time (Phase 2), from the
+     * dataset and configuration variables compiled once for the coordinator job.
+     *
+     * @param appInst : Application Instance related information such as Action creation Time
+     * @param ds : Dataset of the event, see {@link #getDSObject(Element)}
+     * @param confVariables : configuration properties with their values trimmed
+     * @return configured ELEvaluator
+     */
+    public static ELEvaluator createInstancesELEvaluator(SyncCoordAction appInst, SyncCoordDataset ds,
+            Map<String, Object> confVariables) {
+        ELEvaluator eval = Services.get().get(ELService.class).createEvaluator("coord-action-create");
+        eval.getContext().setVariables(confVariables);
+        CoordELFunctions.configureEvaluator(eval, ds, appInst);
+        return eval;
+    }
+
     public static ELEvaluator createELEvaluatorForDataEcho(Configuration conf, String group,
                                                            HashMap<String, String> dataNameList) throws Exception {
         ELEvaluator eval = createELEvaluatorForGroup(conf, group);
@@ -274,7 +291,7 @@ public class CoordELEvaluator {
      * @return ds returns Dataset object using the Dataset XML information
      * @throws Exception if the Dataset object can't be created
      */
-    private static SyncCoordDataset getDSObject(Element eData) throws Exception {
+    public static SyncCoordDataset getDSObject(Element eData) throws Exception {
         SyncCoordDataset ds = new SyncCoordDataset();
         Element eDataset = eData.getChild("dataset", eData.getNamespace());
         // System.out.println("eDATA :"+ XmlUtils.prettyPrint(eData));
@@ -26,8 +26,10 @@ import org.apache.oozie.ErrorCode;
 import org.apache.oozie.client.OozieClient;
 import org.apache.oozie.command.CommandException;
 import org.apache.oozie.coord.input.logic.CoordInputLogicEvaluatorUtil;
+import org.apache.oozie.dependency.FSURIHandler;
 import org.apache.oozie.dependency.URIHandler;
 import org.apache.oozie.dependency.URIHandler.Context;
+import org.apache.oozie.dependency.URIHandlerException;
 import org.apache.oozie.service.Services;
 import org.apache.oozie.service.URIHandlerService;
 import org.apache.oozie.util.DateUtils;
@@ -353,6 +355,7 @@ public class CoordELFunctions {
             URIHandlerService uriService = Services.get().get(URIHandlerService.class);
             URIHandler uriHandler = null;
             Context uriContext = null;
+            CoordInstanceIndex index = CoordInstanceIndex.isEnabled() ? CoordInstanceIndex.get() : null;
             try {
                 while (instance >= checkedInstance && !currentThread.isInterrupted()) {
                     ELEvaluator uriEval = getUriEvaluator(nominalInstanceCal);
@@ -363,7 +366,7 @@ public class CoordELFunctions {
                         uriContext = uriHandler.getContext(uri, conf, user, true);
                     }
                     String uriWithDoneFlag = uriHandler.getURIWithDoneFlag(uriPath, doneFlag);
-                    if (uriHandler.exists(new URI(uriWithDoneFlag), uriContext)) {
+                    if (exists(uriHandler, new URI(uriWithDoneFlag), uriContext, index)) {
                         if (available == endOffset) {
                             LOG.debug("Matched future(" + available + "): " + uriWithDoneFlag);
                             resolved = true;
@@ -1143,6 +1146,17 @@ public class CoordELFunctions {
         return rawCalStr;
     }
 
+    /**
+     * Check if a dataset instance exists, from the instance index if given and the instance is on a file system.
+     */
+    private static boolean exists(URIHandler uriHandler, URI uri, Context uriContext, CoordInstanceIndex index)
+            throws URIHandlerException {
+        if (index != null && uriHandler instanceof FSURIHandler) {
+            return index.exists((FSURIHandler) uriHandler, uri, uriContext);
+        }
+        return uriHandler.exists(uri, uriContext);
+    }
+
     /**
      * @param offset
      * @return n-th available latest instance Date-Time for SYNC data-set
@@ -1189,6 +1203,7 @@ public class CoordELFunctions {
             URIHandlerService uriService = Services.get().get(URIHandlerService.class);
             URIHandler uriHandler = null;
             Context uriContext = null;
+            CoordInstanceIndex index = CoordInstanceIndex.isEnabled() ? CoordInstanceIndex.get() : null;
             try {
                 while (nominalInstanceCal.compareTo(initInstance) >= 0 && !currentThread.isInterrupted()) {
                     ELEvaluator uriEval = getUriEvaluator(nominalInstanceCal);
@@ -1199,7 +1214,7 @@ public class CoordELFunctions {
                         uriContext = uriHandler.getContext(uri, conf, user, true);
                     }
                     String uriWithDoneFlag = uriHandler.getURIWithDoneFlag(uriPath, doneFlag);
-                    if (uriHandler.exists(new URI(uriWithDoneFlag), uriContext)) {
+                    if (exists(uriHandler, new URI(uriWithDoneFlag), uriContext, index)) {
                         XLog.getLog(CoordELFunctions.class)
                         .debug("Found latest(" + available + "): " + uriWithDoneFlag);
                         if (available == startOffset) {
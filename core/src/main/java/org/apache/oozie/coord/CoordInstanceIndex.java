@@ -0,0 +1,138 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.oozie.coord;
+
+import java.net.URI;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.hadoop.fs.Path;
+import org.apache.oozie.dependency.FSURIHandler;
+import org.apache.oozie.dependency.URIHandler.Context;
+import org.apache.oozie.dependency.URIHandlerException;
+import org.apache.oozie.service.ConfigurationService;
+
+/**
+ * Index of the dataset instances present in the file system, used to resolve the <code>coord:latest</code> and
+ * <code>coord:future</code> instances without one file system call per candidate instance.
+ * <p>
+ * The index lists the parent directory of the candidate instances once and answers the existence of all the instances
+ * of that directory from the listing. An instance exists if its name is in the listing of its parent directory, which
+ * itself must be in the listing of its own parent, so that the missing instances of a dataset with a done flag do not
+ * cost a listing each.
+ * <p>
+ * An index opened with {@link #open()} is shared by all the resolutions of the thread until it is closed, the
+ * materialization of the actions of a job and the input check of an action open one. Otherwise each resolution uses
+ * its own index.
+ */
+public class CoordInstanceIndex {
+
+    /**
+     * Whether the latest and future instances of file system datasets are resolved from directory listings.
+     */
+    public static final String CONF_USE_LISTING = "oozie.service.ELService.latest-el.use-listing";
+
+    private static final ThreadLocal<CoordInstanceIndex> CURRENT = new ThreadLocal<CoordInstanceIndex>();
+
+    private final Map<String, Set<String>> listings = new HashMap<String, Set<String>>();
+    private int listCalls = 0;
+
+    /**
+     * Return if the latest and future instances are resolved from directory listings.
+     *
+     * @return <code>true</code> if the latest and future instances are resolved from directory listings.
+     */
+    public static boolean isEnabled() {
+        return ConfigurationService.getBoolean(CONF_USE_LISTING);
+    }
+
+    /**
+     * Open an index shared by the resolutions of the thread, if none is open already.
+     *
+     * @return <code>true</code> if an index was opened, it must then be closed with {@link #close()}.
+     */
+    public static boolean open() {
+        if (CURRENT.get() != null) {
+            return false;
+        }
+        CURRENT.set(new CoordInstanceIndex());
+        return true;
+    }
+
+    /**
+     * Close the index of the thread.
+     */
+    public static void close() {
+        CURRENT.remove();
+    }
+
+    /**
+     * Return the index of the thread if one is open, a new index otherwise.
+     *
+     * @return the index to resolve instances with.
+     */
+    public static CoordInstanceIndex get() {
+        CoordInstanceIndex index = CURRENT.get();
+        return (index != null) ? index : new CoordInstanceIndex();
+    }
+
+    /**
+     * Return if an instance exists, from the listings of its parent directories.
+     *
+     * @param handler handler of the file system of the instance
+     * @param uri URI of the instance, with its done flag if any
+     * @param context context to access the file system
+     * @return <code>true</code> if the instance exists.
+     * @throws URIHandlerException thrown if a directory could not be listed
+     */
+    public boolean exists(FSURIHandler handler, URI uri, Context context) throws URIHandlerException {
+        Path path = new Path(uri);
+        Path parent = path.getParent();
+        if (parent == null) {
+            return handler.exists(uri, context);
+        }
+        Path grandParent = parent.getParent();
+        if (grandParent != null && grandParent.depth() > 0
+                && !list(handler, grandParent, context).contains(parent.getName())) {
+            return false;
+        }
+        return list(handler, parent, context).contains(path.getName());
+    }
+
+    private Set<String> list(FSURIHandler handler, Path dir, Context context) throws URIHandlerException {
+        String key = dir.toString();
+        Set<String> names = listings.get(key);
+        if (names == null) {
+            names = handler.list(dir.toUri(), context);
+            listings.put(key, names);
+            listCalls++;
+        }
+        return names;
+    }
+
+    /**
+     * Return the number of directories listed by the index.
+     *
+     * @return the number of directories listed.
+     */
+    public int getListCalls() {
+        return listCalls;
+    }
+}
@@ -46,6 +46,7 @@ import org.apache.oozie.coord.CoordELFunctions;
 import org.apache.oozie.coord.CoordUtils;
 import org.apache.oozie.dependency.ActionDependency;
 import org.apache.oozie.dependency.DependencyChecker;
+import org.apache.oozie.dependency.DependencyProber;
 import org.apache.oozie.dependency.URIHandler;
 import org.apache.oozie.dependency.URIHandlerException;
 import org.apache.oozie.service.Services;
@@ -203,19 +204,31 @@ public class CoordOldInputDependency implements CoordInputDependency {
         boolean allExists = true;
         String existSeparator = "", nonExistSeparator = "";
         String user = ParamChecker.notEmpty(conf.get(OozieClient.USER_NAME), OozieClient.USER_NAME);
-        for (int i = 0; i < uriList.length; i++) {
-            if (allExists) {
-                allExists = pathExists(coordAction, uriList[i], conf, user);
-                log.info("[" + coordAction.getId() + "]::ActionInputCheck:: File:" + uriList[i] + ", Exists? :"
-                        + allExists);
-            }
-            if (allExists) {
-                existList.append(existSeparator).append(uriList[i]);
-                existSeparator = CoordELFunctions.INSTANCE_SEPARATOR;
+        DependencyProber.Probe probe = Services.get().get(URIHandlerService.class).newDependencyProbe(conf, user);
+        if (probe != null) {
+            probe.submit(Arrays.asList(uriList));
+        }
+        try {
+            for (int i = 0; i < uriList.length; i++) {
+                if (allExists) {
+                    allExists = pathExists(coordAction, uriList[i], conf, user, probe);
+                    log.info("[" + coordAction.getId() + "]::ActionInputCheck:: File:" + uriList[i] + ", Exists? :"
+                            + allExists);
+                }
+                if (allExists) {
+                    existList.append(existSeparator).append(uriList[i]);
+                    existSeparator = CoordELFunctions.INSTANCE_SEPARATOR;
+                }
+                else {
+                    nonExistList.append(nonExistSeparator).append(uriList[i]);
+                    nonExistSeparator = CoordELFunctions.INSTANCE_SEPARATOR;
+                }
             }
-            else {
-                nonExistList.append(nonExistSeparator).append(uriList[i]);
-                nonExistSeparator = CoordELFunctions.INSTANCE_SEPARATOR;
+        }
+        finally {
+            // the first missing path decides the outcome, the checks of the next paths are not needed
+            if (probe != null) {
+                probe.cancel();
             }
         }
         return allExists;
@@ -223,8 +236,16 @@ public class CoordOldInputDependency implements CoordInputDependency {
 
     public boolean pathExists(CoordinatorActionBean coordAction, String sPath, Configuration actionConf, String user)
             throws IOException {
+        return pathExists(coordAction, sPath, actionConf, user, null);
+    }
+
+    private boolean pathExists(CoordinatorActionBean coordAction, String sPath, Configuration actionConf, String user,
+            DependencyProber.Probe probe) throws IOException {
         log.debug("checking for the file " + sPath);
         try {
+            if (probe != null) {
+                return probe.exists(sPath);
+            }
             return CoordCommandUtils.pathExists(sPath, actionConf, user);
         }
         catch (URIHandlerException e) {
@@ -31,14 +31,19 @@ import java.util.Map;
 import org.apache.hadoop.conf.Configuration;
 import org.apache.oozie.CoordinatorActionBean;
 import org.apache.oozie.ErrorCode;
+import org.apache.oozie.client.OozieClient;
 import org.apache.oozie.command.coord.CoordCommandUtils;
 import org.apache.oozie.coord.input.dependency.AbstractCoordInputDependency;
 import org.apache.oozie.coord.input.dependency.CoordInputDependency;
 import org.apache.oozie.coord.input.dependency.CoordInputInstance;
 import org.apache.oozie.coord.input.dependency.CoordPullInputDependency;
 import org.apache.oozie.coord.input.logic.CoordInputLogicEvaluatorResult.STATUS;
+import org.apache.oozie.dependency.DependencyProber;
 import org.apache.oozie.dependency.URIHandlerException;
+import org.apache.oozie.service.Services;
+import org.apache.oozie.service.URIHandlerService;
 import org.apache.oozie.util.LogUtils;
+import org.apache.oozie.util.ParamChecker;
 import org.apache.oozie.util.XConfiguration;
 import org.apache.oozie.util.XLog;
 
@@ -52,6 +57,7 @@ public class CoordInputLogicEvaluatorPhaseOne implements CoordInputLogicEvaluato
     protected Map<String, List<CoordInputInstance>> dependencyMap;
     protected CoordinatorActionBean coordAction = null;
     protected XLog log = XLog.getLog(getClass());
+    private DependencyProber.Probe probe;
 
     public CoordInputLogicEvaluatorPhaseOne(CoordinatorActionBean coordAction) {
         this(coordAction, coordAction.getPullInputDependencies());
@@ -98,6 +104,7 @@ public class CoordInputLogicEvaluatorPhaseOne implements CoordInputLogicEvaluato
         try {
             Configuration actionConf = new XConfiguration(new StringReader(coordAction.getRunConf()));
             List<CoordInputInstance> firstInputSetList = coordInputDependency.getDependencyMap().get(dataSet);
+            submitProbes(firstInputSetList, actionConf);
             for (int i = 0; i < firstInputSetList.size(); i++) {
                 CoordInputInstance coordInputInstance = firstInputSetList.get(i);
                 if (!coordInputInstance.isAvailable()) {
@@ -123,6 +130,9 @@ public class CoordInputLogicEvaluatorPhaseOne implements CoordInputLogicEvaluato
             log.error(e);
             throw new RuntimeException(ErrorCode.E1028.format("Error executing input function " + e.getMessage()));
         }
+        finally {
+            cancelProbes();
+        }
         CoordInputLogicEvaluatorResult retData = getEvalResult(allFound, min, wait, availableList);
 
         log.debug("Resolved status of Data set [{0}] with min [{1}] and wait [{2}]  =  [{3}]", dataSet, min, wait,
@@ -159,6 +169,7 @@ public class CoordInputLogicEvaluatorPhaseOne implements CoordInputLogicEvaluato
             Configuration jobConf = new XConfiguration(new StringReader(coordAction.getRunConf()));
             String firstInputSet = inputSets[0];
             List<CoordInputInstance> firstInputSetList = coordInputDependency.getDependencyMap().get(firstInputSet);
+            submitProbes(firstInputSetList, jobConf);
             for (int i = 0; i < firstInputSetList.size(); i++) {
                 CoordInputInstance coordInputInstance = firstInputSetList.get(i);
                 boolean found = false;
@@ -212,6 +223,9 @@ public class CoordInputLogicEvaluatorPhaseOne implements CoordInputLogicEvaluato
             log.error(e);
             throw new RuntimeException(ErrorCode.E1028.format("Error executing combine function " + e.getMessage()));
         }
+        finally {
+            cancelProbes();
+        }
         boolean allFound = availableList.size() == coordInputDependency.getDependencyMap().get(inputSets[0]).size();
         CoordInputLogicEvaluatorResult retData = getEvalResult(allFound, min, wait, availableList);
         log.debug("Resolved status of Data set [{0}] with min [{1}] and wait [{2}]  =  [{3}]",
@@ -259,10 +273,45 @@ public class CoordInputLogicEvaluatorPhaseOne implements CoordInputLogicEvaluato
 
     protected boolean pathExists(String sPath, Configuration jobConf) throws IOException, URISyntaxException,
             URIHandlerException {
+        if (probe != null) {
+            return probe.exists(sPath);
+        }
         return CoordCommandUtils.pathExists(sPath, jobConf);
 
     }
 
+    /**
+     * Start checking the missing instances of a dataset asynchronously, if enabled. The checks not read by
+     * {@link #pathExists(String, Configuration)} once the outcome of the function is known are cancelled by
+     * {@link #cancelProbes()}.
+     *
+     * @param inputInstances the instances of the dataset
+     * @param jobConf the action configuration
+     */
+    protected void submitProbes(List<CoordInputInstance> inputInstances, Configuration jobConf) {
+        List<String> missing = new ArrayList<String>();
+        for (CoordInputInstance coordInputInstance : inputInstances) {
+            if (!coordInputInstance.isAvailable()) {
+                missing.add(coordInputInstance.getInputDataInstance());
+            }
+        }
+        if (missing.size() < 2) {
+            return;
+        }
+        String user = ParamChecker.notEmpty(jobConf.get(OozieClient.USER_NAME), OozieClient.USER_NAME);
+        probe = Services.get().get(URIHandlerService.class).newDependencyProbe(jobConf, user);
+        if (probe != null) {
+            probe.submit(missing);
+        }
+    }
+
+    protected void cancelProbes() {
+        if (probe != null) {
+            probe.cancel();
+            probe = null;
+        }
+    }
+
     public CoordInputLogicEvaluatorResult getResultFromPullPush(CoordinatorActionBean coordAction, String dataSet, int min) {
         CoordInputLogicEvaluatorResult result = new CoordInputLogicEvaluatorResult();
         CoordInputLogicEvaluatorResult pullResult = getEvalResult(
@@ -0,0 +1,315 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.oozie.dependency;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.oozie.service.ConfigurationService;
+import org.apache.oozie.service.Service;
+import org.apache.oozie.service.Services;
+import org.apache.oozie.service.URIHandlerService;
+import org.apache.oozie.util.Instrumentation;
+import org.apache.oozie.util.NamedThreadFactory;
+
+/**
+ * Server-wide pool checking the existence of coordinator action dependencies asynchronously, shared by all the input
+ * checks.
+ * <p>
+ * An input check opens a {@link Probe}, submits the missing dependencies it is about to check and then reads their
+ * existence in order, so that the checks run concurrently while the outcome is decided as with serial checks. Once
+ * the outcome is known the remaining checks are cancelled. At most {@link #CONF_AUTHORITY_CONCURRENCY} checks of the
+ * same scheme and authority, the same NameNode for HDFS, run at a time; the dependencies that cannot be checked
+ * asynchronously, because of that limit or because the pool queue is full, are checked on the command thread when
+ * read.
+ * <p>
+ * The latency of the checks is recorded per URI scheme as the <code>dependency_probe</code> timers.
+ */
+public class DependencyProber {
+
+    public static final String CONF_PREFIX = Service.CONF_PREFIX + "URIHandlerService.probe.";
+
+    /**
+     * Number of threads checking dependencies, 0 to check them on the command thread.
+     */
+    public static final String CONF_THREADS = CONF_PREFIX + "threads";
+
+    /**
+     * Maximum number of dependency checks waiting for a thread.
+     */
+    public static final String CONF_QUEUE_SIZE = CONF_PREFIX + "queue.size";
+
+    /**
+     * Maximum number of concurrent dependency checks of the same scheme and authority.
+     */
+    public static final String CONF_AUTHORITY_CONCURRENCY = CONF_PREFIX + "authority.concurrency";
+
+    public static final String INSTRUMENTATION_GROUP = "dependency_probe";
+
+    private final ThreadPoolExecutor executor;
+    private final int authorityConcurrency;
+    private final ConcurrentMap<String, Semaphore> permits = new ConcurrentHashMap<String, Semaphore>();
+    private volatile Instrumentation instrumentation;
+
+    public DependencyProber(int threads, int queueSize, int authorityConcurrency) {
+        executor = new ThreadPoolExecutor(threads, threads, 10, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>(queueSize), new NamedThreadFactory("DependencyProber"));
+        executor.allowCoreThreadTimeOut(true);
+        this.authorityConcurrency = authorityConcurrency;
+    }
+
+    /**
+     * Create the prober configured in the Oozie configuration, if enabled.
+     *
+     * @param conf Oozie configuration
+     * @return the prober, <code>null</code> if dependencies are checked on the command thread.
+     */
+    public static DependencyProber create(Configuration conf) {
+        int threads = ConfigurationService.getInt(conf, CONF_THREADS);
+        if (threads <= 0) {
+            return null;
+        }
+        return new DependencyProber(threads, ConfigurationService.getInt(conf, CONF_QUEUE_SIZE),
+                ConfigurationService.getInt(conf, CONF_AUTHORITY_CONCURRENCY));
+    }
+
+    /**
+     * Record the latency of the checks in an instrumentation.
+     *
+     * @param instr instrumentation to use.
+     */
+    public void instrument(Instrumentation instr) {
+        instrumentation = instr;
+        instr.addVariable(INSTRUMENTATION_GROUP, "queued", new Instrumentation.Variable<Long>() {
+            @Override
+            public Long getValue() {
+                return (long) executor.getQueue().size();
+            }
+        });
+    }
+
+    /**
+     * Stop the threads, the pending checks are abandoned.
+     */
+    public void destroy() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Open a probe to check dependencies of an input check.
+     *
+     * @param conf configuration to access the dependencies
+     * @param user user to access the dependencies as
+     * @return the probe.
+     */
+    public Probe newProbe(Configuration conf, String user) {
+        return new Probe(conf, user);
+    }
+
+    /**
+     * Return the number of concurrent checks of a scheme and authority that can still be started.
+     *
+     * @param uri URI of the scheme and authority
+     * @return the number of available permits.
+     */
+    public int getAvailablePermits(URI uri) {
+        return getPermits(uri).availablePermits();
+    }
+
+    private Semaphore getPermits(URI uri) {
+        String key = uri.getScheme() + "://" + uri.getAuthority();
+        Semaphore semaphore = permits.get(key);
+        if (semaphore == null) {
+            permits.putIfAbsent(key, new Semaphore(authorityConcurrency));
+            semaphore = permits.get(key);
+        }
+        return semaphore;
+    }
+
+    private boolean check(URI uri, Configuration conf, String user) throws URIHandlerException {
+        URIHandler handler = Services.get().get(URIHandlerService.class).getURIHandler(uri);
+        Instrumentation.Cron cron = new Instrumentation.Cron();
+        cron.start();
+        try {
+            return handler.exists(uri, conf, user);
+        }
+        finally {
+            cron.stop();
+            Instrumentation instr = instrumentation;
+            if (instr != null) {
+                instr.addCron(INSTRUMENTATION_GROUP, (uri.getScheme() != null) ? uri.getScheme() : "default", cron);
+            }
+        }
+    }
+
+    /**
+     * Checks of the dependencies of one input check, used by a single thread.
+     */
+    public class Probe {
+        private final Configuration conf;
+        private final String user;
+        private final Map<String, ProbeTask> pending = new HashMap<String, ProbeTask>();
+
+        private Probe(Configuration conf, String user) {
+            this.conf = conf;
+            this.user = user;
+        }
+
+        /**
+         * Start checking dependencies asynchronously, as far as the concurrency limits allow.
+         *
+         * @param uris URIs of the dependencies
+         */
+        public void submit(Collection<String> uris) {
+            for (String uriStr : uris) {
+                if (pending.containsKey(uriStr)) {
+                    continue;
+                }
+                final URI uri;
+                try {
+                    uri = new URI(uriStr);
+                }
+                catch (URISyntaxException ex) {
+                    // reported when read
+                    continue;
+                }
+                final Semaphore semaphore = getPermits(uri);
+                if (!semaphore.tryAcquire()) {
+                    continue;
+                }
+                ProbeTask task = new ProbeTask(uri, semaphore);
+                try {
+                    executor.execute(task);
+                    pending.put(uriStr, task);
+                }
+                catch (RejectedExecutionException ex) {
+                    semaphore.release();
+                    break;
+                }
+            }
+        }
+
+        /**
+         * Return if a dependency exists, waiting for its asynchronous check if submitted, checking it otherwise.
+         *
+         * @param uriStr URI of the dependency
+         * @return <code>true</code> if the dependency exists.
+         * @throws IOException thrown if the thread was interrupted
+         * @throws URISyntaxException thrown if the URI is invalid
+         * @throws URIHandlerException thrown if the dependency could not be checked
+         */
+        public boolean exists(String uriStr) throws IOException, URISyntaxException, URIHandlerException {
+            Future<Boolean> future = pending.remove(uriStr);
+            if (future != null) {
+                try {
+                    return future.get();
+                }
+                catch (CancellationException ex) {
+                    // checked below
+                }
+                catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException(ex);
+                }
+                catch (ExecutionException ex) {
+                    if (ex.getCause() instanceof URIHandlerException) {
+                        throw (URIHandlerException) ex.getCause();
+                    }
+                    if (ex.getCause() instanceof RuntimeException) {
+                        throw (RuntimeException) ex.getCause();
+                    }
+                    throw new IOException(ex.getCause());
+                }
+            }
+            return check(new URI(uriStr), conf, user);
+        }
+
+        /**
+         * Cancel the checks not read, once the outcome of the input check is known.
+         */
+        public void cancel() {
+            for (ProbeTask task : pending.values()) {
+                task.cancel(false);
+                if (task.claim()) {
+                    // never started, the check will not run
+                    executor.remove(task);
+                    task.semaphore.release();
+                }
+            }
+            pending.clear();
+        }
+
+        /**
+         * Asynchronous check of a dependency, holding a permit of its scheme and authority.
+         * <p>
+         * The permit is released once, either by the check when it ran or by {@link #cancel()} when the check was
+         * cancelled before it started.
+         */
+        private class ProbeTask extends FutureTask<Boolean> {
+            private final Semaphore semaphore;
+            private final AtomicBoolean started;
+
+            private ProbeTask(final URI uri, final Semaphore semaphore) {
+                this(uri, semaphore, new AtomicBoolean());
+            }
+
+            private ProbeTask(final URI uri, final Semaphore semaphore, final AtomicBoolean started) {
+                super(new Callable<Boolean>() {
+                    @Override
+                    public Boolean call() throws URIHandlerException {
+                        if (!started.compareAndSet(false, true)) {
+                            // cancelled, the permit was released by the cancel
+                            return false;
+                        }
+                        try {
+                            return check(uri, conf, user);
+                        }
+                        finally {
+                            semaphore.release();
+                        }
+                    }
+                });
+                this.semaphore = semaphore;
+                this.started = started;
+            }
+
+            private boolean claim() {
+                return started.compareAndSet(false, true);
+            }
+        }
+    }
+}
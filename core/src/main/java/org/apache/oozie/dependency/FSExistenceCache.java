@@ -0,0 +1,282 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.oozie.dependency;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.oozie.service.ConfigurationService;
+import org.apache.oozie.service.Service;
+
+import com.google.common.base.Objects;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+
+/**
+ * Server-wide cache of the existence of file system paths, shared by the data availability checks of all the
+ * coordinator actions.
+ * <p>
+ * Existing paths are cached for {@link #CONF_POSITIVE_TTL}, as data is rarely removed while actions wait for it,
+ * missing paths only for {@link #CONF_NEGATIVE_TTL}, the delay after which new data is noticed. With
+ * {@link #CONF_LIST_PARENT}, the paths are looked up in the cached listing of their parent directory, so that the
+ * probes of the instances of a dataset in the same directory cost one <code>listStatus</code> call. Concurrent probes of
+ * the same path or directory wait for a single file system call.
+ * <p>
+ * Entries are kept per user, so a path seen by one user is never reported to another user, who may not be allowed to
+ * see it.
+ */
+public class FSExistenceCache {
+
+    public static final String CONF_PREFIX = Service.CONF_PREFIX + "URIHandlerService.fs.exists.cache.";
+
+    /**
+     * Whether the existence of file system paths is cached.
+     */
+    public static final String CONF_ENABLED = CONF_PREFIX + "enabled";
+
+    /**
+     * Maximum number of existing paths, missing paths and directory listings cached each.
+     */
+    public static final String CONF_SIZE = CONF_PREFIX + "size";
+
+    /**
+     * Time, in seconds, existing paths are cached for.
+     */
+    public static final String CONF_POSITIVE_TTL = CONF_PREFIX + "positive.ttl";
+
+    /**
+     * Time, in seconds, missing paths and directory listings are cached for.
+     */
+    public static final String CONF_NEGATIVE_TTL = CONF_PREFIX + "negative.ttl";
+
+    /**
+     * Whether paths are looked up in the listing of their parent directory.
+     */
+    public static final String CONF_LIST_PARENT = CONF_PREFIX + "list.parent";
+
+    private final Cache<Key, Boolean> existing;
+    private final Cache<Key, Boolean> probes;
+    private final Cache<Key, Set<String>> listings;
+    private final boolean listParent;
+    private final AtomicLong lookups = new AtomicLong();
+    private final AtomicLong fsCalls = new AtomicLong();
+
+    public FSExistenceCache(int size, long positiveTtl, long negativeTtl, boolean listParent) {
+        existing = CacheBuilder.newBuilder().maximumSize(size).expireAfterWrite(positiveTtl, TimeUnit.SECONDS).build();
+        probes = CacheBuilder.newBuilder().maximumSize(size).expireAfterWrite(negativeTtl, TimeUnit.SECONDS).build();
+        listings = CacheBuilder.newBuilder().maximumSize(size).expireAfterWrite(negativeTtl, TimeUnit.SECONDS)
+                .build();
+        this.listParent = listParent;
+    }
+
+    /**
+     * Create the cache configured in the Oozie configuration, if enabled.
+     *
+     * @param conf Oozie configuration
+     * @return the cache, <code>null</code> if disabled.
+     */
+    public static FSExistenceCache create(Configuration conf) {
+        if (!ConfigurationService.getBoolean(conf, CONF_ENABLED)) {
+            return null;
+        }
+        return new FSExistenceCache(ConfigurationService.getInt(conf, CONF_SIZE),
+                ConfigurationService.getLong(conf, CONF_POSITIVE_TTL),
+                ConfigurationService.getLong(conf, CONF_NEGATIVE_TTL),
+                ConfigurationService.getBoolean(conf, CONF_LIST_PARENT));
+    }
+
+    /**
+     * Return if a path exists for a user, from the cache or the file system.
+     *
+     * @param user user the file system is accessed as
+     * @param fs file system of the path, accessed as the user
+     * @param path fully qualified path
+     * @return <code>true</code> if the path exists.
+     * @throws IOException thrown if the file system could not be accessed
+     */
+    public boolean exists(String user, final FileSystem fs, final Path path) throws IOException {
+        lookups.incrementAndGet();
+        Key key = new Key(user, path.toString());
+        if (existing.getIfPresent(key) != null) {
+            return true;
+        }
+        boolean exists;
+        final Path parent = path.getParent();
+        if (listParent && parent != null) {
+            exists = get(listings, new Key(user, parent.toString()), new Callable<Set<String>>() {
+                @Override
+                public Set<String> call() throws IOException {
+                    return list(fs, parent);
+                }
+            }).contains(path.getName());
+        }
+        else {
+            exists = get(probes, key, new Callable<Boolean>() {
+                @Override
+                public Boolean call() throws IOException {
+                    fsCalls.incrementAndGet();
+                    return fs.exists(path);
+                }
+            });
+        }
+        if (exists) {
+            existing.put(key, Boolean.TRUE);
+        }
+        return exists;
+    }
+
+    private Set<String> list(FileSystem fs, Path dir) throws IOException {
+        fsCalls.incrementAndGet();
+        FileStatus[] statuses;
+        try {
+            statuses = fs.listStatus(dir);
+        }
+        catch (FileNotFoundException ex) {
+            statuses = null;
+        }
+        if (statuses == null) {
+            return Collections.emptySet();
+        }
+        Set<String> names = new HashSet<String>();
+        for (FileStatus status : statuses) {
+            names.add(status.getPath().getName());
+        }
+        return names;
+    }
+
+    private static <V> V get(Cache<Key, V> cache, Key key, Callable<V> loader) throws IOException {
+        try {
+            return cache.get(key, loader);
+        }
+        catch (ExecutionException ex) {
+            if (ex.getCause() instanceof IOException) {
+                throw (IOException) ex.getCause();
+            }
+            throw new IOException(ex.getCause());
+        }
+        catch (UncheckedExecutionException ex) {
+            if (ex.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) ex.getCause();
+            }
+            throw ex;
+        }
+    }
+
+    /**
+     * Forget a path and the paths below it for all the users, when it is deleted.
+     *
+     * @param path fully qualified path
+     */
+    public void invalidate(Path path) {
+        String pathKey = path.toString();
+        invalidate(existing, pathKey, true);
+        invalidate(probes, pathKey, true);
+        invalidate(listings, pathKey, true);
+        if (path.getParent() != null) {
+            invalidate(listings, path.getParent().toString(), false);
+        }
+    }
+
+    private static void invalidate(Cache<Key, ?> cache, String path, boolean below) {
+        String prefix = path + Path.SEPARATOR;
+        Iterator<Key> it = cache.asMap().keySet().iterator();
+        while (it.hasNext()) {
+            String cached = it.next().path;
+            if (cached.equals(path) || (below && cached.startsWith(prefix))) {
+                it.remove();
+            }
+        }
+    }
+
+    /**
+     * Return the number of existence lookups.
+     *
+     * @return the number of lookups.
+     */
+    public long getLookups() {
+        return lookups.get();
+    }
+
+    /**
+     * Return the number of lookups answered by the cache, without a file system call.
+     *
+     * @return the number of cache hits.
+     */
+    public long getHits() {
+        return Math.max(0, lookups.get() - fsCalls.get());
+    }
+
+    /**
+     * Return the number of file system calls, <code>exists</code> or <code>listStatus</code>.
+     *
+     * @return the number of cache misses.
+     */
+    public long getMisses() {
+        return fsCalls.get();
+    }
+
+    /**
+     * Return the number of existing paths cached.
+     *
+     * @return the number of existing paths cached.
+     */
+    public long getSize() {
+        return existing.size();
+    }
+
+    /**
+     * Cache key, a path as seen by a user.
+     */
+    private static class Key {
+        private final String user;
+        private final String path;
+
+        Key(String user, String path) {
+            this.user = user;
+            this.path = path;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) obj;
+            return Objects.equal(user, other.user) && path.equals(other.path);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hashCode(user, path);
+        }
+    }
+}
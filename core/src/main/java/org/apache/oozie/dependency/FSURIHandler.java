@@ -18,17 +18,22 @@
 
 package org.apache.oozie.dependency;
 
+import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.net.URI;
+import java.util.Collections;
 import java.util.List;
 import java.util.Set;
+import java.util.TreeSet;
 
 import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileStatus;
 import org.apache.hadoop.fs.FileSystem;
 import org.apache.hadoop.fs.Path;
 import org.apache.oozie.ErrorCode;
 import org.apache.oozie.action.hadoop.FSLauncherURIHandler;
 import org.apache.oozie.action.hadoop.LauncherURIHandler;
+import org.apache.oozie.service.FSDependencyManagerService;
 import org.apache.oozie.service.HadoopAccessorException;
 import org.apache.oozie.service.HadoopAccessorService;
 import org.apache.oozie.service.Services;
@@ -38,12 +43,23 @@ public class FSURIHandler implements URIHandler {
     private HadoopAccessorService service;
     private Set<String> supportedSchemes;
     private List<Class<?>> classesToShip;
+    private FSExistenceCache existenceCache;
 
     @Override
     public void init(Configuration conf) {
         service = Services.get().get(HadoopAccessorService.class);
         supportedSchemes = service.getSupportedSchemes();
         classesToShip = new FSLauncherURIHandler().getClassesForLauncher();
+        existenceCache = FSExistenceCache.create(conf);
+    }
+
+    /**
+     * Return the cache of the existence of paths.
+     *
+     * @return the cache, <code>null</code> if disabled.
+     */
+    public FSExistenceCache getExistenceCache() {
+        return existenceCache;
     }
 
     @Override
@@ -69,12 +85,24 @@ public class FSURIHandler implements URIHandler {
     @Override
     public void registerForNotification(URI uri, Configuration conf, String user, String actionID)
             throws URIHandlerException {
-        throw new UnsupportedOperationException("Notifications are not supported for " + uri.getScheme());
+        getDependencyManager(uri).addMissingDependency(uri, conf, user, actionID);
     }
 
     @Override
     public boolean unregisterFromNotification(URI uri, String actionID) {
-        throw new UnsupportedOperationException("Notifications are not supported for " + uri.getScheme());
+        return getDependencyManager(uri).removeMissingDependency(uri, actionID);
+    }
+
+    /**
+     * Notifications are supported if {@link FSDependencyManagerService} is enabled, the dependencies are still checked
+     * by polling, the notifications only trigger the checks earlier.
+     */
+    private FSDependencyManagerService getDependencyManager(URI uri) {
+        FSDependencyManagerService service = Services.get().get(FSDependencyManagerService.class);
+        if (service == null) {
+            throw new UnsupportedOperationException("Notifications are not supported for " + uri.getScheme());
+        }
+        return service;
     }
 
     @Override
@@ -87,7 +115,7 @@ public class FSURIHandler implements URIHandler {
     public boolean exists(URI uri, Context context) throws URIHandlerException {
         try {
             FileSystem fs = ((FSContext) context).getFileSystem();
-            return fs.exists(getNormalizedPath(uri));
+            return exists(context.getUser(), fs, getNormalizedPath(uri));
         }
         catch (IOException e) {
             throw new HadoopAccessorException(ErrorCode.E0902, e);
@@ -98,7 +126,7 @@ public class FSURIHandler implements URIHandler {
     public boolean exists(URI uri, Configuration conf, String user) throws URIHandlerException {
         try {
             FileSystem fs = getFileSystem(uri, conf, user);
-            return fs.exists(getNormalizedPath(uri));
+            return exists(user, fs, getNormalizedPath(uri));
         }
         catch (HadoopAccessorException e) {
             if (ErrorCode.E0902.equals(e.getErrorCode()) && e.getMessage() != null
@@ -114,6 +142,35 @@ public class FSURIHandler implements URIHandler {
         }
     }
 
+    /**
+     * Return the names of the entries of a directory, with a single <code>listStatus</code> call.
+     *
+     * @param uri URI of the directory
+     * @param context context to access the directory
+     * @return the sorted names of the entries, empty if the directory does not exist.
+     * @throws URIHandlerException thrown if the directory could not be listed
+     */
+    public Set<String> list(URI uri, Context context) throws URIHandlerException {
+        try {
+            FileSystem fs = ((FSContext) context).getFileSystem();
+            FileStatus[] statuses = fs.listStatus(getNormalizedPath(uri));
+            if (statuses == null) {
+                return Collections.emptySet();
+            }
+            Set<String> names = new TreeSet<String>();
+            for (FileStatus status : statuses) {
+                names.add(status.getPath().getName());
+            }
+            return names;
+        }
+        catch (FileNotFoundException e) {
+            return Collections.emptySet();
+        }
+        catch (IOException e) {
+            throw new HadoopAccessorException(ErrorCode.E0902, e);
+        }
+    }
+
     @Override
     public String getURIWithDoneFlag(String uri, String doneFlag) throws URIHandlerException {
         if (doneFlag.length() > 0) {
@@ -146,6 +203,7 @@ public class FSURIHandler implements URIHandler {
         Path path = new Path(uri);
         try {
             if (fs.exists(path)) {
+                invalidate(path);
                 if (!fs.delete(path, true)) {
                     throw new URIHandlerException(ErrorCode.E0907, path.toString());
                 }
@@ -162,6 +220,7 @@ public class FSURIHandler implements URIHandler {
         FileSystem fs = getFileSystem(uri, conf, user);
         try{
             if (fs.exists(path)) {
+                invalidate(path);
                 if (!fs.delete(path, true)) {
                     throw new URIHandlerException(ErrorCode.E0907, path.toString());
                 }
@@ -171,6 +230,16 @@ public class FSURIHandler implements URIHandler {
         }
     }
 
+    private boolean exists(String user, FileSystem fs, Path path) throws IOException {
+        return (existenceCache != null) ? existenceCache.exists(user, fs, path) : fs.exists(path);
+    }
+
+    private void invalidate(Path path) {
+        if (existenceCache != null) {
+            existenceCache.invalidate(getNormalizedPath(path.toUri()));
+        }
+    }
+
     private Path getNormalizedPath(URI uri) {
         // Normalizes uri path replacing // with / in the path which users specify by mistake
         return new Path(uri.getScheme(), uri.getAuthority(), uri.getPath());
@@ -0,0 +1,76 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.oozie.dependency.fs;
+
+import java.net.URI;
+import java.util.Set;
+
+import org.apache.hadoop.conf.Configuration;
+
+/**
+ * Source of the file system events feeding the index of the actions waiting for file system dependencies.
+ * <p>
+ * The watcher is told the directories holding missing dependencies and reports the entries of a directory when they
+ * may have changed. It may report entries that did not change, the index ignores the entries nobody waits for.
+ */
+public interface FSDependencyWatcher {
+
+    /**
+     * Receiver of the entries of the watched directories.
+     */
+    interface Listener {
+
+        /**
+         * Report the entries present in a watched directory.
+         *
+         * @param dir watched directory
+         * @param names names of the entries of the directory
+         */
+        void filesAvailable(URI dir, Set<String> names);
+    }
+
+    /**
+     * Initialize the watcher.
+     *
+     * @param conf Oozie configuration
+     * @param listener receiver of the entries of the watched directories
+     */
+    void init(Configuration conf, Listener listener);
+
+    /**
+     * Start watching a directory, if not watched already.
+     *
+     * @param dir directory to watch, it may not exist yet
+     * @param conf configuration to access the directory
+     * @param user user to access the directory as
+     */
+    void watch(URI dir, Configuration conf, String user);
+
+    /**
+     * Stop watching a directory.
+     *
+     * @param dir watched directory
+     */
+    void unwatch(URI dir);
+
+    /**
+     * Stop watching all directories.
+     */
+    void destroy();
+}
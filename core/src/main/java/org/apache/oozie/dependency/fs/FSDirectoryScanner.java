@@ -0,0 +1,135 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.oozie.dependency.fs;
+
+import java.net.URI;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.oozie.dependency.FSURIHandler;
+import org.apache.oozie.dependency.URIHandler;
+import org.apache.oozie.service.ConfigurationService;
+import org.apache.oozie.service.SchedulerService;
+import org.apache.oozie.service.Service;
+import org.apache.oozie.service.Services;
+import org.apache.oozie.service.URIHandlerService;
+import org.apache.oozie.util.XLog;
+
+/**
+ * Watcher listing the watched directories periodically, with a single scanner shared by all the waiting actions: each
+ * watched directory costs one <code>listStatus</code> call per scan however many actions wait for entries of it.
+ * <p>
+ * Works with any file system, at the cost of noticing new entries up to {@link #CONF_SCAN_INTERVAL} late.
+ */
+public class FSDirectoryScanner implements FSDependencyWatcher, Runnable {
+
+    public static final String CONF_PREFIX = Service.CONF_PREFIX + "FSDependencyManagerService.scanner.";
+
+    /**
+     * Interval, in seconds, between two scans of the watched directories.
+     */
+    public static final String CONF_SCAN_INTERVAL = CONF_PREFIX + "interval";
+
+    private static final XLog LOG = XLog.getLog(FSDirectoryScanner.class);
+
+    private final Map<URI, WatchedDir> watched = new ConcurrentHashMap<URI, WatchedDir>();
+    private Listener listener;
+
+    private static class WatchedDir {
+        private final Configuration conf;
+        private final String user;
+
+        private WatchedDir(Configuration conf, String user) {
+            this.conf = conf;
+            this.user = user;
+        }
+    }
+
+    @Override
+    public void init(Configuration conf, Listener listener) {
+        this.listener = listener;
+        int interval = ConfigurationService.getInt(conf, CONF_SCAN_INTERVAL);
+        Services.get().get(SchedulerService.class).schedule(this, interval, interval, SchedulerService.Unit.SEC);
+    }
+
+    @Override
+    public void watch(URI dir, Configuration conf, String user) {
+        if (!watched.containsKey(dir)) {
+            watched.put(dir, new WatchedDir(conf, user));
+        }
+    }
+
+    @Override
+    public void unwatch(URI dir) {
+        watched.remove(dir);
+    }
+
+    @Override
+    public void destroy() {
+        watched.clear();
+    }
+
+    /**
+     * Return the number of watched directories.
+     *
+     * @return the number of watched directories.
+     */
+    public int getWatchedCount() {
+        return watched.size();
+    }
+
+    /**
+     * List the watched directories and report their entries.
+     */
+    @Override
+    public void run() {
+        if (Thread.currentThread().isInterrupted()) {
+            return;
+        }
+        URIHandlerService uriService = Services.get().get(URIHandlerService.class);
+        for (Map.Entry<URI, WatchedDir> entry : watched.entrySet()) {
+            URI dir = entry.getKey();
+            try {
+                URIHandler handler = uriService.getURIHandler(dir);
+                if (!(handler instanceof FSURIHandler)) {
+                    LOG.warn("Cannot scan [{0}], not a file system directory", dir);
+                    watched.remove(dir);
+                    continue;
+                }
+                URIHandler.Context context = handler.getContext(dir, entry.getValue().conf, entry.getValue().user,
+                        true);
+                Set<String> names;
+                try {
+                    names = ((FSURIHandler) handler).list(dir, context);
+                }
+                finally {
+                    context.destroy();
+                }
+                if (!names.isEmpty()) {
+                    listener.filesAvailable(dir, names);
+                }
+            }
+            catch (Exception ex) {
+                LOG.warn("Error scanning directory [{0}]", dir, ex);
+            }
+        }
+    }
+}
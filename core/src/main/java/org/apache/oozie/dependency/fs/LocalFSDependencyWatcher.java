@@ -0,0 +1,152 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.oozie.dependency.fs;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.oozie.util.XLog;
+
+/**
+ * Watcher of the directories of the local file system, notified by the operating system of the new entries.
+ * <p>
+ * Directories that do not exist yet are watched through their nearest existing parent. Meant for tests and single
+ * host deployments, the dependencies must be <code>file</code> URIs.
+ */
+public class LocalFSDependencyWatcher implements FSDependencyWatcher, Runnable {
+
+    private static final XLog LOG = XLog.getLog(LocalFSDependencyWatcher.class);
+
+    private final Map<URI, Path> watched = new ConcurrentHashMap<URI, Path>();
+    private final Set<Path> registered = Collections.synchronizedSet(new HashSet<Path>());
+    private Listener listener;
+    private WatchService watchService;
+    private Thread thread;
+
+    @Override
+    public void init(Configuration conf, Listener listener) {
+        this.listener = listener;
+        try {
+            watchService = FileSystems.getDefault().newWatchService();
+        }
+        catch (IOException ex) {
+            throw new IllegalStateException("Cannot watch the local file system", ex);
+        }
+        thread = new Thread(this, "LocalFSDependencyWatcher");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    @Override
+    public void watch(URI dir, Configuration conf, String user) {
+        Path path = Paths.get(dir.getPath());
+        if (watched.put(dir, path) == null) {
+            register(path);
+            report(dir, path);
+        }
+    }
+
+    @Override
+    public void unwatch(URI dir) {
+        watched.remove(dir);
+    }
+
+    @Override
+    public void destroy() {
+        watched.clear();
+        try {
+            watchService.close();
+        }
+        catch (IOException ex) {
+            LOG.warn("Error closing the local file system watch service", ex);
+        }
+        thread.interrupt();
+    }
+
+    /**
+     * Wait for the events of the watched directories and report their entries.
+     */
+    @Override
+    public void run() {
+        while (true) {
+            WatchKey key;
+            try {
+                key = watchService.take();
+            }
+            catch (ClosedWatchServiceException ex) {
+                return;
+            }
+            catch (InterruptedException ex) {
+                return;
+            }
+            key.pollEvents();
+            if (!key.reset()) {
+                registered.remove((Path) key.watchable());
+            }
+            for (Map.Entry<URI, Path> entry : watched.entrySet()) {
+                register(entry.getValue());
+                report(entry.getKey(), entry.getValue());
+            }
+        }
+    }
+
+    /**
+     * Watch a directory if it exists, its nearest existing parent otherwise.
+     */
+    private void register(Path path) {
+        Path existing = path;
+        while (existing != null && !Files.isDirectory(existing)) {
+            existing = existing.getParent();
+        }
+        if (existing != null && registered.add(existing)) {
+            try {
+                existing.register(watchService, StandardWatchEventKinds.ENTRY_CREATE);
+            }
+            catch (IOException ex) {
+                registered.remove(existing);
+                LOG.warn("Cannot watch directory [{0}]", existing, ex);
+            }
+            catch (ClosedWatchServiceException ex) {
+                registered.remove(existing);
+            }
+        }
+    }
+
+    private void report(URI dir, Path path) {
+        String[] names = path.toFile().list();
+        if (names != null && names.length > 0) {
+            listener.filesAvailable(dir, new HashSet<String>(Arrays.asList(names)));
+        }
+    }
+}
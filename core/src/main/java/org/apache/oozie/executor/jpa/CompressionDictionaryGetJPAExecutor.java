@@ -0,0 +1,68 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.oozie.executor.jpa;
+
+import java.util.List;
+
+import javax.persistence.EntityManager;
+import javax.persistence.Query;
+
+import org.apache.oozie.ErrorCode;
+import org.apache.oozie.CompressionDictionaryBean;
+import org.apache.oozie.util.ParamChecker;
+
+/**
+ * Load the CompressionDictionary into a Bean and return it, <code>null</code> if there is no dictionary with the given
+ * id.
+ */
+public class CompressionDictionaryGetJPAExecutor implements JPAExecutor<CompressionDictionaryBean> {
+
+    private String id = null;
+
+    public CompressionDictionaryGetJPAExecutor(String id) {
+        ParamChecker.notNull(id, "id");
+        this.id = id;
+    }
+
+    /* (non-Javadoc)
+     * @see org.apache.oozie.executor.jpa.JPAExecutor#getName()
+     */
+    @Override
+    public String getName() {
+        return "CompressionDictionaryGetJPAExecutor";
+    }
+
+    /* (non-Javadoc)
+     * @see org.apache.oozie.executor.jpa.JPAExecutor#execute(javax.persistence.EntityManager)
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public CompressionDictionaryBean execute(EntityManager em) throws JPAExecutorException {
+        List<CompressionDictionaryBean> beans;
+        try {
+            Query q = em.createNamedQuery("GET_COMPRESSION_DICT");
+            q.setParameter("id", id);
+            beans = q.getResultList();
+        }
+        catch (Exception e) {
+            throw new JPAExecutorException(ErrorCode.E0603, e.getMessage(), e);
+        }
+        return (beans != null && beans.size() > 0) ? beans.get(0) : null;
+    }
+}
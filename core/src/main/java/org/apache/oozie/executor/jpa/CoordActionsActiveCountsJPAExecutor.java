@@ -0,0 +1,76 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.oozie.executor.jpa;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.persistence.EntityManager;
+import javax.persistence.Query;
+
+import org.apache.oozie.ErrorCode;
+import org.apache.oozie.util.ParamChecker;
+
+/**
+ * Load the number of running actions of several coordinator jobs with one grouped query.
+ */
+public class CoordActionsActiveCountsJPAExecutor implements JPAExecutor<Map<String, Integer>> {
+
+    private Collection<String> coordJobIds = null;
+
+    public CoordActionsActiveCountsJPAExecutor(Collection<String> coordJobIds) {
+        ParamChecker.notNull(coordJobIds, "coordJobIds");
+        this.coordJobIds = coordJobIds;
+    }
+
+    @Override
+    public String getName() {
+        return "CoordActionsActiveCountsJPAExecutor";
+    }
+
+    /**
+     * Return the number of running actions of the jobs, the jobs without running actions have a count of 0.
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public Map<String, Integer> execute(EntityManager em) throws JPAExecutorException {
+        Map<String, Integer> counts = new HashMap<String, Integer>();
+        for (String jobId : coordJobIds) {
+            counts.put(jobId, 0);
+        }
+        if (coordJobIds.isEmpty()) {
+            return counts;
+        }
+        try {
+            Query q = em.createNamedQuery("GET_COORD_ACTIVE_ACTIONS_COUNT_BY_JOBIDS");
+            q.setParameter("jobIds", new ArrayList<String>(coordJobIds));
+            for (Object[] row : (List<Object[]>) q.getResultList()) {
+                counts.put((String) row[0], ((Long) row[1]).intValue());
+            }
+            return counts;
+        }
+        catch (Exception e) {
+            throw new JPAExecutorException(ErrorCode.E0603, e.getMessage(), e);
+        }
+    }
+
+}
@@ -22,11 +22,14 @@ import org.apache.oozie.ErrorCode;
 
 import javax.persistence.EntityManager;
 import javax.persistence.Query;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 
 public class CoordActionsGetFromCoordJobIdJPAExecutor implements JPAExecutor<List<String>> {
 
     private String coordId;
+    private Collection<String> coordIds;
     private int limit;
     private int offset;
 
@@ -36,6 +39,15 @@ public class CoordActionsGetFromCoordJobIdJPAExecutor implements JPAExecutor<Lis
         this.limit = limit;
     }
 
+    /**
+     * Load the ids of all the actions of the given coordinators.
+     *
+     * @param coordIds ids of the coordinators.
+     */
+    public CoordActionsGetFromCoordJobIdJPAExecutor(Collection<String> coordIds) {
+        this.coordIds = coordIds;
+    }
+
     @Override
     public String getName() {
         return "CoordActionsGetFromCoordJobIdJPAExecutor";
@@ -45,6 +57,14 @@ public class CoordActionsGetFromCoordJobIdJPAExecutor implements JPAExecutor<Lis
     public List<String> execute(EntityManager em) throws JPAExecutorException {
         List<String> actions = null;
         try {
+            if (coordIds != null) {
+                if (coordIds.isEmpty()) {
+                    return new ArrayList<String>();
+                }
+                Query jobQ = em.createNamedQuery("GET_COORD_ACTIONS_FOR_COORDINATORS");
+                jobQ.setParameter("jobIds", coordIds);
+                return jobQ.getResultList();
+            }
             Query jobQ = em.createNamedQuery("GET_COORD_ACTIONS_FOR_COORDINATOR");
             jobQ.setParameter("jobId", coordId);
             jobQ.setMaxResults(limit);
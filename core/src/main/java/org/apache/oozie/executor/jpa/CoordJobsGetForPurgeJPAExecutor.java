@@ -25,6 +25,7 @@ import javax.persistence.EntityManager;
 import javax.persistence.Query;
 
 import org.apache.oozie.ErrorCode;
+import org.apache.oozie.util.ParamChecker;
 
 /**
  * Load the list of completed CoordinatorJob for purge ready.
@@ -35,6 +36,7 @@ public class CoordJobsGetForPurgeJPAExecutor implements JPAExecutor<List<String>
     private long olderThanDays;
     private int limit;
     private int offset;
+    private String lastId;
 
     public CoordJobsGetForPurgeJPAExecutor(long olderThanDays, int limit) {
         this(olderThanDays, 0, limit);
@@ -46,6 +48,20 @@ public class CoordJobsGetForPurgeJPAExecutor implements JPAExecutor<List<String>
         this.limit = limit;
     }
 
+    /**
+     * Load the jobs ready for purge with an id greater than the given one, ordered by id, so the jobs can be paginated
+     * without an offset.
+     *
+     * @param olderThanDays age of the jobs to purge, in days.
+     * @param lastId id of the last job of the previous page.
+     * @param limit maximum number of jobs to load.
+     */
+    public CoordJobsGetForPurgeJPAExecutor(long olderThanDays, String lastId, int limit) {
+        this.olderThanDays = olderThanDays;
+        this.lastId = ParamChecker.notNull(lastId, "lastId");
+        this.limit = limit;
+    }
+
     @Override
     public String getName() {
         return "CoordJobsGetForPurgeJPAExecutor";
@@ -57,10 +73,17 @@ public class CoordJobsGetForPurgeJPAExecutor implements JPAExecutor<List<String>
         List<String> coordJobs = null;
         try {
             Timestamp lastModTm = new Timestamp(System.currentTimeMillis() - (olderThanDays * DAY_IN_MS));
-            Query jobQ = em.createNamedQuery("GET_COMPLETED_COORD_JOBS_WITH_NO_PARENT_OLDER_THAN_STATUS");
+            Query jobQ;
+            if (lastId != null) {
+                jobQ = em.createNamedQuery("GET_COMPLETED_COORD_JOBS_WITH_NO_PARENT_OLDER_THAN_STATUS_AFTER_ID");
+                jobQ.setParameter("lastId", lastId);
+            }
+            else {
+                jobQ = em.createNamedQuery("GET_COMPLETED_COORD_JOBS_WITH_NO_PARENT_OLDER_THAN_STATUS");
+                jobQ.setFirstResult(offset);
+            }
             jobQ.setParameter("lastModTime", lastModTm);
             jobQ.setMaxResults(limit);
-            jobQ.setFirstResult(offset);
             coordJobs = jobQ.getResultList();
         }
         catch (Exception e) {
@@ -18,6 +18,8 @@
 
 package org.apache.oozie.executor.jpa;
 
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 
 import javax.persistence.EntityManager;
@@ -31,6 +33,7 @@ import org.apache.oozie.ErrorCode;
 public class CoordJobsGetFromParentIdJPAExecutor implements JPAExecutor<List<String>> {
 
     private String parentId;
+    private Collection<String> parentIds;
     private int limit;
     private int offset;
 
@@ -44,6 +47,15 @@ public class CoordJobsGetFromParentIdJPAExecutor implements JPAExecutor<List<Str
         this.limit = limit;
     }
 
+    /**
+     * Load all the CoordinatorJob with any of the passed in parentIds.
+     *
+     * @param parentIds ids of the parent bundles.
+     */
+    public CoordJobsGetFromParentIdJPAExecutor(Collection<String> parentIds) {
+        this.parentIds = parentIds;
+    }
+
     /* (non-Javadoc)
      * @see org.apache.oozie.executor.jpa.JPAExecutor#getName()
      */
@@ -60,6 +72,14 @@ public class CoordJobsGetFromParentIdJPAExecutor implements JPAExecutor<List<Str
     public List<String> execute(EntityManager em) throws JPAExecutorException {
         List<String> coords = null;
         try {
+            if (parentIds != null) {
+                if (parentIds.isEmpty()) {
+                    return new ArrayList<String>();
+                }
+                Query jobQ = em.createNamedQuery("GET_COORD_JOBS_WITH_PARENT_IDS");
+                jobQ.setParameter("parentIds", parentIds);
+                return jobQ.getResultList();
+            }
             Query jobQ = em.createNamedQuery("GET_COORD_JOBS_WITH_PARENT_ID");
             jobQ.setParameter("parentId", parentId);
             jobQ.setMaxResults(limit);
@@ -0,0 +1,81 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.oozie.executor.jpa;
+
+import java.sql.Timestamp;
+
+import javax.persistence.EntityManager;
+import javax.persistence.Query;
+
+import org.apache.oozie.ErrorCode;
+
+/**
+ * Count the jobs ready for purge with an id greater than the given one, the jobs still to be processed by a purge
+ * paginated on the job id.
+ */
+public class JobsCountForPurgeJPAExecutor implements JPAExecutor<Long> {
+
+    /**
+     * Kinds of jobs the purge starts from.
+     */
+    public enum JobType {
+        WORKFLOW("GET_COMPLETED_WORKFLOWS_WITH_NO_PARENT_OLDER_THAN_COUNT", "endTime"),
+        COORD_WORKFLOW("GET_COMPLETED_COORD_WORKFLOWS_OLDER_THAN_COUNT", "endTime"),
+        COORDINATOR("GET_COMPLETED_COORD_JOBS_WITH_NO_PARENT_OLDER_THAN_STATUS_COUNT", "lastModTime"),
+        BUNDLE("GET_COMPLETED_BUNDLE_JOBS_OLDER_THAN_COUNT", "lastModTime");
+
+        private final String query;
+        private final String timeParameter;
+
+        JobType(String query, String timeParameter) {
+            this.query = query;
+            this.timeParameter = timeParameter;
+        }
+    }
+
+    private static final long DAY_IN_MS = 24 * 60 * 60 * 1000;
+    private JobType jobType;
+    private long olderThanDays;
+    private String lastId;
+
+    public JobsCountForPurgeJPAExecutor(JobType jobType, long olderThanDays, String lastId) {
+        this.jobType = jobType;
+        this.olderThanDays = olderThanDays;
+        this.lastId = lastId;
+    }
+
+    @Override
+    public String getName() {
+        return "JobsCountForPurgeJPAExecutor";
+    }
+
+    @Override
+    public Long execute(EntityManager em) throws JPAExecutorException {
+        try {
+            Query jobQ = em.createNamedQuery(jobType.query);
+            jobQ.setParameter(jobType.timeParameter,
+                    new Timestamp(System.currentTimeMillis() - (olderThanDays * DAY_IN_MS)));
+            jobQ.setParameter("lastId", lastId);
+            return (Long) jobQ.getSingleResult();
+        }
+        catch (Exception e) {
+            throw new JPAExecutorException(ErrorCode.E0603, e.getMessage(), e);
+        }
+    }
+}
@@ -19,6 +19,7 @@
 package org.apache.oozie.executor.jpa;
 
 import java.sql.Timestamp;
+import java.util.ArrayList;
 import java.util.List;
 
 import javax.persistence.EntityManager;
@@ -43,7 +44,8 @@ public class SLASummaryQueryExecutor extends QueryExecutor<SLASummaryBean, SLASu
         UPDATE_SLA_SUMMARY_LAST_MODIFIED_TIME,
         GET_SLA_SUMMARY,
         GET_SLA_SUMMARY_EVENTPROCESSED,
-        GET_SLA_SUMMARY_EVENTPROCESSED_LAST_MODIFIED
+        GET_SLA_SUMMARY_EVENTPROCESSED_LAST_MODIFIED,
+        GET_SLA_SUMMARY_EVENTPROCESSED_LAST_MODIFIED_FOR_IDS
     };
 
     private static SLASummaryQueryExecutor instance = new SLASummaryQueryExecutor();
@@ -125,6 +127,9 @@ public class SLASummaryQueryExecutor extends QueryExecutor<SLASummaryBean, SLASu
             case GET_SLA_SUMMARY_EVENTPROCESSED_LAST_MODIFIED:
                 query.setParameter("id", parameters[0]);
                 break;
+            case GET_SLA_SUMMARY_EVENTPROCESSED_LAST_MODIFIED_FOR_IDS:
+                query.setParameter("ids", parameters[0]);
+                break;
         }
         return query;
     }
@@ -169,6 +174,16 @@ public class SLASummaryQueryExecutor extends QueryExecutor<SLASummaryBean, SLASu
         JPAService jpaService = Services.get().get(JPAService.class);
         EntityManager em = jpaService.getEntityManager();
         Query query = getSelectQuery(namedQuery, em, parameters);
+        if (namedQuery == SLASummaryQuery.GET_SLA_SUMMARY_EVENTPROCESSED_LAST_MODIFIED_FOR_IDS) {
+            List<?> retList = jpaService.executeGetList(namedQuery.name(), query, em);
+            List<SLASummaryBean> beanList = new ArrayList<SLASummaryBean>();
+            if (retList != null) {
+                for (Object ret : retList) {
+                    beanList.add(constructBean(namedQuery, ret, parameters));
+                }
+            }
+            return beanList;
+        }
         @SuppressWarnings("unchecked")
         List<SLASummaryBean> beanList = (List<SLASummaryBean>) jpaService.executeGetList(namedQuery.name(), query, em);
         return beanList;
@@ -204,6 +219,13 @@ public class SLASummaryQueryExecutor extends QueryExecutor<SLASummaryBean, SLASu
                 bean.setLastModifiedTime((Timestamp)arr[1]);
 
                 break;
+            case GET_SLA_SUMMARY_EVENTPROCESSED_LAST_MODIFIED_FOR_IDS:
+                arr = (Object[]) ret;
+                bean = new SLASummaryBean();
+                bean.setId((String) arr[0]);
+                bean.setEventProcessed((Byte) arr[1]);
+                bean.setLastModifiedTime((Timestamp) arr[2]);
+                break;
 
             default:
                 throw new JPAExecutorException(ErrorCode.E0603, "QueryExecutor cannot construct job bean for "
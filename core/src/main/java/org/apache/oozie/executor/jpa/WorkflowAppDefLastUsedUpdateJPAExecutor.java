@@ -0,0 +1,68 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.oozie.executor.jpa;
+
+import java.sql.Timestamp;
+import java.util.Date;
+
+import javax.persistence.EntityManager;
+import javax.persistence.Query;
+
+import org.apache.oozie.ErrorCode;
+import org.apache.oozie.util.ParamChecker;
+
+/**
+ * Update the last used time of the WorkflowAppDef with the given content hash, return the number of updated
+ * application definitions, 0 if there is none.
+ */
+public class WorkflowAppDefLastUsedUpdateJPAExecutor implements JPAExecutor<Integer> {
+
+    private String id = null;
+    private Date lastUsedTime = null;
+
+    public WorkflowAppDefLastUsedUpdateJPAExecutor(String id, Date lastUsedTime) {
+        ParamChecker.notNull(id, "id");
+        ParamChecker.notNull(lastUsedTime, "lastUsedTime");
+        this.id = id;
+        this.lastUsedTime = lastUsedTime;
+    }
+
+    /* (non-Javadoc)
+     * @see org.apache.oozie.executor.jpa.JPAExecutor#getName()
+     */
+    @Override
+    public String getName() {
+        return "WorkflowAppDefLastUsedUpdateJPAExecutor";
+    }
+
+    /* (non-Javadoc)
+     * @see org.apache.oozie.executor.jpa.JPAExecutor#execute(javax.persistence.EntityManager)
+     */
+    @Override
+    public Integer execute(EntityManager em) throws JPAExecutorException {
+        try {
+            Query q = em.createNamedQuery("UPDATE_WF_APP_DEF_LAST_USED");
+            q.setParameter("lastUsedTime", new Timestamp(lastUsedTime.getTime()));
+            q.setParameter("id", id);
+            return q.executeUpdate();
+        }
+        catch (Exception e) {
+            throw new JPAExecutorException(ErrorCode.E0603, e.getMessage(), e);
+        }
+    }
+}
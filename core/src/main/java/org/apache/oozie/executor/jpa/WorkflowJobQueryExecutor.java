@@ -58,8 +58,10 @@ public class WorkflowJobQueryExecutor extends QueryExecutor<WorkflowJobBean, Wor
         GET_WORKFLOW_KILL,
         GET_WORKFLOW_RESUME,
         GET_WORKFLOW_STATUS,
+        GET_WORKFLOW_CONF,
         GET_WORKFLOWS_PARENT_COORD_RERUN,
         GET_COMPLETED_COORD_WORKFLOWS_OLDER_THAN,
+        GET_COMPLETED_COORD_WORKFLOWS_OLDER_THAN_AFTER_ID,
         GET_WORKFLOW_FOR_SLA
     };
 
@@ -95,6 +97,7 @@ public class WorkflowJobQueryExecutor extends QueryExecutor<WorkflowJobBean, Wor
                 query.setParameter("startTime", wfBean.getStartTimestamp());
                 query.setParameter("status", wfBean.getStatusStr());
                 query.setParameter("wfInstance", wfBean.getWfInstanceBlob());
+                query.setParameter("appDefId", wfBean.getAppDefId());
                 query.setParameter("id", wfBean.getId());
                 break;
             case UPDATE_WORKFLOW_MODTIME:
@@ -114,12 +117,14 @@ public class WorkflowJobQueryExecutor extends QueryExecutor<WorkflowJobBean, Wor
             case UPDATE_WORKFLOW_STATUS_INSTANCE_MODIFIED:
                 query.setParameter("status", wfBean.getStatus().toString());
                 query.setParameter("wfInstance", wfBean.getWfInstanceBlob());
+                query.setParameter("appDefId", wfBean.getAppDefId());
                 query.setParameter("lastModTime", wfBean.getLastModifiedTimestamp());
                 query.setParameter("id", wfBean.getId());
                 break;
             case UPDATE_WORKFLOW_STATUS_INSTANCE_MOD_END:
                 query.setParameter("status", wfBean.getStatus().toString());
                 query.setParameter("wfInstance", wfBean.getWfInstanceBlob());
+                query.setParameter("appDefId", wfBean.getAppDefId());
                 query.setParameter("lastModTime", wfBean.getLastModifiedTimestamp());
                 query.setParameter("endTime", wfBean.getEndTimestamp());
                 query.setParameter("id", wfBean.getId());
@@ -127,6 +132,7 @@ public class WorkflowJobQueryExecutor extends QueryExecutor<WorkflowJobBean, Wor
             case UPDATE_WORKFLOW_STATUS_INSTANCE_MOD_START_END:
                 query.setParameter("status", wfBean.getStatus().toString());
                 query.setParameter("wfInstance", wfBean.getWfInstanceBlob());
+                query.setParameter("appDefId", wfBean.getAppDefId());
                 query.setParameter("lastModTime", wfBean.getLastModifiedTimestamp());
                 query.setParameter("startTime", wfBean.getStartTimestamp());
                 query.setParameter("endTime", wfBean.getEndTimestamp());
@@ -145,6 +151,7 @@ public class WorkflowJobQueryExecutor extends QueryExecutor<WorkflowJobBean, Wor
                 query.setParameter("run", wfBean.getRun());
                 query.setParameter("status", wfBean.getStatus().toString());
                 query.setParameter("wfInstance", wfBean.getWfInstanceBlob());
+                query.setParameter("appDefId", wfBean.getAppDefId());
                 query.setParameter("lastModTime", wfBean.getLastModifiedTimestamp());
                 query.setParameter("id", wfBean.getId());
                 break;
@@ -171,6 +178,7 @@ public class WorkflowJobQueryExecutor extends QueryExecutor<WorkflowJobBean, Wor
             case GET_WORKFLOW_KILL:
             case GET_WORKFLOW_RESUME:
             case GET_WORKFLOW_STATUS:
+            case GET_WORKFLOW_CONF:
             case GET_WORKFLOW_FOR_SLA:
                 query.setParameter("id", parameters[0]);
                 break;
@@ -185,6 +193,12 @@ public class WorkflowJobQueryExecutor extends QueryExecutor<WorkflowJobBean, Wor
                 query.setFirstResult((Integer) parameters[1]);
                 query.setMaxResults((Integer) parameters[2]);
                 break;
+            case GET_COMPLETED_COORD_WORKFLOWS_OLDER_THAN_AFTER_ID:
+                long olderThanMs = (Long) parameters[0] * 24 * 60 * 60 * 1000;
+                query.setParameter("endTime", new Timestamp(System.currentTimeMillis() - olderThanMs));
+                query.setParameter("lastId", parameters[1]);
+                query.setMaxResults((Integer) parameters[2]);
+                break;
             default:
                 throw new JPAExecutorException(ErrorCode.E0603, "QueryExecutor cannot set parameters for "
                         + namedQuery.name());
@@ -318,6 +332,11 @@ public class WorkflowJobQueryExecutor extends QueryExecutor<WorkflowJobBean, Wor
                 bean.setId((String) parameters[0]);
                 bean.setStatusStr((String) ret);
                 break;
+            case GET_WORKFLOW_CONF:
+                bean = new WorkflowJobBean();
+                bean.setId((String) parameters[0]);
+                bean.setConfBlob((StringBlob) ret);
+                break;
             case GET_WORKFLOWS_PARENT_COORD_RERUN:
                 bean = new WorkflowJobBean();
                 arr = (Object[]) ret;
@@ -327,6 +346,7 @@ public class WorkflowJobQueryExecutor extends QueryExecutor<WorkflowJobBean, Wor
                 bean.setEndTime(DateUtils.toDate((Timestamp) arr[3]));
                 break;
             case GET_COMPLETED_COORD_WORKFLOWS_OLDER_THAN:
+            case GET_COMPLETED_COORD_WORKFLOWS_OLDER_THAN_AFTER_ID:
                 bean = new WorkflowJobBean();
                 arr = (Object[]) ret;
                 bean.setId((String) arr[0]);
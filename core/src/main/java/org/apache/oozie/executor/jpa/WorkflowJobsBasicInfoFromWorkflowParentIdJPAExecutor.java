@@ -27,11 +27,13 @@ import javax.persistence.EntityManager;
 import javax.persistence.Query;
 import java.sql.Timestamp;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 
 public class WorkflowJobsBasicInfoFromWorkflowParentIdJPAExecutor implements JPAExecutor<List<WorkflowJobBean>> {
 
     private String parentId;
+    private Collection<String> parentIds;
     private int limit;
     private int offset;
 
@@ -45,6 +47,15 @@ public class WorkflowJobsBasicInfoFromWorkflowParentIdJPAExecutor implements JPA
         this.limit = limit;
     }
 
+    /**
+     * Load the basic info of all the workflows with any of the given parents, their parent id included.
+     *
+     * @param parentIds ids of the parent jobs.
+     */
+    public WorkflowJobsBasicInfoFromWorkflowParentIdJPAExecutor(Collection<String> parentIds) {
+        this.parentIds = parentIds;
+    }
+
     @Override
     public String getName() {
         return "WorkflowJobsBasicInfoFromWorkflowParentIdJPAExecutor";
@@ -54,6 +65,14 @@ public class WorkflowJobsBasicInfoFromWorkflowParentIdJPAExecutor implements JPA
     @SuppressWarnings("unchecked")
     public List<WorkflowJobBean> execute(EntityManager em) throws JPAExecutorException {
         try {
+            if (parentIds != null) {
+                if (parentIds.isEmpty()) {
+                    return new ArrayList<WorkflowJobBean>();
+                }
+                Query jobQ = em.createNamedQuery("GET_WORKFLOWS_BASIC_INFO_BY_PARENT_IDS");
+                jobQ.setParameter("parentIds", parentIds);
+                return getBeanFromArray(jobQ.getResultList());
+            }
             Query jobQ = em.createNamedQuery("GET_WORKFLOWS_BASIC_INFO_BY_PARENT_ID");
             jobQ.setParameter("parentId", parentId);
             jobQ.setMaxResults(limit);
@@ -79,6 +98,9 @@ public class WorkflowJobsBasicInfoFromWorkflowParentIdJPAExecutor implements JPA
             if(arr[2] != null) {
                 wfBean.setEndTime(DateUtils.toDate((Timestamp) arr[2]));
             }
+            if (arr.length > 3 && arr[3] != null) {
+                wfBean.setParentId((String) arr[3]);
+            }
             wfActionBeanList.add(wfBean);
         }
 
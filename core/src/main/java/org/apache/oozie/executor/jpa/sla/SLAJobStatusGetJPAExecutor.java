@@ -0,0 +1,88 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.oozie.executor.jpa.sla;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.persistence.EntityManager;
+import javax.persistence.Query;
+
+import org.apache.oozie.ErrorCode;
+import org.apache.oozie.executor.jpa.JPAExecutor;
+import org.apache.oozie.executor.jpa.JPAExecutorException;
+
+/**
+ * Load the status of the workflow jobs, workflow actions and coordinator actions tracked by the SLA history, with one
+ * query per kind of job. Jobs not found in the DB are not in the returned map.
+ */
+public class SLAJobStatusGetJPAExecutor implements JPAExecutor<Map<String, String>> {
+
+    private List<String> jobIds;
+
+    public SLAJobStatusGetJPAExecutor(List<String> jobIds) {
+        this.jobIds = jobIds;
+    }
+
+    @Override
+    public String getName() {
+        return "SLAJobStatusGetJPAExecutor";
+    }
+
+    @Override
+    public Map<String, String> execute(EntityManager em) throws JPAExecutorException {
+        List<String> workflowIds = new ArrayList<String>();
+        List<String> workflowActionIds = new ArrayList<String>();
+        List<String> coordActionIds = new ArrayList<String>();
+        for (String jobId : jobIds) {
+            if (jobId.endsWith("-W")) {
+                workflowIds.add(jobId);
+            }
+            else if (jobId.contains("-W@")) {
+                workflowActionIds.add(jobId);
+            }
+            else if (jobId.contains("-C@")) {
+                coordActionIds.add(jobId);
+            }
+        }
+        Map<String, String> statuses = new HashMap<String, String>();
+        try {
+            getStatuses(em, "GET_WORKFLOWS_STATUS_FOR_IDS", workflowIds, statuses);
+            getStatuses(em, "GET_ACTIONS_STATUS_FOR_IDS", workflowActionIds, statuses);
+            getStatuses(em, "GET_COORD_ACTIONS_STATUS_FOR_IDS", coordActionIds, statuses);
+        }
+        catch (Exception e) {
+            throw new JPAExecutorException(ErrorCode.E0603, e.getMessage(), e);
+        }
+        return statuses;
+    }
+
+    @SuppressWarnings("unchecked")
+    private void getStatuses(EntityManager em, String namedQuery, List<String> ids, Map<String, String> statuses) {
+        if (!ids.isEmpty()) {
+            Query q = em.createNamedQuery(namedQuery);
+            q.setParameter("ids", ids);
+            for (Object[] row : (List<Object[]>) q.getResultList()) {
+                statuses.put((String) row[0], (String) row[1]);
+            }
+        }
+    }
+}
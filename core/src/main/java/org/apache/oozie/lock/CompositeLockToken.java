@@ -0,0 +1,58 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.oozie.lock;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Lock token holding the locks of several resources, releasing them in the reverse order they were obtained.
+ */
+public class CompositeLockToken implements LockToken {
+    private final List<LockToken> tokens;
+
+    /**
+     * Create a composite lock token.
+     *
+     * @param tokens lock tokens, in the order they were obtained.
+     */
+    public CompositeLockToken(List<? extends LockToken> tokens) {
+        this.tokens = new ArrayList<LockToken>(tokens);
+    }
+
+    /**
+     * Return the lock tokens.
+     *
+     * @return the lock tokens, in the order they were obtained.
+     */
+    public List<LockToken> getTokens() {
+        return Collections.unmodifiableList(tokens);
+    }
+
+    /**
+     * Release the locks.
+     */
+    @Override
+    public void release() {
+        for (int i = tokens.size() - 1; i >= 0; i--) {
+            tokens.get(i).release();
+        }
+    }
+}
@@ -18,29 +18,108 @@
 
 package org.apache.oozie.lock;
 
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 import java.util.concurrent.locks.Lock;
 import org.apache.oozie.service.MemoryLocksService.Type;
 
-import com.google.common.collect.MapMaker;
-
 /**
  * In memory resource locking that provides READ/WRITE lock capabilities.
+ * <p>
+ * Each resource has its own lock entry, reference counted by the threads holding or waiting for it. The entry is
+ * removed from the lock map, without locking, when the last reference is released.
+ * <p>
+ * For diagnostics, resources are hashed into a fixed number of stripes, each stripe keeping a histogram of the time
+ * spent waiting for its locks.
  */
 public class MemoryLocks {
 
-    final private ConcurrentMap<String, ReentrantReadWriteLock> locks = new MapMaker().weakValues().makeMap();
+    /**
+     * Number of stripes the wait time histograms are kept for.
+     */
+    public static final int STRIPES = 16;
+
+    /**
+     * Upper bounds, in milliseconds, of the wait time histogram buckets. The last bucket has no upper bound.
+     */
+    static final long[] WAIT_BUCKETS = {1, 10, 100, 1000, 10000};
+
+    private static final String[] WAIT_BUCKET_NAMES = {"<1ms", "<10ms", "<100ms", "<1s", "<10s", ">=10s"};
+
+    private final ConcurrentMap<String, LockEntry> locks = new ConcurrentHashMap<String, LockEntry>();
+
+    private final AtomicLongArray[] waits = new AtomicLongArray[STRIPES];
+
+    public MemoryLocks() {
+        for (int i = 0; i < STRIPES; i++) {
+            waits[i] = new AtomicLongArray(WAIT_BUCKETS.length + 1);
+        }
+    }
+
+    /**
+     * Lock of a resource, reference counted by the threads holding or waiting for it.
+     */
+    @SuppressWarnings("serial")
+    static class LockEntry extends ReentrantReadWriteLock {
+        private final AtomicInteger references = new AtomicInteger(1);
+
+        LockEntry() {
+            super(true);
+        }
+
+        /**
+         * Take a reference to the entry.
+         *
+         * @return <code>false</code> if the entry has been released by all its references and must not be used.
+         */
+        boolean retain() {
+            while (true) {
+                int current = references.get();
+                if (current <= 0) {
+                    return false;
+                }
+                if (references.compareAndSet(current, current + 1)) {
+                    return true;
+                }
+            }
+        }
+
+        /**
+         * Release a reference to the entry.
+         *
+         * @return <code>true</code> if it was the last reference.
+         */
+        boolean release() {
+            return references.decrementAndGet() == 0;
+        }
+
+        /**
+         * Return the thread holding the write lock.
+         *
+         * @return the thread holding the write lock, <code>null</code> if not write locked.
+         */
+        Thread getWriteHolder() {
+            return getOwner();
+        }
+    }
 
     /**
      * Implementation of {@link LockToken} for in memory locks.
      */
     class MemoryLockToken implements LockToken {
-        private final ReentrantReadWriteLock lockEntry;
+        private final String resource;
+        private final LockEntry lockEntry;
         private final Type type;
 
-        public MemoryLockToken(ReentrantReadWriteLock lockEntry, Type type) {
+        public MemoryLockToken(String resource, LockEntry lockEntry, Type type) {
+            this.resource = resource;
             this.lockEntry = lockEntry;
             this.type = type;
 
@@ -59,6 +138,7 @@ public class MemoryLocks {
                     lockEntry.readLock().unlock();
                     break;
             }
+            releaseEntry(resource, lockEntry);
         }
     }
 
@@ -81,40 +161,155 @@ public class MemoryLocks {
      * @throws InterruptedException thrown if the thread was interrupted while waiting.
      */
     public MemoryLockToken getLock(final String resource, Type type, long wait) throws InterruptedException {
-        ReentrantReadWriteLock lockEntry = locks.get(resource);
-        if (lockEntry == null) {
-            ReentrantReadWriteLock newLock = new ReentrantReadWriteLock(true);
-            lockEntry = locks.putIfAbsent(resource, newLock);
+        LockEntry lockEntry = retainEntry(resource);
+        Lock lock = (type.equals(Type.READ)) ? lockEntry.readLock() : lockEntry.writeLock();
+
+        boolean locked = false;
+        long start = System.currentTimeMillis();
+        try {
+            if (wait == -1) {
+                lock.lock();
+                locked = true;
+            }
+            else if (wait > 0) {
+                locked = lock.tryLock(wait, TimeUnit.MILLISECONDS);
+            }
+            else {
+                locked = lock.tryLock();
+            }
+        }
+        finally {
+            recordWait(resource, System.currentTimeMillis() - start);
+            if (!locked) {
+                releaseEntry(resource, lockEntry);
+            }
+        }
+        return (locked) ? new MemoryLockToken(resource, lockEntry, type) : null;
+    }
+
+    private LockEntry retainEntry(String resource) {
+        while (true) {
+            LockEntry lockEntry = locks.get(resource);
             if (lockEntry == null) {
-                lockEntry = newLock;
+                LockEntry newEntry = new LockEntry();
+                lockEntry = locks.putIfAbsent(resource, newEntry);
+                if (lockEntry == null) {
+                    return newEntry;
+                }
+            }
+            if (lockEntry.retain()) {
+                return lockEntry;
             }
+            // released by its last reference, not removed yet
+            locks.remove(resource, lockEntry);
         }
-        Lock lock = (type.equals(Type.READ)) ? lockEntry.readLock() : lockEntry.writeLock();
+    }
 
-        if (wait == -1) {
-            lock.lock();
+    private void releaseEntry(String resource, LockEntry lockEntry) {
+        if (lockEntry.release()) {
+            locks.remove(resource, lockEntry);
         }
-        else {
-            if (wait > 0) {
-                if (!lock.tryLock(wait, TimeUnit.MILLISECONDS)) {
-                    return null;
-                }
+    }
+
+    private void recordWait(String resource, long waitMillis) {
+        int bucket = 0;
+        while (bucket < WAIT_BUCKETS.length && waitMillis >= WAIT_BUCKETS[bucket]) {
+            bucket++;
+        }
+        waits[getStripe(resource)].incrementAndGet(bucket);
+    }
+
+    /**
+     * Return the stripe of a resource.
+     *
+     * @param resource resource name.
+     * @return the stripe of the resource, between 0 and {@link #STRIPES} - 1.
+     */
+    public static int getStripe(String resource) {
+        int hash = resource.hashCode();
+        hash ^= (hash >>> 16);
+        return hash & (STRIPES - 1);
+    }
+
+    /**
+     * Return the wait time histogram of a stripe, the number of lock requests per wait time bucket.
+     *
+     * @param stripe stripe number.
+     * @return the wait time histogram of the stripe.
+     */
+    public long[] getWaitHistogram(int stripe) {
+        AtomicLongArray histogram = waits[stripe];
+        long[] values = new long[histogram.length()];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = histogram.get(i);
+        }
+        return values;
+    }
+
+    /**
+     * Return the wait time histogram of a stripe in a readable form, i.e. <code>&lt;1ms=10, &lt;10ms=2, ...</code>.
+     *
+     * @param stripe stripe number.
+     * @return the wait time histogram of the stripe.
+     */
+    public String getWaitHistogramAsString(int stripe) {
+        long[] values = getWaitHistogram(stripe);
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < values.length; i++) {
+            if (i > 0) {
+                sb.append(", ");
             }
-            else {
-                if (!lock.tryLock()) {
-                    return null;
-                }
+            sb.append(WAIT_BUCKET_NAMES[i]).append("=").append(values[i]);
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Return the number of held locks of a stripe.
+     *
+     * @param stripe stripe number.
+     * @return the number of held locks of the stripe.
+     */
+    public int getHeldCount(int stripe) {
+        int count = 0;
+        for (Map.Entry<String, LockEntry> entry : locks.entrySet()) {
+            if (getStripe(entry.getKey()) == stripe && isHeld(entry.getValue())) {
+                count++;
             }
         }
-        synchronized (locks) {
-            if (!locks.containsKey(resource)) {
-                locks.put(resource, lockEntry);
+        return count;
+    }
+
+    /**
+     * Return the current holders of the locks, the thread name for write locks and the number of holds for read
+     * locks, i.e. <code>WRITE [CallableQueue-3]</code> or <code>READ [2]</code>.
+     *
+     * @param max maximum number of locks to return, -1 for all of them.
+     * @return the current holders keyed by resource name.
+     */
+    public Map<String, String> getHolders(int max) {
+        Map<String, String> holders = new LinkedHashMap<String, String>();
+        for (Map.Entry<String, LockEntry> entry : locks.entrySet()) {
+            if (max != -1 && holders.size() >= max) {
+                break;
+            }
+            LockEntry lockEntry = entry.getValue();
+            Thread writer = lockEntry.getWriteHolder();
+            if (writer != null) {
+                holders.put(entry.getKey(), Type.WRITE + " [" + writer.getName() + "]");
+            }
+            else if (lockEntry.getReadLockCount() > 0) {
+                holders.put(entry.getKey(), Type.READ + " [" + lockEntry.getReadLockCount() + "]");
             }
         }
-        return new MemoryLockToken(lockEntry, type);
+        return holders;
+    }
+
+    private static boolean isHeld(LockEntry lockEntry) {
+        return lockEntry.isWriteLocked() || lockEntry.getReadLockCount() > 0;
     }
 
-    public ConcurrentMap<String, ReentrantReadWriteLock> getLockMap(){
-        return locks;
+    public Map<String, ? extends ReentrantReadWriteLock> getLockMap(){
+        return Collections.unmodifiableMap(locks);
     }
 }
@@ -19,9 +19,9 @@
 package org.apache.oozie.service;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.Date;
-import java.util.HashMap;
 import java.util.HashSet;
 import java.util.LinkedHashSet;
 import java.util.List;
@@ -31,7 +31,9 @@ import java.util.Set;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.RunnableFuture;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
@@ -39,12 +41,15 @@ import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.hadoop.conf.Configuration;
 import org.apache.oozie.client.OozieClient.SYSTEM_MODE;
+import org.apache.oozie.util.ConcurrentPriorityDelayQueue;
+import org.apache.oozie.util.HashedTimerWheel;
 import org.apache.oozie.util.Instrumentable;
 import org.apache.oozie.util.Instrumentation;
 import org.apache.oozie.util.NamedThreadFactory;
 import org.apache.oozie.util.PollablePriorityDelayQueue;
 import org.apache.oozie.util.PriorityDelayQueue;
 import org.apache.oozie.util.PriorityDelayQueue.QueueElement;
+import org.apache.oozie.util.QueueDispatchingExecutor;
 import org.apache.oozie.util.XCallable;
 import org.apache.oozie.util.XLog;
 
@@ -70,6 +75,13 @@ import com.google.common.collect.ImmutableSet;
  * of threads is reached, commands remain the queue until threads become available. Sets up a priority queue for the
  * execution of Commands via a ThreadPool. Sets up a Delayed Queue to handle actions which will be ready for execution
  * sometime in the future.
+ * <p>
+ * {@link #CONF_QUEUE_CONCURRENT} if true, a {@link ConcurrentPriorityDelayQueue} is used and queuing callables does not
+ * synchronize on the service. Default value is false.
+ * <p>
+ * {@link #CONF_EXECUTOR} if <code>dispatcher</code>, callables are taken from the queue by a single dispatcher and each
+ * one runs on its own (virtual, if the JVM supports them) thread, at most {@link #CONF_EXECUTOR_MAX_ACTIVE} at the same
+ * time. Default value is <code>threadpool</code>, a fixed pool of {@link #CONF_THREADS} threads.
  */
 public class CallableQueueService implements Service, Instrumentable {
     private static final String INSTRUMENTATION_GROUP = "callablequeue";
@@ -79,21 +91,35 @@ public class CallableQueueService implements Service, Instrumentable {
     private static final String INSTR_QUEUED_COUNTER = "queued";
     private static final String INSTR_QUEUE_SIZE_SAMPLER = "queue.size";
     private static final String INSTR_THREADS_ACTIVE_SAMPLER = "threads.active";
+    private static final String INSTR_CONCURRENCY_VARIABLE = "#concurrency";
+    private static final String INSTR_EXCEEDED_CONCURRENCY_COUNTER = "#exceeded.concurrency";
+    private static final String INSTR_DELAYED_SIZE = "delayed.size";
+    private static final String INSTR_DELAYED_LEVEL = "delayed.level.";
 
     public static final String CONF_PREFIX = Service.CONF_PREFIX + "CallableQueueService.";
 
     public static final String CONF_QUEUE_SIZE = CONF_PREFIX + "queue.size";
+    public static final String CONF_QUEUE_CONCURRENT = CONF_PREFIX + "queue.concurrent";
     public static final String CONF_THREADS = CONF_PREFIX + "threads";
+    public static final String CONF_EXECUTOR = CONF_PREFIX + "executor";
+    public static final String CONF_EXECUTOR_MAX_ACTIVE = CONF_PREFIX + "executor.max.active";
     public static final String CONF_CALLABLE_CONCURRENCY = CONF_PREFIX + "callable.concurrency";
     public static final String CONF_CALLABLE_NEXT_ELIGIBLE = CONF_PREFIX + "callable.next.eligible";
     public static final String CONF_CALLABLE_INTERRUPT_TYPES = CONF_PREFIX + "InterruptTypes";
     public static final String CONF_CALLABLE_INTERRUPT_MAP_MAX_SIZE = CONF_PREFIX + "InterruptMapMaxSize";
 
+    public static final String EXECUTOR_THREADPOOL = "threadpool";
+    public static final String EXECUTOR_DISPATCHER = "dispatcher";
+
     public static final int CONCURRENCY_DELAY = 500;
 
     public static final int SAFE_MODE_DELAY = 60000;
 
-    private final Map<String, AtomicInteger> activeCallables = new HashMap<String, AtomicInteger>();
+    private final ConcurrentHashMap<String, AtomicInteger> activeCallables =
+            new ConcurrentHashMap<String, AtomicInteger>();
+
+    // guards the lazy registration of the per-type concurrency variables
+    private final Set<String> instrumentedTypes = new HashSet<String>();
 
     private final Map<String, Date> uniqueCallables = new ConcurrentHashMap<String, Date>();
 
@@ -105,43 +131,58 @@ public class CallableQueueService implements Service, Instrumentable {
 
     private int maxCallableConcurrency;
 
-    private boolean callableBegin(XCallable<?> callable) {
-        synchronized (activeCallables) {
-            AtomicInteger counter = activeCallables.get(callable.getType());
+    private AtomicInteger getActiveCounter(String type) {
+        AtomicInteger counter = activeCallables.get(type);
+        if (counter == null) {
+            AtomicInteger newCounter = new AtomicInteger();
+            counter = activeCallables.putIfAbsent(type, newCounter);
             if (counter == null) {
-                counter = new AtomicInteger(1);
-                activeCallables.put(callable.getType(), counter);
-                return true;
-            }
-            else {
-                int i = counter.incrementAndGet();
-                return i <= maxCallableConcurrency;
+                counter = newCounter;
+                instrumentConcurrency(type, counter);
             }
         }
+        return counter;
     }
 
-    private void callableEnd(XCallable<?> callable) {
-        synchronized (activeCallables) {
-            AtomicInteger counter = activeCallables.get(callable.getType());
-            if (counter == null) {
-                throw new IllegalStateException("It should not happen");
-            }
-            else {
-                counter.decrementAndGet();
+    /**
+     * Admit a callable if its type has not reached the maximum concurrency.
+     * <p>
+     * The counter is only incremented for admitted callables, {@link #callableEnd(XCallable)} must be invoked only for
+     * them.
+     *
+     * @param callable callable to admit.
+     * @return true if the callable was admitted.
+     */
+    private boolean callableBegin(XCallable<?> callable) {
+        AtomicInteger counter = getActiveCounter(callable.getType());
+        int current;
+        do {
+            current = counter.get();
+            if (current >= maxCallableConcurrency) {
+                return false;
             }
+        } while (!counter.compareAndSet(current, current + 1));
+        return true;
+    }
+
+    private void callableEnd(XCallable<?> callable) {
+        AtomicInteger counter = activeCallables.get(callable.getType());
+        if (counter == null) {
+            throw new IllegalStateException("It should not happen");
+        }
+        else {
+            counter.decrementAndGet();
         }
     }
 
     private boolean callableReachMaxConcurrency(XCallable<?> callable) {
-        synchronized (activeCallables) {
-            AtomicInteger counter = activeCallables.get(callable.getType());
-            if (counter == null) {
-                return true;
-            }
-            else {
-                int i = counter.get();
-                return i < maxCallableConcurrency;
-            }
+        AtomicInteger counter = activeCallables.get(callable.getType());
+        if (counter == null) {
+            return true;
+        }
+        else {
+            int i = counter.get();
+            return i < maxCallableConcurrency;
         }
     }
 
@@ -160,6 +201,7 @@ public class CallableQueueService implements Service, Instrumentable {
 
         public void run() {
             XCallable<?> callable = null;
+            boolean admitted = false;
             try {
                 removeFromUniqueCallables();
                 if (Services.get().getSystemMode() == SYSTEM_MODE.SAFEMODE) {
@@ -171,6 +213,7 @@ public class CallableQueueService implements Service, Instrumentable {
                 }
                 callable = getElement();
                 if (callableBegin(callable)) {
+                    admitted = true;
                     cron.stop();
                     addInQueueCron(cron);
                     XLog log = XLog.getLog(getClass());
@@ -192,7 +235,7 @@ public class CallableQueueService implements Service, Instrumentable {
                             .getType(), CONCURRENCY_DELAY);
                     setDelay(CONCURRENCY_DELAY, TimeUnit.MILLISECONDS);
                     queue(this, true);
-                    incrCounter(callable.getType() + "#exceeded.concurrency", 1);
+                    incrCounter(callable.getType() + INSTR_EXCEEDED_CONCURRENCY_COUNTER, 1);
                 }
             }
             catch (Throwable t) {
@@ -201,7 +244,7 @@ public class CallableQueueService implements Service, Instrumentable {
                         t.getMessage(), t);
             }
             finally {
-                if (callable != null) {
+                if (admitted) {
                     callableEnd(callable);
                 }
             }
@@ -228,14 +271,17 @@ public class CallableQueueService implements Service, Instrumentable {
 
         /**
          * Add the keys to the set
+         *
+         * @return true if this callable should be queued, false if another thread added the same keys meanwhile
          */
-        public void addToUniqueCallables() {
+        public boolean addToUniqueCallables() {
             XCallable<?> callable = getElement();
             if (callable instanceof CompositeCallable) {
-                ((CompositeCallable) callable).addToUniqueCallables();
+                return ((CompositeCallable) callable).addToUniqueCallables();
             }
             else {
-                ((ConcurrentHashMap<String, Date>) uniqueCallables).putIfAbsent(callable.getKey(), new Date());
+                return ((ConcurrentHashMap<String, Date>) uniqueCallables).putIfAbsent(callable.getKey(),
+                        new Date()) == null;
             }
         }
 
@@ -397,12 +443,20 @@ public class CallableQueueService implements Service, Instrumentable {
         }
 
         /**
-         * Add the keys to the set
+         * Add the keys to the set, callables whose key was added meanwhile by another thread are removed
+         *
+         * @return true if callables should be queued
          */
-        public void addToUniqueCallables() {
+        public boolean addToUniqueCallables() {
+            List<XCallable<?>> addedCallables = new ArrayList<XCallable<?>>();
             for (XCallable<?> callable : callables) {
-                ((ConcurrentHashMap<String, Date>) uniqueCallables).putIfAbsent(callable.getKey(), new Date());
+                if (((ConcurrentHashMap<String, Date>) uniqueCallables).putIfAbsent(callable.getKey(),
+                        new Date()) == null) {
+                    addedCallables.add(callable);
+                }
             }
+            callables = addedCallables;
+            return callables.size() > 0;
         }
 
         /**
@@ -418,8 +472,9 @@ public class CallableQueueService implements Service, Instrumentable {
     private XLog log = XLog.getLog(getClass());
 
     private int queueSize;
+    private boolean concurrentQueue;
     private PriorityDelayQueue<CallableWrapper> queue;
-    private ThreadPoolExecutor executor;
+    private ExecutorService executor;
     private Instrumentation instrumentation;
 
     /**
@@ -451,8 +506,9 @@ public class CallableQueueService implements Service, Instrumentable {
         Configuration conf = services.getConf();
 
         queueSize = ConfigurationService.getInt(conf, CONF_QUEUE_SIZE);
+        concurrentQueue = ConfigurationService.getBoolean(conf, CONF_QUEUE_CONCURRENT);
         int threads = ConfigurationService.getInt(conf, CONF_THREADS);
-        boolean callableNextEligible = ConfigurationService.getBoolean(conf, CONF_CALLABLE_NEXT_ELIGIBLE);
+        final boolean callableNextEligible = ConfigurationService.getBoolean(conf, CONF_CALLABLE_NEXT_ELIGIBLE);
 
         interruptTypes = new HashSet<>();
         for (String type : ConfigurationService.getStrings(conf, CONF_CALLABLE_INTERRUPT_TYPES)) {
@@ -461,7 +517,29 @@ public class CallableQueueService implements Service, Instrumentable {
         }
         interruptTypes = ImmutableSet.copyOf(interruptTypes);
 
-        if (!callableNextEligible) {
+        if (concurrentQueue) {
+            queue = new ConcurrentPriorityDelayQueue<CallableWrapper>(3, 1000 * 30, TimeUnit.MILLISECONDS, queueSize) {
+                @Override
+                protected void debug(String msgTemplate, Object... msgArgs) {
+                    log.trace(msgTemplate, msgArgs);
+                }
+
+                @Override
+                protected boolean eligibleToPoll(QueueElement<?> element) {
+                    if (!callableNextEligible) {
+                        return true;
+                    }
+                    if (element != null) {
+                        CallableWrapper wrapper = (CallableWrapper) element;
+                        if (element.getElement() != null) {
+                            return callableReachMaxConcurrency(wrapper.getElement());
+                        }
+                    }
+                    return false;
+                }
+            };
+        }
+        else if (!callableNextEligible) {
             queue = new PriorityDelayQueue<CallableWrapper>(3, 1000 * 30, TimeUnit.MILLISECONDS, queueSize) {
                 @Override
                 protected void debug(String msgTemplate, Object... msgArgs) {
@@ -497,6 +575,41 @@ public class CallableQueueService implements Service, Instrumentable {
 
         interruptMapMaxSize = ConfigurationService.getInt(conf, CONF_CALLABLE_INTERRUPT_MAP_MAX_SIZE);
 
+        String executorType = ConfigurationService.get(conf, CONF_EXECUTOR).trim();
+        if (executorType.equals(EXECUTOR_DISPATCHER)) {
+            initDispatcher(conf);
+        }
+        else if (executorType.equals(EXECUTOR_THREADPOOL)) {
+            initThreadPool(threads);
+        }
+        else {
+            throw new IllegalArgumentException(XLog.format("Invalid [{0}] value [{1}], must be [{2}] or [{3}]",
+                    CONF_EXECUTOR, executorType, EXECUTOR_THREADPOOL, EXECUTOR_DISPATCHER));
+        }
+
+        maxCallableConcurrency = ConfigurationService.getInt(conf, CONF_CALLABLE_CONCURRENCY);
+    }
+
+    /**
+     * Run the callables on a dispatcher, bounded by {@link #CONF_EXECUTOR_MAX_ACTIVE} running callables, or by the max
+     * number of DB connections if not set, instead of by the number of threads.
+     *
+     * @param conf service configuration.
+     */
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    private void initDispatcher(Configuration conf) {
+        int maxActive = ConfigurationService.getInt(conf, CONF_EXECUTOR_MAX_ACTIVE);
+        if (maxActive <= 0) {
+            maxActive = ConfigurationService.getInt(conf, JPAService.CONF_MAX_ACTIVE_CONN);
+        }
+        QueueDispatchingExecutor dispatcher = new QueueDispatchingExecutor((BlockingQueue) queue, maxActive,
+                "CallableQueue");
+        dispatcher.start();
+        executor = dispatcher;
+    }
+
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    private void initThreadPool(int threads) {
         // IMPORTANT: The ThreadPoolExecutor does not always the execute
         // commands out of the queue, there are
         // certain conditions where commands are pushed directly to a thread.
@@ -531,8 +644,6 @@ public class CallableQueueService implements Service, Instrumentable {
                 }
             });
         }
-
-        maxCallableConcurrency = ConfigurationService.getInt(conf, CONF_CALLABLE_CONCURRENCY);
     }
 
     /**
@@ -567,24 +678,49 @@ public class CallableQueueService implements Service, Instrumentable {
         return CallableQueueService.class;
     }
 
+    private int getActiveCount() {
+        if (executor instanceof QueueDispatchingExecutor) {
+            return ((QueueDispatchingExecutor) executor).getActiveCount();
+        }
+        return ((ThreadPoolExecutor) executor).getActiveCount();
+    }
+
     /**
      * @return int size of queue
      */
-    public synchronized int queueSize() {
+    public int queueSize() {
         return queue.size();
     }
 
-    private synchronized boolean queue(CallableWrapper wrapper, boolean ignoreQueueSize) {
+    private boolean queue(CallableWrapper wrapper, boolean ignoreQueueSize) {
+        // the concurrent queue enforces its size atomically and the uniqueness check is atomic, no need to lock
+        if (concurrentQueue) {
+            return queueWrapper(wrapper, ignoreQueueSize);
+        }
+        synchronized (this) {
+            return queueWrapper(wrapper, ignoreQueueSize);
+        }
+    }
+
+    private boolean queueWrapper(CallableWrapper wrapper, boolean ignoreQueueSize) {
         if (!ignoreQueueSize && queue.size() >= queueSize) {
             log.warn("queue full, ignoring queuing for [{0}]", wrapper.getElement().getKey());
             return false;
         }
         if (!executor.isShutdown()) {
-            if (wrapper.filterDuplicates()) {
-                wrapper.addToUniqueCallables();
+            if (wrapper.filterDuplicates() && wrapper.addToUniqueCallables()) {
                 try {
                     executor.execute(wrapper);
                 }
+                catch (RejectedExecutionException ree) {
+                    wrapper.removeFromUniqueCallables();
+                    // another thread may have filled the queue after the size check
+                    if (concurrentQueue && !executor.isShutdown()) {
+                        log.warn("queue full, ignoring queuing for [{0}]", wrapper.getElement().getKey());
+                        return false;
+                    }
+                    throw new RuntimeException(ree);
+                }
                 catch (Throwable ree) {
                     wrapper.removeFromUniqueCallables();
                     throw new RuntimeException(ree);
@@ -631,7 +767,7 @@ public class CallableQueueService implements Service, Instrumentable {
      * @return <code>true</code> if the callable was queued, <code>false</code>
      *         if the queue is full and the callable was not queued.
      */
-    public synchronized boolean queue(XCallable<?> callable, long delay) {
+    public boolean queue(XCallable<?> callable, long delay) {
         if (callable == null) {
             return true;
         }
@@ -664,7 +800,7 @@ public class CallableQueueService implements Service, Instrumentable {
      * @return <code>true</code> if the callables were queued, <code>false</code> if the queue is full and the callables
      *         were not queued.
      */
-    public synchronized boolean queueSerial(List<? extends XCallable<?>> callables, long delay) {
+    public boolean queueSerial(List<? extends XCallable<?>> callables, long delay) {
         boolean queued;
         if (callables == null || callables.size() == 0) {
             queued = true;
@@ -688,7 +824,12 @@ public class CallableQueueService implements Service, Instrumentable {
      * @param instr instance to instrument the callable queue service to.
      */
     public void instrument(Instrumentation instr) {
-        instrumentation = instr;
+        synchronized (instrumentedTypes) {
+            instrumentation = instr;
+            for (Entry<String, AtomicInteger> entry : activeCallables.entrySet()) {
+                instrumentConcurrency(entry.getKey(), entry.getValue());
+            }
+        }
         instr.addSampler(INSTRUMENTATION_GROUP, INSTR_QUEUE_SIZE_SAMPLER, 60, 1, new Instrumentation.Variable<Long>() {
             public Long getValue() {
                 return (long) queue.size();
@@ -697,9 +838,61 @@ public class CallableQueueService implements Service, Instrumentable {
         instr.addSampler(INSTRUMENTATION_GROUP, INSTR_THREADS_ACTIVE_SAMPLER, 60, 1,
                 new Instrumentation.Variable<Long>() {
                     public Long getValue() {
-                        return (long) executor.getActiveCount();
+                        return (long) getActiveCount();
                     }
                 });
+        if (queue instanceof ConcurrentPriorityDelayQueue) {
+            instrumentTimerWheel(instr, ((ConcurrentPriorityDelayQueue<CallableWrapper>) queue).getTimerWheel());
+        }
+    }
+
+    /**
+     * Instruments the live concurrency of a callable type, the rejections are counted by the
+     * <code>[type]#exceeded.concurrency</code> counter.
+     *
+     * @param type callable type.
+     * @param counter active callables counter of the type.
+     */
+    private void instrumentConcurrency(String type, final AtomicInteger counter) {
+        synchronized (instrumentedTypes) {
+            if (instrumentation != null && instrumentedTypes.add(type)) {
+                instrumentation.addVariable(INSTRUMENTATION_GROUP, type + INSTR_CONCURRENCY_VARIABLE,
+                        new Instrumentation.Variable<Long>() {
+                            public Long getValue() {
+                                return (long) counter.get();
+                            }
+                        });
+            }
+        }
+    }
+
+    /**
+     * Instruments the occupancy of the timer wheel holding the delayed callables, per level and per bucket.
+     *
+     * @param instr instance to instrument the callable queue service to.
+     * @param wheel the timer wheel.
+     */
+    private void instrumentTimerWheel(Instrumentation instr, final HashedTimerWheel<?> wheel) {
+        instr.addVariable(INSTRUMENTATION_GROUP, INSTR_DELAYED_SIZE, new Instrumentation.Variable<Long>() {
+            public Long getValue() {
+                return (long) wheel.size();
+            }
+        });
+        for (int i = 0; i < wheel.getLevels(); i++) {
+            final int level = i;
+            instr.addVariable(INSTRUMENTATION_GROUP, INSTR_DELAYED_LEVEL + level + ".size",
+                    new Instrumentation.Variable<Long>() {
+                        public Long getValue() {
+                            return (long) wheel.levelSize(level);
+                        }
+                    });
+            instr.addVariable(INSTRUMENTATION_GROUP, INSTR_DELAYED_LEVEL + level + ".buckets",
+                    new Instrumentation.Variable<String>() {
+                        public String getValue() {
+                            return Arrays.toString(wheel.bucketSizes(level));
+                        }
+                    });
+        }
     }
 
     /**
@@ -21,8 +21,11 @@ package org.apache.oozie.service;
 import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.apache.oozie.CoordinatorJobBean;
+import org.apache.oozie.command.coord.CoordMaterializationPlan;
+import org.apache.oozie.command.coord.CoordMaterializeBatchXCommand;
 import org.apache.oozie.command.coord.CoordMaterializeTransitionXCommand;
 import org.apache.oozie.executor.jpa.BatchQueryExecutor;
 import org.apache.oozie.executor.jpa.CoordJobQueryExecutor;
@@ -30,6 +33,8 @@ import org.apache.oozie.executor.jpa.JPAExecutorException;
 import org.apache.oozie.executor.jpa.BatchQueryExecutor.UpdateEntry;
 import org.apache.oozie.executor.jpa.CoordJobQueryExecutor.CoordJobQuery;
 import org.apache.oozie.lock.LockToken;
+import org.apache.oozie.util.Instrumentable;
+import org.apache.oozie.util.Instrumentation;
 import org.apache.oozie.util.XCallable;
 import org.apache.oozie.util.XLog;
 import org.apache.oozie.util.DateUtils;
@@ -38,8 +43,12 @@ import org.apache.oozie.util.DateUtils;
  * The coordinator Materialization Lookup trigger service schedule lookup trigger command for every interval (default is
  * 5 minutes ). This interval could be configured through oozie configuration defined is either oozie-default.xml or
  * oozie-site.xml using the property name oozie.service.CoordMaterializeTriggerService.lookup.interval
+ * <p>
+ * With {@link #CONF_PIPELINE} enabled, the jobs are materialized in batches of {@link #CONF_PIPELINE_BATCH_SIZE} jobs
+ * by {@link CoordMaterializeBatchXCommand}, run in parallel and spread over {@link #CONF_PIPELINE_SPREAD}, instead of
+ * one {@link CoordMaterializeTransitionXCommand} per job.
  */
-public class CoordMaterializeTriggerService implements Service {
+public class CoordMaterializeTriggerService implements Service, Instrumentable {
     public static final String CONF_PREFIX = Service.CONF_PREFIX + "CoordMaterializeTriggerService.";
     /**
      * Time interval, in seconds, at which the Job materialization service will be scheduled to run.
@@ -59,9 +68,30 @@ public class CoordMaterializeTriggerService implements Service {
      * The number of coordinator jobs to be picked for materialization at a given time.
      */
     public static final String CONF_MATERIALIZATION_SYSTEM_LIMIT = CONF_PREFIX + "materialization.system.limit";
+    /**
+     * Whether the jobs are materialized in batches.
+     */
+    public static final String CONF_PIPELINE = CONF_PREFIX + "pipeline.enabled";
+    /**
+     * The number of coordinator jobs materialized and committed together in a batch.
+     */
+    public static final String CONF_PIPELINE_BATCH_SIZE = CONF_PREFIX + "pipeline.batch.size";
+    /**
+     * Time, in milliseconds, a batch materializes jobs for, the jobs left are materialized on their own.
+     */
+    public static final String CONF_PIPELINE_BATCH_TIME_LIMIT = CONF_PREFIX + "pipeline.batch.time.limit";
+    /**
+     * Time, in seconds, the batches of a lookup are spread over, at most the lookup interval.
+     */
+    public static final String CONF_PIPELINE_SPREAD = CONF_PREFIX + "pipeline.spread";
 
     private static final String INSTRUMENTATION_GROUP = "coord_job_mat";
     private static final String INSTR_MAT_JOBS_COUNTER = "jobs";
+    private static final String INSTR_MAT_BATCHES_COUNTER = "batches";
+    private static final String INSTR_LAG_MAX = "lag.max";
+
+    private static final AtomicLong maxLag = new AtomicLong();
+    private static volatile long lastMaxLag = 0;
 
     /**
      * This runnable class will run in every "interval" to queue CoordMaterializeTransitionXCommand.
@@ -141,6 +171,7 @@ public class CoordMaterializeTriggerService implements Service {
             XLog.Info.get().clear();
             XLog LOG = XLog.getLog(getClass());
             try {
+                lastMaxLag = maxLag.getAndSet(0);
                 // get current date
                 Date currDate = new Date(new Date().getTime() + lookupInterval * 1000);
                 // get list of all jobs that have actions that should be materialized.
@@ -163,20 +194,57 @@ public class CoordMaterializeTriggerService implements Service {
                         CoordJobQuery.GET_COORD_JOBS_OLDER_FOR_MATERIALIZATION, currDate, limit);
                 LOG.info("CoordMaterializeTriggerService - Curr Date= " + DateUtils.formatDateOozieTZ(currDate)
                         + ", Num jobs to materialize = " + materializeJobs.size());
+                boolean pipeline = ConfigurationService.getBoolean(CONF_PIPELINE);
+                List<String> jobIds = new ArrayList<String>();
                 for (CoordinatorJobBean coordJob : materializeJobs) {
                     Services.get().get(InstrumentationService.class).get()
                             .incr(INSTRUMENTATION_GROUP, INSTR_MAT_JOBS_COUNTER, 1);
-                    queueCallable(new CoordMaterializeTransitionXCommand(coordJob.getId(), materializationWindow));
+                    if (pipeline) {
+                        jobIds.add(coordJob.getId());
+                    }
+                    else {
+                        queueCallable(new CoordMaterializeTransitionXCommand(coordJob.getId(), materializationWindow));
+                    }
                     coordJob.setLastModifiedTime(new Date());
                     updateList.add(new UpdateEntry<CoordJobQuery>(CoordJobQuery.UPDATE_COORD_JOB_LAST_MODIFIED_TIME,
                             coordJob));
                 }
+                if (pipeline) {
+                    queueBatches(jobIds);
+                }
             }
             catch (JPAExecutorException jex) {
                 LOG.warn("JPAExecutorException while attempting to materialize coordinator jobs", jex);
             }
         }
 
+        /**
+         * Queues the jobs in batches of {@link CoordMaterializeTriggerService#CONF_PIPELINE_BATCH_SIZE}, delayed to
+         * spread them over {@link CoordMaterializeTriggerService#CONF_PIPELINE_SPREAD}.
+         *
+         * @param jobIds the ids of the jobs to materialize.
+         */
+        private void queueBatches(List<String> jobIds) {
+            int batchSize = Math.max(1, ConfigurationService.getInt(CONF_PIPELINE_BATCH_SIZE));
+            long spread = Math.max(0, Math.min(ConfigurationService.getInt(CONF_PIPELINE_SPREAD), lookupInterval))
+                    * 1000L;
+            int batches = (jobIds.size() + batchSize - 1) / batchSize;
+            for (int i = 0; i < batches; i++) {
+                List<String> batch = new ArrayList<String>(jobIds.subList(i * batchSize,
+                        Math.min(jobIds.size(), (i + 1) * batchSize)));
+                long batchDelay = spread * i / batches;
+                Services.get().get(InstrumentationService.class).get()
+                        .incr(INSTRUMENTATION_GROUP, INSTR_MAT_BATCHES_COUNTER, 1);
+                boolean ret = Services.get().get(CallableQueueService.class)
+                        .queue(new CoordMaterializeBatchXCommand(batch, materializationWindow), batchDelay);
+                if (ret == false) {
+                    LOG.warn("Unable to queue the batch of [{0}] coord jobs for CoordMaterializeTriggerRunnable. "
+                            + "Most possibly command queue is full. Queue size is :{1}", batch.size(),
+                            Services.get().get(CallableQueueService.class).queueSize());
+                }
+            }
+        }
+
         /**
          * Adds callables to a list. If the number of callables in the list reaches {@link
          * CoordMaterializeTriggerService#CONF_CALLABLE_BATCH_SIZE}, the entire batch is queued and the callables list
@@ -211,6 +279,7 @@ public class CoordMaterializeTriggerService implements Service {
         int lookupInterval = ConfigurationService.getInt(services.getConf(), CONF_LOOKUP_INTERVAL);
         // default is 300sec (5min)
         int schedulingInterval = Services.get().getConf().getInt(CONF_SCHEDULING_INTERVAL, lookupInterval);
+        CoordMaterializationPlan.initCache(services.getConf());
 
         Runnable lookupTriggerJobsRunnable = new CoordMaterializeTriggerRunnable(materializationWindow, lookupInterval);
 
@@ -218,8 +287,46 @@ public class CoordMaterializeTriggerService implements Service {
                                                       SchedulerService.Unit.SEC);
     }
 
+    /**
+     * Instruments the maximum materialization lag, in milliseconds, of the jobs materialized between the last two
+     * lookups.
+     *
+     * @param instr instrumentation to use.
+     */
+    @Override
+    public void instrument(Instrumentation instr) {
+        instr.addVariable(INSTRUMENTATION_GROUP, INSTR_LAG_MAX, new Instrumentation.Variable<Long>() {
+            @Override
+            public Long getValue() {
+                return lastMaxLag;
+            }
+        });
+    }
+
+    /**
+     * Records the lag of a job materialization, how late its first action is materialized after its nominal time.
+     *
+     * @param lag lag in milliseconds, negative if the action is materialized ahead of its nominal time.
+     */
+    public static void recordMaterializationLag(long lag) {
+        long current = maxLag.get();
+        while (lag > current && !maxLag.compareAndSet(current, lag)) {
+            current = maxLag.get();
+        }
+    }
+
+    /**
+     * Returns the maximum materialization lag of the jobs materialized between the last two lookups.
+     *
+     * @return the maximum materialization lag in milliseconds, 0 if no job was late.
+     */
+    public static long getMaxMaterializationLag() {
+        return lastMaxLag;
+    }
+
     @Override
     public void destroy() {
+        CoordMaterializationPlan.destroyCache();
     }
 
     @Override
@@ -34,7 +34,9 @@ import java.util.List;
  * The ELService creates {@link ELEvaluator} instances preconfigured with constants and functions defined in the
  * configuration. <p> The following configuration parameters control the EL service: <p> {@link #CONF_CONSTANTS} list
  * of constant definitions to be available for EL evaluations. <p> {@link #CONF_FUNCTIONS} list of function definitions
- * to be available for EL evalations. <p> Definitions must be separated by a comma, definitions are trimmed. <p> The
+ * to be available for EL evalations. <p> {@link #CONF_EXPRESSION_CACHE_SIZE} and
+ * {@link #CONF_EXPRESSION_CACHE_MAX_LENGTH} bound the cache of parsed expressions shared by the {@link ELEvaluator}
+ * instances. <p> Definitions must be separated by a comma, definitions are trimmed. <p> The
  * syntax for a constant definition is <code>PREFIX:NAME=CLASS_NAME#CONSTANT_NAME</code>. <p> The syntax for a constant
  * definition is <code>PREFIX:NAME=CLASS_NAME#METHOD_NAME</code>.
  */
@@ -52,6 +54,10 @@ public class ELService implements Service {
 
     public static final String CONF_GROUPS = CONF_PREFIX + "groups";
 
+    public static final String CONF_EXPRESSION_CACHE_SIZE = CONF_PREFIX + "expression.cache.size";
+
+    public static final String CONF_EXPRESSION_CACHE_MAX_LENGTH = CONF_PREFIX + "expression.cache.max.length";
+
     private final XLog log = XLog.getLog(getClass());
 
     //<Group Name>, <List of constants>
@@ -135,6 +141,9 @@ public class ELService implements Service {
             tmpFunctions.addAll(extractFunctions(services.getConf(), CONF_EXT_FUNCTIONS + group));
             functions.put(group, tmpFunctions);
         }
+        ELEvaluator.configureExpressionCache(
+                ConfigurationService.getInt(services.getConf(), CONF_EXPRESSION_CACHE_SIZE),
+                ConfigurationService.getInt(services.getConf(), CONF_EXPRESSION_CACHE_MAX_LENGTH));
     }
 
     /**
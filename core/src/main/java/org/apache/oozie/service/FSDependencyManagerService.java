@@ -0,0 +1,325 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.oozie.service;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.util.ReflectionUtils;
+import org.apache.oozie.command.coord.CoordActionInputCheckXCommand;
+import org.apache.oozie.dependency.fs.FSDependencyWatcher;
+import org.apache.oozie.dependency.fs.FSDirectoryScanner;
+import org.apache.oozie.util.Instrumentable;
+import org.apache.oozie.util.Instrumentation;
+import org.apache.oozie.util.XLog;
+
+import com.google.common.annotations.VisibleForTesting;
+
+/**
+ * Index of the coordinator actions waiting for file system dependencies, notifying them when their dependencies
+ * become available instead of polling.
+ * <p>
+ * An action waiting for a file system dependency, typically its first missing done flag, registers it in the index.
+ * The directories holding the registered dependencies are watched by a {@link FSDependencyWatcher}, a
+ * {@link FSDirectoryScanner} by default. When a registered dependency shows up, the input check of exactly the actions
+ * waiting for it is queued. The input checks of the registered actions are requeued every
+ * {@link #CONF_REQUEUE_INTERVAL} only, to time out or to catch missed events.
+ * <p>
+ * Registrations not renewed by an input check for {@link #CONF_REGISTRATION_TTL}, those of the actions no longer
+ * waiting, are purged.
+ * <p>
+ * This service is optional, it is enabled by adding it to <code>oozie.services.ext</code>.
+ */
+public class FSDependencyManagerService implements Service, Instrumentable, FSDependencyWatcher.Listener {
+
+    public static final String CONF_PREFIX = Service.CONF_PREFIX + "FSDependencyManagerService.";
+
+    /**
+     * Class of the {@link FSDependencyWatcher} feeding the index.
+     */
+    public static final String CONF_WATCHER_IMPL = CONF_PREFIX + "watcher.impl";
+
+    /**
+     * Interval, in milliseconds, the input checks of the registered actions are requeued at.
+     */
+    public static final String CONF_REQUEUE_INTERVAL = CONF_PREFIX + "requeue.interval";
+
+    /**
+     * Time, in seconds, after which a registration not renewed is purged.
+     */
+    public static final String CONF_REGISTRATION_TTL = CONF_PREFIX + "registration.ttl";
+
+    private static final String INSTRUMENTATION_GROUP = "fs_dependencies";
+
+    private static final XLog LOG = XLog.getLog(FSDependencyManagerService.class);
+
+    /**
+     * Waiting actions and their registration time by dependency name, by parent directory.
+     */
+    private final Map<URI, Map<String, Map<String, Long>>> waiting = new HashMap<URI, Map<String, Map<String, Long>>>();
+
+    /**
+     * Registered dependencies by action.
+     */
+    private final Map<String, Set<URI>> dependencies = new HashMap<String, Set<URI>>();
+
+    private FSDependencyWatcher watcher;
+    private long requeueInterval;
+    private long registrationTtl;
+
+    @Override
+    public void init(Services services) throws ServiceException {
+        Configuration conf = services.getConf();
+        Class<?> watcherClass = conf.getClass(CONF_WATCHER_IMPL, FSDirectoryScanner.class);
+        watcher = (FSDependencyWatcher) ReflectionUtils.newInstance(watcherClass, null);
+        watcher.init(conf, this);
+        requeueInterval = ConfigurationService.getLong(conf, CONF_REQUEUE_INTERVAL);
+        registrationTtl = ConfigurationService.getLong(conf, CONF_REGISTRATION_TTL) * 1000;
+        Runnable purgeWorker = new Runnable() {
+            @Override
+            public void run() {
+                purgeExpiredRegistrations(System.currentTimeMillis());
+            }
+        };
+        long purgeInterval = Math.max(1, registrationTtl / 1000 / 2);
+        services.get(SchedulerService.class).schedule(purgeWorker, purgeInterval, purgeInterval,
+                SchedulerService.Unit.SEC);
+        LOG.info("FSDependencyManagerService initialized. Dependency watcher is {0}", watcherClass.getName());
+    }
+
+    @Override
+    public void destroy() {
+        watcher.destroy();
+        synchronized (this) {
+            waiting.clear();
+            dependencies.clear();
+        }
+    }
+
+    @Override
+    public Class<? extends Service> getInterface() {
+        return FSDependencyManagerService.class;
+    }
+
+    @Override
+    public void instrument(Instrumentation instr) {
+        instr.addVariable(INSTRUMENTATION_GROUP, "waiting.actions", new Instrumentation.Variable<Long>() {
+            @Override
+            public Long getValue() {
+                synchronized (FSDependencyManagerService.this) {
+                    return (long) dependencies.size();
+                }
+            }
+        });
+        instr.addVariable(INSTRUMENTATION_GROUP, "watched.dirs", new Instrumentation.Variable<Long>() {
+            @Override
+            public Long getValue() {
+                synchronized (FSDependencyManagerService.this) {
+                    return (long) waiting.size();
+                }
+            }
+        });
+    }
+
+    /**
+     * Return the interval the input checks of the actions registered for notifications are requeued at.
+     *
+     * @return the requeue interval in milliseconds.
+     */
+    public long getRequeueInterval() {
+        return requeueInterval;
+    }
+
+    /**
+     * Register an action waiting for a missing dependency, or renew its registration.
+     *
+     * @param uri URI of the dependency
+     * @param conf configuration to access the dependency
+     * @param user user to access the dependency as
+     * @param actionId ID of the action waiting for the dependency
+     */
+    public void addMissingDependency(URI uri, Configuration conf, String user, String actionId) {
+        Path path = new Path(uri);
+        URI dir = path.getParent().toUri();
+        synchronized (this) {
+            Map<String, Map<String, Long>> names = waiting.get(dir);
+            if (names == null) {
+                names = new HashMap<String, Map<String, Long>>();
+                waiting.put(dir, names);
+            }
+            Map<String, Long> actions = names.get(path.getName());
+            if (actions == null) {
+                actions = new HashMap<String, Long>();
+                names.put(path.getName(), actions);
+            }
+            actions.put(actionId, System.currentTimeMillis());
+            Set<URI> uris = dependencies.get(actionId);
+            if (uris == null) {
+                uris = new HashSet<URI>();
+                dependencies.put(actionId, uris);
+            }
+            uris.add(path.toUri());
+            watcher.watch(dir, conf, user);
+        }
+    }
+
+    /**
+     * Unregister an action waiting for a dependency.
+     *
+     * @param uri URI of the dependency
+     * @param actionId ID of the action waiting for the dependency
+     * @return <code>true</code> if the action was registered for the dependency.
+     */
+    public boolean removeMissingDependency(URI uri, String actionId) {
+        Path path = new Path(uri);
+        synchronized (this) {
+            Set<URI> uris = dependencies.get(actionId);
+            if (uris == null || !uris.remove(path.toUri())) {
+                return false;
+            }
+            if (uris.isEmpty()) {
+                dependencies.remove(actionId);
+            }
+            removeWaitingAction(path, actionId);
+        }
+        return true;
+    }
+
+    /**
+     * Return the actions waiting for a dependency.
+     *
+     * @param uri URI of the dependency
+     * @return the IDs of the waiting actions.
+     */
+    public synchronized Collection<String> getWaitingActions(URI uri) {
+        Path path = new Path(uri);
+        Map<String, Map<String, Long>> names = waiting.get(path.getParent().toUri());
+        Map<String, Long> actions = (names != null) ? names.get(path.getName()) : null;
+        return (actions != null) ? new ArrayList<String>(actions.keySet()) : Collections.<String>emptyList();
+    }
+
+    /**
+     * Queue the input check of the actions waiting for the reported entries of a directory and unregister them.
+     *
+     * @param dir watched directory
+     * @param names names of the entries of the directory
+     */
+    @Override
+    public void filesAvailable(URI dir, Set<String> names) {
+        List<String> actionIds = new ArrayList<String>();
+        synchronized (this) {
+            Map<String, Map<String, Long>> waitingNames = waiting.get(dir);
+            if (waitingNames == null) {
+                return;
+            }
+            for (String name : names) {
+                Map<String, Long> actions = waitingNames.get(name);
+                if (actions != null) {
+                    actionIds.addAll(actions.keySet());
+                }
+            }
+            for (String actionId : actionIds) {
+                Set<URI> uris = dependencies.remove(actionId);
+                if (uris != null) {
+                    for (URI uri : uris) {
+                        removeWaitingAction(new Path(uri), actionId);
+                    }
+                }
+            }
+        }
+        CallableQueueService queueService = Services.get().get(CallableQueueService.class);
+        for (String actionId : actionIds) {
+            LOG.debug("Dependency available in [{0}], queueing input check of action [{1}]", dir, actionId);
+            String jobId = actionId.substring(0, actionId.lastIndexOf('@'));
+            if (!queueService.queue(new CoordActionInputCheckXCommand(actionId, jobId))) {
+                LOG.warn("Unable to queue the input check of action [{0}], most likely the command queue is full."
+                        + " Queue size is [{1}]", actionId, queueService.queueSize());
+            }
+        }
+    }
+
+    /**
+     * Remove a waiting action of a dependency, stop watching its directory if nobody waits for it anymore.
+     */
+    private void removeWaitingAction(Path path, String actionId) {
+        URI dir = path.getParent().toUri();
+        Map<String, Map<String, Long>> names = waiting.get(dir);
+        if (names != null) {
+            Map<String, Long> actions = names.get(path.getName());
+            if (actions != null) {
+                actions.remove(actionId);
+                if (actions.isEmpty()) {
+                    names.remove(path.getName());
+                }
+            }
+            if (names.isEmpty()) {
+                waiting.remove(dir);
+                watcher.unwatch(dir);
+            }
+        }
+    }
+
+    /**
+     * Purge the registrations not renewed for the registration TTL.
+     *
+     * @param now current time in milliseconds
+     */
+    @VisibleForTesting
+    public synchronized void purgeExpiredRegistrations(long now) {
+        for (Iterator<Map.Entry<URI, Map<String, Map<String, Long>>>> dirIt = waiting.entrySet().iterator();
+                dirIt.hasNext();) {
+            Map.Entry<URI, Map<String, Map<String, Long>>> dirEntry = dirIt.next();
+            for (Iterator<Map.Entry<String, Map<String, Long>>> nameIt = dirEntry.getValue().entrySet().iterator();
+                    nameIt.hasNext();) {
+                Map.Entry<String, Map<String, Long>> nameEntry = nameIt.next();
+                for (Iterator<Map.Entry<String, Long>> actionIt = nameEntry.getValue().entrySet().iterator();
+                        actionIt.hasNext();) {
+                    Map.Entry<String, Long> actionEntry = actionIt.next();
+                    if (actionEntry.getValue() < now - registrationTtl) {
+                        actionIt.remove();
+                        Set<URI> uris = dependencies.get(actionEntry.getKey());
+                        if (uris != null) {
+                            uris.remove(new Path(new Path(dirEntry.getKey()), nameEntry.getKey()).toUri());
+                            if (uris.isEmpty()) {
+                                dependencies.remove(actionEntry.getKey());
+                            }
+                        }
+                    }
+                }
+                if (nameEntry.getValue().isEmpty()) {
+                    nameIt.remove();
+                }
+            }
+            if (dirEntry.getValue().isEmpty()) {
+                dirIt.remove();
+                watcher.unwatch(dirEntry.getKey());
+            }
+        }
+    }
+}
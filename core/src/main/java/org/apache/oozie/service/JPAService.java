@@ -39,6 +39,7 @@ import org.apache.hadoop.conf.Configuration;
 import org.apache.oozie.BundleActionBean;
 import org.apache.oozie.BundleJobBean;
 import org.apache.oozie.CoordinatorActionBean;
+import org.apache.oozie.CompressionDictionaryBean;
 import org.apache.oozie.CoordinatorJobBean;
 import org.apache.oozie.ErrorCode;
 import org.apache.oozie.FaultInjection;
@@ -49,6 +50,7 @@ import org.apache.oozie.client.rest.JsonBean;
 import org.apache.oozie.client.rest.JsonSLAEvent;
 import org.apache.oozie.command.SkipCommitFaultInjection;
 import org.apache.oozie.compression.CodecFactory;
+import org.apache.oozie.executor.jpa.CompressionDictionaryGetJPAExecutor;
 import org.apache.oozie.executor.jpa.JPAExecutor;
 import org.apache.oozie.executor.jpa.JPAExecutorException;
 import org.apache.oozie.sla.SLARegistrationBean;
@@ -128,6 +130,24 @@ public class JPAService implements Service, Instrumentable {
                 }
             });
         }
+        instr.addVariable(INSTRUMENTATION_GROUP_JPA, "blob.compressions", new Instrumentation.Variable<Long>() {
+            @Override
+            public Long getValue() {
+                return CodecFactory.getCompressions();
+            }
+        });
+        instr.addVariable(INSTRUMENTATION_GROUP_JPA, "blob.decompressions", new Instrumentation.Variable<Long>() {
+            @Override
+            public Long getValue() {
+                return CodecFactory.getDecompressions();
+            }
+        });
+        instr.addVariable(INSTRUMENTATION_GROUP_JPA, "blob.unchanged.writes", new Instrumentation.Variable<Long>() {
+            @Override
+            public Long getValue() {
+                return CodecFactory.getUnchangedWrites();
+            }
+        });
     }
 
     private BasicDataSource getBasicDataSource() {
@@ -252,7 +272,18 @@ public class JPAService implements Service, Instrumentable {
         entityManager.getTransaction().commit();
         entityManager.close();
         try {
-            CodecFactory.initialize(conf);
+            CodecFactory.initialize(conf, new CodecFactory.DictionaryLoader() {
+                @Override
+                public byte[] load(String id) throws IOException {
+                    try {
+                        CompressionDictionaryBean bean = execute(new CompressionDictionaryGetJPAExecutor(id));
+                        return (bean != null) ? bean.getDictionary() : null;
+                    }
+                    catch (JPAExecutorException ex) {
+                        throw new IOException(ex);
+                    }
+                }
+            });
         }
         catch (final Exception ex) {
             throw new ServiceException(ErrorCode.E0100, getClass().getName(), ex);
@@ -18,6 +18,12 @@
 
 package org.apache.oozie.service;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.TreeSet;
+
+import org.apache.oozie.lock.CompositeLockToken;
 import org.apache.oozie.util.Instrumentable;
 import org.apache.oozie.util.Instrumentation;
 import org.apache.oozie.lock.LockToken;
@@ -38,6 +44,16 @@ public class MemoryLocksService implements Service, Instrumentable {
     }
 
     protected static final String INSTRUMENTATION_GROUP = "locks";
+    public static final String INSTR_STRIPE_PREFIX = "stripe.";
+    public static final String INSTR_WAIT_SUFFIX = ".wait";
+    public static final String INSTR_HELD_SUFFIX = ".held";
+    public static final String INSTR_HOLDERS = "holders";
+
+    /**
+     * Maximum number of lock holders reported by the {@link #INSTR_HOLDERS} variable.
+     */
+    static final int MAX_REPORTED_HOLDERS = 100;
+
     private MemoryLocks locks;
 
     /**
@@ -70,6 +86,9 @@ public class MemoryLocksService implements Service, Instrumentable {
 
     /**
      * Instruments the memory locks service.
+     * <p>
+     * Besides the number of locks, it exposes the wait time histogram and the number of held locks of each stripe,
+     * and the current lock holders.
      *
      * @param instr instance to instrument the memory locks service to.
      */
@@ -80,6 +99,26 @@ public class MemoryLocksService implements Service, Instrumentable {
                 return (long) finalLocks.size();
             }
         });
+        for (int i = 0; i < MemoryLocks.STRIPES; i++) {
+            final int stripe = i;
+            instr.addVariable(INSTRUMENTATION_GROUP, INSTR_STRIPE_PREFIX + stripe + INSTR_WAIT_SUFFIX,
+                    new Instrumentation.Variable<String>() {
+                        public String getValue() {
+                            return finalLocks.getWaitHistogramAsString(stripe);
+                        }
+                    });
+            instr.addVariable(INSTRUMENTATION_GROUP, INSTR_STRIPE_PREFIX + stripe + INSTR_HELD_SUFFIX,
+                    new Instrumentation.Variable<Long>() {
+                        public Long getValue() {
+                            return (long) finalLocks.getHeldCount(stripe);
+                        }
+                    });
+        }
+        instr.addVariable(INSTRUMENTATION_GROUP, INSTR_HOLDERS, new Instrumentation.Variable<String>() {
+            public String getValue() {
+                return finalLocks.getHolders(MAX_REPORTED_HOLDERS).toString();
+            }
+        });
     }
 
     /**
@@ -108,6 +147,63 @@ public class MemoryLocksService implements Service, Instrumentable {
         return locks.getLock(resource, Type.WRITE, wait);
     }
 
+    /**
+     * Obtain WRITE locks for several resources, all of them or none.
+     * <p>
+     * The locks are obtained in the natural order of the resource names, so that callers locking overlapping sets of
+     * resources cannot deadlock.
+     *
+     * @param resources resource names.
+     * @param wait time out in milliseconds to wait for all the locks, -1 means no timeout and 0 no wait.
+     * @return the lock token for all the resources, holding their tokens in the natural order of the resource names, or
+     * <code>null</code> if any lock could not be obtained.
+     * @throws InterruptedException thrown if the thread was interrupted while waiting.
+     */
+    public CompositeLockToken getWriteLocks(Collection<String> resources, long wait) throws InterruptedException {
+        long start = System.currentTimeMillis();
+        List<LockToken> tokens = new ArrayList<LockToken>();
+        boolean locked = false;
+        try {
+            for (String resource : new TreeSet<String>(resources)) {
+                LockToken token = getWriteLock(resource, getRemainingWait(wait, start));
+                if (token == null) {
+                    return null;
+                }
+                tokens.add(token);
+            }
+            locked = true;
+            return new CompositeLockToken(tokens);
+        }
+        finally {
+            if (!locked) {
+                new CompositeLockToken(tokens).release();
+            }
+        }
+    }
+
+    /**
+     * Return if the locks are leased, obtaining several locks at once then saves remote calls.
+     *
+     * @return <code>false</code>, in-memory locks are not leased.
+     */
+    public boolean isLeased() {
+        return false;
+    }
+
+    /**
+     * Return what is left of a lock wait time.
+     *
+     * @param wait time out in milliseconds, -1 means no timeout and 0 no wait.
+     * @param start time the wait started at.
+     * @return what is left of the wait, 0 (no wait) if the time is up.
+     */
+    protected static long getRemainingWait(long wait, long start) {
+        if (wait <= 0) {
+            return wait;
+        }
+        return Math.max(0, wait - (System.currentTimeMillis() - start));
+    }
+
     @VisibleForTesting
     public MemoryLocks getMemoryLocks() {
         return locks;
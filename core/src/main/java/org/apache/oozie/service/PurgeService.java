@@ -20,11 +20,13 @@ package org.apache.oozie.service;
 
 import org.apache.hadoop.conf.Configuration;
 import org.apache.oozie.command.PurgeXCommand;
+import org.apache.oozie.util.Instrumentable;
+import org.apache.oozie.util.Instrumentation;
 
 /**
  * The PurgeService schedules purging of completed jobs and associated action older than a specified age for workflow, coordinator and bundle.
  */
-public class PurgeService implements Service {
+public class PurgeService implements Service, Instrumentable {
 
     public static final String CONF_PREFIX = Service.CONF_PREFIX + "PurgeService.";
     /**
@@ -40,6 +42,18 @@ public class PurgeService implements Service {
     public static final String CONF_PURGE_INTERVAL = CONF_PREFIX + "purge.interval";
     public static final String PURGE_LIMIT = CONF_PREFIX + "purge.limit";
     public static final String PURGE_COMMAND_ENABLED = CONF_PREFIX + "enable.command.line";
+    /**
+     * Number of threads purging chunks of jobs in parallel.
+     */
+    public static final String PURGE_THREADS = CONF_PREFIX + "purge.threads";
+    /**
+     * Maximum number of rows deleted per second by a purge, 0 for no limit.
+     */
+    public static final String PURGE_MAX_ROWS_PER_SECOND = CONF_PREFIX + "purge.max.rows.per.second";
+    /**
+     * Whether the purge saves its progress so it resumes after a restart.
+     */
+    public static final String PURGE_CHECKPOINT_ENABLED = CONF_PREFIX + "purge.checkpoint.enabled";
 
     /**
      * PurgeRunnable is the runnable which is scheduled to run at the configured interval. PurgeCommand is queued to
@@ -95,6 +109,29 @@ public class PurgeService implements Service {
                 ConfigurationService.getInt(conf, CONF_PURGE_INTERVAL), SchedulerService.Unit.SEC);
     }
 
+    /**
+     * Instruments the purge, the jobs left to process by the running purge and the rows it deletes per second.
+     *
+     * @param instr instrumentation to use.
+     */
+    @Override
+    public void instrument(Instrumentation instr) {
+        instr.addVariable(PurgeXCommand.INSTRUMENTATION_GROUP, PurgeXCommand.INSTR_BACKLOG,
+                new Instrumentation.Variable<Long>() {
+                    @Override
+                    public Long getValue() {
+                        return PurgeXCommand.getBacklog();
+                    }
+                });
+        instr.addVariable(PurgeXCommand.INSTRUMENTATION_GROUP, PurgeXCommand.INSTR_ROWS_PER_SECOND,
+                new Instrumentation.Variable<Long>() {
+                    @Override
+                    public Long getValue() {
+                        return PurgeXCommand.getRowsPerSecond();
+                    }
+                });
+    }
+
     /**
      * Destroy the Purge Jobs Service.
      */
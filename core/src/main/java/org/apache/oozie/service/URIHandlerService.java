@@ -31,12 +31,16 @@ import org.apache.hadoop.util.ReflectionUtils;
 import org.apache.oozie.ErrorCode;
 import org.apache.oozie.action.hadoop.LauncherURIHandler;
 import org.apache.oozie.action.hadoop.LauncherURIHandlerFactory;
+import org.apache.oozie.dependency.DependencyProber;
+import org.apache.oozie.dependency.FSExistenceCache;
 import org.apache.oozie.dependency.FSURIHandler;
 import org.apache.oozie.dependency.URIHandler;
 import org.apache.oozie.dependency.URIHandlerException;
+import org.apache.oozie.util.Instrumentable;
+import org.apache.oozie.util.Instrumentation;
 import org.apache.oozie.util.XLog;
 
-public class URIHandlerService implements Service {
+public class URIHandlerService implements Service, Instrumentable {
 
     private static final String CONF_PREFIX = Service.CONF_PREFIX + "URIHandlerService.";
     public static final String URI_HANDLERS = CONF_PREFIX + "uri.handlers";
@@ -44,11 +48,14 @@ public class URIHandlerService implements Service {
     public static final String URI_HANDLER_SUPPORTED_SCHEMES_PREFIX = CONF_PREFIX + "uri.handler.";
     public static final String URI_HANDLER_SUPPORTED_SCHEMES_SUFFIX = ".supported.schemes";
 
+    private static final String INSTRUMENTATION_GROUP = "fs_exists_cache";
+
     private static XLog LOG = XLog.getLog(URIHandlerService.class);
     private Configuration launcherConf;
     private Set<Class<?>> launcherClassesToShip;
     private Map<String, URIHandler> cache;
     private URIHandler defaultHandler;
+    private DependencyProber prober;
 
     @Override
     public void init(Services services) throws ServiceException {
@@ -83,6 +90,7 @@ public class URIHandlerService implements Service {
 
         initLauncherClassesToShip();
         initLauncherURIHandlerConf();
+        prober = DependencyProber.create(conf);
 
         LOG.info("Loaded urihandlers {0}", Arrays.toString(classes));
         LOG.info("Loaded default urihandler {0}", defaultHandler.getClass().getName());
@@ -126,6 +134,9 @@ public class URIHandlerService implements Service {
 
     @Override
     public void destroy() {
+        if (prober != null) {
+            prober.destroy();
+        }
         Set<URIHandler> handlers = new HashSet<URIHandler>();
         handlers.addAll(cache.values());
         for (URIHandler handler : handlers) {
@@ -139,6 +150,65 @@ public class URIHandlerService implements Service {
         return URIHandlerService.class;
     }
 
+    /**
+     * Instruments the hits, misses and size of the cache of the existence of file system paths and the latency of the
+     * asynchronous dependency checks, if enabled.
+     *
+     * @param instr instrumentation to use.
+     */
+    @Override
+    public void instrument(Instrumentation instr) {
+        if (prober != null) {
+            prober.instrument(instr);
+        }
+        final FSExistenceCache existenceCache = getFSExistenceCache();
+        if (existenceCache == null) {
+            return;
+        }
+        instr.addVariable(INSTRUMENTATION_GROUP, "hits", new Instrumentation.Variable<Long>() {
+            @Override
+            public Long getValue() {
+                return existenceCache.getHits();
+            }
+        });
+        instr.addVariable(INSTRUMENTATION_GROUP, "misses", new Instrumentation.Variable<Long>() {
+            @Override
+            public Long getValue() {
+                return existenceCache.getMisses();
+            }
+        });
+        instr.addVariable(INSTRUMENTATION_GROUP, "size", new Instrumentation.Variable<Long>() {
+            @Override
+            public Long getValue() {
+                return existenceCache.getSize();
+            }
+        });
+    }
+
+    /**
+     * Return the cache of the existence of paths of the file system handler.
+     *
+     * @return the cache, <code>null</code> if disabled or if the file systems are not handled by {@link FSURIHandler}.
+     */
+    public FSExistenceCache getFSExistenceCache() {
+        URIHandler handler = cache.get("hdfs");
+        if (!(handler instanceof FSURIHandler)) {
+            handler = defaultHandler;
+        }
+        return (handler instanceof FSURIHandler) ? ((FSURIHandler) handler).getExistenceCache() : null;
+    }
+
+    /**
+     * Open a probe to check the dependencies of an input check asynchronously.
+     *
+     * @param conf configuration to access the dependencies
+     * @param user user to access the dependencies as
+     * @return the probe, <code>null</code> if dependencies are checked on the command thread.
+     */
+    public DependencyProber.Probe newDependencyProbe(Configuration conf, String user) {
+        return (prober != null) ? prober.newProbe(conf, user) : null;
+    }
+
     /**
      * Return the classes to be shipped to the launcher
      * @return the set of classes to be shipped to the launcher
@@ -0,0 +1,284 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.oozie.service;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.Date;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.oozie.WorkflowAppDefBean;
+import org.apache.oozie.executor.jpa.JPAExecutorException;
+import org.apache.oozie.executor.jpa.WorkflowAppDefGetJPAExecutor;
+import org.apache.oozie.executor.jpa.WorkflowAppDefInsertJPAExecutor;
+import org.apache.oozie.executor.jpa.WorkflowAppDefLastUsedUpdateJPAExecutor;
+import org.apache.oozie.util.XConfiguration;
+import org.apache.oozie.util.XLog;
+import org.apache.oozie.workflow.lite.LiteWorkflowApp;
+import org.apache.oozie.workflow.lite.LiteWorkflowInstance;
+import org.apache.oozie.workflow.lite.LiteWorkflowInstanceSerializer;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+/**
+ * Service that stores the workflow application definitions of the workflow instances serialized in the compact format.
+ * <p>
+ * The application definitions are stored in the database once, keyed by their content hash, and cached in memory. The
+ * workflow instances then only hold their execution state, see {@link LiteWorkflowInstanceSerializer}.
+ * <p>
+ * Writing workflow instances in the compact format is enabled with {@link #CONF_COMPACT_INSTANCES}. Instances in both
+ * formats are always read, so the compact format can be enabled on a running database: the existing instances are
+ * migrated the next time they are written.
+ * <p>
+ * Writing an instance refreshes the last used time of its application definition, at most once per
+ * {@link #LAST_USED_INTERVAL} and server, so that the purge keeps the definitions of the workflows being submitted.
+ * <p>
+ * The job configurations are cached parsed by their digest, the compact instances with a configuration equal to the
+ * configuration of their job do not store it and are read without parsing XML.
+ */
+public class WorkflowAppDefService implements Service, LiteWorkflowInstanceSerializer.AppDefStore {
+
+    public static final String CONF_PREFIX = Service.CONF_PREFIX + "WorkflowAppDefService.";
+
+    /**
+     * Whether workflow instances are written in the compact format.
+     */
+    public static final String CONF_COMPACT_INSTANCES = CONF_PREFIX + "compact.instances";
+
+    /**
+     * Maximum number of application definitions cached in memory.
+     */
+    public static final String CONF_CACHE_SIZE = CONF_PREFIX + "cache.size";
+
+    /**
+     * Maximum number of parsed job configurations cached in memory.
+     */
+    public static final String CONF_CONF_CACHE_SIZE = CONF_PREFIX + "conf.cache.size";
+
+    /**
+     * Interval the last used time of the application definitions is refreshed at, well below the one day the purge
+     * keeps unreferenced definitions at least for.
+     */
+    public static final long LAST_USED_INTERVAL = 60 * 60 * 1000;
+
+    private static final XLog LOG = XLog.getLog(WorkflowAppDefService.class);
+
+    private boolean compactInstances;
+    private Cache<String, LiteWorkflowApp> cache;
+    private Cache<String, Long> lastUsed;
+    private Cache<String, Configuration> confCache;
+    private JPAService jpaService;
+
+    @Override
+    public void init(Services services) throws ServiceException {
+        compactInstances = ConfigurationService.getBoolean(services.getConf(), CONF_COMPACT_INSTANCES);
+        cache = CacheBuilder.newBuilder().maximumSize(ConfigurationService.getInt(services.getConf(), CONF_CACHE_SIZE))
+                .build();
+        lastUsed = CacheBuilder.newBuilder()
+                .maximumSize(ConfigurationService.getInt(services.getConf(), CONF_CACHE_SIZE)).build();
+        confCache = CacheBuilder.newBuilder()
+                .maximumSize(ConfigurationService.getInt(services.getConf(), CONF_CONF_CACHE_SIZE)).build();
+        jpaService = services.get(JPAService.class);
+    }
+
+    @Override
+    public void destroy() {
+        if (cache != null) {
+            cache.invalidateAll();
+        }
+        if (lastUsed != null) {
+            lastUsed.invalidateAll();
+        }
+        if (confCache != null) {
+            confCache.invalidateAll();
+        }
+    }
+
+    @Override
+    public Class<? extends Service> getInterface() {
+        return WorkflowAppDefService.class;
+    }
+
+    /**
+     * Return if workflow instances are written in the compact format.
+     *
+     * @return <code>true</code> if workflow instances are written in the compact format.
+     */
+    public boolean isCompactInstances() {
+        return compactInstances;
+    }
+
+    /**
+     * Serialize a workflow instance, in the compact format if enabled, in the legacy format otherwise.
+     *
+     * @param instance workflow instance.
+     * @return the serialized workflow instance.
+     * @throws IOException thrown if the workflow instance could not be serialized.
+     */
+    public byte[] toByteArray(LiteWorkflowInstance instance) throws IOException {
+        return toByteArray(instance, null);
+    }
+
+    /**
+     * Serialize a workflow instance of a job, in the compact format if enabled, in the legacy format otherwise.
+     *
+     * @param instance workflow instance.
+     * @param jobConf configuration XML of the job, may be <code>null</code>.
+     * @return the serialized workflow instance.
+     * @throws IOException thrown if the workflow instance could not be serialized.
+     */
+    public byte[] toByteArray(LiteWorkflowInstance instance, String jobConf) throws IOException {
+        return LiteWorkflowInstanceSerializer.toByteArray(instance, compactInstances ? this : null, jobConf);
+    }
+
+    /**
+     * Deserialize a workflow instance serialized in any format.
+     *
+     * @param array serialized workflow instance.
+     * @return the workflow instance.
+     * @throws IOException thrown if the workflow instance could not be deserialized.
+     */
+    public LiteWorkflowInstance fromByteArray(byte[] array) throws IOException {
+        return fromByteArray(array, (String) null);
+    }
+
+    /**
+     * Deserialize a workflow instance of a job serialized in any format.
+     *
+     * @param array serialized workflow instance.
+     * @param jobConf configuration XML of the job, may be <code>null</code> if the instance stores its configuration.
+     * @return the workflow instance.
+     * @throws IOException thrown if the workflow instance could not be deserialized.
+     */
+    public LiteWorkflowInstance fromByteArray(byte[] array, String jobConf) throws IOException {
+        return LiteWorkflowInstanceSerializer.fromByteArray(array, this, jobConf);
+    }
+
+    /**
+     * Deserialize a workflow instance of a job serialized in any format, loading the job configuration only if the
+     * instance configuration is accessed.
+     *
+     * @param array serialized workflow instance.
+     * @param jobConfLoader loader of the configuration XML of the job.
+     * @return the workflow instance.
+     * @throws IOException thrown if the workflow instance could not be deserialized.
+     */
+    public LiteWorkflowInstance fromByteArray(byte[] array, LiteWorkflowInstanceSerializer.JobConfLoader jobConfLoader)
+            throws IOException {
+        return LiteWorkflowInstanceSerializer.fromByteArray(array, this, jobConfLoader);
+    }
+
+    /**
+     * Store an application definition in the database, if not stored already, and refresh its last used time.
+     *
+     * @param app application definition.
+     * @throws IOException thrown if the application definition could not be stored.
+     */
+    @Override
+    public void put(LiteWorkflowApp app) throws IOException {
+        String contentHash = app.getContentHash();
+        long now = System.currentTimeMillis();
+        Long used = lastUsed.getIfPresent(contentHash);
+        if (used != null && now - used < LAST_USED_INTERVAL && cache.getIfPresent(contentHash) != null) {
+            return;
+        }
+        try {
+            // not updated if never stored or deleted by the purge since
+            if (jpaService.execute(new WorkflowAppDefLastUsedUpdateJPAExecutor(contentHash, new Date(now))) == 0) {
+                WorkflowAppDefBean bean = new WorkflowAppDefBean(contentHash, app.getName(),
+                        LiteWorkflowInstanceSerializer.appToByteArray(app));
+                try {
+                    jpaService.execute(new WorkflowAppDefInsertJPAExecutor(bean));
+                    LOG.debug("Stored application definition [{0}] of [{1}]", contentHash, app.getName());
+                }
+                catch (JPAExecutorException ex) {
+                    // stored concurrently by another thread or server
+                    if (jpaService.execute(new WorkflowAppDefLastUsedUpdateJPAExecutor(contentHash,
+                            new Date(now))) == 0) {
+                        throw ex;
+                    }
+                }
+            }
+        }
+        catch (JPAExecutorException ex) {
+            throw new IOException(ex);
+        }
+        cache.put(contentHash, app);
+        lastUsed.put(contentHash, now);
+    }
+
+    /**
+     * Return an application definition, from the cache or from the database.
+     *
+     * @param contentHash content hash of the application definition.
+     * @return the application definition, <code>null</code> if unknown.
+     * @throws IOException thrown if the application definition could not be read.
+     */
+    @Override
+    public LiteWorkflowApp get(String contentHash) throws IOException {
+        LiteWorkflowApp app = cache.getIfPresent(contentHash);
+        if (app == null) {
+            WorkflowAppDefBean bean;
+            try {
+                bean = jpaService.execute(new WorkflowAppDefGetJPAExecutor(contentHash));
+            }
+            catch (JPAExecutorException ex) {
+                throw new IOException(ex);
+            }
+            if (bean == null) {
+                return null;
+            }
+            app = LiteWorkflowInstanceSerializer.appFromByteArray(bean.getAppDef());
+            if (!contentHash.equals(app.getContentHash())) {
+                throw new IOException("Application definition [" + contentHash + "] does not match its content hash ["
+                        + app.getContentHash() + "]");
+            }
+            cache.put(contentHash, app);
+        }
+        return app;
+    }
+
+    /**
+     * Return a parsed job configuration, from the cache or parsing it.
+     *
+     * @param jobConf job configuration XML.
+     * @param digest digest of the job configuration XML.
+     * @return the job configuration, it must not be modified as it is shared.
+     * @throws IOException thrown if the job configuration could not be parsed.
+     */
+    @Override
+    public Configuration getJobConf(String jobConf, String digest) throws IOException {
+        Configuration conf = confCache.getIfPresent(digest);
+        if (conf == null) {
+            conf = new XConfiguration(new StringReader(jobConf));
+            confCache.put(digest, conf);
+        }
+        return conf;
+    }
+
+    /**
+     * Return the number of application definitions cached in memory.
+     *
+     * @return the number of application definitions cached in memory.
+     */
+    public long getCacheSize() {
+        return cache.size();
+    }
+}
@@ -21,18 +21,24 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
+import org.apache.curator.framework.CuratorFramework;
 import org.apache.curator.framework.recipes.leader.LeaderLatch;
 import org.apache.curator.framework.state.ConnectionState;
 import org.apache.curator.x.discovery.ServiceInstance;
+import org.apache.curator.x.discovery.details.ServiceCacheListener;
 import org.apache.oozie.ErrorCode;
 import org.apache.oozie.client.rest.RestConstants;
 import org.apache.oozie.event.listener.ZKConnectionListener;
+import org.apache.oozie.util.ConsistentHashRing;
 import org.apache.oozie.util.IOUtils;
 import org.apache.oozie.util.Instrumentable;
 import org.apache.oozie.util.Instrumentation;
+import org.apache.oozie.util.XLog;
 import org.apache.oozie.util.ZKUtils;
 
 /**
@@ -43,7 +49,21 @@ import org.apache.oozie.util.ZKUtils;
  * Servers try to process the same job at the same time.  However, this will make Oozie slower (more waiting on locks) and will
  * place additional stress on ZooKeeper and the Database.  By "assigning" different Oozie servers to process different jobs, we can
  * improve this situation.  This is particularly necessary for Services like the {@link RecoveryService}, which could duplicate jobs
- * otherwise.  We can assign jobs to servers by doing a mod of the jobs' id and the number of servers.
+ * otherwise.
+ * <p>
+ * Jobs are assigned to servers with a consistent hashing ring: each server is placed on the ring at
+ * {@link #CONF_VIRTUAL_NODES} points times its {@link #CONF_WEIGHT}, and a job belongs to the server of the first point
+ * after the hash of its id.  When a server joins or leaves, only the jobs of the ring segments it gains or loses move,
+ * about 1/N of them, instead of almost all of them.
+ * <p>
+ * While any server does not publish a weight, i.e. during a rolling upgrade from an Oozie version without the ring, jobs
+ * are assigned the way those servers do: a job belongs to the server whose index, by registration time, is the id of the
+ * job modulo the number of servers.  The ring is used once all the servers publish a weight.  Jobs are assigned the same
+ * way if no server publishes a weight of at least 1, which would leave the ring empty.
+ * <p>
+ * The ring is computed when the service discovery cache notifies, from its ZooKeeper watches, that the servers (or
+ * their weights) changed.  Each new ring gets the next membership epoch, and all the ownership checks read the current
+ * ring without looking up the servers.
  * <p>
  * The leader server is elected by all of the Oozie servers, so there can only be one at a time.  This is useful for tasks that
  * require (or are better off) being done by only one server (e.g. database purging).  Note that the leader server isn't a
@@ -60,6 +80,29 @@ public class ZKJobsConcurrencyService extends JobsConcurrencyService implements
     private static final String ZK_LEADER_PATH = "concurrencyleader";
     private static LeaderLatch leaderLatch = null;
 
+    /**
+     * Weight of this server when assigning jobs, a server of weight 2 gets twice the jobs of a server of weight 1.
+     */
+    public static final String CONF_WEIGHT = ZKUtils.ZK_WEIGHT;
+
+    /**
+     * Number of points on the ring of a server of weight 1.
+     */
+    public static final String CONF_VIRTUAL_NODES = CONF_PREFIX + "ZKJobsConcurrencyService.virtual.nodes";
+
+    private static final XLog LOG = XLog.getLog(ZKJobsConcurrencyService.class);
+
+    private static final String INSTRUMENTATION_GROUP = "jobsconcurrency";
+    public static final String INSTR_MEMBERSHIP_CHANGES_COUNTER = "membership.changes";
+    public static final String INSTR_MEMBERSHIP_EPOCH = "membership.epoch";
+    public static final String INSTR_OWNERSHIP_CHECK_TIMER = "ownership.check";
+
+    private int virtualNodes;
+    private volatile Assignment assignment;
+    private final AtomicLong epoch = new AtomicLong();
+    private ServiceCacheListener membershipListener;
+    private volatile Instrumentation instrumentation;
+
     /**
      * Initialize the zookeeper jobs concurrency service
      *
@@ -69,7 +112,23 @@ public class ZKJobsConcurrencyService extends JobsConcurrencyService implements
     public void init(Services services) throws ServiceException {
         super.init(services);
         try {
+            virtualNodes = ConfigurationService.getInt(services.getConf(), CONF_VIRTUAL_NODES);
             zk = ZKUtils.register(this);
+            membershipListener = new ServiceCacheListener() {
+                @Override
+                public void cacheChanged() {
+                    updateAssignment();
+                }
+
+                @Override
+                public void stateChanged(CuratorFramework client, ConnectionState newState) {
+                    if (newState == ConnectionState.RECONNECTED) {
+                        updateAssignment();
+                    }
+                }
+            };
+            zk.addServiceCacheListener(membershipListener);
+            updateAssignment();
             leaderLatch = new LeaderLatch(zk.getClient(), ZKUtils.ZK_BASE_SERVICES_PATH + "/" + ZK_LEADER_PATH, zk.getZKId());
             leaderLatch.start();
         }
@@ -87,9 +146,14 @@ public class ZKJobsConcurrencyService extends JobsConcurrencyService implements
             IOUtils.closeSafely(leaderLatch);
         }
         if (zk != null) {
+            if (membershipListener != null) {
+                zk.removeServiceCacheListener(membershipListener);
+            }
             zk.unregister(this);
         }
         zk = null;
+        membershipListener = null;
+        assignment = null;
         super.destroy();
     }
 
@@ -101,6 +165,13 @@ public class ZKJobsConcurrencyService extends JobsConcurrencyService implements
     @Override
     public void instrument(Instrumentation instr) {
         super.instrument(instr);
+        instr.addVariable(INSTRUMENTATION_GROUP, INSTR_MEMBERSHIP_EPOCH, new Instrumentation.Variable<Long>() {
+            @Override
+            public Long getValue() {
+                return epoch.get();
+            }
+        });
+        instrumentation = instr;
     }
 
     /**
@@ -115,60 +186,191 @@ public class ZKJobsConcurrencyService extends JobsConcurrencyService implements
     }
 
     /**
-     * Check to see if jobId should be processed by this server.  This implementation only returns true if the index of this server
-     * in ZooKeeper's list of servers is equal to the id of the job mod the number of servers.
+     * Check to see if jobId should be processed by this server.  This implementation only returns true if the job id
+     * belongs to this server on the consistent hashing ring of the servers.
      *
      * @param jobId The jobId to check
      * @return true if this server should process this jobId; false if not
      */
     @Override
     public boolean isJobIdForThisServer(String jobId) {
-        List<ServiceInstance<Map>> oozies = zk.getAllMetaData();
-        int numOozies = oozies.size();
-        int myIndex = zk.getZKIdIndex(oozies);
-        return checkJobIdForServer(jobId, numOozies, myIndex);
+        Instrumentation.Cron cron = new Instrumentation.Cron();
+        cron.start();
+        boolean belongs = checkJobIdForServer(jobId, assignment);
+        cron.stop();
+        addCron(cron);
+        return belongs;
     }
 
     /**
-     * Filter out any job ids that should not be processed by this server.  This implementation only preserves jobs such that the
-     * index of this server in ZooKeeper's list of servers is equal to the id of the job mod the number of servers.
+     * Filter out any job ids that should not be processed by this server.  This implementation only preserves jobs that
+     * belong to this server on the consistent hashing ring of the servers.
      *
      * @param ids The list of job ids to check
      * @return filteredIds a filtered list of job ids that this server should process
      */
     @Override
     public List<String> getJobIdsForThisServer(List<String> ids) {
+        Instrumentation.Cron cron = new Instrumentation.Cron();
+        cron.start();
         List<String> filteredIds = new ArrayList<String>();
-        List<ServiceInstance<Map>> oozies = zk.getAllMetaData();
-        int numOozies = oozies.size();
-        int myIndex = zk.getZKIdIndex(oozies);
+        Assignment current = assignment;
         for(String id : ids) {
-            if (checkJobIdForServer(id, numOozies, myIndex)) {
+            if (checkJobIdForServer(id, current)) {
                 filteredIds.add(id);
             }
         }
+        cron.stop();
+        addCron(cron);
         return filteredIds;
     }
 
     /**
-     * Check if the jobId should be processed by the server with index myIndex when there are numOozies servers.
+     * Check if the jobId belongs to this server on the ring.  Ids that are not job ids belong to all the servers.
      *
      * @param jobId The jobId to check
-     * @param numOozies The number of Oozie servers
-     * @param myIndex The index of the Oozie server
+     * @param current The assignment of the jobs to the servers
      * @return true if the jobId should be processed by the server, false if not
      */
-    private boolean checkJobIdForServer(String jobId, int numOozies, int myIndex) {
+    private boolean checkJobIdForServer(String jobId, Assignment current) {
         boolean belongs = true;
         Matcher m = ID_PATTERN.matcher(jobId);
         if (m.matches() && m.groupCount() == 1) {
-            String idNumStr = m.group(1);
-            int idNum = Integer.parseInt(idNumStr);
-            belongs = (idNum % numOozies == myIndex);
+            if (current != null && current.legacyIndex != -1) {
+                return Integer.parseInt(m.group(1)) % current.weights.size() == current.legacyIndex;
+            }
+            String owner = (current == null) ? null : current.ring.getNode(getRingKey(jobId));
+            // no server on the ring yet, i.e. the service discovery cache is still loading, an empty ring of servers
+            // without weight is replaced by the modulo assignment
+            belongs = owner == null || owner.equals(zk.getZKId());
         }
         return belongs;
     }
 
+    /**
+     * Return the key of a job id on the ring, the id of its job so that actions belong to the server of their job.
+     *
+     * @param jobId The job or action id
+     * @return the key of the id on the ring
+     */
+    static String getRingKey(String jobId) {
+        int index = jobId.indexOf('@');
+        return (index == -1) ? jobId : jobId.substring(0, index);
+    }
+
+    /**
+     * Return the membership epoch, incremented each time the servers (or their weights) change.
+     *
+     * @return the membership epoch
+     */
+    public long getMembershipEpoch() {
+        Assignment current = assignment;
+        return (current == null) ? 0 : current.epoch;
+    }
+
+    /**
+     * Recompute the assignment of the jobs from the servers in the service discovery cache, if they or their weights
+     * changed.
+     */
+    private synchronized void updateAssignment() {
+        if (zk == null) {
+            return;
+        }
+        List<ServiceInstance<Map>> oozies = zk.getAllMetaData();
+        Map<String, Integer> weights = getWeights(oozies);
+        // servers not publishing a weight do not know the ring, assign the jobs their way until they are upgraded
+        boolean legacy = hasUnweightedServer(oozies) || (!weights.isEmpty() && !hasWeightedServer(weights));
+        int legacyIndex = legacy ? zk.getZKIdIndex(oozies) : -1;
+        Assignment current = assignment;
+        if (current == null || !current.weights.equals(weights) || current.legacyIndex != legacyIndex) {
+            assignment = new Assignment(epoch.incrementAndGet(), weights, new ConsistentHashRing(weights,
+                    virtualNodes), legacyIndex);
+            Instrumentation instr = instrumentation;
+            if (instr != null) {
+                instr.incr(INSTRUMENTATION_GROUP, INSTR_MEMBERSHIP_CHANGES_COUNTER, 1);
+            }
+            if (legacyIndex == -1) {
+                LOG.info("Oozie servers changed, membership epoch [{0}], jobs assigned to {1}", epoch.get(), weights);
+            }
+            else {
+                LOG.warn("Oozie servers changed, membership epoch [{0}], some servers do not publish a weight or none "
+                        + "has a weight of at least 1, jobs assigned by id modulo the number of servers {1}", epoch.get(),
+                        weights);
+            }
+        }
+    }
+
+    private void addCron(Instrumentation.Cron cron) {
+        Instrumentation instr = instrumentation;
+        if (instr != null) {
+            instr.addCron(INSTRUMENTATION_GROUP, INSTR_OWNERSHIP_CHECK_TIMER, cron);
+        }
+    }
+
+    private static Map<String, Integer> getWeights(List<ServiceInstance<Map>> oozies) {
+        Map<String, Integer> weights = new TreeMap<String, Integer>();
+        if (oozies != null) {
+            for (ServiceInstance<Map> oozie : oozies) {
+                Map<String, String> metadata = oozie.getPayload();
+                weights.put(metadata.get(ZKUtils.ZKMetadataKeys.OOZIE_ID), parseWeight(metadata.get(
+                        ZKUtils.ZKMetadataKeys.OOZIE_WEIGHT)));
+            }
+        }
+        return weights;
+    }
+
+    private static boolean hasUnweightedServer(List<ServiceInstance<Map>> oozies) {
+        if (oozies != null) {
+            for (ServiceInstance<Map> oozie : oozies) {
+                if (oozie.getPayload().get(ZKUtils.ZKMetadataKeys.OOZIE_WEIGHT) == null) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private static boolean hasWeightedServer(Map<String, Integer> weights) {
+        for (int weight : weights.values()) {
+            if (weight > 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static int parseWeight(String weight) {
+        // servers not publishing a weight
+        if (weight == null) {
+            return 1;
+        }
+        try {
+            return Integer.parseInt(weight);
+        }
+        catch (NumberFormatException ex) {
+            LOG.warn("Invalid Oozie server weight [{0}], using 1", weight);
+            return 1;
+        }
+    }
+
+    /**
+     * Servers and weights the ring was computed for, and their membership epoch.  The index of this server by
+     * registration time replaces the ring while some servers do not publish a weight, it is -1 otherwise.
+     */
+    private static class Assignment {
+        private final long epoch;
+        private final Map<String, Integer> weights;
+        private final ConsistentHashRing ring;
+        private final int legacyIndex;
+
+        private Assignment(long epoch, Map<String, Integer> weights, ConsistentHashRing ring, int legacyIndex) {
+            this.epoch = epoch;
+            this.weights = weights;
+            this.ring = ring;
+            this.legacyIndex = legacyIndex;
+        }
+    }
+
     /**
      * Return a map of instance id to Oozie server URL.  This implementation always returns a map with where the key is the instance
      * id and the value is the URL of each Oozie server that we can see in the service discovery in ZooKeeper.
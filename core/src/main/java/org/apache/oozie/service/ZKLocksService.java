@@ -17,15 +17,33 @@
  */
 package org.apache.oozie.service;
 
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
+import org.apache.curator.framework.CuratorFramework;
+import org.apache.curator.framework.api.transaction.CuratorTransaction;
+import org.apache.curator.framework.api.transaction.CuratorTransactionFinal;
 import org.apache.curator.framework.recipes.locks.InterProcessMutex;
 import org.apache.curator.framework.recipes.locks.InterProcessReadWriteLock;
 import org.apache.oozie.ErrorCode;
+import org.apache.curator.framework.state.ConnectionState;
+import org.apache.curator.framework.state.ConnectionStateListener;
 import org.apache.oozie.util.Instrumentable;
 import org.apache.oozie.util.Instrumentation;
+import org.apache.oozie.lock.CompositeLockToken;
 import org.apache.oozie.lock.LockToken;
+import org.apache.oozie.util.NamedThreadFactory;
 import org.apache.oozie.util.XLog;
 import org.apache.oozie.util.ZKUtils;
 
@@ -38,12 +56,22 @@ import org.apache.curator.utils.ThreadUtils;
 
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.collect.MapMaker;
+import org.apache.zookeeper.CreateMode;
 import org.apache.zookeeper.KeeperException;
+import org.apache.zookeeper.WatchedEvent;
+import org.apache.zookeeper.Watcher;
+import org.apache.zookeeper.data.Stat;
 
 /**
  * Service that provides distributed locks via ZooKeeper.  Requires that a ZooKeeper ensemble is available.  The locks will be
  * located under a ZNode named "locks" under the namespace (see {@link ZKUtils}).  For example, with default settings, if the
  * resource we're locking is called "foo", then the ZNode backing the lock will be at /oozie/locks/foo.
+ * <p>
+ * If {@link #LEASE_DURATION} is set, the locks are leased instead: the threads of this Oozie server synchronize with in
+ * memory locks, and the server owns the resource towards the other Oozie servers with an ephemeral ZNode under
+ * "leases", i.e. /oozie/leases/foo. The ZNode is kept for the lease duration after the last local lock is released,
+ * so commands locking the same job back to back re-enter locally without any ZooKeeper call. All the Oozie servers
+ * must use the same mode, leases do not exclude the locks of a server not using them.
  */
 public class ZKLocksService extends MemoryLocksService implements Service, Instrumentable {
 
@@ -59,6 +87,18 @@ public class ZKLocksService extends MemoryLocksService implements Service, Instr
     static final String REAPING_THREADS = CONF_PREFIX + "ZKLocksService.locks.reaper.threads";
     private static final String RELEASE_RETRY_TIME_LIMIT_MINUTES = CONF_PREFIX + "ZKLocksService.lock.release.retry.time.limit"
             + ".minutes";
+    static final String LEASE_DURATION = CONF_PREFIX + "ZKLocksService.lease.duration";
+
+    public static final String LEASES_NODE = "/leases";
+
+    private long leaseDuration;
+    private final ConcurrentMap<String, Lease> leases = new ConcurrentHashMap<String, Lease>();
+    private final Set<String> staleLeases = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+    private final AtomicLong leaseAcquisitions = new AtomicLong();
+    private final AtomicLong leaseReentries = new AtomicLong();
+    private final AtomicLong leaseBatches = new AtomicLong();
+    private ScheduledExecutorService leaseExpirer;
+    private ConnectionStateListener leaseRevoker;
 
     /**
      * Initialize the zookeeper locks service
@@ -73,17 +113,57 @@ public class ZKLocksService extends MemoryLocksService implements Service, Instr
             reaper = new ChildReaper(zk.getClient(), LOCKS_NODE, Reaper.Mode.REAP_UNTIL_GONE, getExecutorService(),
                     ConfigurationService.getInt(services.getConf(), REAPING_THRESHOLD) * 1000, REAPING_LEADER_PATH);
             reaper.start();
+            leaseDuration = ConfigurationService.getLong(services.getConf(), LEASE_DURATION);
+            if (leaseDuration > 0) {
+                initLeases();
+            }
         }
         catch (Exception ex) {
             throw new ServiceException(ErrorCode.E1700, ex.getMessage(), ex);
         }
     }
 
+    private void initLeases() throws Exception {
+        try {
+            zk.getClient().create().creatingParentsIfNeeded().forPath(LEASES_NODE);
+        }
+        catch (KeeperException.NodeExistsException ex) {
+            // created by another Oozie server
+        }
+        leaseRevoker = new ConnectionStateListener() {
+            @Override
+            public void stateChanged(CuratorFramework client, ConnectionState newState) {
+                if (newState == ConnectionState.SUSPENDED || newState == ConnectionState.LOST) {
+                    revokeLeases();
+                }
+            }
+        };
+        zk.getClient().getConnectionStateListenable().addListener(leaseRevoker);
+        leaseExpirer = Executors.newSingleThreadScheduledExecutor(new NamedThreadFactory("ZKLeaseExpirer"));
+        long period = Math.max(10, leaseDuration / 2);
+        leaseExpirer.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                expireLeases(false);
+            }
+        }, period, period, TimeUnit.MILLISECONDS);
+        LOG.info("ZooKeeper locks leased for [{0}] ms", leaseDuration);
+    }
+
     /**
      * Destroy the zookeeper locks service.
      */
     @Override
     public void destroy() {
+        if (leaseExpirer != null) {
+            leaseExpirer.shutdownNow();
+            leaseExpirer = null;
+            expireLeases(true);
+        }
+        if (leaseRevoker != null && zk != null) {
+            zk.getClient().getConnectionStateListenable().removeListener(leaseRevoker);
+            leaseRevoker = null;
+        }
         if (reaper != null) {
             try {
                 reaper.close();
@@ -113,6 +193,32 @@ public class ZKLocksService extends MemoryLocksService implements Service, Instr
                 return zkLocks.size();
             }
         });
+        if (leaseDuration > 0) {
+            instr.addVariable(INSTRUMENTATION_GROUP, "leases", new Instrumentation.Variable<Integer>() {
+                @Override
+                public Integer getValue() {
+                    return leases.size();
+                }
+            });
+            instr.addVariable(INSTRUMENTATION_GROUP, "leases.acquired", new Instrumentation.Variable<Long>() {
+                @Override
+                public Long getValue() {
+                    return leaseAcquisitions.get();
+                }
+            });
+            instr.addVariable(INSTRUMENTATION_GROUP, "leases.reentered", new Instrumentation.Variable<Long>() {
+                @Override
+                public Long getValue() {
+                    return leaseReentries.get();
+                }
+            });
+            instr.addVariable(INSTRUMENTATION_GROUP, "leases.batches", new Instrumentation.Variable<Long>() {
+                @Override
+                public Long getValue() {
+                    return leaseBatches.get();
+                }
+            });
+        }
     }
 
     /**
@@ -125,6 +231,9 @@ public class ZKLocksService extends MemoryLocksService implements Service, Instr
      */
     @Override
     public LockToken getReadLock(String resource, long wait) throws InterruptedException {
+        if (leaseDuration > 0) {
+            return acquireLeasedLock(resource, Type.READ, wait);
+        }
         return acquireLock(resource, Type.READ, wait);
     }
 
@@ -138,9 +247,402 @@ public class ZKLocksService extends MemoryLocksService implements Service, Instr
      */
     @Override
     public LockToken getWriteLock(String resource, long wait) throws InterruptedException {
+        if (leaseDuration > 0) {
+            return acquireLeasedLock(resource, Type.WRITE, wait);
+        }
         return acquireLock(resource, Type.WRITE, wait);
     }
 
+    /**
+     * Obtain WRITE locks for several resources, all of them or none.
+     * <p>
+     * When leasing, the leases this Oozie server does not own yet are obtained with a single ZooKeeper transaction.
+     * If another Oozie server owns any of them, they are obtained one by one, waiting for them. Without leases, the
+     * locks are obtained one by one.
+     *
+     * @param resources resource names.
+     * @param wait time out in milliseconds to wait for all the locks, -1 means no timeout and 0 no wait.
+     * @return the lock token for all the resources, holding their tokens in the natural order of the resource names, or
+     * <code>null</code> if any lock could not be obtained.
+     * @throws InterruptedException thrown if the thread was interrupted while waiting.
+     */
+    @Override
+    public CompositeLockToken getWriteLocks(Collection<String> resources, long wait) throws InterruptedException {
+        if (leaseDuration <= 0) {
+            return super.getWriteLocks(resources, wait);
+        }
+        long start = System.currentTimeMillis();
+        List<LockToken> localTokens = new ArrayList<LockToken>();
+        List<Lease> resourceLeases = new ArrayList<Lease>();
+        boolean locked = false;
+        try {
+            for (String resource : new TreeSet<String>(resources)) {
+                LockToken localToken = super.getWriteLock(resource, getRemainingWait(wait, start));
+                if (localToken == null) {
+                    return null;
+                }
+                localTokens.add(localToken);
+            }
+            List<Lease> pendingLeases = new ArrayList<Lease>();
+            for (String resource : new TreeSet<String>(resources)) {
+                Lease lease = holdOrCreateLease(resource, getRemainingWait(wait, start));
+                if (lease == null) {
+                    return null;
+                }
+                resourceLeases.add(lease);
+                if (lease.isPending()) {
+                    pendingLeases.add(lease);
+                }
+            }
+            if (!pendingLeases.isEmpty() && !createLeaseNodes(pendingLeases)) {
+                for (Lease lease : pendingLeases) {
+                    if (!acquireLeaseNode(lease, getRemainingWait(wait, start))) {
+                        return null;
+                    }
+                }
+            }
+            List<LockToken> tokens = new ArrayList<LockToken>();
+            for (int i = 0; i < localTokens.size(); i++) {
+                tokens.add(new ZKLeaseToken(localTokens.get(i), resourceLeases.get(i)));
+            }
+            locked = true;
+            return new CompositeLockToken(tokens);
+        }
+        finally {
+            if (!locked) {
+                for (Lease lease : resourceLeases) {
+                    if (lease.isPending()) {
+                        abandonLease(lease);
+                    }
+                    else if (lease.isHeld()) {
+                        releaseLease(lease);
+                    }
+                }
+                new CompositeLockToken(localTokens).release();
+            }
+        }
+    }
+
+    /**
+     * Return if the locks are leased, obtaining several locks at once then saves ZooKeeper transactions.
+     *
+     * @return <code>true</code> if {@link #LEASE_DURATION} is set.
+     */
+    @Override
+    public boolean isLeased() {
+        return leaseDuration > 0;
+    }
+
+    private LockToken acquireLeasedLock(final String resource, final Type type, final long wait)
+            throws InterruptedException {
+        LOG.debug("Acquiring ZooKeeper lease. [resource={};type={};wait={}]", resource, type, wait);
+        long start = System.currentTimeMillis();
+        LockToken localToken = (type.equals(Type.READ)) ? super.getReadLock(resource, wait)
+                : super.getWriteLock(resource, wait);
+        if (localToken == null) {
+            return null;
+        }
+        boolean locked = false;
+        try {
+            Lease lease = holdOrCreateLease(resource, getRemainingWait(wait, start));
+            if (lease != null && lease.isPending() && !acquireLeaseNode(lease, getRemainingWait(wait, start))) {
+                lease = null;
+            }
+            if (lease == null) {
+                LOG.warn("Could not acquire ZooKeeper lease, timed out. [resource={};type={};wait={}]", resource, type,
+                        wait);
+                return null;
+            }
+            locked = true;
+            return new ZKLeaseToken(localToken, lease);
+        }
+        finally {
+            if (!locked) {
+                localToken.release();
+            }
+        }
+    }
+
+    /**
+     * Hold the lease of a resource if this Oozie server owns it, otherwise create a pending lease the caller must
+     * acquire the ZNode of.
+     *
+     * @return the held lease, a pending lease, or <code>null</code> if another thread did not acquire the lease in
+     * time.
+     */
+    private Lease holdOrCreateLease(String resource, long wait) throws InterruptedException {
+        while (true) {
+            Lease lease = leases.get(resource);
+            if (lease == null) {
+                Lease newLease = new Lease(resource);
+                lease = leases.putIfAbsent(resource, newLease);
+                if (lease == null) {
+                    return newLease;
+                }
+            }
+            if (!lease.awaitAcquired(wait)) {
+                return null;
+            }
+            if (lease.hold()) {
+                leaseReentries.incrementAndGet();
+                LOG.debug("Reentering ZooKeeper lease. [resource={}]", resource);
+                return lease;
+            }
+            // released or revoked, a new lease is needed
+            leases.remove(resource, lease);
+        }
+    }
+
+    private boolean acquireLeaseNode(Lease lease, long wait) throws InterruptedException {
+        boolean acquired = false;
+        try {
+            acquired = createLeaseNode(getLeasePath(lease.resource), wait);
+        }
+        catch (InterruptedException ex) {
+            abandonLease(lease);
+            throw ex;
+        }
+        catch (Exception ex) {
+            //Not throwing exception. Should return false, so that command can be requeued
+            LOG.warn("Could not acquire lease due to a ZooKeeper error. [ex={};resource={};wait={}]", ex,
+                    lease.resource, wait);
+        }
+        if (acquired) {
+            leaseAcquisitions.incrementAndGet();
+            lease.acquired();
+        }
+        else {
+            abandonLease(lease);
+        }
+        return acquired;
+    }
+
+    private boolean createLeaseNode(String path, long wait) throws Exception {
+        long start = System.currentTimeMillis();
+        while (true) {
+            try {
+                zk.getClient().create().withMode(CreateMode.EPHEMERAL).forPath(path, getLeaseData());
+                return true;
+            }
+            catch (KeeperException.NodeExistsException ex) {
+                if (wait == 0) {
+                    return false;
+                }
+                final CountDownLatch deleted = new CountDownLatch(1);
+                Stat stat = zk.getClient().checkExists().usingWatcher(new Watcher() {
+                    @Override
+                    public void process(WatchedEvent event) {
+                        deleted.countDown();
+                    }
+                }).forPath(path);
+                if (stat != null) {
+                    if (wait == -1) {
+                        deleted.await();
+                    }
+                    else {
+                        long left = getRemainingWait(wait, start);
+                        if (left == 0 || !deleted.await(left, TimeUnit.MILLISECONDS)) {
+                            return false;
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Create the ZNodes of several leases with a single transaction.
+     *
+     * @return <code>false</code> if another Oozie server owns any of the leases, none is acquired then.
+     */
+    private boolean createLeaseNodes(List<Lease> pending) throws InterruptedException {
+        try {
+            CuratorTransaction transaction = zk.getClient().inTransaction();
+            CuratorTransactionFinal transactionFinal = null;
+            for (Lease lease : pending) {
+                transactionFinal = transaction.create().withMode(CreateMode.EPHEMERAL)
+                        .forPath(getLeasePath(lease.resource), getLeaseData()).and();
+                transaction = transactionFinal;
+            }
+            transactionFinal.commit();
+        }
+        catch (KeeperException.NodeExistsException ex) {
+            LOG.debug("ZooKeeper leases owned by other Oozie servers, acquiring them one by one");
+            return false;
+        }
+        catch (Exception ex) {
+            LOG.warn("Could not acquire leases in batch due to a ZooKeeper error, acquiring them one by one. [ex={}]",
+                    ex);
+            return false;
+        }
+        leaseBatches.incrementAndGet();
+        for (Lease lease : pending) {
+            leaseAcquisitions.incrementAndGet();
+            lease.acquired();
+        }
+        return true;
+    }
+
+    private void abandonLease(Lease lease) {
+        lease.abandoned();
+        leases.remove(lease.resource, lease);
+    }
+
+    private void releaseLease(Lease lease) {
+        if (lease.unhold()) {
+            // revoked while held, no one reenters it
+            leases.remove(lease.resource, lease);
+            deleteLeaseNode(lease.resource);
+        }
+    }
+
+    private void expireLeases(boolean all) {
+        long now = System.currentTimeMillis();
+        for (Lease lease : leases.values()) {
+            if (lease.expire(all ? Long.MAX_VALUE : now, leaseDuration)) {
+                leases.remove(lease.resource, lease);
+                deleteLeaseNode(lease.resource);
+            }
+        }
+        for (String resource : staleLeases) {
+            staleLeases.remove(resource);
+            Lease lease = leases.get(resource);
+            // a held lease owns the ZNode again
+            if (lease == null || lease.isPending()) {
+                deleteLeaseNode(resource);
+            }
+        }
+    }
+
+    private void revokeLeases() {
+        LOG.warn("ZooKeeper connection suspended or lost, revoking leases");
+        for (Lease lease : leases.values()) {
+            if (lease.revoke()) {
+                leases.remove(lease.resource, lease);
+                deleteLeaseNode(lease.resource);
+            }
+        }
+    }
+
+    private void deleteLeaseNode(String resource) {
+        String path = getLeasePath(resource);
+        try {
+            long sessionId = zk.getClient().getZookeeperClient().getZooKeeper().getSessionId();
+            Stat stat = zk.getClient().checkExists().forPath(path);
+            // the lease may be gone with an expired session and owned by another Oozie server now
+            if (stat != null && stat.getEphemeralOwner() == sessionId) {
+                zk.getClient().delete().withVersion(stat.getVersion()).forPath(path);
+            }
+        }
+        catch (KeeperException.NoNodeException ex) {
+            // gone with the session
+        }
+        catch (Exception ex) {
+            LOG.warn("Could not release lease, will retry. [ex={};resource={}]", ex, resource);
+            staleLeases.add(resource);
+        }
+    }
+
+    private static String getLeasePath(String resource) {
+        return LEASES_NODE + "/" + resource;
+    }
+
+    private byte[] getLeaseData() {
+        return zk.getZKId().getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Ownership of a resource by this Oozie server, shared by the threads of the server holding its in memory lock.
+     */
+    private static class Lease {
+        private static final int PENDING = 0;
+        private static final int HELD = 1;
+        private static final int RELEASED = 2;
+
+        private final String resource;
+        private int state = PENDING;
+        private int holds = 1;
+        private long lastUsed;
+        private boolean revoked;
+
+        private Lease(String resource) {
+            this.resource = resource;
+        }
+
+        private synchronized boolean isPending() {
+            return state == PENDING;
+        }
+
+        private synchronized boolean awaitAcquired(long wait) throws InterruptedException {
+            long start = System.currentTimeMillis();
+            while (state == PENDING) {
+                if (wait == -1) {
+                    wait();
+                }
+                else {
+                    long left = getRemainingWait(wait, start);
+                    if (left == 0) {
+                        return false;
+                    }
+                    wait(left);
+                }
+            }
+            return true;
+        }
+
+        private synchronized boolean isHeld() {
+            return state == HELD;
+        }
+
+        private synchronized void acquired() {
+            state = HELD;
+            notifyAll();
+        }
+
+        private synchronized void abandoned() {
+            state = RELEASED;
+            holds = 0;
+            notifyAll();
+        }
+
+        private synchronized boolean hold() {
+            if (state != HELD || revoked) {
+                return false;
+            }
+            holds++;
+            return true;
+        }
+
+        /**
+         * @return <code>true</code> if the lease was revoked and this was the last hold, the lease is released then.
+         */
+        private synchronized boolean unhold() {
+            holds--;
+            lastUsed = System.currentTimeMillis();
+            if (holds == 0 && revoked && state == HELD) {
+                state = RELEASED;
+                return true;
+            }
+            return false;
+        }
+
+        private synchronized boolean expire(long now, long duration) {
+            if (state == HELD && holds == 0 && (revoked || now - lastUsed >= duration)) {
+                state = RELEASED;
+                return true;
+            }
+            return false;
+        }
+
+        /**
+         * @return <code>true</code> if the lease was not held, the lease is released then.
+         */
+        private synchronized boolean revoke() {
+            revoked = true;
+            return expire(0, Long.MAX_VALUE);
+        }
+    }
+
     private LockToken acquireLock(final String resource, final Type type, final long wait) throws InterruptedException {
         LOG.debug("Acquiring ZooKeeper lock. [resource={};type={};wait={}]", resource, type, wait);
 
@@ -188,6 +690,28 @@ public class ZKLocksService extends MemoryLocksService implements Service, Instr
         return token;
     }
 
+    /**
+     * Implementation of {@link LockToken} for zookeeper leases.
+     */
+    class ZKLeaseToken implements LockToken {
+        private final LockToken localToken;
+        private final Lease lease;
+
+        private ZKLeaseToken(LockToken localToken, Lease lease) {
+            this.localToken = localToken;
+            this.lease = lease;
+        }
+
+        /**
+         * Release the lock, the lease is kept for the lease duration.
+         */
+        @Override
+        public void release() {
+            releaseLease(lease);
+            localToken.release();
+        }
+    }
+
     /**
      * Implementation of {@link LockToken} for zookeeper locks.
      */
@@ -25,12 +25,21 @@ import java.util.Map;
 import org.apache.oozie.AppType;
 import org.apache.oozie.client.OozieClient;
 import org.apache.oozie.client.event.SLAEvent;
-import org.apache.oozie.util.LogUtils;
-import org.apache.oozie.util.XLog;
+import org.apache.oozie.executor.jpa.JPAExecutorException;
+import org.apache.oozie.executor.jpa.SLARegistrationQueryExecutor;
+import org.apache.oozie.executor.jpa.SLARegistrationQueryExecutor.SLARegQuery;
+
+import com.google.common.collect.Interner;
+import com.google.common.collect.Interners;
 
 /**
  * Class used by SLAService to store SLA objects and perform calculations and
  * sla decisions
+ * <p>
+ * Once compacted, see {@link #compact()}, the object only keeps the registration fields needed to compute the SLA and
+ * send the alerts, with the application names, users, parent ids and SLA configuration values shared between
+ * objects. The notification message, upstream apps and job data are read from the DB when an event is emitted, see
+ * {@link #getFullSLARegistrationBean()}.
  */
 public class SLACalcStatus extends SLAEvent {
 
@@ -46,19 +55,25 @@ public class SLACalcStatus extends SLAEvent {
     private Date lastModifiedTime;
     private byte eventProcessed;
     private String jobId;
+    private boolean compact;
+
+    private static final Interner<String> INTERNER = Interners.newWeakInterner();
 
-    private XLog LOG;
+    // estimated shallow sizes in bytes, with compressed references
+    private static final int OBJECT_SIZE = 72;
+    private static final int REGISTRATION_SIZE = 144;
+    private static final int SUMMARY_SIZE = 160;
+    private static final int TIMESTAMP_SIZE = 32;
+    private static final int MAP_ENTRY_SIZE = 48;
 
     public SLACalcStatus(SLARegistrationBean reg) {
         this();
         setSLARegistrationBean(reg);
-        LOG = LogUtils.setLogPrefix(LOG, this);
     }
 
     public SLACalcStatus(SLASummaryBean summary, SLARegistrationBean regBean) {
         this(summary);
         updateSLARegistrationBean(regBean);
-        LOG = LogUtils.setLogPrefix(LOG, this);
     }
 
     public SLACalcStatus(SLASummaryBean summary) {
@@ -88,13 +103,12 @@ public class SLACalcStatus extends SLAEvent {
         setActualEnd(a.getActualEnd());
         setActualDuration(a.getActualDuration());
         setEventProcessed(a.getEventProcessed());
-        LOG = LogUtils.setLogPrefix(LOG, this);
+        compact = a.compact;
     }
 
     public SLACalcStatus() {
         setMsgType(MessageType.SLA);
         setLastModifiedTime(new Date());
-        LOG = XLog.getLog(getClass());
     }
 
     public SLARegistrationBean getSLARegistrationBean() {
@@ -110,6 +124,7 @@ public class SLACalcStatus extends SLAEvent {
             this.jobId = slaBean.getId();
         }
         this.regBean = slaBean;
+        this.compact = false;
     }
 
     @Override
@@ -307,4 +322,103 @@ public class SLACalcStatus extends SLAEvent {
         setSLARegistrationBean(reg);
     }
 
+
+    /**
+     * Replace the registration by a copy holding only the fields needed to compute the SLA and send the alerts, and
+     * drop the summary. The notification message, upstream apps and job data are left in the DB.
+     */
+    public void compact() {
+        if (compact || regBean == null) {
+            return;
+        }
+        SLARegistrationBean reg = new SLARegistrationBean();
+        reg.setId(regBean.getId());
+        reg.setAppType(regBean.getAppType());
+        reg.setAppName(intern(regBean.getAppName()));
+        reg.setUser(intern(regBean.getUser()));
+        reg.setParentId(intern(regBean.getParentId()));
+        reg.setNominalTime(regBean.getNominalTime());
+        reg.setExpectedStart(regBean.getExpectedStart());
+        reg.setExpectedEnd(regBean.getExpectedEnd());
+        reg.setExpectedDuration(regBean.getExpectedDuration());
+        for (Map.Entry<String, String> entry : regBean.getSLAConfigMap().entrySet()) {
+            reg.addToSLAConfigMap(intern(entry.getKey()), intern(entry.getValue()));
+        }
+        setSLARegistrationBean(reg);
+        summary = null;
+        compact = true;
+    }
+
+    /**
+     * Return if the registration has been compacted.
+     *
+     * @return true if the registration only holds the fields needed to compute the SLA
+     */
+    public boolean isCompact() {
+        return compact;
+    }
+
+    /**
+     * Return the full registration, reading the fields left in the DB if the registration has been compacted.
+     * The SLA configuration of the registration in memory takes precedence over the one in the DB.
+     *
+     * @return the full registration
+     * @throws JPAExecutorException thrown if the registration could not be read
+     */
+    public SLARegistrationBean getFullSLARegistrationBean() throws JPAExecutorException {
+        if (!compact) {
+            return regBean;
+        }
+        SLARegistrationBean reg = SLARegistrationQueryExecutor.getInstance().get(SLARegQuery.GET_SLA_REG_ON_RESTART,
+                getId());
+        reg.setId(regBean.getId());
+        reg.setAppType(regBean.getAppType());
+        reg.setAppName(regBean.getAppName());
+        reg.setUser(regBean.getUser());
+        reg.setParentId(regBean.getParentId());
+        reg.setNominalTime(regBean.getNominalTime());
+        reg.setExpectedStart(regBean.getExpectedStart());
+        reg.setExpectedEnd(regBean.getExpectedEnd());
+        reg.setExpectedDuration(regBean.getExpectedDuration());
+        reg.getSLAConfigMap().clear();
+        for (Map.Entry<String, String> entry : regBean.getSLAConfigMap().entrySet()) {
+            reg.addToSLAConfigMap(entry.getKey(), entry.getValue());
+        }
+        return reg;
+    }
+
+    /**
+     * Return an estimate of the heap used by the object, strings shared between compacted objects are not counted.
+     *
+     * @return the estimated size in bytes
+     */
+    public long getEstimatedSize() {
+        long size = OBJECT_SIZE + estimateSize(jobId) + estimateSize(jobStatus) + 2 * TIMESTAMP_SIZE;
+        if (regBean != null) {
+            size += REGISTRATION_SIZE + 4 * TIMESTAMP_SIZE + estimateSize(regBean.getSlaConfig())
+                    + MAP_ENTRY_SIZE * regBean.getSLAConfigMap().size();
+            if (!compact) {
+                size += estimateSize(regBean.getAppName()) + estimateSize(regBean.getUser())
+                        + estimateSize(regBean.getParentId()) + estimateSize(regBean.getNotificationMsg())
+                        + estimateSize(regBean.getUpstreamApps()) + estimateSize(regBean.getJobData());
+                for (Map.Entry<String, String> entry : regBean.getSLAConfigMap().entrySet()) {
+                    size += estimateSize(entry.getValue());
+                }
+            }
+        }
+        if (summary != null) {
+            size += SUMMARY_SIZE + 6 * TIMESTAMP_SIZE + estimateSize(summary.getAppName())
+                    + estimateSize(summary.getUser()) + estimateSize(summary.getParentId());
+        }
+        return size;
+    }
+
+    private static long estimateSize(String value) {
+        return (value == null) ? 0 : 40 + 2L * value.length();
+    }
+
+    private static String intern(String value) {
+        return (value == null) ? null : INTERNER.intern(value);
+    }
+
 }
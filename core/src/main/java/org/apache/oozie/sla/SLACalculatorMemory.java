@@ -27,7 +27,12 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.apache.hadoop.conf.Configuration;
 import org.apache.oozie.AppType;
@@ -49,6 +54,7 @@ import org.apache.oozie.executor.jpa.SLARegistrationQueryExecutor;
 import org.apache.oozie.executor.jpa.SLARegistrationQueryExecutor.SLARegQuery;
 import org.apache.oozie.executor.jpa.SLASummaryQueryExecutor;
 import org.apache.oozie.executor.jpa.SLASummaryQueryExecutor.SLASummaryQuery;
+import org.apache.oozie.executor.jpa.sla.SLAJobStatusGetJPAExecutor;
 import org.apache.oozie.executor.jpa.sla.SLASummaryGetRecordsOnRestartJPAExecutor;
 import org.apache.oozie.service.ConfigurationService;
 import org.apache.oozie.service.EventHandlerService;
@@ -63,6 +69,7 @@ import com.google.common.annotations.VisibleForTesting;
 import org.apache.oozie.util.DateUtils;
 import org.apache.oozie.util.Instrumentation;
 import org.apache.oozie.util.LogUtils;
+import org.apache.oozie.util.NamedThreadFactory;
 import org.apache.oozie.util.Pair;
 import org.apache.oozie.util.XLog;
 
@@ -84,6 +91,15 @@ public class SLACalculatorMemory implements SLACalculator {
     private Instrumentation instrumentation;
     public static final String INSTRUMENTATION_GROUP = "sla-calculator";
     public static final String SLA_MAP = "sla-map";
+    public static final String SLA_MAP_MEMORY = "sla-map-memory";
+    public static final String SLA_HISTORY_BACKLOG = "sla-history-backlog";
+    public static final String SLA_HISTORY_CHECKED = "sla-history-checked";
+    public static final String SLA_HISTORY_PURGED = "sla-history-purged";
+    private static final int MEMORY_SAMPLE_SIZE = 1000;
+    private boolean compactMap;
+    private int historyPurgeThreads;
+    private int historyPurgeBatchSize;
+    private static volatile SLACalculatorMemory instrumentedCalculator;
 
     @Override
     public void init(Configuration conf) throws ServiceException {
@@ -94,6 +110,29 @@ public class SLACalculatorMemory implements SLACalculator {
         jpaService = Services.get().get(JPAService.class);
         eventHandler = Services.get().get(EventHandlerService.class);
         instrumentation = Services.get().get(InstrumentationService.class).get();
+        compactMap = ConfigurationService.getBoolean(conf, SLAService.CONF_COMPACT_MAP);
+        historyPurgeThreads = Math.max(1, ConfigurationService.getInt(conf, SLAService.CONF_SLA_HISTORY_PURGE_THREADS));
+        historyPurgeBatchSize = Math.max(1,
+                ConfigurationService.getInt(conf, SLAService.CONF_SLA_HISTORY_PURGE_BATCH_SIZE));
+        instrumentedCalculator = this;
+        Map<String, Instrumentation.Element<Instrumentation.Variable>> variables =
+                instrumentation.getVariables().get(INSTRUMENTATION_GROUP);
+        if (variables == null || !variables.containsKey(SLA_MAP_MEMORY)) {
+            instrumentation.addVariable(INSTRUMENTATION_GROUP, SLA_MAP_MEMORY, new Instrumentation.Variable<Long>() {
+                @Override
+                public Long getValue() {
+                    return instrumentedCalculator.getEstimatedMemory();
+                }
+            });
+        }
+        if (variables == null || !variables.containsKey(SLA_HISTORY_BACKLOG)) {
+            instrumentation.addVariable(INSTRUMENTATION_GROUP, SLA_HISTORY_BACKLOG, new Instrumentation.Variable<Long>() {
+                @Override
+                public Long getValue() {
+                    return (long) instrumentedCalculator.historySet.size();
+                }
+            });
+        }
         // load events modified after
         modifiedAfter = conf.getInt(SLAService.CONF_EVENTS_MODIFIED_AFTER, 7);
         loadOnRestart();
@@ -105,6 +144,14 @@ public class SLACalculatorMemory implements SLACalculator {
                         SchedulerService.Unit.SEC);
     }
 
+    /**
+     * Purges from the history set the jobs that have ended, after updating their SLA summary.
+     * <p>
+     * The status of the jobs is read in batches of {@link SLAService#CONF_SLA_HISTORY_PURGE_BATCH_SIZE} ids, one query
+     * per kind of job and batch, and the batches are processed in parallel by
+     * {@link SLAService#CONF_SLA_HISTORY_PURGE_THREADS} threads. The history command is only run for the jobs that have
+     * ended, the jobs not found in the DB are removed right away.
+     */
     public class HistoryPurgeWorker extends Thread {
 
         public HistoryPurgeWorker() {
@@ -115,27 +162,90 @@ public class SLACalculatorMemory implements SLACalculator {
             if (Thread.currentThread().isInterrupted()) {
                 return;
             }
-            Iterator<String> jobItr = historySet.iterator();
-            while (jobItr.hasNext()) {
-                String jobId = jobItr.next();
-                LOG.debug(" Running HistoryPurgeWorker for " + jobId);
-                try {
-                    boolean isDone = SLAXCommandFactory.getSLAJobHistoryXCommand(jobId).call();
-                    if (isDone) {
-                        LOG.debug("[{0}] job is finished and processed. Removing from history");
-                        jobItr.remove();
-                    }
+            List<String> jobIds;
+            synchronized (historySet) {
+                jobIds = new ArrayList<String>(historySet);
+            }
+            if (jobIds.isEmpty()) {
+                return;
+            }
+            long start = System.currentTimeMillis();
+            int batches = (jobIds.size() + historyPurgeBatchSize - 1) / historyPurgeBatchSize;
+            ExecutorService executor = Executors.newFixedThreadPool(Math.min(historyPurgeThreads, batches),
+                    new NamedThreadFactory("SLAHistoryPurge"));
+            try {
+                List<Future<Integer>> futures = new ArrayList<Future<Integer>>();
+                for (int i = 0; i < jobIds.size(); i += historyPurgeBatchSize) {
+                    final List<String> batch = jobIds.subList(i, Math.min(i + historyPurgeBatchSize, jobIds.size()));
+                    futures.add(executor.submit(new Callable<Integer>() {
+                        @Override
+                        public Integer call() throws Exception {
+                            return purgeBatch(batch);
+                        }
+                    }));
                 }
-                catch (CommandException e) {
-                    if (e.getErrorCode().equals(ErrorCode.E0604) || e.getErrorCode().equals(ErrorCode.E0605)) {
-                        LOG.warn("Job is not found in db: " + jobId, e);
-                        jobItr.remove();
+                int purged = 0;
+                for (Future<Integer> future : futures) {
+                    try {
+                        purged += future.get();
                     }
-                    else {
-                        LOG.error("Failed to fetch the job: " + jobId, e);
+                    catch (ExecutionException e) {
+                        LOG.error("Failed to purge SLA history batch", e.getCause());
                     }
                 }
+                LOG.info("SLA history purge checked [{0}] jobs in [{1}] batches, purged [{2}], [{3}] left, took [{4}] ms",
+                        jobIds.size(), batches, purged, historySet.size(), System.currentTimeMillis() - start);
+            }
+            catch (InterruptedException e) {
+                LOG.warn("SLA history purge interrupted");
+                Thread.currentThread().interrupt();
+            }
+            finally {
+                executor.shutdownNow();
+            }
+        }
+
+        private int purgeBatch(List<String> jobIds) throws JPAExecutorException {
+            Map<String, String> statuses = jpaService.execute(new SLAJobStatusGetJPAExecutor(jobIds));
+            int purged = 0;
+            for (String jobId : jobIds) {
+                String status = statuses.get(jobId);
+                if (status == null) {
+                    LOG.warn("Job is not found in db: " + jobId);
+                    historySet.remove(jobId);
+                    purged++;
+                }
+                else if (SLAXCommandFactory.isJobEnded(jobId, status) && purgeJob(jobId)) {
+                    purged++;
+                }
+            }
+            instrumentation.incr(INSTRUMENTATION_GROUP, SLA_HISTORY_CHECKED, jobIds.size());
+            instrumentation.incr(INSTRUMENTATION_GROUP, SLA_HISTORY_PURGED, purged);
+            LOG.debug("SLA history purge batch of [{0}] jobs, purged [{1}]", jobIds.size(), purged);
+            return purged;
+        }
+
+        private boolean purgeJob(String jobId) {
+            LOG.debug(" Running HistoryPurgeWorker for " + jobId);
+            try {
+                boolean isDone = SLAXCommandFactory.getSLAJobHistoryXCommand(jobId).call();
+                if (isDone) {
+                    LOG.debug("[{0}] job is finished and processed. Removing from history", jobId);
+                    historySet.remove(jobId);
+                }
+                return isDone;
+            }
+            catch (CommandException e) {
+                if (e.getErrorCode().equals(ErrorCode.E0604) || e.getErrorCode().equals(ErrorCode.E0605)) {
+                    LOG.warn("Job is not found in db: " + jobId, e);
+                    historySet.remove(jobId);
+                    return true;
+                }
+                else {
+                    LOG.error("Failed to fetch the job: " + jobId, e);
+                }
             }
+            return false;
         }
     }
 
@@ -227,7 +337,6 @@ public class SLACalculatorMemory implements SLACalculator {
             // job might be processed and removed from map by addJobStatus
             return;
         }
-        boolean firstCheckAfterRetstart = checkAndUpdateSLACalcAfterRestart(slaCalc);
         // get eventProcessed on DB for validation in HA
         SLASummaryBean summaryBean = null;
         try {
@@ -242,6 +351,19 @@ public class SLACalculatorMemory implements SLACalculator {
             }
             throw e;
         }
+        updateJobSla(slaCalc, summaryBean);
+    }
+
+    /**
+     * Update the SLA of a registered job given its event processed and last modified time read from the DB.
+     *
+     * @param slaCalc the SLA of the job in the map
+     * @param summaryBean the event processed and last modified time of the job in the DB
+     * @throws Exception thrown if the SLA could not be updated
+     */
+    protected void updateJobSla(SLACalcStatus slaCalc, SLASummaryBean summaryBean) throws Exception {
+        String jobId = slaCalc.getId();
+        boolean firstCheckAfterRetstart = checkAndUpdateSLACalcAfterRestart(slaCalc);
         byte eventProc = summaryBean.getEventProcessed();
         slaCalc.setEventProcessed(eventProc);
         if (eventProc >= 7) {
@@ -647,6 +769,22 @@ public class SLACalculatorMemory implements SLACalculator {
         return childJobIds;
     }
 
+    /**
+     * Estimate the heap used by the SLA map from a sample of its entries.
+     *
+     * @return the estimated size of the map entries in bytes
+     */
+    @VisibleForTesting
+    long getEstimatedMemory() {
+        long sampleSize = 0;
+        int count = 0;
+        for (Iterator<SLACalcStatus> it = slaMap.values().iterator(); it.hasNext() && count < MEMORY_SAMPLE_SIZE;) {
+            sampleSize += it.next().getEstimatedSize();
+            count++;
+        }
+        return (count == 0) ? 0 : sampleSize * slaMap.size() / count;
+    }
+
     private boolean checkAndUpdateSLACalcAfterRestart(SLACalcStatus slaCalc) throws JPAExecutorException {
         if (slaCalc != null && slaCalc.getSLARegistrationBean() == null) {
             return updateSLARegistartion(slaCalc);
@@ -661,6 +799,9 @@ public class SLACalculatorMemory implements SLACalculator {
                     SLARegistrationBean slaRegBean = SLARegistrationQueryExecutor.getInstance()
                             .get(SLARegQuery.GET_SLA_REG_ON_RESTART, slaCalc.getId());
                     slaCalc.updateSLARegistrationBean(slaRegBean);
+                    if (compactMap && slaMap.get(slaCalc.getId()) == slaCalc) {
+                        slaCalc.compact();
+                    }
                     return true;
                 }
             }
@@ -668,7 +809,10 @@ public class SLACalculatorMemory implements SLACalculator {
         return false;
     }
 
-    private boolean putAndIncrement(final String jobId, final SLACalcStatus newStatus) {
+    protected boolean putAndIncrement(final String jobId, final SLACalcStatus newStatus) {
+        if (compactMap) {
+            newStatus.compact();
+        }
         if (slaMap.put(jobId, newStatus) == null) {
             LOG.trace("Added a new item to SLA map. [jobId={0}]", jobId);
             instrumentation.incr(INSTRUMENTATION_GROUP, SLA_MAP, 1);
@@ -679,7 +823,7 @@ public class SLACalculatorMemory implements SLACalculator {
         return false;
     }
 
-    private boolean removeAndDecrement(final String jobId) {
+    protected boolean removeAndDecrement(final String jobId) {
         if (slaMap.remove(jobId) != null) {
             LOG.trace("Removed an existing item from SLA map. [jobId={0}]", jobId);
             instrumentation.decr(INSTRUMENTATION_GROUP, SLA_MAP, 1);
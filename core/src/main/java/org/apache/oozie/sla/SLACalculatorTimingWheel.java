@@ -0,0 +1,280 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.oozie.sla;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.oozie.client.event.JobEvent;
+import org.apache.oozie.executor.jpa.JPAExecutorException;
+import org.apache.oozie.executor.jpa.SLASummaryQueryExecutor;
+import org.apache.oozie.executor.jpa.SLASummaryQueryExecutor.SLASummaryQuery;
+import org.apache.oozie.service.ConfigurationService;
+import org.apache.oozie.service.ServiceException;
+import org.apache.oozie.sla.service.SLAService;
+import org.apache.oozie.util.HashedTimerWheel;
+import org.apache.oozie.util.LogUtils;
+import org.apache.oozie.util.Pair;
+import org.apache.oozie.util.XLog;
+
+import com.google.common.annotations.VisibleForTesting;
+
+/**
+ * Implementation class for SLACalculator that only checks the jobs whose SLA is due.
+ * <p>
+ * Each job in the map is scheduled in a {@link HashedTimerWheel} at its next deadline: the expected start, the actual
+ * start plus the expected duration or the expected end, whichever is the earliest one not processed yet. The periodic
+ * run only processes the jobs whose deadline has been reached, reading their event processed and last modified time
+ * from the DB in batches, instead of iterating through all the jobs of the map and reading them one at a time.
+ * Jobs are rescheduled when their SLA or their status changes.
+ * <p>
+ * Jobs waiting for an event without any deadline, or whose SLA has been changed by another server, are checked by a
+ * full run over the map every {@link #CONF_FULL_CHECK_INTERVAL} seconds.
+ */
+public class SLACalculatorTimingWheel extends SLACalculatorMemory {
+
+    private static XLog LOG = XLog.getLog(SLACalculatorTimingWheel.class);
+
+    public static final String CONF_TICK = SLAService.CONF_PREFIX + "timing.wheel.tick";
+    public static final String CONF_FULL_CHECK_INTERVAL = SLAService.CONF_PREFIX + "timing.wheel.full.check.interval";
+    public static final String CONF_BATCH_SIZE = SLAService.CONF_PREFIX + "timing.wheel.batch.size";
+
+    private static final int BUCKETS_PER_LEVEL = 256;
+    private static final int LEVELS = 4;
+
+    private HashedTimerWheel<String> wheel;
+    private Map<String, HashedTimerWheel.Timeout<String>> timeouts;
+    private long jobEventLatency;
+    private long fullCheckInterval;
+    private int batchSize;
+    private long lastFullCheck;
+
+    @Override
+    public void init(Configuration conf) throws ServiceException {
+        jobEventLatency = ConfigurationService.getInt(conf, SLAService.CONF_JOB_EVENT_LATENCY);
+        fullCheckInterval = TimeUnit.SECONDS.toMillis(ConfigurationService.getLong(conf, CONF_FULL_CHECK_INTERVAL));
+        batchSize = ConfigurationService.getInt(conf, CONF_BATCH_SIZE);
+        wheel = new HashedTimerWheel<String>(ConfigurationService.getLong(conf, CONF_TICK), TimeUnit.SECONDS,
+                BUCKETS_PER_LEVEL, LEVELS);
+        timeouts = new ConcurrentHashMap<String, HashedTimerWheel.Timeout<String>>();
+        lastFullCheck = System.currentTimeMillis();
+        super.init(conf);
+    }
+
+    /**
+     * Periodically run by the SLAService worker threads to update the SLA status of the jobs whose deadline has been
+     * reached, and of all the jobs when the full check interval has elapsed.
+     */
+    @Override
+    public void updateAllSlaStatus() {
+        long now = System.currentTimeMillis();
+        List<String> due = wheel.advance(now);
+        if (now - lastFullCheck >= fullCheckInterval) {
+            lastFullCheck = now;
+            LOG.info("Running full SLA check of [{0}] jobs", slaMap.size());
+            updateJobsSla(new ArrayList<String>(slaMap.keySet()));
+        }
+        else {
+            LOG.info("Running SLA check of [{0}] due jobs out of [{1}]", due.size(), slaMap.size());
+            updateJobsSla(due);
+        }
+    }
+
+    /**
+     * Update the SLA of jobs, reading their event processed and last modified time from the DB in batches.
+     *
+     * @param jobIds the jobs to update
+     */
+    private void updateJobsSla(List<String> jobIds) {
+        for (int from = 0; from < jobIds.size(); from += batchSize) {
+            List<String> batch = jobIds.subList(from, Math.min(from + batchSize, jobIds.size()));
+            Map<String, SLASummaryBean> summaries = new HashMap<String, SLASummaryBean>();
+            try {
+                for (SLASummaryBean summaryBean : SLASummaryQueryExecutor.getInstance().getList(
+                        SLASummaryQuery.GET_SLA_SUMMARY_EVENTPROCESSED_LAST_MODIFIED_FOR_IDS, batch)) {
+                    summaries.put(summaryBean.getId(), summaryBean);
+                }
+            }
+            catch (JPAExecutorException e) {
+                LOG.error("Exception while reading the SLA of [{0}] jobs, rescheduling them", batch.size(), e);
+                for (String jobId : batch) {
+                    schedule(jobId);
+                }
+                continue;
+            }
+            for (String jobId : batch) {
+                SLACalcStatus slaCalc = slaMap.get(jobId);
+                if (slaCalc == null) {
+                    // job might be processed and removed from map by addJobStatus
+                    continue;
+                }
+                SLASummaryBean summaryBean = summaries.get(jobId);
+                if (summaryBean == null) {
+                    LOG.debug("job [{0}] is is not in DB, removing from Memory", jobId);
+                    removeAndDecrement(jobId);
+                    continue;
+                }
+                try {
+                    LOG.trace("Processing SLA for jobid={0}", jobId);
+                    updateJobSla(slaCalc, summaryBean);
+                }
+                catch (Exception e) {
+                    LOG = LogUtils.setLogInfo(LOG, jobId, null, null);
+                    LOG.error("Exception in SLA processing for job [{0}]", jobId, e);
+                    LogUtils.clearLogPrefix();
+                }
+                schedule(jobId);
+            }
+        }
+    }
+
+    @Override
+    public boolean addJobStatus(String jobId, String jobStatus, JobEvent.EventStatus jobEventStatus, Date startTime,
+            Date endTime) throws JPAExecutorException, ServiceException {
+        try {
+            return super.addJobStatus(jobId, jobStatus, jobEventStatus, startTime, endTime);
+        }
+        finally {
+            schedule(jobId);
+        }
+    }
+
+    @Override
+    public boolean changeDefinition(List<Pair<String, Map<String, String>>> jobIdsSLAPair)
+            throws JPAExecutorException, ServiceException {
+        try {
+            return super.changeDefinition(jobIdsSLAPair);
+        }
+        finally {
+            for (Pair<String, Map<String, String>> jobIdSLAPair : jobIdsSLAPair) {
+                schedule(jobIdSLAPair.getFirst());
+            }
+        }
+    }
+
+    @Override
+    public void clear() {
+        super.clear();
+        for (HashedTimerWheel.Timeout<String> timeout : timeouts.values()) {
+            timeout.cancel();
+        }
+        timeouts.clear();
+    }
+
+    @Override
+    protected boolean putAndIncrement(String jobId, SLACalcStatus newStatus) {
+        boolean added = super.putAndIncrement(jobId, newStatus);
+        schedule(jobId);
+        return added;
+    }
+
+    @Override
+    protected boolean removeAndDecrement(String jobId) {
+        boolean removed = super.removeAndDecrement(jobId);
+        HashedTimerWheel.Timeout<String> timeout = timeouts.remove(jobId);
+        if (timeout != null) {
+            timeout.cancel();
+        }
+        return removed;
+    }
+
+    /**
+     * Schedule a job in the wheel at its next deadline, replacing its previous deadline. Jobs no longer in the map
+     * are not scheduled.
+     *
+     * @param jobId the job id
+     */
+    private void schedule(String jobId) {
+        SLACalcStatus slaCalc = slaMap.get(jobId);
+        HashedTimerWheel.Timeout<String> previous;
+        if (slaCalc == null) {
+            previous = timeouts.remove(jobId);
+        }
+        else {
+            long deadline = getNextDeadline(slaCalc, jobEventLatency);
+            if (deadline == Long.MAX_VALUE) {
+                previous = timeouts.remove(jobId);
+            }
+            else {
+                previous = timeouts.put(jobId, wheel.schedule(jobId, deadline));
+            }
+        }
+        if (previous != null) {
+            previous.cancel();
+        }
+    }
+
+    /**
+     * Return the time after which the SLA of a job has to be checked, mirroring the checks of the periodic run of
+     * {@link SLACalculatorMemory}.
+     *
+     * @param slaCalc the SLA of the job
+     * @param jobEventLatency the latency of the job events
+     * @return the next deadline in milliseconds since the epoch, <code>Long.MAX_VALUE</code> if the job only waits for
+     * events
+     */
+    @VisibleForTesting
+    static long getNextDeadline(SLACalcStatus slaCalc, long jobEventLatency) {
+        SLARegistrationBean reg = slaCalc.getSLARegistrationBean();
+        if (reg == null) {
+            // loaded on restart, the registration is read on the first check
+            return 0;
+        }
+        byte eventProc = slaCalc.getEventProcessed();
+        long deadline = Long.MAX_VALUE;
+        if ((eventProc & 1) == 0) {
+            if (reg.getExpectedStart() == null) {
+                return 0;
+            }
+            deadline = Math.min(deadline, reg.getExpectedStart().getTime() + jobEventLatency + 1);
+        }
+        if (eventProc != 8 && ((eventProc >> 1) & 1) == 0) {
+            if (reg.getExpectedDuration() == -1) {
+                return 0;
+            }
+            if (slaCalc.getActualStart() != null) {
+                deadline = Math.min(deadline, slaCalc.getActualStart().getTime() + reg.getExpectedDuration()
+                        + jobEventLatency + 1);
+            }
+        }
+        if (eventProc < 4) {
+            if (reg.getExpectedEnd() == null) {
+                return 0;
+            }
+            deadline = Math.min(deadline, reg.getExpectedEnd().getTime() + jobEventLatency + 1);
+        }
+        return deadline;
+    }
+
+    /**
+     * Return the number of jobs scheduled in the wheel.
+     *
+     * @return the number of jobs scheduled in the wheel
+     */
+    @VisibleForTesting
+    public int getScheduledCount() {
+        return wheel.size();
+    }
+}
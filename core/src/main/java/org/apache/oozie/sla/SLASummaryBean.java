@@ -69,6 +69,9 @@ import org.json.simple.JSONObject;
  @NamedQuery(name = "GET_SLA_SUMMARY_EVENTPROCESSED_LAST_MODIFIED",
          query = "select w.eventProcessed, w.lastModifiedTS from SLASummaryBean w where w.jobId = :id"),
 
+ @NamedQuery(name = "GET_SLA_SUMMARY_EVENTPROCESSED_LAST_MODIFIED_FOR_IDS",
+         query = "select w.jobId, w.eventProcessed, w.lastModifiedTS from SLASummaryBean w where w.jobId IN (:ids)"),
+
  @NamedQuery(name = "GET_SLA_SUMMARY_ALL", query = "select OBJECT(w) from SLASummaryBean w")
 
 })
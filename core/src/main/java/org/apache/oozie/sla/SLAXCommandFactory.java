@@ -18,6 +18,9 @@
 
 package org.apache.oozie.sla;
 
+import org.apache.oozie.CoordinatorActionBean;
+import org.apache.oozie.WorkflowActionBean;
+import org.apache.oozie.WorkflowJobBean;
 import org.apache.oozie.command.sla.SLACoordActionJobEventXCommand;
 import org.apache.oozie.command.sla.SLACoordActionJobHistoryXCommand;
 import org.apache.oozie.command.sla.SLAJobEventXCommand;
@@ -89,4 +92,32 @@ public class SLAXCommandFactory {
         }
     }
 
+    /**
+     * Checks if a job of the SLA history has ended, as its SLA job history command does.
+     *
+     * @param jobId the job id
+     * @param status the status of the job
+     * @return true if the job has ended
+     */
+    public static boolean isJobEnded(String jobId, String status) {
+        if (jobId.endsWith("-W")) {
+            WorkflowJobBean wfJob = new WorkflowJobBean();
+            wfJob.setStatusStr(status);
+            return wfJob.inTerminalState();
+        }
+        else if (jobId.contains("-W@")) {
+            WorkflowActionBean wfAction = new WorkflowActionBean();
+            wfAction.setStatusStr(status);
+            return wfAction.isComplete() || wfAction.isTerminalWithFailure();
+        }
+        else if (jobId.contains("-C@")) {
+            CoordinatorActionBean cAction = new CoordinatorActionBean();
+            cAction.setStatusStr(status);
+            return cAction.isTerminalStatus();
+        }
+        else {
+            return false;
+        }
+    }
+
 }
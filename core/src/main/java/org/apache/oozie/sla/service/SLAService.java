@@ -53,6 +53,9 @@ public class SLAService implements Service {
     public static final String CONF_SLA_CHECK_INITIAL_DELAY = CONF_PREFIX + "check.initial.delay";
     public static final String CONF_SLA_CALC_LOCK_TIMEOUT = CONF_PREFIX + "oozie.sla.calc.default.lock.timeout";
     public static final String CONF_SLA_HISTORY_PURGE_INTERVAL = CONF_PREFIX + "history.purge.interval";
+    public static final String CONF_SLA_HISTORY_PURGE_THREADS = CONF_PREFIX + "history.purge.threads";
+    public static final String CONF_SLA_HISTORY_PURGE_BATCH_SIZE = CONF_PREFIX + "history.purge.batch.size";
+    public static final String CONF_COMPACT_MAP = CONF_PREFIX + "compact.map";
 
     private static SLACalculator calcImpl;
     private static boolean slaEnabled = false;
@@ -0,0 +1,444 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.oozie.util;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A {@link PriorityDelayQueue} that does not serialize producers and consumers on a single lock.
+ * <p>
+ * Each priority has its own lock-free sub-queue holding the elements ready to be consumed, in the order they became
+ * ready. Elements queued into the future are kept apart in a {@link HashedTimerWheel}, inserting and removing them is
+ * O(1), and polling operations advance the wheel to move them to the sub-queue of their priority once their delay
+ * expires.
+ * <p>
+ * The queue size is tracked with atomic counters, a bounded queue reserves its slot with a compare-and-set before the
+ * element is inserted.
+ * <p>
+ * The anti-starvation check has the same semantics as in {@link PriorityDelayQueue}, it is performed on polling and
+ * seeking operations, the most every 1/2 second, by a single thread at the time.
+ * <p>
+ * Subclasses can override {@link #eligibleToPoll(QueueElement)} to skip elements that must not be consumed yet, the
+ * same way {@link PollablePriorityDelayQueue} does.
+ */
+public class ConcurrentPriorityDelayQueue<E> extends PriorityDelayQueue<E> {
+
+    /**
+     * Duration, in milliseconds, of a tick of the timer wheel.
+     */
+    public static final long TIMER_WHEEL_TICK = 100;
+
+    /**
+     * Number of buckets of each level of the timer wheel.
+     */
+    public static final int TIMER_WHEEL_BUCKETS = 64;
+
+    /**
+     * Number of levels of the timer wheel, with 100ms ticks and 64 buckets they cover up to ~19 days.
+     */
+    public static final int TIMER_WHEEL_LEVELS = 4;
+
+    /**
+     * Transfer states of an element between the timer wheel and the sub-queue of its priority, elements never queued
+     * with a delay are in the <code>READY</code> state.
+     */
+    private static final int READY = 0;
+    private static final int IN_TIMER_WHEEL = 1;
+    private static final int TRANSFERRING = 2;
+    private static final int REMOVED = 3;
+
+    @SuppressWarnings("rawtypes")
+    private static final AtomicIntegerFieldUpdater<QueueElement> TRANSFER_STATE =
+            AtomicIntegerFieldUpdater.newUpdater(QueueElement.class, "transferState");
+
+    private final ConcurrentLinkedQueue<QueueElement<E>>[] readyQueues;
+    private final HashedTimerWheel<QueueElement<E>> timerWheel =
+            new HashedTimerWheel<QueueElement<E>>(TIMER_WHEEL_TICK, TimeUnit.MILLISECONDS, TIMER_WHEEL_BUCKETS,
+                    TIMER_WHEEL_LEVELS);
+    private final AtomicInteger[] prioritySizes;
+    private final AtomicInteger size = new AtomicInteger();
+    private final AtomicLong lastAntiStarvationCheck = new AtomicLong();
+    private final long maxWait;
+    private final int maxSize;
+
+    /**
+     * Create a <code>ConcurrentPriorityDelayQueue</code>.
+     *
+     * @param priorities number of priorities the queue will support.
+     * @param maxWait max wait time for elements before they are promoted to the next higher priority.
+     * @param unit time unit of the max wait time.
+     * @param maxSize maximum size of the queue, -1 means unbounded.
+     */
+    @SuppressWarnings("unchecked")
+    public ConcurrentPriorityDelayQueue(int priorities, long maxWait, TimeUnit unit, int maxSize) {
+        super(priorities, maxWait, unit, maxSize);
+        readyQueues = new ConcurrentLinkedQueue[priorities];
+        prioritySizes = new AtomicInteger[priorities];
+        for (int i = 0; i < priorities; i++) {
+            readyQueues[i] = new ConcurrentLinkedQueue<QueueElement<E>>();
+            prioritySizes[i] = new AtomicInteger();
+        }
+        this.maxWait = unit.toMillis(maxWait);
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * Return the timer wheel holding the elements with a delay.
+     *
+     * @return the timer wheel holding the elements with a delay.
+     */
+    public HashedTimerWheel<QueueElement<E>> getTimerWheel() {
+        return timerWheel;
+    }
+
+    /**
+     * Return an iterator over all the {@link QueueElement} elements (both expired and unexpired) in this queue. The
+     * iterator does not return the elements in any particular order and works on a snapshot of the queue.
+     *
+     * @return an iterator over the {@link QueueElement} elements in this queue.
+     */
+    @Override
+    public Iterator<QueueElement<E>> iterator() {
+        List<QueueElement<E>> list = new ArrayList<QueueElement<E>>();
+        for (ConcurrentLinkedQueue<QueueElement<E>> readyQueue : readyQueues) {
+            list.addAll(readyQueue);
+        }
+        list.addAll(timerWheel.elements());
+        return list.iterator();
+    }
+
+    /**
+     * Return the number of elements in the queue.
+     *
+     * @return the number of elements in the queue.
+     */
+    @Override
+    public int size() {
+        return size.get();
+    }
+
+    /**
+     * Return the number of elements on each priority sub-queue, including the elements with a delay.
+     *
+     * @return the number of elements on each priority sub-queue.
+     */
+    @Override
+    public int[] sizes() {
+        int[] sizes = new int[priorities];
+        for (int i = 0; i < priorities; i++) {
+            sizes[i] = prioritySizes[i].get();
+        }
+        return sizes;
+    }
+
+    /**
+     * Insert the specified {@link QueueElement} element into the queue.
+     *
+     * @param queueElement the {@link QueueElement} element to add.
+     * @param ignoreSize if the queue is bound to a maximum size and the maximum size is reached, this parameter (if set
+     * to <tt>true</tt>) allows to ignore the maximum size and add the element to the queue.
+     *
+     * @return <tt>true</tt> if the element has been inserted, <tt>false</tt> if the element was not inserted (the queue
+     *         has reached its maximum size).
+     *
+     * @throws NullPointerException if the specified element is null
+     */
+    @Override
+    boolean offer(QueueElement<E> queueElement, boolean ignoreSize) {
+        ParamChecker.notNull(queueElement, "queueElement");
+        int priority = queueElement.getPriority();
+        if (priority < 0 || priority >= priorities) {
+            throw new IllegalArgumentException("priority out of range: " + queueElement);
+        }
+        if (queueElement.inQueue) {
+            throw new IllegalStateException("queueElement already in a queue: " + queueElement);
+        }
+        if (!reserve(ignoreSize)) {
+            debug("offer([{0}]), to P[{1}] rejected, queue full", queueElement.getElement(), priority);
+            return false;
+        }
+        queueElement.inQueue = true;
+        prioritySizes[priority].incrementAndGet();
+        long delay = queueElement.getDelay(TimeUnit.MILLISECONDS);
+        if (delay > 0) {
+            queueElement.transferState = IN_TIMER_WHEEL;
+            queueElement.timeout = timerWheel.schedule(queueElement, queueElement.baseTime);
+        }
+        else {
+            queueElement.transferState = READY;
+            readyQueues[priority].offer(queueElement);
+        }
+        debug("offer([{0}]), to P[{1}] delay[{2}ms] accepted[true]", queueElement.getElement(), priority, delay);
+        return true;
+    }
+
+    /**
+     * Reserve a slot for a new element.
+     *
+     * @param ignoreSize if the maximum size should be ignored.
+     * @return <tt>true</tt> if the slot was reserved, <tt>false</tt> if the queue has reached its maximum size.
+     */
+    private boolean reserve(boolean ignoreSize) {
+        if (ignoreSize || maxSize == -1) {
+            size.incrementAndGet();
+            return true;
+        }
+        int current;
+        do {
+            current = size.get();
+            if (current >= maxSize) {
+                return false;
+            }
+        } while (!size.compareAndSet(current, current + 1));
+        return true;
+    }
+
+    /**
+     * Retrieve and remove the head of this queue, or return <tt>null</tt> if this queue has no elements with an expired
+     * delay.
+     * <p>
+     * The retrieved element is the first ready element, eligible to poll, from the highest priority sub-queue.
+     * <p>
+     * Invocations to this method run the anti-starvation (once every interval check).
+     *
+     * @return the head of this queue, or <tt>null</tt> if this queue has no elements with an expired delay.
+     */
+    @Override
+    public QueueElement<E> poll() {
+        promoteDelayed();
+        antiStarvation();
+        for (int i = priorities - 1; i >= 0; i--) {
+            QueueElement<E> e = poll(readyQueues[i]);
+            if (e != null) {
+                prioritySizes[i].decrementAndGet();
+                size.decrementAndGet();
+                e.inQueue = false;
+                debug("poll(): [{0}], from P[{1}]", e.getElement(), i);
+                return e;
+            }
+        }
+        return null;
+    }
+
+    private QueueElement<E> poll(ConcurrentLinkedQueue<QueueElement<E>> readyQueue) {
+        for (QueueElement<E> e : readyQueue) {
+            // the element may have been taken by another thread since the iterator returned it
+            if (eligibleToPoll(e) && readyQueue.remove(e)) {
+                return e;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Retrieve, but does not remove, the head of this queue, or returns <tt>null</tt> if this queue is empty.  Unlike
+     * <tt>poll</tt>, if no expired elements are available in the queue, this method returns the element that will
+     * expire next, if one exists.
+     *
+     * @return the head of this queue, or <tt>null</tt> if this queue is empty.
+     */
+    @Override
+    public QueueElement<E> peek() {
+        promoteDelayed();
+        antiStarvation();
+        QueueElement<E> e = null;
+        for (int i = priorities - 1; e == null && i >= 0; i--) {
+            e = readyQueues[i].peek();
+        }
+        if (e == null) {
+            e = timerWheel.peek();
+        }
+        if (e != null) {
+            debug("peek(): [{0}], from P[{1}]", e.getElement(), e.getPriority());
+        }
+        else {
+            debug("peek(): NULL");
+        }
+        return e;
+    }
+
+    /**
+     * Advance the timer wheel and move the elements whose delay has expired to the sub-queue of their priority.
+     * <p>
+     * Only one thread at the time advances the wheel, the others go on with the elements that are already ready. The
+     * elements removed after their delay expired, but before they were moved, are dropped.
+     */
+    private void promoteDelayed() {
+        for (QueueElement<E> e : timerWheel.advance(System.currentTimeMillis())) {
+            e.timeout = null;
+            if (TRANSFER_STATE.compareAndSet(e, IN_TIMER_WHEEL, TRANSFERRING)) {
+                readyQueues[e.getPriority()].offer(e);
+                // a consumer may already have polled the element and queued it again with a delay
+                TRANSFER_STATE.compareAndSet(e, TRANSFERRING, READY);
+            }
+        }
+    }
+
+    /**
+     * Run the anti-starvation check every {@link #ANTI_STARVATION_INTERVAL} milliseconds.
+     * <p>
+     * It promotes elements beyond max wait time to the next higher priority sub-queue.
+     */
+    @Override
+    protected void antiStarvation() {
+        long now = System.currentTimeMillis();
+        long last = lastAntiStarvationCheck.get();
+        if (now - last > ANTI_STARVATION_INTERVAL && lastAntiStarvationCheck.compareAndSet(last, now)) {
+            for (int i = 0; i < priorities - 1; i++) {
+                antiStarvation(i);
+            }
+            StringBuilder sb = new StringBuilder();
+            for (int i = 0; i < priorities; i++) {
+                sb.append("P[").append(i).append("]=").append(prioritySizes[i].get()).append(" ");
+            }
+            debug("sub-queue sizes: {0}", sb.toString());
+        }
+    }
+
+    /**
+     * Promote the ready elements beyond max wait time from a priority sub-queue to the next higher one.
+     *
+     * @param priority the lower priority.
+     */
+    private void antiStarvation(int priority) {
+        ConcurrentLinkedQueue<QueueElement<E>> lowerQ = readyQueues[priority];
+        ConcurrentLinkedQueue<QueueElement<E>> higherQ = readyQueues[priority + 1];
+        int moved = 0;
+        QueueElement<E> e = lowerQ.peek();
+        while (e != null && e.getDelay(TimeUnit.MILLISECONDS) < -maxWait) {
+            if (lowerQ.remove(e)) {
+                e.setDelay(0, TimeUnit.MILLISECONDS);
+                e.priority++;
+                prioritySizes[priority].decrementAndGet();
+                prioritySizes[priority + 1].incrementAndGet();
+                higherQ.offer(e);
+                moved++;
+            }
+            e = lowerQ.peek();
+        }
+        debug("anti-starvation, moved {0} element(s) from P[{1}] to P[{2}]", moved, priority, priority + 1);
+    }
+
+    /**
+     * Check whether an element can be polled. This implementation always returns <tt>true</tt>.
+     *
+     * @param element the element to check.
+     * @return <tt>true</tt> if the element can be polled.
+     */
+    protected boolean eligibleToPoll(QueueElement<?> element) {
+        return true;
+    }
+
+    /**
+     * Remove a single instance of the specified element from this queue, if it is present.
+     *
+     * @param o the element to remove.
+     * @return <tt>true</tt> if the element was removed.
+     */
+    @Override
+    public boolean remove(Object o) {
+        if (!(o instanceof QueueElement)) {
+            return false;
+        }
+        QueueElement<?> e = (QueueElement<?>) o;
+        // an element in the timer wheel is claimed before cancelling its timeout, if its delay expired meanwhile the
+        // thread advancing the wheel drops it instead of moving it to its sub-queue
+        boolean removed = TRANSFER_STATE.compareAndSet(e, IN_TIMER_WHEEL, REMOVED);
+        if (removed) {
+            HashedTimerWheel.Timeout<?> timeout = e.timeout;
+            if (timeout != null) {
+                timeout.cancel();
+                e.timeout = null;
+            }
+            prioritySizes[e.getPriority()].decrementAndGet();
+        }
+        while (!removed && e.transferState == TRANSFERRING) {
+            // the element is about to be added to its sub-queue by the thread advancing the wheel
+            Thread.yield();
+        }
+        for (int i = 0; !removed && i < priorities; i++) {
+            removed = readyQueues[i].remove(e);
+            if (removed) {
+                prioritySizes[i].decrementAndGet();
+            }
+        }
+        if (removed) {
+            size.decrementAndGet();
+            e.inQueue = false;
+        }
+        return removed;
+    }
+
+    /**
+     * Remove all available elements from this queue and adds them to the given collection.
+     *
+     * @param c the collection to transfer elements into
+     * @return the number of elements transferred
+     */
+    @Override
+    public int drainTo(Collection<? super QueueElement<E>> c) {
+        return drainTo(c, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Remove at most the given number of available elements from this queue and adds them to the given collection.
+     *
+     * @param c the collection to transfer elements into
+     * @param maxElements the maximum number of elements to transfer
+     * @return the number of elements transferred
+     */
+    @Override
+    public int drainTo(Collection<? super QueueElement<E>> c, int maxElements) {
+        ParamChecker.notNull(c, "c");
+        if (c == this) {
+            throw new IllegalArgumentException("cannot drain a queue to itself");
+        }
+        int count = 0;
+        QueueElement<E> e = (maxElements > 0) ? poll() : null;
+        while (e != null) {
+            c.add(e);
+            count++;
+            e = (count < maxElements) ? poll() : null;
+        }
+        return count;
+    }
+
+    /**
+     * Removes all of the elements from this queue. The queue will be empty after this call returns.
+     */
+    @Override
+    public void clear() {
+        for (QueueElement<E> e : timerWheel.elements()) {
+            remove(e);
+        }
+        for (ConcurrentLinkedQueue<QueueElement<E>> readyQueue : readyQueues) {
+            for (QueueElement<E> e : readyQueue) {
+                remove(e);
+            }
+        }
+    }
+}
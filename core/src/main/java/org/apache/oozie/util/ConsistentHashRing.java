@@ -0,0 +1,135 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.oozie.util;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * Immutable consistent hashing ring assigning keys to nodes.
+ * <p>
+ * Each node is placed on the ring at <code>virtualNodes * weight</code> points, a key belongs to the node of the first
+ * point at or after the hash of the key. When a node joins or leaves, only the keys between its points and the
+ * previous ones move, about <code>1/N</code> of the keys for <code>N</code> nodes of the same weight.
+ * <p>
+ * The hash is stable across JVMs, so all the Oozie servers computing a ring with the same nodes and weights assign
+ * the keys the same way.
+ */
+public class ConsistentHashRing {
+    private final long[] points;
+    private final String[] owners;
+    private final Set<String> nodes;
+
+    /**
+     * Create a ring.
+     *
+     * @param weights nodes and their weight, nodes with a weight lower than 1 are not placed on the ring.
+     * @param virtualNodes number of points of a node of weight 1.
+     */
+    public ConsistentHashRing(Map<String, Integer> weights, int virtualNodes) {
+        ParamChecker.checkGTZero(virtualNodes, "virtualNodes");
+        // sorted by point, then by node name for the unlikely collisions, so all servers break ties the same way
+        TreeMap<Long, String> ring = new TreeMap<Long, String>();
+        TreeMap<String, Integer> sortedWeights = new TreeMap<String, Integer>(weights);
+        for (Map.Entry<String, Integer> entry : sortedWeights.entrySet()) {
+            String node = entry.getKey();
+            int count = virtualNodes * Math.max(0, entry.getValue());
+            for (int i = 0; i < count; i++) {
+                long point = hash(node + "#" + i);
+                String owner = ring.get(point);
+                if (owner == null || node.compareTo(owner) < 0) {
+                    ring.put(point, node);
+                }
+            }
+        }
+        points = new long[ring.size()];
+        owners = new String[ring.size()];
+        int i = 0;
+        for (Map.Entry<Long, String> entry : ring.entrySet()) {
+            points[i] = entry.getKey();
+            owners[i] = entry.getValue();
+            i++;
+        }
+        nodes = Collections.unmodifiableSet(new TreeSet<String>(ring.values()));
+    }
+
+    /**
+     * Return the node a key belongs to.
+     *
+     * @param key the key.
+     * @return the node of the key, <code>null</code> if the ring is empty.
+     */
+    public String getNode(String key) {
+        if (points.length == 0) {
+            return null;
+        }
+        int index = Arrays.binarySearch(points, hash(key));
+        if (index < 0) {
+            index = -index - 1;
+            if (index == points.length) {
+                index = 0;
+            }
+        }
+        return owners[index];
+    }
+
+    /**
+     * Return the nodes on the ring.
+     *
+     * @return the nodes on the ring.
+     */
+    public Set<String> getNodes() {
+        return nodes;
+    }
+
+    /**
+     * Return the number of points on the ring.
+     *
+     * @return the number of points on the ring.
+     */
+    public int size() {
+        return points.length;
+    }
+
+    /**
+     * 64 bit FNV-1a hash of the UTF-8 bytes of a string, with the MurmurHash3 finalizer to spread close strings over the
+     * whole ring.
+     *
+     * @param value string to hash.
+     * @return the hash of the string.
+     */
+    static long hash(String value) {
+        long hash = 0xcbf29ce484222325L;
+        for (byte b : value.getBytes(StandardCharsets.UTF_8)) {
+            hash ^= (b & 0xff);
+            hash *= 0x100000001b3L;
+        }
+        hash ^= (hash >>> 33);
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= (hash >>> 33);
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= (hash >>> 33);
+        return hash;
+    }
+}
@@ -18,11 +18,17 @@
 
 package org.apache.oozie.util;
 
+import org.apache.commons.el.Coercions;
+import org.apache.commons.el.Constants;
+import org.apache.commons.el.Expression;
 import org.apache.commons.el.ExpressionEvaluatorImpl;
 import org.apache.commons.el.ExpressionString;
+import org.apache.commons.el.Logger;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 
 import javax.servlet.jsp.el.ELException;
-import javax.servlet.jsp.el.ExpressionEvaluator;
 import javax.servlet.jsp.el.FunctionMapper;
 import javax.servlet.jsp.el.VariableResolver;
 import java.lang.reflect.Method;
@@ -32,6 +38,12 @@ import java.util.Map;
 
 /**
  * JSP Expression Language Evaluator. <p> It provides a more convenient way of using the JSP EL Evaluator.
+ * <p>
+ * The parsed expressions are kept in an LRU cache shared by all the evaluators, bounded in number of expressions and
+ * skipping the expressions longer than a maximum length, see {@link #configureExpressionCache(int, int)}. A parsed
+ * expression does not depend on the functions and variables of the evaluator, they are resolved when it is evaluated.
+ * With a cache size of <code>0</code> the expressions are evaluated by the commons-el evaluator, which keeps its own
+ * unbounded cache of parsed expressions.
  */
 public class ELEvaluator {
 
@@ -41,14 +53,14 @@ public class ELEvaluator {
      */
     public static class Context implements VariableResolver, FunctionMapper {
         private Map<String, Object> vars;
-        private Map<String, Method> functions;
+        private Map<String, Map<String, Method>> functions;
 
         /**
          * Create an empty context.
          */
         public Context() {
             vars = new HashMap<String, Object>();
-            functions = new HashMap<String, Method>();
+            functions = new HashMap<String, Map<String, Method>>();
         }
 
         /**
@@ -91,8 +103,12 @@ public class ELEvaluator {
             if ((method.getModifiers() & (Modifier.PUBLIC | Modifier.STATIC)) != (Modifier.PUBLIC | Modifier.STATIC)) {
                 throw new IllegalArgumentException(XLog.format("Method[{0}] must be public and static", method));
             }
-            prefix = (prefix.length() > 0) ? prefix + ":" : "";
-            functions.put(prefix + functionName, method);
+            Map<String, Method> prefixFunctions = functions.get(prefix);
+            if (prefixFunctions == null) {
+                prefixFunctions = new HashMap<String, Method>();
+                functions.put(prefix, prefixFunctions);
+            }
+            prefixFunctions.put(functionName, method);
         }
 
         /**
@@ -103,10 +119,11 @@ public class ELEvaluator {
          * @throws ELException thrown if the variable is not defined in the context.
          */
         public Object resolveVariable(String name) throws ELException {
-            if (!vars.containsKey(name)) {
+            Object value = vars.get(name);
+            if (value == null && !vars.containsKey(name)) {
                 throw new ELException(XLog.format("variable [{0}] cannot be resolved", name));
             }
-            return vars.get(name);
+            return value;
         }
 
         /**
@@ -117,11 +134,77 @@ public class ELEvaluator {
          * @return the method associated to the function.
          */
         public Method resolveFunction(String prefix, String name) {
-            if (prefix.length() > 0) {
-                name = prefix + ":" + name;
-            }
-            return functions.get(name);
+            Map<String, Method> prefixFunctions = functions.get(prefix);
+            return (prefixFunctions != null) ? prefixFunctions.get(name) : null;
+        }
+    }
+
+    /**
+     * Default maximum number of parsed expressions cached.
+     */
+    public static final int DEFAULT_EXPRESSION_CACHE_SIZE = 10000;
+
+    /**
+     * Default maximum length of the expressions cached parsed.
+     */
+    public static final int DEFAULT_EXPRESSION_CACHE_MAX_LENGTH = 4096;
+
+    private static final Logger EL_LOGGER = new Logger(System.out);
+
+    private static final ExpressionEvaluatorImpl EVALUATOR = new ExpressionEvaluatorImpl();
+
+    private static final ExpressionEvaluatorImpl PARSER = new ExpressionEvaluatorImpl(true);
+
+    private static volatile Cache<String, Object> expressionCache;
+
+    private static volatile int expressionCacheMaxLength;
+
+    static {
+        configureExpressionCache(DEFAULT_EXPRESSION_CACHE_SIZE, DEFAULT_EXPRESSION_CACHE_MAX_LENGTH);
+    }
+
+    /**
+     * Configure the cache of parsed expressions shared by all the evaluators, discarding the cached expressions.
+     *
+     * @param size maximum number of parsed expressions cached, <code>0</code> to evaluate the expressions with the
+     * commons-el evaluator.
+     * @param maxLength maximum length of the expressions cached, longer expressions are parsed on every evaluation.
+     */
+    public static void configureExpressionCache(int size, int maxLength) {
+        ParamChecker.checkGEZero(size, "size");
+        ParamChecker.checkGEZero(maxLength, "maxLength");
+        expressionCacheMaxLength = maxLength;
+        expressionCache = (size > 0) ? CacheBuilder.newBuilder().maximumSize(size).<String, Object>build() : null;
+    }
+
+    /**
+     * Return the number of parsed expressions cached.
+     *
+     * @return the number of parsed expressions cached.
+     */
+    public static long getExpressionCacheSize() {
+        Cache<String, Object> cache = expressionCache;
+        return (cache != null) ? cache.size() : 0;
+    }
+
+    /**
+     * Parse an expression, or return it parsed from the cache.
+     *
+     * @return a <code>String</code>, an {@link Expression} or an {@link ExpressionString}.
+     */
+    private static Object parse(Cache<String, Object> cache, String expr) throws ELException {
+        if (expr == null) {
+            throw new ELException(Constants.NULL_EXPRESSION_STRING);
+        }
+        if (cache == null || expr.length() > expressionCacheMaxLength) {
+            return PARSER.parseExpressionString(expr);
+        }
+        Object parsed = cache.getIfPresent(expr);
+        if (parsed == null) {
+            parsed = PARSER.parseExpressionString(expr);
+            cache.put(expr, parsed);
         }
+        return parsed;
     }
 
     private static ThreadLocal<ELEvaluator> current = new ThreadLocal<ELEvaluator>();
@@ -140,8 +223,6 @@ public class ELEvaluator {
 
     private Context context;
 
-    private ExpressionEvaluatorImpl evaluator = new ExpressionEvaluatorImpl();
-
     /**
      * Creates an ELEvaluator with no functions and no variables defined.
      */
@@ -202,7 +283,25 @@ public class ELEvaluator {
         ELEvaluator existing = current.get();
         try {
             current.set(this);
-            return (T) evaluator.evaluate(expr, clazz, context, context);
+            Cache<String, Object> cache = expressionCache;
+            if (cache == null) {
+                return (T) EVALUATOR.evaluate(expr, clazz, context, context);
+            }
+            Object parsed = parse(cache, expr);
+            Object value;
+            if (parsed instanceof String) {
+                if (clazz == String.class) {
+                    return (T) parsed;
+                }
+                value = parsed;
+            }
+            else if (parsed instanceof Expression) {
+                value = ((Expression) parsed).evaluate(context, context, EL_LOGGER);
+            }
+            else {
+                value = ((ExpressionString) parsed).evaluate(context, context, EL_LOGGER);
+            }
+            return (T) Coercions.coerce(value, clazz, EL_LOGGER);
         }
         catch (ELException ex) {
             if (ex.getRootCause() instanceof Exception) {
@@ -231,7 +330,7 @@ public class ELEvaluator {
     public boolean checkForExistence(String expr, String sequence)
             throws Exception {
         try {
-            Object exprString = evaluator.parseExpressionString(expr);
+            Object exprString = parse(expressionCache, expr);
             if (exprString instanceof ExpressionString) {
                 for (Object element : ((ExpressionString)exprString).getElements()) {
                     if (element instanceof String &&
@@ -0,0 +1,498 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.oozie.util;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+
+/**
+ * A hierarchical hashed timer wheel holding elements until a deadline.
+ * <p>
+ * The wheel has a number of levels, each one with the same number of buckets. A bucket of the first level spans one
+ * tick, a bucket of the next level spans as many ticks as the whole previous level. An element is hashed into the
+ * bucket of the lowest level that covers its deadline, and it cascades down to the lower levels as time advances. The
+ * elements beyond the last level wait in an overflow list, which is checked each time the last level moves to its
+ * next bucket.
+ * <p>
+ * Scheduling and cancelling an element are O(1). Scheduled elements are queued and placed into their bucket by the
+ * thread advancing the wheel, cancelled elements are dropped when their bucket is processed.
+ * <p>
+ * The wheel does not use its own thread, it is advanced by invoking {@link #advance(long)}. Only one thread at the
+ * time advances it, concurrent invocations return immediately. Ticks without anything to cascade or expire are
+ * skipped, and once no element is live the entries still held by the wheel are dropped. Elements are never returned
+ * before their deadline, within a tick elements are checked against the exact deadline on every advance.
+ */
+public class HashedTimerWheel<E> {
+
+    /**
+     * Handle of an element scheduled in the wheel.
+     */
+    public static final class Timeout<E> {
+        private static final int PENDING = 0;
+        private static final int CANCELLED = 1;
+        private static final int EXPIRED = 2;
+
+        private static final AtomicIntegerFieldUpdater<Timeout> STATE =
+                AtomicIntegerFieldUpdater.newUpdater(Timeout.class, "state");
+
+        private final HashedTimerWheel<E> wheel;
+        private final E element;
+        private final long deadline;
+        private volatile int state = PENDING;
+
+        private Timeout(HashedTimerWheel<E> wheel, E element, long deadline) {
+            this.wheel = wheel;
+            this.element = element;
+            this.deadline = deadline;
+        }
+
+        /**
+         * Return the scheduled element.
+         *
+         * @return the scheduled element.
+         */
+        public E getElement() {
+            return element;
+        }
+
+        /**
+         * Return the deadline of the element.
+         *
+         * @return the deadline in milliseconds since the epoch.
+         */
+        public long getDeadline() {
+            return deadline;
+        }
+
+        /**
+         * Cancel the timeout, the element will not be returned by the wheel.
+         *
+         * @return <tt>true</tt> if the timeout was cancelled, <tt>false</tt> if it had already expired or been cancelled.
+         */
+        public boolean cancel() {
+            if (STATE.compareAndSet(this, PENDING, CANCELLED)) {
+                wheel.size.decrementAndGet();
+                return true;
+            }
+            return false;
+        }
+
+        /**
+         * Return if the timeout has been cancelled.
+         *
+         * @return <tt>true</tt> if the timeout has been cancelled.
+         */
+        public boolean isCancelled() {
+            return state == CANCELLED;
+        }
+
+        private boolean isPending() {
+            return state == PENDING;
+        }
+
+        private boolean expire() {
+            if (STATE.compareAndSet(this, PENDING, EXPIRED)) {
+                wheel.size.decrementAndGet();
+                return true;
+            }
+            return false;
+        }
+    }
+
+    private final long tickDuration;
+    private final int levels;
+    private final int bucketBits;
+    private final int bucketMask;
+    private final ConcurrentLinkedQueue<Timeout<E>>[][] buckets;
+    private final AtomicIntegerArray[] occupancy;
+    private final ConcurrentLinkedQueue<Timeout<E>> pending = new ConcurrentLinkedQueue<Timeout<E>>();
+    private final ConcurrentLinkedQueue<Timeout<E>> due = new ConcurrentLinkedQueue<Timeout<E>>();
+    private final ConcurrentLinkedQueue<Timeout<E>> overflow = new ConcurrentLinkedQueue<Timeout<E>>();
+    private final AtomicInteger size = new AtomicInteger();
+    private final AtomicBoolean advancing = new AtomicBoolean();
+    private final int[] levelCounts;
+    private int overflowCount;
+    private long currentTick;
+    private volatile boolean holdsEntries;
+
+    /**
+     * Create a <code>HashedTimerWheel</code>.
+     *
+     * @param tickDuration duration of a tick.
+     * @param unit time unit of the tick duration.
+     * @param bucketsPerLevel number of buckets of each level, it is rounded up to a power of 2.
+     * @param levels number of levels.
+     */
+    @SuppressWarnings("unchecked")
+    public HashedTimerWheel(long tickDuration, TimeUnit unit, int bucketsPerLevel, int levels) {
+        if (unit.toMillis(tickDuration) < 1) {
+            throw new IllegalArgumentException("tickDuration must be 1 millisecond or more");
+        }
+        if (bucketsPerLevel < 2 || bucketsPerLevel > 1 << 16) {
+            throw new IllegalArgumentException("bucketsPerLevel must be between 2 and 65536");
+        }
+        if (levels < 1) {
+            throw new IllegalArgumentException("levels must be 1 or more");
+        }
+        this.tickDuration = unit.toMillis(tickDuration);
+        this.levels = levels;
+        bucketBits = 32 - Integer.numberOfLeadingZeros(bucketsPerLevel - 1);
+        if (bucketBits * levels > 62) {
+            throw new IllegalArgumentException("too many levels for the number of buckets");
+        }
+        bucketMask = (1 << bucketBits) - 1;
+        buckets = new ConcurrentLinkedQueue[levels][1 << bucketBits];
+        occupancy = new AtomicIntegerArray[levels];
+        levelCounts = new int[levels];
+        for (int i = 0; i < levels; i++) {
+            for (int j = 0; j < buckets[i].length; j++) {
+                buckets[i][j] = new ConcurrentLinkedQueue<Timeout<E>>();
+            }
+            occupancy[i] = new AtomicIntegerArray(buckets[i].length);
+        }
+        currentTick = System.currentTimeMillis() / this.tickDuration;
+    }
+
+    /**
+     * Return the duration of a tick.
+     *
+     * @param unit time unit of the tick duration.
+     * @return the duration of a tick in the specified time unit.
+     */
+    public long getTickDuration(TimeUnit unit) {
+        return unit.convert(tickDuration, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Return the number of levels of the wheel.
+     *
+     * @return the number of levels of the wheel.
+     */
+    public int getLevels() {
+        return levels;
+    }
+
+    /**
+     * Return the number of buckets of each level.
+     *
+     * @return the number of buckets of each level.
+     */
+    public int getBucketsPerLevel() {
+        return bucketMask + 1;
+    }
+
+    /**
+     * Schedule an element.
+     *
+     * @param element element to schedule.
+     * @param deadline deadline of the element, in milliseconds since the epoch.
+     * @return the handle to cancel the element.
+     */
+    public Timeout<E> schedule(E element, long deadline) {
+        ParamChecker.notNull(element, "element");
+        Timeout<E> timeout = new Timeout<E>(this, element, deadline);
+        size.incrementAndGet();
+        pending.offer(timeout);
+        return timeout;
+    }
+
+    /**
+     * Return the number of scheduled elements that have not expired nor been cancelled.
+     *
+     * @return the number of scheduled elements.
+     */
+    public int size() {
+        return size.get();
+    }
+
+    /**
+     * Advance the wheel up to the given time and return the elements whose deadline has been reached.
+     * <p>
+     * If another thread is advancing the wheel, this method returns an empty list without waiting.
+     *
+     * @param now the current time in milliseconds since the epoch.
+     * @return the expired elements, in no particular order.
+     */
+    public List<E> advance(long now) {
+        if ((size.get() == 0 && !holdsEntries && pending.isEmpty()) || !advancing.compareAndSet(false, true)) {
+            return Collections.emptyList();
+        }
+        try {
+            long nowTick = now / tickDuration;
+            if (size.get() == 0 && holdsEntries) {
+                // nothing live, the entries still held are all cancelled or expired
+                clear();
+            }
+            if (currentTick < nowTick && nextTick() == Long.MAX_VALUE) {
+                // nothing in the wheel, skip the ticks elapsed while it was idle
+                currentTick = nowTick;
+            }
+            Timeout<E> timeout = pending.poll();
+            while (timeout != null) {
+                place(timeout);
+                timeout = pending.poll();
+            }
+            while (currentTick < nowTick) {
+                currentTick = Math.min(nextTick(), nowTick);
+                if ((currentTick & ((1L << (bucketBits * (levels - 1))) - 1)) == 0 && overflowCount > 0) {
+                    placeOverflow();
+                }
+                cascade();
+                drain(0, (int) (currentTick & bucketMask), due);
+            }
+            List<E> expired = null;
+            for (Iterator<Timeout<E>> it = due.iterator(); it.hasNext();) {
+                timeout = it.next();
+                if (!timeout.isPending()) {
+                    it.remove();
+                }
+                else if (timeout.deadline <= now) {
+                    it.remove();
+                    if (timeout.expire()) {
+                        if (expired == null) {
+                            expired = new ArrayList<E>();
+                        }
+                        expired.add(timeout.element);
+                    }
+                }
+            }
+            holdsEntries = overflowCount > 0 || !due.isEmpty() || nextTick() != Long.MAX_VALUE;
+            return (expired != null) ? expired : Collections.<E>emptyList();
+        }
+        finally {
+            advancing.set(false);
+        }
+    }
+
+    /**
+     * Drop all the entries of the buckets, the overflow list and the due list.
+     */
+    private void clear() {
+        for (int level = 0; level < levels; level++) {
+            if (levelCounts[level] > 0) {
+                for (int index = 0; index < buckets[level].length; index++) {
+                    if (occupancy[level].get(index) > 0) {
+                        buckets[level][index].clear();
+                        occupancy[level].set(index, 0);
+                    }
+                }
+                levelCounts[level] = 0;
+            }
+        }
+        overflow.clear();
+        overflowCount = 0;
+        due.clear();
+    }
+
+    /**
+     * Return the next tick where a bucket has to be cascaded or expired.
+     * <p>
+     * Buckets of a level are cascaded when the current tick is a multiple of their span, if the lower levels are empty
+     * nothing happens until then.
+     *
+     * @return the next tick to process, <code>Long.MAX_VALUE</code> if the wheel is empty.
+     */
+    private long nextTick() {
+        int level = 0;
+        while (level < levels && levelCounts[level] == 0) {
+            level++;
+        }
+        if (level == levels) {
+            if (overflowCount == 0) {
+                return Long.MAX_VALUE;
+            }
+            level = levels - 1;
+        }
+        long span = 1L << (bucketBits * level);
+        return (currentTick & ~(span - 1)) + span;
+    }
+
+    /**
+     * Hash a timeout into the bucket covering its deadline, or into the due list if its tick has been reached.
+     *
+     * @param timeout timeout to place.
+     */
+    private void place(Timeout<E> timeout) {
+        if (!timeout.isPending()) {
+            return;
+        }
+        long deadlineTick = timeout.deadline / tickDuration;
+        long ticks = deadlineTick - currentTick;
+        if (ticks <= 0) {
+            due.offer(timeout);
+            return;
+        }
+        if ((ticks >>> (bucketBits * levels)) > 0) {
+            overflow.offer(timeout);
+            overflowCount++;
+            return;
+        }
+        int level = 0;
+        while ((ticks >>> (bucketBits * (level + 1))) > 0) {
+            level++;
+        }
+        int index = (int) ((deadlineTick >>> (bucketBits * level)) & bucketMask);
+        buckets[level][index].offer(timeout);
+        occupancy[level].incrementAndGet(index);
+        levelCounts[level]++;
+    }
+
+    /**
+     * Hash the overflow timeouts that are now within the span of the wheel.
+     */
+    private void placeOverflow() {
+        for (Iterator<Timeout<E>> it = overflow.iterator(); it.hasNext();) {
+            Timeout<E> timeout = it.next();
+            long ticks = timeout.deadline / tickDuration - currentTick;
+            if (!timeout.isPending() || (ticks >>> (bucketBits * levels)) == 0) {
+                it.remove();
+                overflowCount--;
+                place(timeout);
+            }
+        }
+    }
+
+    /**
+     * Move the buckets of the upper levels whose span starts at the current tick to the lower levels.
+     */
+    private void cascade() {
+        for (int level = 1; level < levels; level++) {
+            int shift = bucketBits * level;
+            if ((currentTick & ((1L << shift) - 1)) != 0) {
+                break;
+            }
+            int index = (int) ((currentTick >>> shift) & bucketMask);
+            List<Timeout<E>> list = new ArrayList<Timeout<E>>();
+            drain(level, index, list);
+            for (Timeout<E> timeout : list) {
+                place(timeout);
+            }
+        }
+    }
+
+    private void drain(int level, int index, Collection<Timeout<E>> target) {
+        ConcurrentLinkedQueue<Timeout<E>> bucket = buckets[level][index];
+        Timeout<E> timeout = bucket.poll();
+        while (timeout != null) {
+            occupancy[level].decrementAndGet(index);
+            levelCounts[level]--;
+            if (timeout.isPending()) {
+                target.add(timeout);
+            }
+            timeout = bucket.poll();
+        }
+    }
+
+    /**
+     * Return the scheduled element with the earliest deadline. This method scans the whole wheel.
+     *
+     * @return the scheduled element with the earliest deadline, <tt>null</tt> if the wheel is empty.
+     */
+    public E peek() {
+        Timeout<E> earliest = null;
+        for (Timeout<E> timeout : timeouts()) {
+            if (earliest == null || timeout.deadline < earliest.deadline) {
+                earliest = timeout;
+            }
+        }
+        return (earliest != null) ? earliest.element : null;
+    }
+
+    /**
+     * Return a snapshot of the scheduled elements, in no particular order.
+     *
+     * @return the scheduled elements.
+     */
+    public List<E> elements() {
+        List<E> list = new ArrayList<E>();
+        for (Timeout<E> timeout : timeouts()) {
+            list.add(timeout.element);
+        }
+        return list;
+    }
+
+    private List<Timeout<E>> timeouts() {
+        List<Timeout<E>> list = new ArrayList<Timeout<E>>();
+        addPending(pending, list);
+        addPending(due, list);
+        addPending(overflow, list);
+        for (ConcurrentLinkedQueue<Timeout<E>>[] level : buckets) {
+            for (ConcurrentLinkedQueue<Timeout<E>> bucket : level) {
+                addPending(bucket, list);
+            }
+        }
+        return list;
+    }
+
+    private static <E> void addPending(ConcurrentLinkedQueue<Timeout<E>> source, List<Timeout<E>> target) {
+        for (Timeout<E> timeout : source) {
+            if (timeout.isPending()) {
+                target.add(timeout);
+            }
+        }
+    }
+
+    /**
+     * Return the number of entries in each bucket of a level. Cancelled entries are counted until their bucket is
+     * processed.
+     *
+     * @param level the level.
+     * @return the number of entries in each bucket of the level.
+     */
+    public int[] bucketSizes(int level) {
+        int[] sizes = new int[occupancy[level].length()];
+        for (int i = 0; i < sizes.length; i++) {
+            sizes[i] = occupancy[level].get(i);
+        }
+        return sizes;
+    }
+
+    /**
+     * Return the number of entries in a level. Cancelled entries are counted until their bucket is processed.
+     *
+     * @param level the level.
+     * @return the number of entries in the level.
+     */
+    public int levelSize(int level) {
+        int size = 0;
+        for (int i = 0; i < occupancy[level].length(); i++) {
+            size += occupancy[level].get(i);
+        }
+        return size;
+    }
+
+    /**
+     * Return the number of entries beyond the span of the last level. Cancelled entries are counted until the overflow
+     * is checked.
+     *
+     * @return the number of entries beyond the span of the last level.
+     */
+    public int overflowSize() {
+        return overflow.size();
+    }
+}
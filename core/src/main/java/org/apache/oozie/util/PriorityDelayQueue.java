@@ -62,9 +62,11 @@ public class PriorityDelayQueue<E> extends AbstractQueue<PriorityDelayQueue.Queu
      */
     public static class QueueElement<E> extends FutureTask<E> implements Delayed {
         private XCallable<E> element;
-        private int priority;
-        private long baseTime;
+        int priority;
+        long baseTime;
         boolean inQueue;
+        volatile HashedTimerWheel.Timeout<?> timeout;
+        volatile int transferState;
 
         /**
          * Create an Element wrapper.
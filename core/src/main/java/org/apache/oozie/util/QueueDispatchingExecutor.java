@@ -0,0 +1,251 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.oozie.util;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RunnableFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * An executor that runs the tasks of a queue, each one on its own thread, bounding how many run at the same time.
+ * <p>
+ * Tasks submitted to the executor are offered to the queue. A single dispatcher thread takes them from the queue, in
+ * the queue order, and hands them to a thread-per-task executor once a permit is available. The permits bound the
+ * number of running tasks instead of the number of threads.
+ * <p>
+ * If the JVM supports virtual threads (JDK 21 or later), tasks run on virtual threads, otherwise they run on a cached
+ * thread pool.
+ * <p>
+ * Tasks that are already a {@link RunnableFuture} (i.e. {@link PriorityDelayQueue.QueueElement}) are not wrapped, so
+ * the queue receives the submitted elements themselves.
+ */
+public class QueueDispatchingExecutor extends AbstractExecutorService {
+    private static final XLog LOG = XLog.getLog(QueueDispatchingExecutor.class);
+
+    private final BlockingQueue<Runnable> queue;
+    private final Semaphore permits;
+    private final int maxActive;
+    private final AtomicInteger active = new AtomicInteger();
+    private final ExecutorService taskExecutor;
+    private final boolean virtualThreads;
+    private final Thread dispatcher;
+    private volatile boolean shutdown;
+
+    /**
+     * Create a <code>QueueDispatchingExecutor</code>, {@link #start()} must be invoked to start dispatching tasks.
+     *
+     * @param queue queue holding the tasks to run.
+     * @param maxActive maximum number of tasks running at the same time.
+     * @param threadPrefix prefix for the name of the dispatcher and of the platform task threads.
+     */
+    public QueueDispatchingExecutor(BlockingQueue<Runnable> queue, int maxActive, String threadPrefix) {
+        this.queue = ParamChecker.notNull(queue, "queue");
+        if (maxActive < 1) {
+            throw new IllegalArgumentException("maxActive must be 1 or more");
+        }
+        this.maxActive = maxActive;
+        permits = new Semaphore(maxActive);
+        ExecutorService executor = newVirtualThreadPerTaskExecutor();
+        virtualThreads = executor != null;
+        if (executor == null) {
+            executor = Executors.newCachedThreadPool(new NamedThreadFactory(threadPrefix));
+        }
+        taskExecutor = executor;
+        dispatcher = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                dispatch();
+            }
+        }, threadPrefix + "-dispatcher");
+        dispatcher.setDaemon(true);
+    }
+
+    /**
+     * Return an executor starting a virtual thread per task, if the JVM supports them.
+     *
+     * @return the executor, <code>null</code> if the JVM does not support virtual threads.
+     */
+    static ExecutorService newVirtualThreadPerTaskExecutor() {
+        try {
+            Method method = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) method.invoke(null);
+        }
+        catch (NoSuchMethodException ex) {
+            return null;
+        }
+        catch (IllegalAccessException | InvocationTargetException ex) {
+            LOG.warn("Could not create a virtual thread executor, using platform threads, {0}", ex.getMessage(), ex);
+            return null;
+        }
+    }
+
+    /**
+     * Start dispatching tasks.
+     */
+    public void start() {
+        dispatcher.start();
+        LOG.info("Dispatching tasks on {0} threads, max active [{1}]", virtualThreads ? "virtual" : "platform",
+                maxActive);
+    }
+
+    /**
+     * Return if the tasks run on virtual threads.
+     *
+     * @return <code>true</code> if the tasks run on virtual threads.
+     */
+    public boolean isVirtualThreads() {
+        return virtualThreads;
+    }
+
+    /**
+     * Return the maximum number of tasks running at the same time.
+     *
+     * @return the maximum number of tasks running at the same time.
+     */
+    public int getMaxActive() {
+        return maxActive;
+    }
+
+    /**
+     * Return the number of running tasks.
+     *
+     * @return the number of running tasks.
+     */
+    public int getActiveCount() {
+        return active.get();
+    }
+
+    private void dispatch() {
+        try {
+            while (!shutdown) {
+                permits.acquire();
+                Runnable task = null;
+                try {
+                    task = queue.take();
+                }
+                finally {
+                    if (task == null) {
+                        permits.release();
+                    }
+                }
+                run(task);
+            }
+        }
+        catch (InterruptedException ex) {
+            if (!shutdown) {
+                LOG.warn("Dispatcher interrupted, {0}", ex.getMessage(), ex);
+            }
+        }
+    }
+
+    private void run(final Runnable task) {
+        active.incrementAndGet();
+        try {
+            taskExecutor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        XLog.Info.get().clear();
+                        task.run();
+                    }
+                    finally {
+                        active.decrementAndGet();
+                        permits.release();
+                    }
+                }
+            });
+        }
+        catch (RejectedExecutionException ex) {
+            active.decrementAndGet();
+            permits.release();
+            LOG.warn("Task rejected, executor shutting down, {0}", ex.getMessage());
+        }
+    }
+
+    /**
+     * Queue a task for execution.
+     *
+     * @param command the task.
+     * @throws RejectedExecutionException if the executor is shut down or the queue is full.
+     */
+    @Override
+    public void execute(Runnable command) {
+        ParamChecker.notNull(command, "command");
+        if (shutdown) {
+            throw new RejectedExecutionException("Executor shut down");
+        }
+        if (!queue.offer(command)) {
+            throw new RejectedExecutionException("Queue full");
+        }
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    protected <T> RunnableFuture<T> newTaskFor(Callable<T> callable) {
+        if (callable instanceof RunnableFuture) {
+            return (RunnableFuture<T>) callable;
+        }
+        return super.newTaskFor(callable);
+    }
+
+    @Override
+    public void shutdown() {
+        shutdown = true;
+        dispatcher.interrupt();
+        taskExecutor.shutdown();
+    }
+
+    @Override
+    public List<Runnable> shutdownNow() {
+        shutdown();
+        taskExecutor.shutdownNow();
+        List<Runnable> list = new ArrayList<Runnable>();
+        queue.drainTo(list);
+        return list;
+    }
+
+    @Override
+    public boolean isShutdown() {
+        return shutdown;
+    }
+
+    @Override
+    public boolean isTerminated() {
+        return shutdown && !dispatcher.isAlive() && taskExecutor.isTerminated();
+    }
+
+    @Override
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        long limit = System.currentTimeMillis() + unit.toMillis(timeout);
+        dispatcher.join(Math.max(1, unit.toMillis(timeout)));
+        long left = limit - System.currentTimeMillis();
+        return !dispatcher.isAlive() && taskExecutor.awaitTermination(Math.max(0, left), TimeUnit.MILLISECONDS);
+    }
+}
@@ -33,12 +33,16 @@ import org.xml.sax.InputSource;
 import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.DocumentBuilderFactory;
 import javax.xml.parsers.ParserConfigurationException;
+import java.io.DataInput;
+import java.io.DataOutput;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.Reader;
 import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
 import java.util.Map;
 import java.util.Properties;
+import java.util.TreeMap;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -194,6 +198,67 @@ public class XConfiguration extends Configuration {
         return super.getClassByName(name.trim());
     }
 
+    /**
+     * Write the properties of a configuration in a compact binary form. <p> The keys are written sorted, each key as
+     * the length of the prefix it shares with the previous key followed by the rest of the key, so the keys form a
+     * dictionary of their common prefixes. Key suffixes and values are written as length prefixed UTF-8.
+     *
+     * @param conf configuration to write.
+     * @param dataOutput data output.
+     * @throws IOException thrown if the configuration could not be written.
+     */
+    public static void writeBinary(Configuration conf, DataOutput dataOutput) throws IOException {
+        TreeMap<String, String> props = new TreeMap<String, String>();
+        for (Map.Entry<String, String> entry : conf) {
+            props.put(entry.getKey(), entry.getValue());
+        }
+        org.apache.hadoop.io.WritableUtils.writeVInt(dataOutput, props.size());
+        byte[] previous = new byte[0];
+        for (Map.Entry<String, String> entry : props.entrySet()) {
+            byte[] key = entry.getKey().getBytes(StandardCharsets.UTF_8);
+            int shared = 0;
+            int max = Math.min(previous.length, key.length);
+            while (shared < max && previous[shared] == key[shared]) {
+                shared++;
+            }
+            org.apache.hadoop.io.WritableUtils.writeVInt(dataOutput, shared);
+            org.apache.hadoop.io.WritableUtils.writeVInt(dataOutput, key.length - shared);
+            dataOutput.write(key, shared, key.length - shared);
+            byte[] value = entry.getValue().getBytes(StandardCharsets.UTF_8);
+            org.apache.hadoop.io.WritableUtils.writeVInt(dataOutput, value.length);
+            dataOutput.write(value);
+            previous = key;
+        }
+    }
+
+    /**
+     * Read a configuration written by {@link #writeBinary(Configuration, DataOutput)}.
+     *
+     * @param dataInput data input.
+     * @return the configuration.
+     * @throws IOException thrown if the configuration could not be read.
+     */
+    public static XConfiguration readBinary(DataInput dataInput) throws IOException {
+        XConfiguration conf = new XConfiguration();
+        int count = org.apache.hadoop.io.WritableUtils.readVInt(dataInput);
+        byte[] previous = new byte[0];
+        for (int i = 0; i < count; i++) {
+            int shared = org.apache.hadoop.io.WritableUtils.readVInt(dataInput);
+            int suffix = org.apache.hadoop.io.WritableUtils.readVInt(dataInput);
+            if (shared > previous.length || suffix < 0) {
+                throw new IOException("Invalid binary configuration, key [" + i + "]");
+            }
+            byte[] key = new byte[shared + suffix];
+            System.arraycopy(previous, 0, key, 0, shared);
+            dataInput.readFully(key, shared, suffix);
+            byte[] value = new byte[org.apache.hadoop.io.WritableUtils.readVInt(dataInput)];
+            dataInput.readFully(value);
+            conf.set(new String(key, StandardCharsets.UTF_8), new String(value, StandardCharsets.UTF_8));
+            previous = key;
+        }
+        return conf;
+    }
+
     /**
      * Copy configuration key/value pairs from one configuration to another if a property exists in the target, it gets
      * replaced.
@@ -42,6 +42,7 @@ import org.apache.curator.x.discovery.ServiceDiscovery;
 import org.apache.curator.x.discovery.ServiceDiscoveryBuilder;
 import org.apache.curator.x.discovery.ServiceInstance;
 import org.apache.curator.x.discovery.details.InstanceSerializer;
+import org.apache.curator.x.discovery.details.ServiceCacheListener;
 import org.apache.oozie.ErrorCode;
 
 import static org.apache.oozie.service.HadoopAccessorService.KERBEROS_KEYTAB;
@@ -93,6 +94,12 @@ public class ZKUtils {
      */
     public static final String ZK_NAMESPACE = "oozie.zookeeper.namespace";
 
+    /**
+     * oozie-site property for specifying the weight of this Oozie Server when assigning jobs to the Oozie Servers.  It is
+     * published in the metadata of the server.
+     */
+    public static final String ZK_WEIGHT = "oozie.service.ZKJobsConcurrencyService.weight";
+
     /**
      *Default ZK connection timeout ( in sec).
      */
@@ -259,6 +266,7 @@ public class ZKUtils {
         Map<String, String> map = new HashMap<String, String>();
         map.put(ZKMetadataKeys.OOZIE_ID, zkId);
         map.put(ZKMetadataKeys.OOZIE_URL, url);
+        map.put(ZKMetadataKeys.OOZIE_WEIGHT, String.valueOf(ConfigurationService.getInt(ZK_WEIGHT)));
 
         return ServiceInstance.<Map>builder()
             .name(ZK_OOZIE_SERVICE)
@@ -281,6 +289,25 @@ public class ZKUtils {
         return instances;
     }
 
+    /**
+     * Adds a listener notified, from the ZooKeeper watches of the service discovery cache, when the Oozie Servers or
+     * their metadata change and when the connection state changes.
+     *
+     * @param listener the listener
+     */
+    public void addServiceCacheListener(ServiceCacheListener listener) {
+        sCache.addListener(listener);
+    }
+
+    /**
+     * Removes a listener added with {@link #addServiceCacheListener(ServiceCacheListener)}.
+     *
+     * @param listener the listener
+     */
+    public void removeServiceCacheListener(ServiceCacheListener listener) {
+        sCache.removeListener(listener);
+    }
+
     /**
      * Returns the ID of this Oozie Server as seen by ZooKeeper and other Oozie Servers
      *
@@ -395,6 +422,10 @@ public class ZKUtils {
          * The URL of the Oozie Server
          */
         public static final String OOZIE_URL = "OOZIE_URL";
+        /**
+         * The weight of the Oozie Server when assigning jobs to the servers
+         */
+        public static final String OOZIE_WEIGHT = "OOZIE_WEIGHT";
     }
 
     /**
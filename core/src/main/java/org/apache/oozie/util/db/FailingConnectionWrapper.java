@@ -344,8 +344,8 @@ public class FailingConnectionWrapper implements Connection {
         private static final Set<String> DML_PREFIXES = Sets.newHashSet(
                 "SELECT ", "INSERT INTO ", "UPDATE ", "DELETE FROM ");
         private static final Set<String> OOZIE_TABLE_NAMES = Sets.newHashSet(
-                "BUNDLE_ACTIONS", "BUNDLE_JOBS", "COORD_ACTIONS", "COORD_JOBS", "SLA_REGISTRATION", "SLA_SUMMARY",
-                "WF_ACTIONS", "WF_JOBS");
+                "BUNDLE_ACTIONS", "BUNDLE_JOBS", "COMPRESSION_DICTS", "COORD_ACTIONS", "COORD_JOBS", "PURGE_CHECKPOINTS",
+                "SLA_REGISTRATION", "SLA_SUMMARY", "WF_ACTIONS", "WF_APP_DEFS", "WF_JOBS");
 
         @Override
         public boolean apply(@Nullable String input) {
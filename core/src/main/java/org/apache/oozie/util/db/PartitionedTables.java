@@ -0,0 +1,492 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.oozie.util.db;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.apache.oozie.util.ParamChecker;
+
+/**
+ * Monthly range partitioning by creation time of the Oozie tables growing with the number of jobs run.
+ * <p>
+ * With partitioned tables, the retention of old jobs drops whole partitions instead of deleting their rows one by one.
+ * A partition is dropped only when it is older than the retention and none of its rows is still referenced: the
+ * workflow jobs must have ended before the retention and have no live parent or child outside the partition, the
+ * workflow actions and SLA rows must have lost their job, and the coordinator actions their coordinator job (or, when
+ * purging old coordinator actions, be terminal and have no workflow left).
+ * <p>
+ * Partitioning is supported for MySQL, PostgreSQL (11 or later) and Oracle (12.2 or later). MySQL and PostgreSQL
+ * require the partitioning column to be part of the primary key, so the primary keys become <code>(id, created_time)
+ * </code> and all the rows must have a creation time. Oracle tables use interval partitioning, their partitions are
+ * created by the database. Derby and HSQLDB have no partitioning: their tables are not changed, the partitions are
+ * the months of the rows and dropping a partition deletes its rows.
+ */
+public class PartitionedTables {
+
+    /**
+     * Name of the first partition of the MySQL and Oracle tables, holding the rows created before the tables were
+     * partitioned. It is never dropped.
+     */
+    public static final String START_PARTITION = "P_START";
+
+    /**
+     * Name of the last partition of the MySQL tables, holding the rows created after the last monthly partition.
+     */
+    public static final String MAX_PARTITION = "P_MAX";
+
+    /**
+     * Suffix of the default partition of the PostgreSQL tables, holding the rows of no monthly partition.
+     */
+    public static final String DEFAULT_PARTITION = "P_DEFAULT";
+
+    private static final String MONTH_PREFIX = "P_";
+    private static final Pattern MONTH_PARTITION = Pattern.compile(".*P_(\\d{4})(\\d{2})", Pattern.CASE_INSENSITIVE);
+    private static final Pattern HIGH_VALUE = Pattern.compile("(\\d{4})-(\\d{2})-(\\d{2})");
+    private static final String TERMINAL_STATUSES = "('SUCCEEDED', 'FAILED', 'KILLED', 'IGNORED')";
+
+    /**
+     * Partitioned tables, in the order their partitions are dropped so the rows referencing dropped rows can be dropped
+     * in the same run.
+     */
+    public enum Table {
+        /**
+         * Workflow jobs, live while not ended before the retention or while a parent workflow, a child workflow
+         * outside the partition or, unless purging old coordinator actions, a coordinator action of an existing
+         * coordinator job refer to them.
+         */
+        WF_JOBS("id", "t.end_time IS NULL OR t.end_time >= :olderThan"
+                + " OR EXISTS (SELECT 1 FROM WF_JOBS p WHERE p.id = t.parent_id"
+                + " AND (p.created_time < :start OR p.created_time >= :end))"
+                + " OR EXISTS (SELECT 1 FROM WF_JOBS c WHERE c.parent_id = t.id"
+                + " AND (c.created_time < :start OR c.created_time >= :end))",
+                " OR EXISTS (SELECT 1 FROM COORD_ACTIONS a, COORD_JOBS j WHERE a.id = t.parent_id AND j.id = a.job_id)",
+                ""),
+
+        /**
+         * Workflow actions, live while their workflow job exists.
+         */
+        WF_ACTIONS("id", "EXISTS (SELECT 1 FROM WF_JOBS w WHERE w.id = t.wf_id)", "", ""),
+
+        /**
+         * Coordinator actions, live while their coordinator job exists or, when purging old coordinator actions,
+         * while they are not terminal, were modified after the retention or their workflow exists.
+         */
+        COORD_ACTIONS("id", "EXISTS (SELECT 1 FROM COORD_JOBS j WHERE j.id = t.job_id)", "",
+                " AND (t.status NOT IN " + TERMINAL_STATUSES + " OR t.last_modified_time >= :olderThan"
+                + " OR EXISTS (SELECT 1 FROM WF_JOBS w WHERE w.id = t.external_id))"),
+
+        /**
+         * SLA registrations, live while their job exists.
+         */
+        SLA_REGISTRATION("job_id", "EXISTS (SELECT 1 FROM WF_JOBS w WHERE w.id = t.job_id)"
+                + " OR EXISTS (SELECT 1 FROM WF_ACTIONS a WHERE a.id = t.job_id)"
+                + " OR EXISTS (SELECT 1 FROM COORD_ACTIONS c WHERE c.id = t.job_id)", "", ""),
+
+        /**
+         * SLA summaries, live while their job exists.
+         */
+        SLA_SUMMARY("job_id", SLA_REGISTRATION.liveCondition, "", "");
+
+        private final String idColumn;
+        private final String liveCondition;
+        private final String coordActionCondition;
+        private final String oldCoordActionCondition;
+
+        Table(String idColumn, String liveCondition, String coordActionCondition, String oldCoordActionCondition) {
+            this.idColumn = idColumn;
+            this.liveCondition = liveCondition;
+            this.coordActionCondition = coordActionCondition;
+            this.oldCoordActionCondition = oldCoordActionCondition;
+        }
+
+        /**
+         * Return the condition on the rows <code>t</code> of the table still referenced.
+         *
+         * @param oldCoordAction whether old coordinator actions of existing coordinator jobs are purged
+         * @return the SQL condition, with the <code>:start</code>, <code>:end</code> and <code>:olderThan</code>
+         * parameters.
+         */
+        String getLiveCondition(boolean oldCoordAction) {
+            return (oldCoordAction) ? liveCondition + oldCoordActionCondition : liveCondition + coordActionCondition;
+        }
+    }
+
+    /**
+     * Partition of a table, holding the rows created in <code>[start, end)</code>.
+     */
+    public static class Partition {
+        private final String name;
+        private final Date start;
+        private final Date end;
+
+        public Partition(String name, Date start, Date end) {
+            this.name = name;
+            this.start = start;
+            this.end = end;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public Date getStart() {
+            return start;
+        }
+
+        public Date getEnd() {
+            return end;
+        }
+
+        @Override
+        public String toString() {
+            return name;
+        }
+    }
+
+    private final String dbType;
+
+    /**
+     * Create the partitioning of the tables of a database.
+     *
+     * @param dbType the database vendor, as in the JDBC URL
+     * @throws IllegalArgumentException if the tables of the database cannot be partitioned
+     */
+    public PartitionedTables(String dbType) {
+        ParamChecker.notEmpty(dbType, "dbType");
+        if (!isSupported(dbType)) {
+            throw new IllegalArgumentException("Partitioned tables are not supported for the database [" + dbType + "]");
+        }
+        this.dbType = dbType;
+    }
+
+    /**
+     * Return if the tables of a database can be partitioned.
+     *
+     * @param dbType the database vendor, as in the JDBC URL
+     * @return <code>true</code> for MySQL, PostgreSQL and Oracle, and for Derby and HSQLDB without actual partitions.
+     */
+    public static boolean isSupported(String dbType) {
+        return isPartitioning(dbType) || dbType.equals("derby") || dbType.equals("hsqldb");
+    }
+
+    private static boolean isPartitioning(String dbType) {
+        return dbType.equals("mysql") || dbType.equals("postgresql") || dbType.equals("oracle");
+    }
+
+    /**
+     * Return the statements partitioning the newly created tables, with monthly partitions from the current month.
+     *
+     * @param now the current time
+     * @param months number of monthly partitions to create after the current month, MySQL and PostgreSQL only
+     * @return the statements, none for Derby and HSQLDB.
+     */
+    public List<String> getCreateStatements(Date now, int months) {
+        List<String> statements = new ArrayList<String>();
+        if (!isPartitioning(dbType)) {
+            return statements;
+        }
+        Date first = getMonthStart(now, 0);
+        for (Table table : Table.values()) {
+            if (dbType.equals("mysql")) {
+                StringBuilder sb = new StringBuilder();
+                sb.append("ALTER TABLE ").append(table).append(" PARTITION BY RANGE COLUMNS (created_time) (PARTITION ")
+                        .append(START_PARTITION).append(" VALUES LESS THAN ('").append(format(first)).append("')");
+                for (int i = 0; i <= months; i++) {
+                    sb.append(", ").append(getMySqlPartition(getMonthStart(now, i)));
+                }
+                sb.append(", PARTITION ").append(MAX_PARTITION).append(" VALUES LESS THAN (MAXVALUE))");
+                statements.add("ALTER TABLE " + table + " DROP PRIMARY KEY, ADD PRIMARY KEY (" + table.idColumn
+                        + ", created_time)");
+                statements.add(sb.toString());
+            }
+            else if (dbType.equals("postgresql")) {
+                String unpartitioned = table + "_UNPARTITIONED";
+                statements.add("ALTER TABLE " + table + " RENAME TO " + unpartitioned);
+                statements.add("ALTER TABLE " + unpartitioned + " DROP CONSTRAINT " + table + "_PKEY");
+                statements.add("CREATE TABLE " + table + " (LIKE " + unpartitioned
+                        + " INCLUDING DEFAULTS INCLUDING INDEXES) PARTITION BY RANGE (created_time)");
+                statements.add("ALTER TABLE " + table + " ADD PRIMARY KEY (" + table.idColumn + ", created_time)");
+                statements.add("DROP TABLE " + unpartitioned);
+                statements.add("CREATE TABLE " + table + "_" + DEFAULT_PARTITION + " PARTITION OF " + table + " DEFAULT");
+                for (int i = 0; i <= months; i++) {
+                    statements.add(getPostgresPartition(table, getMonthStart(now, i)));
+                }
+            }
+            else {
+                statements.add("ALTER TABLE " + table + " MODIFY PARTITION BY RANGE (created_time)"
+                        + " INTERVAL (NUMTOYMINTERVAL(1, 'MONTH')) (PARTITION " + START_PARTITION
+                        + " VALUES LESS THAN (TIMESTAMP '" + format(first) + "')) ONLINE UPDATE INDEXES");
+            }
+        }
+        return statements;
+    }
+
+    /**
+     * Return the statements creating the missing monthly partitions up to some months after the current month.
+     *
+     * @param conn connection to the database
+     * @param now the current time
+     * @param months number of monthly partitions to have after the current month
+     * @return the statements, none for Oracle, Derby and HSQLDB.
+     * @throws SQLException thrown if the partitions could not be listed
+     */
+    public List<String> getAddPartitionStatements(Connection conn, Date now, int months) throws SQLException {
+        List<String> statements = new ArrayList<String>();
+        if (!dbType.equals("mysql") && !dbType.equals("postgresql")) {
+            return statements;
+        }
+        for (Table table : Table.values()) {
+            List<Partition> partitions = getPartitions(conn, table);
+            Date last = partitions.isEmpty() ? null : partitions.get(partitions.size() - 1).getStart();
+            List<String> missing = new ArrayList<String>();
+            for (int i = 0; i <= months; i++) {
+                Date month = getMonthStart(now, i);
+                if (last == null || month.after(last)) {
+                    missing.add(dbType.equals("mysql") ? getMySqlPartition(month) : getPostgresPartition(table, month));
+                }
+            }
+            if (missing.isEmpty()) {
+                continue;
+            }
+            if (dbType.equals("mysql")) {
+                StringBuilder sb = new StringBuilder();
+                sb.append("ALTER TABLE ").append(table).append(" REORGANIZE PARTITION ").append(MAX_PARTITION)
+                        .append(" INTO (");
+                for (String partition : missing) {
+                    sb.append(partition).append(", ");
+                }
+                sb.append("PARTITION ").append(MAX_PARTITION).append(" VALUES LESS THAN (MAXVALUE))");
+                statements.add(sb.toString());
+            }
+            else {
+                statements.addAll(missing);
+            }
+        }
+        return statements;
+    }
+
+    /**
+     * Return the monthly partitions of a table, sorted by creation time. The start and max partitions of MySQL, the start
+     * partition of Oracle and the default partition of PostgreSQL are not returned. For Derby and HSQLDB, the months
+     * from the oldest row to the current month are returned.
+     *
+     * @param conn connection to the database
+     * @param table the table
+     * @return the monthly partitions of the table.
+     * @throws SQLException thrown if the partitions could not be listed
+     */
+    public List<Partition> getPartitions(Connection conn, Table table) throws SQLException {
+        List<Partition> partitions = new ArrayList<Partition>();
+        if (dbType.equals("mysql")) {
+            PreparedStatement ps = conn.prepareStatement("SELECT PARTITION_NAME FROM INFORMATION_SCHEMA.PARTITIONS"
+                    + " WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = ? ORDER BY PARTITION_ORDINAL_POSITION");
+            try {
+                ps.setString(1, table.name());
+                addMonthPartitions(ps, partitions);
+            }
+            finally {
+                ps.close();
+            }
+        }
+        else if (dbType.equals("postgresql")) {
+            PreparedStatement ps = conn.prepareStatement("SELECT c.relname FROM pg_inherits i"
+                    + " JOIN pg_class c ON c.oid = i.inhrelid JOIN pg_class p ON p.oid = i.inhparent"
+                    + " WHERE p.relname = ? ORDER BY c.relname");
+            try {
+                ps.setString(1, table.name().toLowerCase(Locale.US));
+                addMonthPartitions(ps, partitions);
+            }
+            finally {
+                ps.close();
+            }
+        }
+        else if (dbType.equals("oracle")) {
+            PreparedStatement ps = conn.prepareStatement("SELECT PARTITION_NAME, HIGH_VALUE FROM USER_TAB_PARTITIONS"
+                    + " WHERE TABLE_NAME = ? ORDER BY PARTITION_POSITION");
+            try {
+                ps.setString(1, table.name());
+                ResultSet rs = ps.executeQuery();
+                while (rs.next()) {
+                    String name = rs.getString(1);
+                    Matcher matcher = HIGH_VALUE.matcher(rs.getString(2));
+                    if (!name.equals(START_PARTITION) && matcher.find()) {
+                        Calendar cal = Calendar.getInstance();
+                        cal.clear();
+                        cal.set(Integer.parseInt(matcher.group(1)), Integer.parseInt(matcher.group(2)) - 1,
+                                Integer.parseInt(matcher.group(3)));
+                        Date end = cal.getTime();
+                        cal.add(Calendar.MONTH, -1);
+                        partitions.add(new Partition(name, cal.getTime(), end));
+                    }
+                }
+                rs.close();
+            }
+            finally {
+                ps.close();
+            }
+        }
+        else {
+            Statement st = conn.createStatement();
+            try {
+                ResultSet rs = st.executeQuery("SELECT MIN(created_time) FROM " + table);
+                Timestamp oldest = rs.next() ? rs.getTimestamp(1) : null;
+                rs.close();
+                if (oldest != null) {
+                    Date now = new Date();
+                    for (int i = 0; !getMonthStart(oldest, i).after(now); i++) {
+                        Date start = getMonthStart(oldest, i);
+                        partitions.add(new Partition(MONTH_PREFIX + formatMonth(start), start,
+                                getMonthStart(oldest, i + 1)));
+                    }
+                }
+            }
+            finally {
+                st.close();
+            }
+        }
+        return partitions;
+    }
+
+    private void addMonthPartitions(PreparedStatement ps, List<Partition> partitions) throws SQLException {
+        ResultSet rs = ps.executeQuery();
+        while (rs.next()) {
+            String name = rs.getString(1);
+            Matcher matcher = (name != null) ? MONTH_PARTITION.matcher(name) : null;
+            if (matcher != null && matcher.matches()) {
+                Calendar cal = Calendar.getInstance();
+                cal.clear();
+                cal.set(Integer.parseInt(matcher.group(1)), Integer.parseInt(matcher.group(2)) - 1, 1);
+                Date start = cal.getTime();
+                cal.add(Calendar.MONTH, 1);
+                partitions.add(new Partition(name, start, cal.getTime()));
+            }
+        }
+        rs.close();
+    }
+
+    /**
+     * Return the number of rows of a partition still referenced, the partition can be dropped if there are none.
+     *
+     * @param conn connection to the database
+     * @param table the table
+     * @param partition the partition of the table
+     * @param olderThan the retention, jobs ended after it are live
+     * @param oldCoordAction whether old coordinator actions of existing coordinator jobs are purged
+     * @return the number of rows of the partition still referenced.
+     * @throws SQLException thrown if the rows could not be counted
+     */
+    public long countLiveRows(Connection conn, Table table, Partition partition, Date olderThan,
+            boolean oldCoordAction) throws SQLException {
+        String sql = "SELECT COUNT(*) FROM " + table + " t WHERE t.created_time >= :start AND t.created_time < :end AND ("
+                + table.getLiveCondition(oldCoordAction) + ")";
+        List<Timestamp> params = new ArrayList<Timestamp>();
+        Matcher matcher = Pattern.compile(":(start|end|olderThan)").matcher(sql);
+        StringBuffer sb = new StringBuffer();
+        while (matcher.find()) {
+            String param = matcher.group(1);
+            Date value = param.equals("start") ? partition.getStart() : param.equals("end") ? partition.getEnd()
+                    : olderThan;
+            params.add(new Timestamp(value.getTime()));
+            matcher.appendReplacement(sb, "?");
+        }
+        matcher.appendTail(sb);
+        PreparedStatement ps = conn.prepareStatement(sb.toString());
+        try {
+            for (int i = 0; i < params.size(); i++) {
+                ps.setTimestamp(i + 1, params.get(i));
+            }
+            ResultSet rs = ps.executeQuery();
+            rs.next();
+            long count = rs.getLong(1);
+            rs.close();
+            return count;
+        }
+        finally {
+            ps.close();
+        }
+    }
+
+    /**
+     * Return the statement dropping a partition, deleting its rows for Derby and HSQLDB.
+     *
+     * @param table the table
+     * @param partition the partition of the table
+     * @return the statement.
+     */
+    public String getDropStatement(Table table, Partition partition) {
+        if (dbType.equals("mysql")) {
+            return "ALTER TABLE " + table + " DROP PARTITION " + partition.getName();
+        }
+        else if (dbType.equals("postgresql")) {
+            return "DROP TABLE " + partition.getName();
+        }
+        else if (dbType.equals("oracle")) {
+            return "ALTER TABLE " + table + " DROP PARTITION " + partition.getName() + " UPDATE GLOBAL INDEXES";
+        }
+        return "DELETE FROM " + table + " WHERE created_time >= {ts '" + format(partition.getStart())
+                + "'} AND created_time < {ts '" + format(partition.getEnd()) + "'}";
+    }
+
+    private String getMySqlPartition(Date month) {
+        return "PARTITION " + MONTH_PREFIX + formatMonth(month) + " VALUES LESS THAN ('"
+                + format(getMonthStart(month, 1)) + "')";
+    }
+
+    private String getPostgresPartition(Table table, Date month) {
+        return "CREATE TABLE " + table + "_" + MONTH_PREFIX + formatMonth(month) + " PARTITION OF " + table
+                + " FOR VALUES FROM ('" + format(month) + "') TO ('" + format(getMonthStart(month, 1)) + "')";
+    }
+
+    /**
+     * Return the start of the month some months after the month of a date, in the default time zone as the timestamps
+     * are stored.
+     */
+    static Date getMonthStart(Date date, int months) {
+        Calendar cal = Calendar.getInstance();
+        cal.setTime(date);
+        cal.set(Calendar.DAY_OF_MONTH, 1);
+        cal.set(Calendar.HOUR_OF_DAY, 0);
+        cal.set(Calendar.MINUTE, 0);
+        cal.set(Calendar.SECOND, 0);
+        cal.set(Calendar.MILLISECOND, 0);
+        cal.add(Calendar.MONTH, months);
+        return cal.getTime();
+    }
+
+    private static String format(Date date) {
+        return new SimpleDateFormat("yyyy-MM-dd HH:mm:ss").format(date);
+    }
+
+    private static String formatMonth(Date date) {
+        return new SimpleDateFormat("yyyyMM").format(date);
+    }
+}
@@ -24,11 +24,14 @@ import org.apache.oozie.util.StringSerializationUtil;
 import org.apache.oozie.workflow.WorkflowApp;
 import org.apache.oozie.workflow.WorkflowException;
 import org.apache.oozie.util.ParamChecker;
+import org.apache.oozie.util.WritableUtils;
 import org.apache.oozie.ErrorCode;
 
 import java.io.DataInput;
 import java.io.DataOutput;
 import java.io.IOException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.LinkedHashMap;
@@ -44,6 +47,7 @@ public class LiteWorkflowApp implements Writable, WorkflowApp {
     private String definition;
     private Map<String, NodeDef> nodesMap = new LinkedHashMap<String, NodeDef>();
     private boolean complete = false;
+    private volatile String contentHash;
 
     LiteWorkflowApp() {
     }
@@ -74,6 +78,7 @@ public class LiteWorkflowApp implements Writable, WorkflowApp {
             throw new WorkflowException(ErrorCode.E0706, node.getName());
         }
         nodesMap.put(node.getName(), node);
+        contentHash = null;
         if (node instanceof EndNodeDef) {
             complete = true;
         }
@@ -96,6 +101,52 @@ public class LiteWorkflowApp implements Writable, WorkflowApp {
         return nodesMap.get(name);
     }
 
+    /**
+     * Return the content hash of the application, the hex encoded SHA-256 digest of its serialized form.
+     * <p>
+     * Applications with the same name, definition and nodes have the same content hash, it is used to store the
+     * application once for all the workflow instances sharing it.
+     *
+     * @return the content hash of the application.
+     */
+    public String getContentHash() {
+        String hash = contentHash;
+        if (hash == null) {
+            hash = computeContentHash(WritableUtils.toByteArray(this));
+            contentHash = hash;
+        }
+        return hash;
+    }
+
+    /**
+     * Set the content hash of the application, when it has just been computed from its serialized form.
+     *
+     * @param contentHash the content hash of the application.
+     */
+    void setContentHash(String contentHash) {
+        this.contentHash = contentHash;
+    }
+
+    /**
+     * Compute the content hash of a serialized application.
+     *
+     * @param array serialized application.
+     * @return the hex encoded SHA-256 digest of the serialized application.
+     */
+    static String computeContentHash(byte[] array) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(array);
+            StringBuilder sb = new StringBuilder(digest.length * 2);
+            for (byte b : digest) {
+                sb.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+            }
+            return sb.toString();
+        }
+        catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+
     public void validateWorkflowIntegrity() {
         //TODO traverse wf, ensure there are not cycles, no open paths, and one END
     }
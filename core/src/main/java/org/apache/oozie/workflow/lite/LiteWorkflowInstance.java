@@ -42,6 +42,7 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
 
 //TODO javadoc
 public class LiteWorkflowInstance implements Writable, WorkflowInstance {
@@ -152,6 +153,10 @@ public class LiteWorkflowInstance implements Writable, WorkflowInstance {
     private Map<String, NodeInstance> executionPaths = new HashMap<String, NodeInstance>();
     private Map<String, String> persistentVars = new HashMap<String, String>();
     private Map<String, Object> transientVars = new HashMap<String, Object>();
+    // not serialized, set when the configuration is known to be equal to the job configuration with this digest
+    private String confDigest;
+    // not serialized, loads the configuration the first time it is accessed
+    private Callable<Configuration> confLoader;
 
     protected LiteWorkflowInstance() {
         log = XLog.getLog(getClass());
@@ -535,10 +540,13 @@ public class LiteWorkflowInstance implements Writable, WorkflowInstance {
     }
 
     private void refreshLog() {
-        XLog.Info.get().setParameter(XLogService.USER, conf.get(OozieClient.USER_NAME));
-        XLog.Info.get().setParameter(XLogService.GROUP, conf.get(OozieClient.GROUP_NAME));
+        // a configuration not loaded yet is not loaded for logging, the commands set the job log info
+        if (conf != null) {
+            XLog.Info.get().setParameter(XLogService.USER, conf.get(OozieClient.USER_NAME));
+            XLog.Info.get().setParameter(XLogService.GROUP, conf.get(OozieClient.GROUP_NAME));
+            XLog.Info.get().setParameter(DagXLogInfoService.TOKEN, conf.get(OozieClient.LOG_TOKEN, ""));
+        }
         XLog.Info.get().setParameter(DagXLogInfoService.APP, def.getName());
-        XLog.Info.get().setParameter(DagXLogInfoService.TOKEN, conf.get(OozieClient.LOG_TOKEN, ""));
         XLog.Info.get().setParameter(DagXLogInfoService.JOB, instanceId);
         log = XLog.getLog(getClass());
     }
@@ -553,18 +561,126 @@ public class LiteWorkflowInstance implements Writable, WorkflowInstance {
 
     @Override
     public void write(DataOutput dOut) throws IOException {
-
         dOut.writeUTF(instanceId);
+        writeConf(dOut);
+        def.write(dOut);
+        writeExecutionState(dOut);
+    }
+
+    @Override
+    public void readFields(DataInput dIn) throws IOException {
+        instanceId = dIn.readUTF();
+        readConf(dIn);
+        def = new LiteWorkflowApp();
+        def.readFields(dIn);
+        readExecutionState(dIn);
+        refreshLog();
+    }
+
+    /**
+     * Read an instance written in the version 1 of the compact format of {@link LiteWorkflowInstanceSerializer}, the
+     * instance id, the configuration as XML and the execution state.
+     *
+     * @param dIn data input.
+     * @param def application definition of the instance.
+     * @throws IOException thrown if the instance could not be read.
+     */
+    void readState(DataInput dIn, LiteWorkflowApp def) throws IOException {
+        this.def = ParamChecker.notNull(def, "def");
+        instanceId = dIn.readUTF();
+        readConf(dIn);
+        readExecutionState(dIn);
+        refreshLog();
+    }
 
+    /**
+     * Restore an instance read by {@link LiteWorkflowInstanceSerializer}, its execution state is then read with
+     * {@link #readExecutionState(DataInput)}.
+     *
+     * @param instanceId instance id.
+     * @param conf instance configuration.
+     * @param def application definition of the instance.
+     */
+    void restore(String instanceId, Configuration conf, LiteWorkflowApp def) {
+        this.instanceId = ParamChecker.notNull(instanceId, "instanceId");
+        this.conf = ParamChecker.notNull(conf, "conf");
+        this.def = ParamChecker.notNull(def, "def");
+        refreshLog();
+    }
+
+    /**
+     * Restore an instance read by {@link LiteWorkflowInstanceSerializer} whose configuration is the job configuration,
+     * loaded only when {@link #getConf()} is first called.
+     *
+     * @param instanceId instance id.
+     * @param confDigest digest of the job configuration the instance configuration was equal to when written.
+     * @param confLoader loader of the instance configuration.
+     * @param def application definition of the instance.
+     */
+    void restore(String instanceId, String confDigest, Callable<Configuration> confLoader, LiteWorkflowApp def) {
+        this.instanceId = ParamChecker.notNull(instanceId, "instanceId");
+        this.confDigest = ParamChecker.notNull(confDigest, "confDigest");
+        this.confLoader = ParamChecker.notNull(confLoader, "confLoader");
+        this.conf = null;
+        this.def = ParamChecker.notNull(def, "def");
+        refreshLog();
+    }
+
+    /**
+     * Return if the configuration was not loaded yet, it is then still equal to the job configuration of
+     * {@link #getConfDigest()}.
+     *
+     * @return <code>true</code> if the configuration was not loaded yet.
+     */
+    boolean isConfPending() {
+        return confLoader != null;
+    }
+
+    /**
+     * Return the digest of the job configuration the instance configuration was read from.
+     *
+     * @return the digest of the job configuration, <code>null</code> if the configuration was not read from the job
+     * configuration.
+     */
+    String getConfDigest() {
+        return confDigest;
+    }
+
+    /**
+     * Set the digest of the job configuration the instance configuration is equal to.
+     *
+     * @param confDigest the digest of the job configuration.
+     */
+    void setConfDigest(String confDigest) {
+        this.confDigest = confDigest;
+    }
+
+    private void writeConf(DataOutput dOut) throws IOException {
         //Hadoop Configuration has to get its act right
         ByteArrayOutputStream baos = new ByteArrayOutputStream();
-        conf.writeXml(baos);
+        getConf().writeXml(baos);
         baos.close();
         byte[] array = baos.toByteArray();
         dOut.writeInt(array.length);
         dOut.write(array);
+    }
 
-        def.write(dOut);
+    private void readConf(DataInput dIn) throws IOException {
+        //Hadoop Configuration has to get its act right
+        int len = dIn.readInt();
+        byte[] array = new byte[len];
+        dIn.readFully(array);
+        ByteArrayInputStream bais = new ByteArrayInputStream(array);
+        conf = new XConfiguration(bais);
+    }
+
+    /**
+     * Write the execution state of the instance: status, execution paths and variables.
+     *
+     * @param dOut data output.
+     * @throws IOException thrown if the execution state could not be written.
+     */
+    void writeExecutionState(DataOutput dOut) throws IOException {
         dOut.writeUTF(status.toString());
         dOut.writeInt(executionPaths.size());
         for (Map.Entry<String, NodeInstance> entry : executionPaths.entrySet()) {
@@ -579,19 +695,13 @@ public class LiteWorkflowInstance implements Writable, WorkflowInstance {
         }
     }
 
-    @Override
-    public void readFields(DataInput dIn) throws IOException {
-        instanceId = dIn.readUTF();
-
-        //Hadoop Configuration has to get its act right
-        int len = dIn.readInt();
-        byte[] array = new byte[len];
-        dIn.readFully(array);
-        ByteArrayInputStream bais = new ByteArrayInputStream(array);
-        conf = new XConfiguration(bais);
-
-        def = new LiteWorkflowApp();
-        def.readFields(dIn);
+    /**
+     * Read the execution state of the instance written by {@link #writeExecutionState(DataOutput)}.
+     *
+     * @param dIn data input.
+     * @throws IOException thrown if the execution state could not be read.
+     */
+    void readExecutionState(DataInput dIn) throws IOException {
         status = Status.valueOf(dIn.readUTF());
         int numExPaths = dIn.readInt();
         for (int x = 0; x < numExPaths; x++) {
@@ -607,11 +717,19 @@ public class LiteWorkflowInstance implements Writable, WorkflowInstance {
             String vName = dIn.readUTF();
             persistentVars.put(vName, StringSerializationUtil.readString(dIn));
         }
-        refreshLog();
     }
 
     @Override
     public Configuration getConf() {
+        if (confLoader != null) {
+            try {
+                conf = confLoader.call();
+            }
+            catch (Exception ex) {
+                throw new RuntimeException(ex);
+            }
+            confLoader = null;
+        }
         return conf;
     }
 
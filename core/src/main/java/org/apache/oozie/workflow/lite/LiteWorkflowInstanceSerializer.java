@@ -0,0 +1,389 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.oozie.workflow.lite;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.Callable;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.oozie.util.ParamChecker;
+import org.apache.oozie.util.WritableUtils;
+import org.apache.oozie.util.XConfiguration;
+import org.apache.oozie.util.XLog;
+
+/**
+ * Serialization of {@link LiteWorkflowInstance} to and from byte arrays.
+ * <p>
+ * Two formats are supported:
+ * <ul>
+ * <li>the legacy format, the <code>Writable</code> form of the instance, including its whole application
+ * definition.</li>
+ * <li>the compact format, holding only the execution state of the instance (configuration, execution paths and
+ * variables) and referring to the application definition by its content hash. The application definitions are kept
+ * by an {@link AppDefStore}, once for all the instances sharing them. The configuration is not stored when it is equal
+ * to the job configuration, only the digest of the job configuration is, otherwise it is stored in the binary form of
+ * {@link XConfiguration#writeBinary(Configuration, java.io.DataOutput)}. A configuration equal to the job configuration
+ * is loaded only when the instance configuration is accessed, so that reading an instance to signal it does not load
+ * the job configuration.</li>
+ * </ul>
+ * Both formats are always read, the format is detected from the first byte of the array: compact arrays start with
+ * {@link #COMPACT_MARKER} followed by the format version, legacy arrays start with the length of the instance id,
+ * which is never that long. Legacy instances are migrated to the compact format the next time they are written with an
+ * application definition store.
+ */
+public class LiteWorkflowInstanceSerializer {
+
+    /**
+     * First byte of the instances serialized in the compact format.
+     */
+    public static final int COMPACT_MARKER = 0xFF;
+
+    /**
+     * Current version of the compact format. Version 1 stored the configuration as XML.
+     */
+    public static final int COMPACT_VERSION = 2;
+
+    /**
+     * Configuration stored in binary form in the instance.
+     */
+    static final int CONF_INLINE = 0;
+
+    /**
+     * Configuration equal to the job configuration.
+     */
+    static final int CONF_JOB = 1;
+
+    /**
+     * Store of the application definitions of the instances serialized in the compact format.
+     */
+    public interface AppDefStore {
+
+        /**
+         * Store an application definition, if not stored already.
+         *
+         * @param app application definition.
+         * @throws IOException thrown if the application definition could not be stored.
+         */
+        void put(LiteWorkflowApp app) throws IOException;
+
+        /**
+         * Return an application definition.
+         *
+         * @param contentHash content hash of the application definition.
+         * @return the application definition, <code>null</code> if unknown.
+         * @throws IOException thrown if the application definition could not be read.
+         */
+        LiteWorkflowApp get(String contentHash) throws IOException;
+
+        /**
+         * Return a job configuration.
+         *
+         * @param jobConf job configuration XML.
+         * @param digest digest of the job configuration XML.
+         * @return the job configuration, it must not be modified as it may be shared.
+         * @throws IOException thrown if the job configuration could not be parsed.
+         */
+        Configuration getJobConf(String jobConf, String digest) throws IOException;
+    }
+
+    /**
+     * Loader of the configuration XML of a job, called the first time the configuration of an instance referring to it
+     * is accessed.
+     */
+    public interface JobConfLoader {
+
+        /**
+         * Return the configuration XML of the job.
+         *
+         * @return the configuration XML of the job, <code>null</code> if unknown.
+         * @throws IOException thrown if the job configuration could not be loaded.
+         */
+        String getJobConf() throws IOException;
+    }
+
+    private static final XLog LOG = XLog.getLog(LiteWorkflowInstanceSerializer.class);
+
+    private LiteWorkflowInstanceSerializer() {
+    }
+
+    /**
+     * Serialize an instance.
+     *
+     * @param instance workflow instance.
+     * @param store application definition store, if <code>null</code> the instance is serialized in the legacy
+     * format.
+     * @return the serialized instance.
+     * @throws IOException thrown if the instance could not be serialized.
+     */
+    public static byte[] toByteArray(LiteWorkflowInstance instance, AppDefStore store) throws IOException {
+        return toByteArray(instance, store, null);
+    }
+
+    /**
+     * Serialize an instance of a job.
+     *
+     * @param instance workflow instance.
+     * @param store application definition store, if <code>null</code> the instance is serialized in the legacy
+     * format.
+     * @param jobConf configuration XML of the job, if the instance configuration is equal to it, it is not stored in the
+     * compact format. It may be <code>null</code>.
+     * @return the serialized instance.
+     * @throws IOException thrown if the instance could not be serialized.
+     */
+    public static byte[] toByteArray(LiteWorkflowInstance instance, AppDefStore store, String jobConf)
+            throws IOException {
+        ParamChecker.notNull(instance, "instance");
+        if (store == null) {
+            return WritableUtils.toByteArray(instance);
+        }
+        LiteWorkflowApp app = (LiteWorkflowApp) instance.getApp();
+        store.put(app);
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        DataOutputStream dOut = new DataOutputStream(baos);
+        dOut.writeByte(COMPACT_MARKER);
+        dOut.writeByte(COMPACT_VERSION);
+        dOut.writeUTF(app.getContentHash());
+        dOut.writeUTF(instance.getId());
+        String confDigest;
+        if (instance.isConfPending()) {
+            // never accessed, the configuration is still the job configuration it was read from
+            confDigest = instance.getConfDigest();
+        }
+        else {
+            confDigest = (jobConf != null) ? getJobConfDigest(instance, store, jobConf) : null;
+        }
+        if (confDigest != null) {
+            dOut.writeByte(CONF_JOB);
+            dOut.writeUTF(confDigest);
+        }
+        else {
+            dOut.writeByte(CONF_INLINE);
+            XConfiguration.writeBinary(instance.getConf(), dOut);
+        }
+        instance.writeExecutionState(dOut);
+        dOut.close();
+        return baos.toByteArray();
+    }
+
+    /**
+     * Deserialize an instance serialized in any format.
+     *
+     * @param array serialized instance.
+     * @param store application definition store, required for instances serialized in the compact format.
+     * @return the instance.
+     * @throws IOException thrown if the instance could not be deserialized.
+     */
+    public static LiteWorkflowInstance fromByteArray(byte[] array, AppDefStore store) throws IOException {
+        return fromByteArray(array, store, (String) null);
+    }
+
+    /**
+     * Deserialize an instance of a job serialized in any format.
+     *
+     * @param array serialized instance.
+     * @param store application definition store, required for instances serialized in the compact format.
+     * @param jobConf configuration XML of the job, required for compact instances not storing their configuration.
+     * @return the instance.
+     * @throws IOException thrown if the instance could not be deserialized.
+     */
+    public static LiteWorkflowInstance fromByteArray(byte[] array, AppDefStore store, final String jobConf)
+            throws IOException {
+        return fromByteArray(array, store, (jobConf == null) ? null : new JobConfLoader() {
+            @Override
+            public String getJobConf() {
+                return jobConf;
+            }
+        });
+    }
+
+    /**
+     * Deserialize an instance of a job serialized in any format.
+     *
+     * @param array serialized instance.
+     * @param store application definition store, required for instances serialized in the compact format.
+     * @param jobConfLoader loader of the configuration XML of the job, required for compact instances not storing
+     * their configuration. It is called only when the instance configuration is accessed.
+     * @return the instance.
+     * @throws IOException thrown if the instance could not be deserialized.
+     */
+    public static LiteWorkflowInstance fromByteArray(byte[] array, final AppDefStore store,
+            final JobConfLoader jobConfLoader) throws IOException {
+        ParamChecker.notNull(array, "array");
+        if (!isCompact(array)) {
+            return WritableUtils.fromByteArray(array, LiteWorkflowInstance.class);
+        }
+        DataInputStream dIn = new DataInputStream(new ByteArrayInputStream(array));
+        dIn.readByte();
+        int version = dIn.readUnsignedByte();
+        if (version < 1 || version > COMPACT_VERSION) {
+            throw new IOException("Unsupported workflow instance format version [" + version + "]");
+        }
+        String contentHash = dIn.readUTF();
+        if (store == null) {
+            throw new IOException("No application definition store to read workflow instance, application definition ["
+                    + contentHash + "]");
+        }
+        LiteWorkflowApp app = store.get(contentHash);
+        if (app == null) {
+            throw new IOException("Application definition [" + contentHash + "] of workflow instance not found");
+        }
+        final LiteWorkflowInstance instance = new LiteWorkflowInstance();
+        if (version == 1) {
+            instance.readState(dIn, app);
+            return instance;
+        }
+        final String instanceId = dIn.readUTF();
+        int confType = dIn.readUnsignedByte();
+        switch (confType) {
+            case CONF_INLINE:
+                instance.restore(instanceId, XConfiguration.readBinary(dIn), app);
+                break;
+            case CONF_JOB:
+                final String confDigest = dIn.readUTF();
+                if (jobConfLoader == null) {
+                    throw new IOException("Job configuration required to read workflow instance [" + instanceId + "]");
+                }
+                instance.restore(instanceId, confDigest, new Callable<Configuration>() {
+                    @Override
+                    public Configuration call() throws IOException {
+                        return loadJobConf(instance, instanceId, confDigest, store, jobConfLoader);
+                    }
+                }, app);
+                break;
+            default:
+                throw new IOException("Unsupported workflow instance configuration type [" + confType + "]");
+        }
+        instance.readExecutionState(dIn);
+        return instance;
+    }
+
+    /**
+     * Load the job configuration an instance refers to, when the instance configuration is first accessed.
+     */
+    private static Configuration loadJobConf(LiteWorkflowInstance instance, String instanceId, String confDigest,
+            AppDefStore store, JobConfLoader jobConfLoader) throws IOException {
+        String jobConf = jobConfLoader.getJobConf();
+        if (jobConf == null) {
+            throw new IOException("Job configuration required to read workflow instance [" + instanceId + "]");
+        }
+        String digest = digest(jobConf);
+        if (!digest.equals(confDigest)) {
+            LOG.warn("Job configuration of workflow instance [{0}] changed, digest [{1}] instead of [{2}], using the"
+                    + " current job configuration", instanceId, digest, confDigest);
+        }
+        Configuration conf = new XConfiguration();
+        XConfiguration.copy(store.getJobConf(jobConf, digest), conf);
+        instance.setConfDigest(digest);
+        return conf;
+    }
+
+    /**
+     * Return the digest of the job configuration if the instance configuration is equal to it.
+     */
+    private static String getJobConfDigest(LiteWorkflowInstance instance, AppDefStore store, String jobConf)
+            throws IOException {
+        String digest = digest(jobConf);
+        if (digest.equals(instance.getConfDigest())) {
+            return digest;
+        }
+        if (equals(instance.getConf(), store.getJobConf(jobConf, digest))) {
+            instance.setConfDigest(digest);
+            return digest;
+        }
+        return null;
+    }
+
+    private static boolean equals(Configuration conf1, Configuration conf2) {
+        if (conf1.size() != conf2.size()) {
+            return false;
+        }
+        for (Map.Entry<String, String> entry : conf1) {
+            if (!entry.getValue().equals(conf2.getRaw(entry.getKey()))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Return the digest of a job configuration.
+     *
+     * @param jobConf job configuration XML.
+     * @return the hex encoded SHA-256 digest of the job configuration.
+     */
+    public static String digest(String jobConf) {
+        return LiteWorkflowApp.computeContentHash(jobConf.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Return if a serialized instance is in the compact format.
+     *
+     * @param array serialized instance.
+     * @return <code>true</code> if the instance is in the compact format.
+     */
+    public static boolean isCompact(byte[] array) {
+        return array.length > 0 && (array[0] & 0xFF) == COMPACT_MARKER;
+    }
+
+    /**
+     * Return the content hash of the application definition a serialized instance refers to.
+     *
+     * @param array serialized instance.
+     * @return the content hash of the application definition, <code>null</code> if the instance is in the legacy
+     * format.
+     * @throws IOException thrown if the instance could not be read.
+     */
+    public static String getAppDefId(byte[] array) throws IOException {
+        if (!isCompact(array)) {
+            return null;
+        }
+        DataInputStream dIn = new DataInputStream(new ByteArrayInputStream(array));
+        dIn.readByte();
+        dIn.readByte();
+        return dIn.readUTF();
+    }
+
+    /**
+     * Serialize an application definition.
+     *
+     * @param app application definition.
+     * @return the serialized application definition.
+     */
+    public static byte[] appToByteArray(LiteWorkflowApp app) {
+        return WritableUtils.toByteArray(app);
+    }
+
+    /**
+     * Deserialize an application definition.
+     *
+     * @param array serialized application definition.
+     * @return the application definition, its content hash computed from the array.
+     */
+    public static LiteWorkflowApp appFromByteArray(byte[] array) {
+        LiteWorkflowApp app = WritableUtils.fromByteArray(array, LiteWorkflowApp.class);
+        app.setContentHash(LiteWorkflowApp.computeContentHash(array));
+        return app;
+    }
+}
@@ -18,7 +18,10 @@
 
 package org.apache.oozie.command;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Date;
+import java.util.List;
 
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.fs.Path;
@@ -27,6 +30,7 @@ import org.apache.oozie.BundleJobBean;
 import org.apache.oozie.CoordinatorActionBean;
 import org.apache.oozie.CoordinatorJobBean;
 import org.apache.oozie.ErrorCode;
+import org.apache.oozie.PurgeCheckpointBean;
 import org.apache.oozie.WorkflowActionBean;
 import org.apache.oozie.WorkflowJobBean;
 import org.apache.oozie.client.CoordinatorAction;
@@ -45,11 +49,15 @@ import org.apache.oozie.executor.jpa.CoordJobQueryExecutor;
 import org.apache.oozie.executor.jpa.WorkflowJobQueryExecutor;
 import org.apache.oozie.executor.jpa.CoordJobQueryExecutor.CoordJobQuery;
 import org.apache.oozie.executor.jpa.JPAExecutorException;
+import org.apache.oozie.executor.jpa.PurgeCheckpointGetJPAExecutor;
+import org.apache.oozie.executor.jpa.PurgeCheckpointUpdateJPAExecutor;
 import org.apache.oozie.executor.jpa.WorkflowActionGetJPAExecutor;
 import org.apache.oozie.executor.jpa.WorkflowJobGetJPAExecutor;
 import org.apache.oozie.executor.jpa.WorkflowJobInsertJPAExecutor;
 import org.apache.oozie.executor.jpa.WorkflowJobQueryExecutor.WorkflowJobQuery;
+import org.apache.oozie.service.InstrumentationService;
 import org.apache.oozie.service.JPAService;
+import org.apache.oozie.service.PurgeService;
 import org.apache.oozie.service.LiteWorkflowStoreService;
 import org.apache.oozie.service.Services;
 import org.apache.oozie.service.UUIDService;
@@ -58,6 +66,7 @@ import org.apache.oozie.service.WorkflowStoreService;
 import org.apache.oozie.service.UUIDService.ApplicationType;
 import org.apache.oozie.test.XDataTestCase;
 import org.apache.oozie.util.DateUtils;
+import org.apache.oozie.util.Instrumentation;
 import org.apache.oozie.util.XmlUtils;
 import org.apache.oozie.workflow.WorkflowApp;
 import org.apache.oozie.workflow.WorkflowInstance;
@@ -3898,6 +3907,101 @@ public class TestPurgeXCommand extends XDataTestCase {
         return wfBean;
     }
 
+    /**
+     * Test : purge resumes after the job id of the checkpoint left by an interrupted purge with the same parameters, and
+     * removes the checkpoint when done.
+     *
+     * @throws Exception
+     */
+    public void testPurgeResumesFromCheckpoint() throws Exception {
+        JPAService jpaService = Services.get().get(JPAService.class);
+        assertNotNull(jpaService);
+        List<String> ids = new ArrayList<String>();
+        for (int i = 0; i < 3; i++) {
+            ids.add(addRecordToWfJobTable(WorkflowJob.Status.SUCCEEDED, WorkflowInstance.Status.SUCCEEDED).getId());
+        }
+        Collections.sort(ids);
+        jpaService.execute(new PurgeCheckpointUpdateJPAExecutor(new PurgeCheckpointBean(PurgeXCommand.CHECKPOINT_ID,
+                "wf=7,coord=1,bundle=1,oldCoordAction=false", PurgeXCommand.Phase.WORKFLOWS.name(), ids.get(1))));
+
+        new PurgeXCommand(7, 1, 1, 10).call();
+
+        jpaService.execute(new WorkflowJobGetJPAExecutor(ids.get(0)));
+        jpaService.execute(new WorkflowJobGetJPAExecutor(ids.get(1)));
+        try {
+            jpaService.execute(new WorkflowJobGetJPAExecutor(ids.get(2)));
+            fail("Workflow Job should have been purged");
+        }
+        catch (JPAExecutorException je) {
+            assertEquals(ErrorCode.E0604, je.getErrorCode());
+        }
+        assertNull(jpaService.execute(new PurgeCheckpointGetJPAExecutor(PurgeXCommand.CHECKPOINT_ID)));
+    }
+
+    /**
+     * Test : purge ignores the checkpoint left by a purge with different parameters.
+     *
+     * @throws Exception
+     */
+    public void testPurgeIgnoresCheckpointWithOtherParams() throws Exception {
+        JPAService jpaService = Services.get().get(JPAService.class);
+        assertNotNull(jpaService);
+        List<String> ids = new ArrayList<String>();
+        for (int i = 0; i < 3; i++) {
+            ids.add(addRecordToWfJobTable(WorkflowJob.Status.SUCCEEDED, WorkflowInstance.Status.SUCCEEDED).getId());
+        }
+        Collections.sort(ids);
+        jpaService.execute(new PurgeCheckpointUpdateJPAExecutor(new PurgeCheckpointBean(PurgeXCommand.CHECKPOINT_ID,
+                "wf=30,coord=7,bundle=7,oldCoordAction=false", PurgeXCommand.Phase.WORKFLOWS.name(), ids.get(2))));
+
+        new PurgeXCommand(7, 1, 1, 10).call();
+
+        for (String id : ids) {
+            try {
+                jpaService.execute(new WorkflowJobGetJPAExecutor(id));
+                fail("Workflow Job should have been purged");
+            }
+            catch (JPAExecutorException je) {
+                assertEquals(ErrorCode.E0604, je.getErrorCode());
+            }
+        }
+        assertNull(jpaService.execute(new PurgeCheckpointGetJPAExecutor(PurgeXCommand.CHECKPOINT_ID)));
+    }
+
+    /**
+     * Test : purge jobs in several chunks purged in parallel.
+     *
+     * @throws Exception
+     */
+    public void testPurgeInParallelChunks() throws Exception {
+        Services.get().getConf().setInt(PurgeService.PURGE_THREADS, 2);
+        JPAService jpaService = Services.get().get(JPAService.class);
+        assertNotNull(jpaService);
+        List<String> ids = new ArrayList<String>();
+        for (int i = 0; i < 5; i++) {
+            WorkflowJobBean job = addRecordToWfJobTable(WorkflowJob.Status.SUCCEEDED, WorkflowInstance.Status.SUCCEEDED);
+            addRecordToWfActionTable(job.getId(), "1", WorkflowAction.Status.OK);
+            ids.add(job.getId());
+        }
+
+        new PurgeXCommand(7, 1, 1, 1).call();
+
+        for (String id : ids) {
+            try {
+                jpaService.execute(new WorkflowJobGetJPAExecutor(id));
+                fail("Workflow Job should have been purged");
+            }
+            catch (JPAExecutorException je) {
+                assertEquals(ErrorCode.E0604, je.getErrorCode());
+            }
+        }
+        assertEquals(0, PurgeXCommand.getBacklog());
+        Instrumentation instr = Services.get().get(InstrumentationService.class).get();
+        assertEquals(10, instr.getCounters().get(PurgeXCommand.INSTRUMENTATION_GROUP)
+                .get(PurgeXCommand.INSTR_DELETED_ROWS).getValue().longValue());
+        assertNull(jpaService.execute(new PurgeCheckpointGetJPAExecutor(PurgeXCommand.CHECKPOINT_ID)));
+    }
+
     @Override
     protected WorkflowJobBean createWorkflow(WorkflowApp app, Configuration conf,
             WorkflowJob.Status jobStatus, WorkflowInstance.Status instanceStatus) throws Exception {
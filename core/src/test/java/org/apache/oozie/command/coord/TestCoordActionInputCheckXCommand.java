@@ -18,7 +18,9 @@
 
 package org.apache.oozie.command.coord;
 
+import java.io.File;
 import java.io.IOException;
+import java.net.URI;
 import java.util.Arrays;
 import java.util.Date;
 import java.util.List;
@@ -34,6 +36,7 @@ import org.apache.oozie.client.CoordinatorJob.Timeunit;
 import org.apache.oozie.command.CommandException;
 import org.apache.oozie.coord.CoordELFunctions;
 import org.apache.oozie.coord.input.dependency.CoordOldInputDependency;
+import org.apache.oozie.dependency.fs.LocalFSDependencyWatcher;
 import org.apache.oozie.executor.jpa.CoordActionGetForInputCheckJPAExecutor;
 import org.apache.oozie.executor.jpa.CoordActionGetJPAExecutor;
 import org.apache.oozie.executor.jpa.CoordActionInsertJPAExecutor;
@@ -43,6 +46,7 @@ import org.apache.oozie.executor.jpa.CoordJobInsertJPAExecutor;
 import org.apache.oozie.executor.jpa.CoordJobQueryExecutor;
 import org.apache.oozie.executor.jpa.JPAExecutorException;
 import org.apache.oozie.service.CallableQueueService;
+import org.apache.oozie.service.FSDependencyManagerService;
 import org.apache.oozie.service.HadoopAccessorService;
 import org.apache.oozie.service.JPAService;
 import org.apache.oozie.service.Services;
@@ -169,6 +173,44 @@ public class TestCoordActionInputCheckXCommand extends XDataTestCase {
         }
     }
 
+    public void testActionInputCheckDependencyNotification() throws Exception {
+        services.destroy();
+        services = new Services();
+        services.getConf().set(Services.CONF_SERVICE_EXT_CLASSES, FSDependencyManagerService.class.getName());
+        services.getConf().set(FSDependencyManagerService.CONF_WATCHER_IMPL, LocalFSDependencyWatcher.class.getName());
+        services.init();
+        final FSDependencyManagerService dependencyManager = services.get(FSDependencyManagerService.class);
+
+        String jobId = "0000000-" + new Date().getTime() + "-TestCoordActionInputCheckXCommand-C";
+        Date startTime = DateUtils.parseDateOozieTZ("2009-02-01T23:59" + TZ);
+        Date endTime = DateUtils.parseDateOozieTZ("2009-02-02T23:59" + TZ);
+        CoordinatorJobBean job = addRecordToCoordJobTable(jobId, startTime, endTime);
+        new CoordMaterializeTransitionXCommand(job.getId(), 3600).call();
+        final String actionId = job.getId() + "@1";
+        new CoordActionInputCheckXCommand(actionId, job.getId()).call();
+
+        final JPAService jpaService = services.get(JPAService.class);
+        CoordinatorActionBean action = jpaService.execute(new CoordActionGetJPAExecutor(actionId));
+        assertEquals(CoordinatorAction.Status.WAITING, action.getStatus());
+        String[] missingDeps = action.getMissingDependencies().split(CoordELFunctions.INSTANCE_SEPARATOR);
+        final URI firstMissing = new URI(missingDeps[0]);
+        assertEquals(Arrays.asList(actionId), dependencyManager.getWaitingActions(firstMissing));
+
+        // the dependencies becoming available queue the input check of the action without waiting for its requeue
+        for (String missingDep : missingDeps) {
+            new File(new URI(missingDep)).mkdirs();
+        }
+        waitFor(30 * 1000, new Predicate() {
+            public boolean evaluate() throws Exception {
+                return jpaService.execute(new CoordActionGetJPAExecutor(actionId)).getStatus()
+                        != CoordinatorAction.Status.WAITING;
+            }
+        });
+        action = jpaService.execute(new CoordActionGetJPAExecutor(actionId));
+        assertFalse(CoordinatorAction.Status.WAITING.equals(action.getStatus()));
+        assertTrue(dependencyManager.getWaitingActions(firstMissing).isEmpty());
+    }
+
     /**
      * Test to check that missing dependencies list starts from the first unavailable dependency in synchronous order
      * @throws Exception
@@ -19,6 +19,7 @@
 package org.apache.oozie.command.coord;
 
 import java.io.File;
+import java.io.StringReader;
 import java.sql.Timestamp;
 import java.util.Arrays;
 import java.util.Calendar;
@@ -79,6 +80,54 @@ public class TestCoordMaterializeTransitionXCommand extends XDataTestCase {
         checkCoordAction(job.getId() + "@1");
     }
 
+    public void testMaterializationPlanCache() throws Exception {
+        Date startTime = DateUtils.parseDateOozieTZ("2009-03-06T010:00Z");
+        Date endTime = DateUtils.parseDateOozieTZ("2009-03-11T10:00Z");
+        CoordinatorJobBean job = addRecordToCoordJobTableForWaiting("coord-job-for-action-input-check.xml",
+                CoordinatorJob.Status.RUNNING, startTime, endTime, false, false, 0);
+        CoordMaterializationPlan plan = CoordMaterializationPlan.get(job);
+        assertSame(plan, CoordMaterializationPlan.get(job));
+        assertNotNull(plan.getDataset(CoordMaterializationPlan.DATA_IN, "A"));
+        assertEquals(DateUtils.parseDateOozieTZ("2009-03-06T10:00Z"), plan.getNominalTime(0).getTime());
+        assertEquals(DateUtils.parseDateOozieTZ("2009-03-07T10:00Z"), plan.getNominalTime(1).getTime());
+
+        job.setConf(job.getConf().replace("</configuration>",
+                "<property><name>plan.test</name><value>changed</value></property></configuration>"));
+        CoordMaterializationPlan changedPlan = CoordMaterializationPlan.get(job);
+        assertNotSame(plan, changedPlan);
+        assertEquals("changed", changedPlan.getJobConf().get("plan.test"));
+        assertSame(changedPlan, CoordMaterializationPlan.get(job));
+
+        job.setJobXml(job.getJobXml() + "\n");
+        assertNotSame(changedPlan, CoordMaterializationPlan.get(job));
+    }
+
+    public void testMaterializeOneInstanceFromPlan() throws Exception {
+        Date startTime = DateUtils.parseDateOozieTZ("2009-03-06T010:00Z");
+        Date endTime = DateUtils.parseDateOozieTZ("2009-03-11T10:00Z");
+        CoordinatorJobBean job = addRecordToCoordJobTableForWaiting("coord-job-for-action-input-check.xml",
+                CoordinatorJob.Status.RUNNING, startTime, endTime, false, false, 0);
+        CoordMaterializationPlan plan = CoordMaterializationPlan.compile(job);
+        Date nominalTime = plan.getNominalTime(1).getTime();
+        Date actualTime = new Date();
+
+        CoordinatorActionBean parsedAction = new CoordinatorActionBean();
+        String parsedXml = CoordCommandUtils.materializeOneInstance(job.getId(), false,
+                XmlUtils.parseXml(job.getJobXml()), nominalTime, actualTime, 2,
+                new XConfiguration(new StringReader(job.getConf())), parsedAction);
+        CoordinatorActionBean planAction = new CoordinatorActionBean();
+        String planXml = CoordCommandUtils.materializeOneInstance(plan, false, nominalTime, actualTime, 2, planAction);
+
+        assertEquals(parsedXml, planXml);
+        assertEquals(parsedAction.getId(), planAction.getId());
+        assertEquals(parsedAction.getRunConf(), planAction.getRunConf());
+        assertEquals(parsedAction.getMissingDependencies(), planAction.getMissingDependencies());
+        assertEquals(parsedAction.getPushMissingDependencies(), planAction.getPushMissingDependencies());
+        // the plan is not changed by the materialization
+        assertEquals(planXml, CoordCommandUtils.materializeOneInstance(plan, false, nominalTime, actualTime, 2,
+                new CoordinatorActionBean()));
+    }
+
     public void testActionMaterForHcatalog() throws Exception {
         Services.get().destroy();
         Services services = super.setupServicesForHCatalog();
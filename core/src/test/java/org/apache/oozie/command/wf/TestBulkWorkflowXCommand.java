@@ -25,6 +25,7 @@ import org.apache.oozie.client.WorkflowAction;
 import org.apache.oozie.client.WorkflowJob;
 import org.apache.oozie.executor.jpa.WorkflowActionQueryExecutor;
 import org.apache.oozie.executor.jpa.WorkflowJobQueryExecutor;
+import org.apache.oozie.service.MemoryLocksService;
 import org.apache.oozie.service.Services;
 import org.apache.oozie.test.XDataTestCase;
 import org.apache.oozie.workflow.WorkflowInstance;
@@ -96,6 +97,22 @@ public class TestBulkWorkflowXCommand extends XDataTestCase {
         verifyActionStatus(action2.getId(), WorkflowAction.Status.KILLED);
     }
 
+    public void testbulkWfKillReleasesLocks() throws Exception {
+        WorkflowJobBean job1 = this.addRecordToWfJobTable(WorkflowJob.Status.RUNNING, WorkflowInstance.Status.RUNNING);
+        WorkflowJobBean job2 = this.addRecordToWfJobTable(WorkflowJob.Status.RUNNING, WorkflowInstance.Status.RUNNING);
+
+        Map<String, List<String>> map = new HashMap<String, List<String>>();
+        List<String> names = new ArrayList<String>();
+        names.add("testApp");
+        map.put("name", names);
+
+        // without ZooKeeper leases the bulk command locks nothing itself, each kill command locks its own job
+        new BulkWorkflowXCommand(map, 1, 50, OperationType.Kill).call();
+        verifyJobStatus(job1.getId(), WorkflowJob.Status.KILLED);
+        verifyJobStatus(job2.getId(), WorkflowJob.Status.KILLED);
+        assertEquals(0, services.get(MemoryLocksService.class).getMemoryLocks().size());
+    }
+
     public void testbulkWfKillNoOp() throws Exception {
         WorkflowJobBean job1 = this.addRecordToWfJobTable(WorkflowJob.Status.RUNNING, WorkflowInstance.Status.RUNNING);
         WorkflowActionBean action1 = this.addRecordToWfActionTable(job1.getId(), "1", WorkflowAction.Status.RUNNING);
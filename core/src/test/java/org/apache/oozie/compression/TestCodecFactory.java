@@ -24,12 +24,23 @@ import java.io.DataInputStream;
 import java.io.DataOutputStream;
 import java.io.IOException;
 import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.commons.lang.RandomStringUtils;
+import org.apache.commons.lang.StringUtils;
 
 import org.apache.hadoop.conf.Configuration;
 import org.apache.oozie.BinaryBlob;
+import org.apache.oozie.CompressionDictionaryBean;
 import org.apache.oozie.StringBlob;
+import org.apache.oozie.executor.jpa.CompressionDictionaryGetJPAExecutor;
+import org.apache.oozie.executor.jpa.CompressionDictionaryInsertJPAExecutor;
+import org.apache.oozie.service.InstrumentationService;
+import org.apache.oozie.service.JPAService;
 import org.apache.oozie.service.Services;
 import org.apache.oozie.test.XTestCase;
+import org.apache.oozie.util.Instrumentation;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
@@ -105,4 +116,156 @@ public class TestCodecFactory extends XTestCase {
             // expected
         }
     }
+
+    @Test
+    public void testBuiltInCodecs() throws Exception {
+        String data = RandomStringUtils.randomAlphanumeric(1000) + StringUtils.repeat("oozie", 1000);
+        for (String codec : new String[]{GzipCompressionCodec.CODEC_NAME, DeflateCompressionCodec.CODEC_NAME,
+                SnappyCompressionCodec.CODEC_NAME}) {
+            Configuration conf = new Configuration(false);
+            conf.set(CodecFactory.COMPRESSION_OUTPUT_CODEC, codec);
+            CodecFactory.initialize(conf);
+            byte[] compressed = new StringBlob(data).getRawBlob();
+            assertTrue(codec, compressed.length < data.length() / 2);
+            assertEquals(codec, data, new StringBlob(compressed).getString());
+            byte[] bytes = data.getBytes(CodecFactory.UTF_8_ENCODING);
+            compressed = new BinaryBlob(bytes, true).getRawBlob();
+            assertTrue(codec, Arrays.equals(bytes, new BinaryBlob(compressed, false).getBytes()));
+            assertEquals(codec, "", new StringBlob(new StringBlob("").getRawBlob()).getString());
+        }
+    }
+
+    @Test
+    public void testMixedCodecReads() throws Exception {
+        Configuration conf = new Configuration(false);
+        conf.set(CodecFactory.COMPRESSION_OUTPUT_CODEC, GzipCompressionCodec.CODEC_NAME);
+        CodecFactory.initialize(conf);
+        byte[] gz = new StringBlob("gz data").getRawBlob();
+        conf.set(CodecFactory.COMPRESSION_OUTPUT_CODEC, SnappyCompressionCodec.CODEC_NAME);
+        CodecFactory.initialize(conf);
+        byte[] snappy = new StringBlob("snappy data").getRawBlob();
+        conf.set(CodecFactory.COMPRESSION_OUTPUT_CODEC, "none");
+        CodecFactory.initialize(conf);
+        byte[] uncompressed = new StringBlob("uncompressed data").getRawBlob();
+
+        conf.set(CodecFactory.COMPRESSION_OUTPUT_CODEC, DeflateCompressionCodec.CODEC_NAME);
+        CodecFactory.initialize(conf);
+        assertEquals("gz data", new StringBlob(gz).getString());
+        assertEquals("snappy data", new StringBlob(snappy).getString());
+        assertEquals("uncompressed data", new StringBlob(uncompressed).getString());
+    }
+
+    @Test
+    public void testDictionary() throws Exception {
+        final Map<String, byte[]> dictionaries = new HashMap<String, byte[]>();
+        CodecFactory.DictionaryLoader loader = new CodecFactory.DictionaryLoader() {
+            @Override
+            public byte[] load(String id) throws IOException {
+                return dictionaries.get(id);
+            }
+        };
+        String data = "<configuration><property><name>oozie.wf.application.path</name>"
+                + "<value>hdfs://localhost:8020/user/test/app</value></property></configuration>";
+        dictionaries.put("d1", data.getBytes(CodecFactory.UTF_8_ENCODING));
+
+        Configuration conf = new Configuration(false);
+        conf.set(CodecFactory.COMPRESSION_OUTPUT_CODEC, DeflateCompressionCodec.CODEC_NAME);
+        CodecFactory.initialize(conf, loader);
+        byte[] plain = new StringBlob(data).getRawBlob();
+        conf.set(CodecFactory.COMPRESSION_OUTPUT_DICTIONARY, "d1");
+        CodecFactory.initialize(conf, loader);
+        byte[] withDictionary = new StringBlob(data).getRawBlob();
+        // the header grows with the dictionary id, the data is a back reference to the dictionary
+        assertTrue(withDictionary.length < plain.length / 2);
+        assertEquals(data, new StringBlob(withDictionary).getString());
+
+        // blobs are read with the dictionary they reference, whatever the output dictionary is
+        conf.set(CodecFactory.COMPRESSION_OUTPUT_CODEC, GzipCompressionCodec.CODEC_NAME);
+        conf.unset(CodecFactory.COMPRESSION_OUTPUT_DICTIONARY);
+        CodecFactory.initialize(conf, loader);
+        assertEquals(data, new StringBlob(withDictionary).getString());
+        assertEquals(data, new StringBlob(plain).getString());
+
+        CodecFactory.initialize(conf, null);
+        try {
+            new StringBlob(withDictionary).getString();
+            fail();
+        }
+        catch (RuntimeException ex) {
+            assertTrue(ex.getCause().getMessage().contains("d1"));
+        }
+
+        // dictionaries are only supported by dictionary codecs
+        conf.set(CodecFactory.COMPRESSION_OUTPUT_CODEC, SnappyCompressionCodec.CODEC_NAME);
+        conf.set(CodecFactory.COMPRESSION_OUTPUT_DICTIONARY, "d1");
+        try {
+            CodecFactory.initialize(conf, loader);
+            fail();
+        }
+        catch (IOException ex) {
+        }
+    }
+
+    @Test
+    public void testDictionaryFromDatabase() throws Exception {
+        String data = "<configuration><property><name>user.name</name><value>test</value></property></configuration>";
+        services.get(JPAService.class).execute(new CompressionDictionaryInsertJPAExecutor(
+                new CompressionDictionaryBean("db1", DeflateCompressionCodec.CODEC_NAME,
+                        data.getBytes(CodecFactory.UTF_8_ENCODING))));
+        services.destroy();
+        setSystemProperty(CodecFactory.COMPRESSION_OUTPUT_CODEC, DeflateCompressionCodec.CODEC_NAME);
+        setSystemProperty(CodecFactory.COMPRESSION_OUTPUT_DICTIONARY, "db1");
+        services = new Services();
+        services.init();
+        byte[] compressed = new StringBlob(data).getRawBlob();
+        assertEquals(data, new StringBlob(compressed).getString());
+        CompressionDictionaryBean bean = services.get(JPAService.class).execute(
+                new CompressionDictionaryGetJPAExecutor("db1"));
+        assertEquals(DeflateCompressionCodec.CODEC_NAME, bean.getCodec());
+        assertNotNull(bean.getCreatedTime());
+    }
+
+    @Test
+    public void testUnchangedBlobsNotCompressedAgain() throws Exception {
+        byte[] raw = new StringBlob("dummmmyyyy").getRawBlob();
+        long compressions = CodecFactory.getCompressions();
+        long decompressions = CodecFactory.getDecompressions();
+        long unchangedWrites = CodecFactory.getUnchangedWrites();
+
+        // passed through without being decompressed
+        StringBlob blob = new StringBlob(raw);
+        assertSame(raw, blob.getRawBlob());
+        assertEquals(decompressions, CodecFactory.getDecompressions());
+
+        // decompressed once, written back unchanged
+        assertEquals("dummmmyyyy", blob.getString());
+        assertEquals("dummmmyyyy", blob.getString());
+        assertEquals(decompressions + 1, CodecFactory.getDecompressions());
+        assertSame(raw, blob.getRawBlob());
+        assertEquals(compressions, CodecFactory.getCompressions());
+        assertEquals(unchangedWrites + 1, CodecFactory.getUnchangedWrites());
+
+        // modified, compressed again
+        blob.setString("modified");
+        byte[] modified = blob.getRawBlob();
+        assertEquals(compressions + 1, CodecFactory.getCompressions());
+        assertEquals("modified", new StringBlob(modified).getString());
+
+        byte[] rawBytes = new BinaryBlob(new byte[]{1, 2, 3}, true).getRawBlob();
+        BinaryBlob binaryBlob = new BinaryBlob(rawBytes, false);
+        assertTrue(Arrays.equals(new byte[]{1, 2, 3}, binaryBlob.getBytes()));
+        assertSame(rawBytes, binaryBlob.getRawBlob());
+        binaryBlob.setBytes(new byte[]{4});
+        assertTrue(Arrays.equals(new byte[]{4}, new BinaryBlob(binaryBlob.getRawBlob(), false).getBytes()));
+
+        // uncompressed blobs are compressed when written back
+        blob = new StringBlob("uncompressed".getBytes(CodecFactory.UTF_8_ENCODING));
+        assertEquals("uncompressed", blob.getString());
+        assertNotNull(CodecFactory.getDeCompressionCodec(new DataInputStream(new ByteArrayInputStream(
+                blob.getRawBlob()))));
+
+        Instrumentation instr = services.get(InstrumentationService.class).get();
+        assertEquals(CodecFactory.getDecompressions(),
+                instr.getVariables().get("jpa").get("blob.decompressions").getValue());
+    }
 }
@@ -0,0 +1,78 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.oozie.compression;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+public class TestDictionaryTrainer extends TestCase {
+
+    public void testTrain() throws Exception {
+        List<byte[]> samples = new ArrayList<byte[]>();
+        for (int i = 0; i < 50; i++) {
+            samples.add(conf(i).getBytes(CodecFactory.UTF_8_ENCODING));
+        }
+        byte[] dictionary = DictionaryTrainer.train(samples, 4096);
+        assertTrue(dictionary.length > 0);
+        assertTrue(dictionary.length <= 4096);
+        String text = new String(dictionary, CodecFactory.UTF_8_ENCODING);
+        assertTrue(text.contains("<name>oozie.wf.application.path</name>"));
+        // segments found in a single sample are not in the dictionary
+        assertFalse(text.contains("job-7-"));
+
+        // the trained dictionary makes the codec compress the samples better
+        byte[] data = conf(100).getBytes(CodecFactory.UTF_8_ENCODING);
+        DeflateCompressionCodec codec = new DeflateCompressionCodec();
+        CompressionCodec dictionaryCodec = codec.withDictionary(dictionary);
+        byte[] plain = codec.compressBytes(new byte[0], data);
+        byte[] compressed = dictionaryCodec.compressBytes(new byte[0], data);
+        assertTrue(compressed.length < plain.length / 2);
+        assertEquals(new String(data, CodecFactory.UTF_8_ENCODING), dictionaryCodec.decompressToString(
+                new DataInputStream(new ByteArrayInputStream(compressed))));
+        try {
+            codec.decompressToBytes(new DataInputStream(new ByteArrayInputStream(compressed)));
+            fail();
+        }
+        catch (java.io.IOException ex) {
+        }
+    }
+
+    public void testTrainMaxSize() throws Exception {
+        List<byte[]> samples = new ArrayList<byte[]>();
+        for (int i = 0; i < 10; i++) {
+            samples.add(conf(i).getBytes(CodecFactory.UTF_8_ENCODING));
+        }
+        assertTrue(DictionaryTrainer.train(samples, 100).length <= 100);
+        assertEquals(0, DictionaryTrainer.train(samples.subList(0, 1), 100).length);
+    }
+
+    private static String conf(int i) {
+        return "<configuration>\n"
+                + "  <property>\n    <name>oozie.wf.application.path</name>\n"
+                + "    <value>hdfs://localhost:8020/user/test/apps/app-" + (i % 3) + "</value>\n  </property>\n"
+                + "  <property>\n    <name>user.name</name>\n    <value>test</value>\n  </property>\n"
+                + "  <property>\n    <name>mapreduce.job.queuename</name>\n    <value>default</value>\n  </property>\n"
+                + "  <property>\n    <name>job.name</name>\n    <value>job-" + i + "-" + (i * 7919) + "</value>\n"
+                + "  </property>\n</configuration>\n";
+    }
+}
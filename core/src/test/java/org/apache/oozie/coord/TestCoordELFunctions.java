@@ -20,6 +20,7 @@ package org.apache.oozie.coord;
 
 import org.apache.hadoop.conf.Configuration;
 import org.apache.oozie.client.OozieClient;
+import org.apache.oozie.service.ConfigurationService;
 import org.apache.oozie.service.ELService;
 import org.apache.oozie.service.Services;
 import org.apache.oozie.test.XTestCase;
@@ -900,6 +901,35 @@ public class TestCoordELFunctions extends XTestCase {
         // Add test cases with EOM and EOD option
     }
 
+    public void testLatestAndFutureFromListing() throws Exception {
+        ConfigurationService.setBoolean(CoordInstanceIndex.CONF_USE_LISTING, true);
+        init("coord-action-start");
+        eval.setVariable(CoordELFunctions.CONFIGURATION, new Configuration());
+        getTestCaseDir();
+        ds.setUriTemplate(getTestCaseFileUri("${YEAR}/${MONTH}/${DAY}"));
+        createTestCaseSubDir("2009/09/08/_SUCCESS".split("/"));
+        createTestCaseSubDir("2009/09/11/_SUCCESS".split("/"));
+        assertEquals("2009-09-08T23:59Z", CoordELFunctions.evalAndWrap(eval, "${coord:latest(0)}"));
+        assertEquals("${coord:latest(-1)}", CoordELFunctions.evalAndWrap(eval, "${coord:latest(-1)}"));
+        assertEquals("2009-09-11T23:59Z", CoordELFunctions.evalAndWrap(eval, "${coord:future(0, 5)}"));
+
+        assertTrue(CoordInstanceIndex.open());
+        try {
+            assertFalse(CoordInstanceIndex.open());
+            CoordInstanceIndex index = CoordInstanceIndex.get();
+            assertSame(index, CoordInstanceIndex.get());
+            assertEquals("2009-09-08T23:59Z", CoordELFunctions.evalAndWrap(eval, "${coord:latest(0)}"));
+            int listCalls = index.getListCalls();
+            assertTrue(listCalls > 0);
+            assertEquals("2009-09-08T23:59Z", CoordELFunctions.evalAndWrap(eval, "${coord:latest(0)}"));
+            assertEquals(listCalls, index.getListCalls());
+        }
+        finally {
+            CoordInstanceIndex.close();
+        }
+        assertNotSame(CoordInstanceIndex.get(), CoordInstanceIndex.get());
+    }
+
     public void testPh1Future() throws Exception {
         init("coord-job-submit-instances");
         String expr = "${coord:future(1, 10)}";
@@ -19,12 +19,17 @@
 package org.apache.oozie.dependency;
 
 import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
 
+import org.apache.hadoop.fs.FileSystem;
 import org.apache.hadoop.fs.Path;
 import org.apache.hadoop.mapred.JobConf;
+import org.apache.oozie.service.InstrumentationService;
 import org.apache.oozie.service.Services;
 import org.apache.oozie.service.URIHandlerService;
 import org.apache.oozie.test.XFsTestCase;
+import org.apache.oozie.util.Instrumentation;
 import org.junit.Test;
 
 public class TestFSURIHandler extends XFsTestCase {
@@ -62,4 +67,123 @@ public class TestFSURIHandler extends XFsTestCase {
 
     }
 
+    public void testExistsCache() throws Exception {
+        services.destroy();
+        setSystemProperty(FSExistenceCache.CONF_ENABLED, "true");
+        services = new Services();
+        services.init();
+        uriService = services.get(URIHandlerService.class);
+        FSExistenceCache existenceCache = uriService.getFSExistenceCache();
+        assertNotNull(existenceCache);
+
+        Path dir = new Path(getFsTestCaseDir() + "/2012/12");
+        Path path1 = new Path(dir, "02");
+        Path path2 = new Path(dir, "12");
+        getFileSystem().mkdirs(path1);
+        URIHandler handler = uriService.getURIHandler(path1.toUri());
+        assertTrue(handler.exists(path1.toUri(), conf, getTestUser()));
+        assertFalse(handler.exists(path2.toUri(), conf, getTestUser()));
+        // both paths were looked up in a single listing of their directory
+        assertEquals(2, existenceCache.getLookups());
+        assertEquals(1, existenceCache.getMisses());
+        assertEquals(1, existenceCache.getHits());
+
+        // missing paths are cached until the listing expires
+        getFileSystem().mkdirs(path2);
+        assertFalse(handler.exists(path2.toUri(), conf, getTestUser()));
+        assertTrue(handler.exists(path1.toUri(), conf, getTestUser()));
+        assertEquals(1, existenceCache.getMisses());
+
+        // deleting a path forgets it and the listing of its directory
+        handler.delete(path1.toUri(), conf, getTestUser());
+        assertFalse(handler.exists(path1.toUri(), conf, getTestUser()));
+        assertTrue(handler.exists(path2.toUri(), conf, getTestUser()));
+        assertEquals(2, existenceCache.getMisses());
+        assertNotNull(services.get(InstrumentationService.class).get().getVariables().get("fs_exists_cache")
+                .get("hits"));
+    }
+
+    public void testExistsCacheWithoutListing() throws Exception {
+        FSExistenceCache existenceCache = new FSExistenceCache(100, 60, 0, false);
+        FileSystem fs = getFileSystem();
+        Path path = new Path(getFsTestCaseDir(), "data");
+        assertFalse(existenceCache.exists(getTestUser(), fs, path));
+        fs.mkdirs(path);
+        // missing paths expire immediately, existing paths are cached
+        assertTrue(existenceCache.exists(getTestUser(), fs, path));
+        assertTrue(existenceCache.exists(getTestUser(), fs, path));
+        assertEquals(3, existenceCache.getLookups());
+        assertEquals(2, existenceCache.getMisses());
+        assertEquals(1, existenceCache.getSize());
+        // existing paths are cached per user
+        assertTrue(existenceCache.exists(getTestUser2(), fs, path));
+        assertEquals(3, existenceCache.getMisses());
+        assertEquals(2, existenceCache.getSize());
+        existenceCache.invalidate(path);
+        assertEquals(0, existenceCache.getSize());
+    }
+
+    public void testDependencyProbe() throws Exception {
+        assertNull(uriService.newDependencyProbe(conf, getTestUser()));
+        services.destroy();
+        setSystemProperty(DependencyProber.CONF_THREADS, "2");
+        setSystemProperty(DependencyProber.CONF_AUTHORITY_CONCURRENCY, "2");
+        services = new Services();
+        services.init();
+        uriService = services.get(URIHandlerService.class);
+
+        Path dir = new Path(getFsTestCaseDir() + "/2012/12");
+        getFileSystem().mkdirs(new Path(dir, "01"));
+        getFileSystem().mkdirs(new Path(dir, "03"));
+        List<String> uris = new ArrayList<String>();
+        for (int day = 1; day <= 4; day++) {
+            uris.add(new Path(dir, "0" + day).toUri().toString());
+        }
+        DependencyProber.Probe probe = uriService.newDependencyProbe(conf, getTestUser());
+        assertNotNull(probe);
+        // only two checks of the same file system run asynchronously, the others are checked when read
+        probe.submit(uris);
+        assertTrue(probe.exists(uris.get(0)));
+        assertFalse(probe.exists(uris.get(1)));
+        assertTrue(probe.exists(uris.get(2)));
+        assertFalse(probe.exists(uris.get(3)));
+        probe.cancel();
+
+        // the checks not read are cancelled and their permits released
+        final DependencyProber prober = new DependencyProber(1, 10, 1);
+        probe = prober.newProbe(conf, getTestUser());
+        probe.submit(uris);
+        assertTrue(probe.exists(uris.get(0)));
+        assertFalse(probe.exists(uris.get(1)));
+        probe.cancel();
+        final URI fsUri = dir.toUri();
+        waitFor(10 * 1000, new Predicate() {
+            @Override
+            public boolean evaluate() throws Exception {
+                return prober.getAvailablePermits(fsUri) == 1;
+            }
+        });
+        assertEquals(1, prober.getAvailablePermits(fsUri));
+        prober.destroy();
+
+        // the queued checks are removed from the pool when cancelled, each permit is released once
+        final DependencyProber queueProber = new DependencyProber(1, 10, 4);
+        final Instrumentation instr = new Instrumentation();
+        queueProber.instrument(instr);
+        probe = queueProber.newProbe(conf, getTestUser());
+        probe.submit(uris);
+        probe.cancel();
+        waitFor(10 * 1000, new Predicate() {
+            @Override
+            public boolean evaluate() throws Exception {
+                return queueProber.getAvailablePermits(fsUri) == 4;
+            }
+        });
+        assertEquals(4, queueProber.getAvailablePermits(fsUri));
+        assertEquals(0L, instr.getVariables().get(DependencyProber.INSTRUMENTATION_GROUP).get("queued").getValue());
+        queueProber.destroy();
+        assertNotNull(services.get(InstrumentationService.class).get().getTimers()
+                .get(DependencyProber.INSTRUMENTATION_GROUP).get(dir.toUri().getScheme()));
+    }
+
 }
@@ -18,6 +18,10 @@
 
 package org.apache.oozie.executor.jpa;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Map;
+
 import org.apache.oozie.CoordinatorJobBean;
 import org.apache.oozie.client.CoordinatorAction;
 import org.apache.oozie.client.CoordinatorJob;
@@ -53,6 +57,26 @@ public class TestCoordActionsActiveCountJPAExecutor extends XDataTestCase {
         _testActiveActionsCount(job.getId(), 2);
     }
 
+    public void testActiveActionsCounts() throws Exception {
+        CoordinatorJobBean job1 = addRecordToCoordJobTable(CoordinatorJob.Status.RUNNING, false, false);
+        CoordinatorJobBean job2 = addRecordToCoordJobTable(CoordinatorJob.Status.RUNNING, false, false);
+        CoordinatorJobBean job3 = addRecordToCoordJobTable(CoordinatorJob.Status.RUNNING, false, false);
+        addRecordToCoordActionTable(job1.getId(), 1, CoordinatorAction.Status.WAITING, "coord-action-get.xml", 0);
+        addRecordToCoordActionTable(job1.getId(), 2, CoordinatorAction.Status.WAITING, "coord-action-get.xml", 0);
+        addRecordToCoordActionTable(job2.getId(), 1, CoordinatorAction.Status.WAITING, "coord-action-get.xml", 0);
+        addRecordToCoordActionTable(job2.getId(), 2, CoordinatorAction.Status.RUNNING, "coord-action-get.xml", 0);
+        addRecordToCoordActionTable(job3.getId(), 1, CoordinatorAction.Status.SUCCEEDED, "coord-action-get.xml", 0);
+
+        JPAService jpaService = Services.get().get(JPAService.class);
+        Map<String, Integer> counts = jpaService.execute(new CoordActionsActiveCountsJPAExecutor(
+                Arrays.asList(job1.getId(), job2.getId(), job3.getId())));
+        assertEquals(3, counts.size());
+        assertEquals(2, counts.get(job1.getId()).intValue());
+        assertEquals(1, counts.get(job2.getId()).intValue());
+        assertEquals(0, counts.get(job3.getId()).intValue());
+        assertTrue(jpaService.execute(new CoordActionsActiveCountsJPAExecutor(new ArrayList<String>())).isEmpty());
+    }
+
     private void _testActiveActionsCount(String jobId, int expected) throws Exception {
         JPAService jpaService = Services.get().get(JPAService.class);
         assertNotNull(jpaService);
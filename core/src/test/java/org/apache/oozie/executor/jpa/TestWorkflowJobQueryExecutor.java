@@ -327,6 +327,12 @@ public class TestWorkflowJobQueryExecutor extends XDataTestCase {
         retBean = WorkflowJobQueryExecutor.getInstance().get(WorkflowJobQuery.GET_WORKFLOW_STATUS, bean.getId());
         assertEquals(bean.getId(), retBean.getId());
         assertEquals(bean.getStatus(), retBean.getStatus());
+
+        // GET_WORKFLOW_CONF
+        retBean = WorkflowJobQueryExecutor.getInstance().get(WorkflowJobQuery.GET_WORKFLOW_CONF, bean.getId());
+        assertEquals(bean.getId(), retBean.getId());
+        assertEquals(bean.getConf(), retBean.getConf());
+        assertNull(retBean.getWfInstanceBlob());
     }
 
     public void testGetList() throws Exception {
@@ -18,15 +18,19 @@
 
 package org.apache.oozie.lock;
 
+import java.util.Map;
 import java.util.UUID;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 import org.apache.oozie.service.MemoryLocksService;
 import org.apache.oozie.service.MemoryLocksService.Type;
 import org.apache.oozie.service.ServiceException;
 import org.apache.oozie.service.Services;
 import org.apache.oozie.test.XTestCase;
+import org.apache.oozie.util.Instrumentation;
 import org.apache.oozie.util.XLog;
 
 public class TestMemoryLocks extends XTestCase {
@@ -296,14 +300,13 @@ public class TestMemoryLocks extends XTestCase {
                 MemoryLocks.MemoryLockToken token2 = getLock();
 
                 if (token != null) {
-                    acquireLockLatch.countDown();
-
                     log.info("Got lock [{0}]", nameIndex);
                     sb.append(nameIndex + "-L1 ");
                     if (token2 != null) {
                         sb.append(nameIndex + "-L2 ");
                     }
                     sb.append(nameIndex + "-U1 ");
+                    acquireLockLatch.countDown();
 
                     proceedingLatch.await(LATCH_TIMEOUT, TimeUnit.SECONDS);
 
@@ -393,39 +396,149 @@ public class TestMemoryLocks extends XTestCase {
         }
     }
 
-    public void testLocksAreGarbageCollected() throws ServiceException, InterruptedException {
+    public void testLocksAreRemovedOnRelease() throws ServiceException, InterruptedException {
         String path = new String("a");
         String path1 = new String("a");
         MemoryLocksService lockService = new MemoryLocksService();
         lockService.init(Services.get());
         LockToken lock = lockService.getWriteLock(path, DEFAULT_LOCK_TIMEOUT);
-        int oldHash = lockService.getMemoryLocks().getLockMap().get(path).hashCode();
+        ReentrantReadWriteLock oldLock = lockService.getMemoryLocks().getLockMap().get(path);
+        assertEquals(1, lockService.getMemoryLocks().size());
         lock.release();
+        assertEquals(0, lockService.getMemoryLocks().size());
+        assertNull(lockService.getMemoryLocks().getLockMap().get(path));
         lock = lockService.getWriteLock(path1, DEFAULT_LOCK_TIMEOUT);
-        int newHash = lockService.getMemoryLocks().getLockMap().get(path1).hashCode();
-        assertTrue(oldHash == newHash);
+        assertNotSame(oldLock, lockService.getMemoryLocks().getLockMap().get(path1));
         lock.release();
-        lock = null;
-        System.gc();
-        path = "a";
-        lock = lockService.getWriteLock(path, DEFAULT_LOCK_TIMEOUT);
-        newHash = lockService.getMemoryLocks().getLockMap().get(path).hashCode();
-        assertFalse(oldHash == newHash);
-
+        assertEquals(0, lockService.getMemoryLocks().size());
     }
 
     public void testLocksAreReused() throws ServiceException, InterruptedException {
         String path = "a";
         MemoryLocksService lockService = new MemoryLocksService();
         lockService.init(Services.get());
-        LockToken lock = lockService.getWriteLock(path, DEFAULT_LOCK_TIMEOUT);
-        int oldHash = System.identityHashCode(lockService.getMemoryLocks().getLockMap().get(path));
-        System.gc();
-        lock.release();
-        lock = lockService.getWriteLock(path, DEFAULT_LOCK_TIMEOUT);
+        LockToken lock = lockService.getReadLock(path, DEFAULT_LOCK_TIMEOUT);
+        ReentrantReadWriteLock oldLock = lockService.getMemoryLocks().getLockMap().get(path);
+        LockToken lock1 = lockService.getReadLock(path, DEFAULT_LOCK_TIMEOUT);
         assertEquals(lockService.getMemoryLocks().size(), 1);
-        int newHash = System.identityHashCode(lockService.getMemoryLocks().getLockMap().get(path));
-        assertTrue(oldHash == newHash);
+        assertSame(oldLock, lockService.getMemoryLocks().getLockMap().get(path));
+        assertEquals(2, oldLock.getReadLockCount());
+        lock.release();
+        assertSame(oldLock, lockService.getMemoryLocks().getLockMap().get(path));
+        lock1.release();
+        assertEquals(0, lockService.getMemoryLocks().size());
+    }
+
+    public void testConcurrentLockAndRelease() throws Exception {
+        final int threads = 8;
+        final int iterations = 2000;
+        final AtomicInteger inside = new AtomicInteger();
+        final AtomicInteger errors = new AtomicInteger();
+        final CountDownLatch done = new CountDownLatch(threads);
+        for (int i = 0; i < threads; i++) {
+            new Thread(new Runnable() {
+                public void run() {
+                    try {
+                        for (int j = 0; j < iterations; j++) {
+                            String resource = "job-" + (j % 3);
+                            MemoryLocks.MemoryLockToken token = locks.getLock(resource, Type.WRITE, -1);
+                            if (inside.incrementAndGet() > 3) {
+                                errors.incrementAndGet();
+                            }
+                            inside.decrementAndGet();
+                            token.release();
+                        }
+                    }
+                    catch (Exception ex) {
+                        errors.incrementAndGet();
+                    }
+                    finally {
+                        done.countDown();
+                    }
+                }
+            }).start();
+        }
+        assertTrue(done.await(LATCH_TIMEOUT * 3, TimeUnit.SECONDS));
+        assertEquals(0, errors.get());
+        assertEquals(0, locks.size());
+        long requests = 0;
+        for (int i = 0; i < MemoryLocks.STRIPES; i++) {
+            for (long count : locks.getWaitHistogram(i)) {
+                requests += count;
+            }
+        }
+        assertEquals(threads * iterations, requests);
+    }
+
+    public void testDiagnostics() throws Exception {
+        MemoryLocks.MemoryLockToken write = locks.getLock("a", Type.WRITE, -1);
+        MemoryLocks.MemoryLockToken read1 = locks.getLock("b", Type.READ, -1);
+        MemoryLocks.MemoryLockToken read2 = locks.getLock("b", Type.READ, -1);
+        Thread reader = new Thread(new Runnable() {
+            public void run() {
+                try {
+                    assertNull(locks.getLock("a", Type.READ, 20));
+                }
+                catch (InterruptedException ex) {
+                    throw new RuntimeException(ex);
+                }
+            }
+        });
+        reader.start();
+        reader.join();
+
+        Map<String, String> holders = locks.getHolders(-1);
+        assertEquals(2, holders.size());
+        assertEquals("WRITE [" + Thread.currentThread().getName() + "]", holders.get("a"));
+        assertEquals("READ [2]", holders.get("b"));
+        assertEquals(1, locks.getHolders(1).size());
+
+        int stripeA = MemoryLocks.getStripe("a");
+        assertEquals(stripeA == MemoryLocks.getStripe("b") ? 2 : 1, locks.getHeldCount(stripeA));
+        long[] histogram = locks.getWaitHistogram(stripeA);
+        assertEquals(MemoryLocks.WAIT_BUCKETS.length + 1, histogram.length);
+        // "a" granted at once and "a" given up after waiting
+        assertTrue(histogram[0] >= 1);
+        long waited = 0;
+        for (int i = 1; i < histogram.length; i++) {
+            waited += histogram[i];
+        }
+        assertEquals(1, waited);
+        assertTrue(locks.getWaitHistogramAsString(stripeA).startsWith("<1ms="));
+
+        write.release();
+        read1.release();
+        read2.release();
+        assertEquals(0, locks.getHolders(-1).size());
+        assertEquals(0, locks.getHeldCount(stripeA));
+    }
+
+    public void testInstrumentation() throws Exception {
+        MemoryLocksService lockService = new MemoryLocksService();
+        lockService.init(Services.get());
+        try {
+            Instrumentation instr = new Instrumentation();
+            lockService.instrument(instr);
+            LockToken lock = lockService.getWriteLock("a", -1);
+            Map<String, Instrumentation.Element<Instrumentation.Variable>> variables =
+                    instr.getVariables().get("locks");
+            String stripe = MemoryLocksService.INSTR_STRIPE_PREFIX + MemoryLocks.getStripe("a");
+            assertEquals(1L, getValue(variables, "locks"));
+            assertEquals(1L, getValue(variables, stripe + MemoryLocksService.INSTR_HELD_SUFFIX));
+            assertTrue(getValue(variables, stripe + MemoryLocksService.INSTR_WAIT_SUFFIX).toString()
+                    .startsWith("<1ms=1,"));
+            assertTrue(getValue(variables, MemoryLocksService.INSTR_HOLDERS).toString().contains("a=WRITE"));
+            lock.release();
+            assertEquals(0L, getValue(variables, "locks"));
+        }
+        finally {
+            lockService.destroy();
+        }
+    }
+
+    private static Object getValue(Map<String, Instrumentation.Element<Instrumentation.Variable>> variables,
+            String name) {
+        return variables.get(name).getValue();
     }
 
     private void checkLockRelease(String path, MemoryLocksService lockService) {
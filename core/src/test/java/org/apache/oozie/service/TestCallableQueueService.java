@@ -24,11 +24,13 @@ import org.apache.oozie.command.CommandException;
 import org.apache.oozie.command.PreconditionException;
 import org.apache.oozie.command.XCommand;
 import org.apache.oozie.test.XTestCase;
+import org.apache.oozie.util.Instrumentation;
 import org.apache.oozie.util.XCallable;
 
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
@@ -262,6 +264,132 @@ public class TestCallableQueueService extends XTestCase {
         assertTrue(callableHigh.order < callableLow.order);
     }
 
+    public void testPriorityExecutionWithConcurrentQueue() throws Exception {
+        EXEC_ORDER = new AtomicLong();
+        Services.get().destroy();
+        setSystemProperty(CallableQueueService.CONF_THREADS, "1");
+        setSystemProperty(CallableQueueService.CONF_QUEUE_CONCURRENT, "true");
+        new Services().init();
+
+        CallableQueueService queueservice = Services.get().get(CallableQueueService.class);
+
+        final MyCallable callable1 = new MyCallable(0, 200);
+        final MyCallable callable2 = new MyCallable(0, 200);
+        final MyCallable callableLow = new MyCallable();
+        final MyCallable callableHigh = new MyCallable(1, 10);
+        final MyCallable callableDelayed = new MyCallable(2, 10);
+
+        queueservice.queue(callable1);
+        queueservice.queue(callable2);
+        queueservice.queue(callableLow);
+        queueservice.queue(callableHigh);
+        queueservice.queue(callableDelayed, 100);
+
+        waitFor(3000, new Predicate() {
+            public boolean evaluate() throws Exception {
+                return callable1.executed != 0 && callable2.executed != 0 && callableLow.executed != 0 &&
+                        callableHigh.executed != 0 && callableDelayed.executed != 0;
+            }
+        });
+        assertTrue(callableHigh.order < callableLow.order);
+        assertTrue(callableDelayed.order < callableLow.order);
+        assertEquals(0, queueservice.queueSize());
+
+        Map<String, Instrumentation.Element<Instrumentation.Variable>> variables =
+                Services.get().get(InstrumentationService.class).get().getVariables().get("callablequeue");
+        assertTrue(variables.containsKey("delayed.size"));
+        assertTrue(variables.containsKey("delayed.level.0.size"));
+        assertTrue(variables.containsKey("delayed.level.3.buckets"));
+    }
+
+    public void testDispatcherExecutor() throws Exception {
+        EXEC_ORDER = new AtomicLong();
+        Services.get().destroy();
+        setSystemProperty(CallableQueueService.CONF_EXECUTOR, CallableQueueService.EXECUTOR_DISPATCHER);
+        setSystemProperty(CallableQueueService.CONF_EXECUTOR_MAX_ACTIVE, "1");
+        new Services().init();
+
+        CallableQueueService queueservice = Services.get().get(CallableQueueService.class);
+
+        final MyCallable callable1 = new MyCallable(0, 200);
+        final MyCallable callable2 = new MyCallable(0, 200);
+        final MyCallable callableLow = new MyCallable();
+        final MyCallable callableHigh = new MyCallable(1, 10);
+
+        queueservice.queue(callable1);
+        queueservice.queue(callable2);
+        queueservice.queue(callableLow);
+        queueservice.queue(callableHigh);
+
+        waitFor(3000, new Predicate() {
+            public boolean evaluate() throws Exception {
+                return callable1.executed != 0 && callable2.executed != 0 && callableLow.executed != 0 &&
+                        callableHigh.executed != 0;
+            }
+        });
+        assertTrue(callableHigh.order < callableLow.order);
+    }
+
+    public void testDispatcherExecutorConcurrencyLimit() throws Exception {
+        Services.get().destroy();
+        setSystemProperty(CallableQueueService.CONF_EXECUTOR, CallableQueueService.EXECUTOR_DISPATCHER);
+        setSystemProperty(CallableQueueService.CONF_QUEUE_CONCURRENT, "true");
+        setSystemProperty(CallableQueueService.CONF_EXECUTOR_MAX_ACTIVE, "50");
+        new Services().init();
+
+        CLCallable.resetConcurrency();
+        final CallableQueueService queueservice = Services.get().get(CallableQueueService.class);
+        for (int i = 0; i < 10; i++) {
+            queueservice.queue(new CLCallable(), 10);
+        }
+        waitFor(5000, new Predicate() {
+            public boolean evaluate() throws Exception {
+                return queueservice.queueSize() == 0;
+            }
+        });
+        assertEquals(0, queueservice.queueSize());
+        assertTrue(CLCallable.getConcurrency() <= 3);
+    }
+
+    public void testQueueUniquenessWithConcurrentQueue() throws Exception {
+        Services.get().destroy();
+        setSystemProperty(CallableQueueService.CONF_QUEUE_CONCURRENT, "true");
+        new Services().init();
+
+        final CallableQueueService queueservice = Services.get().get(CallableQueueService.class);
+        final List<MyCallable> callables = new ArrayList<MyCallable>();
+        List<Thread> threads = new ArrayList<Thread>();
+        for (int i = 0; i < 8; i++) {
+            final MyCallable callable = new MyCallable("QueueUniquenessWithConcurrentQueue", "type", 0, 10);
+            callables.add(callable);
+            threads.add(new Thread() {
+                @Override
+                public void run() {
+                    queueservice.queue(callable, 500);
+                }
+            });
+        }
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals(1, queueservice.queueSize());
+
+        waitFor(3000, new Predicate() {
+            public boolean evaluate() throws Exception {
+                return queueservice.queueSize() == 0;
+            }
+        });
+        sleep(100);
+        int executed = 0;
+        for (MyCallable callable : callables) {
+            executed += (callable.executed != 0) ? 1 : 0;
+        }
+        assertEquals(1, executed);
+    }
+
     public void testQueueSerial() throws Exception {
         EXEC_ORDER = new AtomicLong();
         final MyCallable callable1 = new MyCallable(0, 10);
@@ -379,6 +507,29 @@ public class TestCallableQueueService extends XTestCase {
         assertTrue(CLCallable.getConcurrency() <= 3);
     }
 
+    @SuppressWarnings("rawtypes")
+    public void testConcurrencyInstrumentation() throws Exception {
+        CLCallable.resetConcurrency();
+        final CallableQueueService queueservice = Services.get().get(CallableQueueService.class);
+        Instrumentation instr = Services.get().get(InstrumentationService.class).get();
+
+        for (int i = 0; i < 10; i++) {
+            queueservice.queue(new CLCallable(), 10);
+        }
+        waitFor(5000, new Predicate() {
+            public boolean evaluate() throws Exception {
+                return queueservice.queueSize() == 0;
+            }
+        });
+        sleep(500);
+
+        assertTrue(CLCallable.getConcurrency() <= 3);
+        Instrumentation.Element concurrency = instr.getVariables().get("callablequeue").get("type#concurrency");
+        assertNotNull(concurrency);
+        assertEquals(0L, concurrency.getValue());
+        assertTrue(instr.getCounters().get("callablequeue").get("type#exceeded.concurrency").getValue() > 0);
+    }
+
     /**
      * When using config 'oozie.service.CallableQueueService.callable.next.eligible' true, the next other type of callables
      * should be invoked when top one in the queue is reached max concurrency.
@@ -121,6 +121,41 @@ public class TestCoordMaterializeTriggerService extends XDataTestCase {
         assertEquals(CoordinatorJob.Status.RUNNING, coordJob.getStatus());
     }
 
+    /**
+     * Test the batch materialization. The jobs should be materialized together and their lag instrumented.
+     *
+     * @throws Exception
+     */
+    public void testCoordMaterializeTriggerServicePipeline() throws Exception {
+        ConfigurationService.setBoolean(CoordMaterializeTriggerService.CONF_PIPELINE, true);
+        ConfigurationService.set(CoordMaterializeTriggerService.CONF_PIPELINE_BATCH_SIZE, "2");
+        Date start = DateUtils.parseDateOozieTZ("2009-02-01T01:00Z");
+        Date end = DateUtils.parseDateOozieTZ("2009-02-20T23:59Z");
+        final CoordinatorJobBean job1 = addRecordToCoordJobTable(CoordinatorJob.Status.PREP, start, end, false, false, 0);
+        final CoordinatorJobBean job2 = addRecordToCoordJobTable(CoordinatorJob.Status.PREP, start, end, false, false, 0);
+        final CoordinatorJobBean job3 = addRecordToCoordJobTable(CoordinatorJob.Status.PREP, start, end, false, false, 0);
+
+        Runnable runnable = new CoordMaterializeTriggerRunnable(3600, 300);
+        runnable.run();
+        waitForStatus(10000, job1, CoordinatorJob.Status.RUNNING);
+        waitForStatus(10000, job2, CoordinatorJob.Status.RUNNING);
+        waitForStatus(10000, job3, CoordinatorJob.Status.RUNNING);
+
+        for (CoordinatorJobBean job : new CoordinatorJobBean[] {job1, job2, job3}) {
+            CoordinatorJobBean coordJob = jpaService.execute(new CoordJobGetJPAExecutor(job.getId()));
+            assertEquals(CoordinatorJob.Status.RUNNING, coordJob.getStatus());
+            assertTrue(coordJob.getLastActionNumber() > 0);
+            int actions = jpaService.execute(new CoordJobGetActionsJPAExecutor(job.getId()));
+            assertEquals(coordJob.getLastActionNumber(), actions);
+        }
+        assertEquals(2L, services.get(InstrumentationService.class).get().getCounters().get("coord_job_mat")
+                .get("batches").getValue().longValue());
+
+        // the jobs were materialized years after their nominal times
+        runnable.run();
+        assertTrue(CoordMaterializeTriggerService.getMaxMaterializationLag() > 3600 * 1000L);
+    }
+
     public void testCoordMaterializeTriggerService3() throws Exception {
         Services.get().destroy();
         setSystemProperty(CoordMaterializeTriggerService.CONF_MATERIALIZATION_SYSTEM_LIMIT, "1");
@@ -0,0 +1,113 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.oozie.service;
+
+import java.io.File;
+import java.net.URI;
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.oozie.dependency.fs.LocalFSDependencyWatcher;
+import org.apache.oozie.test.XTestCase;
+import org.apache.oozie.util.Instrumentation;
+
+public class TestFSDependencyManagerService extends XTestCase {
+
+    private Services services;
+    private FSDependencyManagerService dependencyManager;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        services = new Services();
+        services.getConf().set(Services.CONF_SERVICE_EXT_CLASSES, FSDependencyManagerService.class.getName());
+        services.getConf().set(FSDependencyManagerService.CONF_WATCHER_IMPL, LocalFSDependencyWatcher.class.getName());
+        services.init();
+        dependencyManager = services.get(FSDependencyManagerService.class);
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        services.destroy();
+        super.tearDown();
+    }
+
+    public void testRegistrations() throws Exception {
+        URI dep1 = new URI(getTestCaseFileUri("2009/01/01/_SUCCESS"));
+        URI dep2 = new URI(getTestCaseFileUri("2009/01/02/_SUCCESS"));
+        Configuration conf = new Configuration(false);
+        dependencyManager.addMissingDependency(dep1, conf, getTestUser(), "job-C@1");
+        dependencyManager.addMissingDependency(dep1, conf, getTestUser(), "job-C@2");
+        dependencyManager.addMissingDependency(dep2, conf, getTestUser(), "job-C@2");
+        assertEquals(2, dependencyManager.getWaitingActions(dep1).size());
+        assertEquals(Arrays.asList("job-C@2"), dependencyManager.getWaitingActions(dep2));
+
+        assertTrue(dependencyManager.removeMissingDependency(dep1, "job-C@1"));
+        assertFalse(dependencyManager.removeMissingDependency(dep1, "job-C@1"));
+        assertEquals(Arrays.asList("job-C@2"), dependencyManager.getWaitingActions(dep1));
+
+        dependencyManager.purgeExpiredRegistrations(System.currentTimeMillis());
+        assertEquals(Arrays.asList("job-C@2"), dependencyManager.getWaitingActions(dep1));
+        long ttl = ConfigurationService.getLong(FSDependencyManagerService.CONF_REGISTRATION_TTL) * 1000;
+        dependencyManager.purgeExpiredRegistrations(System.currentTimeMillis() + ttl + 1000);
+        assertTrue(dependencyManager.getWaitingActions(dep1).isEmpty());
+        assertTrue(dependencyManager.getWaitingActions(dep2).isEmpty());
+        assertFalse(dependencyManager.removeMissingDependency(dep2, "job-C@2"));
+    }
+
+    public void testFilesAvailable() throws Exception {
+        URI dep1 = new URI(getTestCaseFileUri("2009/01/01/_SUCCESS"));
+        URI dep2 = new URI(getTestCaseFileUri("2009/01/02/_SUCCESS"));
+        Configuration conf = new Configuration(false);
+        dependencyManager.addMissingDependency(dep1, conf, getTestUser(), "job-C@1");
+        dependencyManager.addMissingDependency(dep2, conf, getTestUser(), "job-C@1");
+        dependencyManager.addMissingDependency(dep2, conf, getTestUser(), "job-C@2");
+
+        // an available dependency unregisters the waiting actions from all their dependencies
+        dependencyManager.filesAvailable(new URI(getTestCaseFileUri("2009/01/01")), Collections.singleton("_SUCCESS"));
+        assertTrue(dependencyManager.getWaitingActions(dep1).isEmpty());
+        assertEquals(Arrays.asList("job-C@2"), dependencyManager.getWaitingActions(dep2));
+
+        dependencyManager.filesAvailable(new URI(getTestCaseFileUri("2009/01/02")), Collections.singleton("other"));
+        assertEquals(Arrays.asList("job-C@2"), dependencyManager.getWaitingActions(dep2));
+    }
+
+    public void testWatcherNotification() throws Exception {
+        final URI dep = new URI(getTestCaseFileUri("2009/01/01/_SUCCESS"));
+        dependencyManager.addMissingDependency(dep, new Configuration(false), getTestUser(), "job-C@1");
+        assertEquals(Arrays.asList("job-C@1"), dependencyManager.getWaitingActions(dep));
+
+        assertTrue(new File(dep).mkdirs());
+        waitFor(30 * 1000, new Predicate() {
+            public boolean evaluate() throws Exception {
+                return dependencyManager.getWaitingActions(dep).isEmpty();
+            }
+        });
+        assertTrue(dependencyManager.getWaitingActions(dep).isEmpty());
+    }
+
+    public void testInstrumentation() throws Exception {
+        URI dep = new URI(getTestCaseFileUri("2009/01/01/_SUCCESS"));
+        dependencyManager.addMissingDependency(dep, new Configuration(false), getTestUser(), "job-C@1");
+        Instrumentation instr = services.get(InstrumentationService.class).get();
+        assertEquals(1L, instr.getVariables().get("fs_dependencies").get("waiting.actions").getValue());
+        assertEquals(1L, instr.getVariables().get("fs_dependencies").get("watched.dirs").getValue());
+    }
+}
@@ -18,6 +18,10 @@
 
 package org.apache.oozie.service;
 
+import java.util.Arrays;
+
+import org.apache.oozie.lock.CompositeLockToken;
+import org.apache.oozie.lock.LockToken;
 import org.apache.oozie.test.XTestCase;
 
 public class TestMemoryLocksService extends XTestCase {
@@ -38,4 +42,31 @@ public class TestMemoryLocksService extends XTestCase {
         assertNotNull(Services.get().get(MemoryLocksService.class));
     }
 
+    public void testGetWriteLocks() throws Exception {
+        final MemoryLocksService service = Services.get().get(MemoryLocksService.class);
+        LockToken token = service.getWriteLocks(Arrays.asList("b", "a", "b"), -1);
+        assertEquals(2, ((CompositeLockToken) token).getTokens().size());
+        assertEquals(2, service.getMemoryLocks().size());
+
+        final LockToken[] other = new LockToken[1];
+        Thread thread = new Thread() {
+            public void run() {
+                try {
+                    other[0] = service.getWriteLocks(Arrays.asList("c", "a"), 100);
+                }
+                catch (InterruptedException ex) {
+                    throw new RuntimeException(ex);
+                }
+            }
+        };
+        thread.start();
+        thread.join();
+        assertNull(other[0]);
+        // "c" was released when "a" could not be obtained
+        assertEquals(2, service.getMemoryLocks().size());
+
+        token.release();
+        assertEquals(0, service.getMemoryLocks().size());
+    }
+
 }
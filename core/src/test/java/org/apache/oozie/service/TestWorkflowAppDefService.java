@@ -0,0 +1,212 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.oozie.service;
+
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+
+import javax.persistence.EntityManager;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.oozie.WorkflowAppDefBean;
+import org.apache.oozie.WorkflowJobBean;
+import org.apache.oozie.client.OozieClient;
+import org.apache.oozie.client.WorkflowJob;
+import org.apache.oozie.command.PurgeXCommand;
+import org.apache.oozie.executor.jpa.WorkflowAppDefGetJPAExecutor;
+import org.apache.oozie.executor.jpa.WorkflowAppDefInsertJPAExecutor;
+import org.apache.oozie.executor.jpa.WorkflowAppDefLastUsedUpdateJPAExecutor;
+import org.apache.oozie.executor.jpa.WorkflowJobGetJPAExecutor;
+import org.apache.oozie.executor.jpa.WorkflowJobInsertJPAExecutor;
+import org.apache.oozie.executor.jpa.WorkflowJobQueryExecutor;
+import org.apache.oozie.executor.jpa.WorkflowJobQueryExecutor.WorkflowJobQuery;
+import org.apache.oozie.test.XDataTestCase;
+import org.apache.oozie.util.WritableUtils;
+import org.apache.oozie.util.XConfiguration;
+import org.apache.oozie.workflow.WorkflowInstance;
+import org.apache.oozie.workflow.lite.EndNodeDef;
+import org.apache.oozie.workflow.lite.LiteWorkflowApp;
+import org.apache.oozie.workflow.lite.LiteWorkflowInstance;
+import org.apache.oozie.workflow.lite.LiteWorkflowInstanceSerializer;
+import org.apache.oozie.workflow.lite.StartNodeDef;
+
+public class TestWorkflowAppDefService extends XDataTestCase {
+    private Services services;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        setSystemProperty(WorkflowAppDefService.CONF_COMPACT_INSTANCES, "true");
+        services = new Services();
+        services.init();
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        services.destroy();
+        super.tearDown();
+    }
+
+    public void testCompactInstances() throws Exception {
+        WorkflowAppDefService appDefService = services.get(WorkflowAppDefService.class);
+        assertTrue(appDefService.isCompactInstances());
+
+        WorkflowJobBean job1 = addRecordToWfJobTable(WorkflowJob.Status.RUNNING, WorkflowInstance.Status.RUNNING);
+        WorkflowJobBean job2 = addRecordToWfJobTable(WorkflowJob.Status.RUNNING, WorkflowInstance.Status.RUNNING);
+        LiteWorkflowApp app = (LiteWorkflowApp) job1.getWorkflowInstance().getApp();
+        assertEquals(1, appDefService.getCacheSize());
+
+        List<WorkflowAppDefBean> appDefs = getAppDefs();
+        assertEquals(1, appDefs.size());
+        assertEquals(app.getContentHash(), appDefs.get(0).getId());
+        assertEquals("testApp", appDefs.get(0).getAppName());
+        assertNotNull(appDefs.get(0).getCreatedTime());
+
+        JPAService jpaService = services.get(JPAService.class);
+        for (WorkflowJobBean job : new WorkflowJobBean[]{job1, job2}) {
+            WorkflowJobBean read = jpaService.execute(new WorkflowJobGetJPAExecutor(job.getId()));
+            assertTrue(LiteWorkflowInstanceSerializer.isCompact(read.getWfInstanceBlob().getBytes()));
+            assertEquals(job.getId(), read.getWorkflowInstance().getId());
+            assertEquals(WorkflowInstance.Status.RUNNING, read.getWorkflowInstance().getStatus());
+            assertSame(app, read.getWorkflowInstance().getApp());
+        }
+    }
+
+    public void testReadFromDatabase() throws Exception {
+        WorkflowJobBean job = addRecordToWfJobTable(WorkflowJob.Status.RUNNING, WorkflowInstance.Status.RUNNING);
+        String contentHash = ((LiteWorkflowApp) job.getWorkflowInstance().getApp()).getContentHash();
+
+        // a new service has an empty cache and reads the application definition from the database
+        services.get(WorkflowAppDefService.class).destroy();
+        WorkflowAppDefService appDefService = new WorkflowAppDefService();
+        appDefService.init(services);
+        assertEquals(0, appDefService.getCacheSize());
+        LiteWorkflowApp app = appDefService.get(contentHash);
+        assertEquals(contentHash, app.getContentHash());
+        assertEquals("testApp", app.getName());
+        assertEquals(1, appDefService.getCacheSize());
+        assertNull(appDefService.get("unknown"));
+        appDefService.destroy();
+    }
+
+    public void testLegacyInstanceMigration() throws Exception {
+        WorkflowJobBean job = addRecordToWfJobTable(WorkflowJob.Status.RUNNING, WorkflowInstance.Status.RUNNING);
+        LiteWorkflowInstance instance = (LiteWorkflowInstance) job.getWorkflowInstance();
+        byte[] legacy = WritableUtils.toByteArray(instance);
+        job.getWfInstanceBlob().setBytes(legacy);
+        assertEquals(job.getId(), job.getWorkflowInstance().getId());
+
+        job.setWorkflowInstance(job.getWorkflowInstance());
+        byte[] compact = job.getWfInstanceBlob().getBytes();
+        assertTrue(LiteWorkflowInstanceSerializer.isCompact(compact));
+        assertTrue(compact.length < legacy.length);
+        assertEquals(job.getId(), job.getWorkflowInstance().getId());
+    }
+
+    public void testJobConfReference() throws Exception {
+        WorkflowAppDefService appDefService = services.get(WorkflowAppDefService.class);
+        LiteWorkflowApp app = new LiteWorkflowApp("testApp", "<workflow-app/>", new StartNodeDef(
+                LiteWorkflowStoreService.LiteControlNodeHandler.class, "end")).addNode(new EndNodeDef("end",
+                LiteWorkflowStoreService.LiteControlNodeHandler.class));
+        XConfiguration jobConf = new XConfiguration();
+        jobConf.set(OozieClient.APP_PATH, getAppPath().toString());
+        jobConf.set(OozieClient.LOG_TOKEN, "testToken");
+        jobConf.set(OozieClient.USER_NAME, getTestUser());
+        WorkflowJobBean job = createWorkflow(app, jobConf, WorkflowJob.Status.RUNNING, WorkflowInstance.Status.RUNNING);
+        services.get(JPAService.class).execute(new WorkflowJobInsertJPAExecutor(job));
+        LiteWorkflowInstance instance = (LiteWorkflowInstance) job.getWorkflowInstance();
+
+        // the instance configuration is equal to the job configuration, only its digest is stored
+        assertEquals(getTestUser(), instance.getConf().get(OozieClient.USER_NAME));
+        byte[] inline = LiteWorkflowInstanceSerializer.toByteArray(instance, appDefService);
+        byte[] reference = job.getWfInstanceBlob().getBytes();
+        assertTrue(reference.length < inline.length);
+
+        // the projections reading the workflow instance do not read the job configuration, an instance written back
+        // without accessing its configuration keeps the reference, the job configuration is loaded when accessed
+        for (WorkflowJobQuery query : new WorkflowJobQuery[]{WorkflowJobQuery.GET_WORKFLOW_SUSPEND,
+                WorkflowJobQuery.GET_WORKFLOW_RERUN, WorkflowJobQuery.GET_WORKFLOW_DEFINITION,
+                WorkflowJobQuery.GET_WORKFLOW_ACTION_OP, WorkflowJobQuery.GET_WORKFLOW_KILL,
+                WorkflowJobQuery.GET_WORKFLOW_RESUME}) {
+            WorkflowJobBean read = WorkflowJobQueryExecutor.getInstance().get(query, job.getId());
+            assertNull(read.getConf());
+            WorkflowInstance readInstance = read.getWorkflowInstance();
+            assertEquals(WorkflowInstance.Status.RUNNING, readInstance.getStatus());
+            read.setWorkflowInstance(readInstance);
+            assertNull(read.getConf());
+            assertTrue(Arrays.equals(reference, read.getWfInstanceBlob().getBytes()));
+            Configuration conf = read.getWorkflowInstance().getConf();
+            assertEquals(job.getConf(), read.getConf());
+            assertEquals(instance.getConf().size(), conf.size());
+            assertEquals(getTestUser(), conf.get(OozieClient.USER_NAME));
+        }
+
+        // the instance configuration is a copy of the cached job configuration
+        Configuration conf = job.getWorkflowInstance().getConf();
+        assertNotSame(conf, appDefService.getJobConf(job.getConf(),
+                LiteWorkflowInstanceSerializer.digest(job.getConf())));
+    }
+
+    public void testPurgeUnreferencedAppDefs() throws Exception {
+        JPAService jpaService = services.get(JPAService.class);
+        WorkflowJobBean job = addRecordToWfJobTable(WorkflowJob.Status.RUNNING, WorkflowInstance.Status.RUNNING);
+        String contentHash = ((LiteWorkflowApp) job.getWorkflowInstance().getApp()).getContentHash();
+        assertEquals(contentHash, jpaService.execute(new WorkflowJobGetJPAExecutor(job.getId())).getAppDefId());
+
+        // the updates of a projection keep the reference
+        WorkflowJobBean read = WorkflowJobQueryExecutor.getInstance().get(WorkflowJobQuery.GET_WORKFLOW_SUSPEND,
+                job.getId());
+        read.setLastModifiedTime(new Date());
+        WorkflowJobQueryExecutor.getInstance().executeUpdate(
+                WorkflowJobQuery.UPDATE_WORKFLOW_STATUS_INSTANCE_MODIFIED, read);
+        assertEquals(contentHash, jpaService.execute(new WorkflowJobGetJPAExecutor(job.getId())).getAppDefId());
+
+        Date old = new Date(System.currentTimeMillis() - 2 * 24 * 60 * 60 * 1000L);
+        WorkflowAppDefBean unused = new WorkflowAppDefBean("unused", "testApp", new byte[0]);
+        unused.setLastUsedTime(old);
+        jpaService.execute(new WorkflowAppDefInsertJPAExecutor(unused));
+        jpaService.execute(new WorkflowAppDefInsertJPAExecutor(new WorkflowAppDefBean("recent", "testApp",
+                new byte[0])));
+        jpaService.execute(new WorkflowAppDefLastUsedUpdateJPAExecutor(contentHash, old));
+
+        new PurgeXCommand(1, 1, 1, 10).call();
+        assertNull(jpaService.execute(new WorkflowAppDefGetJPAExecutor("unused")));
+        assertNotNull(jpaService.execute(new WorkflowAppDefGetJPAExecutor("recent")));
+        assertNotNull(jpaService.execute(new WorkflowAppDefGetJPAExecutor(contentHash)));
+
+        // storing the definition again from another server refreshes its last used time
+        WorkflowAppDefService appDefService = new WorkflowAppDefService();
+        appDefService.init(services);
+        appDefService.put((LiteWorkflowApp) job.getWorkflowInstance().getApp());
+        assertTrue(jpaService.execute(new WorkflowAppDefGetJPAExecutor(contentHash)).getLastUsedTime().after(old));
+        appDefService.destroy();
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<WorkflowAppDefBean> getAppDefs() {
+        EntityManager em = services.get(JPAService.class).getEntityManager();
+        try {
+            return em.createNamedQuery("GET_WF_APP_DEFS").getResultList();
+        }
+        finally {
+            em.close();
+        }
+    }
+}
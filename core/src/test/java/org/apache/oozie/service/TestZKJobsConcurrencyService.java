@@ -27,6 +27,7 @@ import static junit.framework.Assert.assertEquals;
 import org.apache.oozie.client.rest.RestConstants;
 import org.apache.oozie.test.ZKXTestCase;
 import org.apache.oozie.util.ConfigUtils;
+import org.apache.oozie.util.ConsistentHashRing;
 import org.apache.oozie.util.Instrumentation;
 import org.apache.oozie.util.ZKUtils;
 
@@ -122,46 +123,25 @@ public class TestZKJobsConcurrencyService extends ZKXTestCase {
     public void testIsJobIdForThisServer() throws Exception {
         ZKJobsConcurrencyService zkjcs = new ZKJobsConcurrencyService();
         // We'll use some DummyZKXOozies here to pretend to be other Oozie servers that will influence isJobIdForThisServer()
-        // once they are running in that the indecies of the job ids will cause each job id to belong to different Oozie "servers"
+        // once they are running in that the job ids will belong to different Oozie "servers" on the ring
         DummyZKOozie dummyOozie = null;
         DummyZKOozie dummyOozie2 = null;
         try {
+            List<String> ids = getJobIds(100);
             dummyOozie = new DummyZKOozie("a", "http://blah");
             zkjcs.init(Services.get());
-            assertFalse(zkjcs.isJobIdForThisServer("0000000-130521183438837-oozie-rkan-W"));
-            assertTrue(zkjcs.isJobIdForThisServer("0000001-130521183438837-oozie-rkan-W"));
-            assertFalse(zkjcs.isJobIdForThisServer("0000002-130521183438837-oozie-rkan-W"));
-            assertTrue(zkjcs.isJobIdForThisServer("0000003-130521183438837-oozie-rkan-W"));
-            assertFalse(zkjcs.isJobIdForThisServer("0000004-130521183438837-oozie-rkan-W"));
-            assertTrue(zkjcs.isJobIdForThisServer("0000005-130521183438837-oozie-rkan-W"));
-            assertFalse(zkjcs.isJobIdForThisServer("0000006-130521183438837-oozie-rkan-W"));
+            checkJobIdsForThisServer(zkjcs, ids, "a", ZK_ID);
             assertTrue(zkjcs.isJobIdForThisServer("blah"));
             dummyOozie2 = new DummyZKOozie("b", "http://blah");
-            assertFalse(zkjcs.isJobIdForThisServer("0000000-130521183438837-oozie-rkan-W"));
-            assertTrue(zkjcs.isJobIdForThisServer("0000001-130521183438837-oozie-rkan-W"));
-            assertFalse(zkjcs.isJobIdForThisServer("0000002-130521183438837-oozie-rkan-W"));
-            assertFalse(zkjcs.isJobIdForThisServer("0000003-130521183438837-oozie-rkan-W"));
-            assertTrue(zkjcs.isJobIdForThisServer("0000004-130521183438837-oozie-rkan-W"));
-            assertFalse(zkjcs.isJobIdForThisServer("0000005-130521183438837-oozie-rkan-W"));
-            assertFalse(zkjcs.isJobIdForThisServer("0000006-130521183438837-oozie-rkan-W"));
+            checkJobIdsForThisServer(zkjcs, ids, "a", "b", ZK_ID);
             assertTrue(zkjcs.isJobIdForThisServer("blah"));
             dummyOozie.teardown();
-            assertTrue(zkjcs.isJobIdForThisServer("0000000-130521183438837-oozie-rkan-W"));
-            assertFalse(zkjcs.isJobIdForThisServer("0000001-130521183438837-oozie-rkan-W"));
-            assertTrue(zkjcs.isJobIdForThisServer("0000002-130521183438837-oozie-rkan-W"));
-            assertFalse(zkjcs.isJobIdForThisServer("0000003-130521183438837-oozie-rkan-W"));
-            assertTrue(zkjcs.isJobIdForThisServer("0000004-130521183438837-oozie-rkan-W"));
-            assertFalse(zkjcs.isJobIdForThisServer("0000005-130521183438837-oozie-rkan-W"));
-            assertTrue(zkjcs.isJobIdForThisServer("0000006-130521183438837-oozie-rkan-W"));
+            checkJobIdsForThisServer(zkjcs, ids, "b", ZK_ID);
             assertTrue(zkjcs.isJobIdForThisServer("blah"));
             dummyOozie2.teardown();
-            assertTrue(zkjcs.isJobIdForThisServer("0000000-130521183438837-oozie-rkan-W"));
-            assertTrue(zkjcs.isJobIdForThisServer("0000001-130521183438837-oozie-rkan-W"));
-            assertTrue(zkjcs.isJobIdForThisServer("0000002-130521183438837-oozie-rkan-W"));
-            assertTrue(zkjcs.isJobIdForThisServer("0000003-130521183438837-oozie-rkan-W"));
-            assertTrue(zkjcs.isJobIdForThisServer("0000004-130521183438837-oozie-rkan-W"));
-            assertTrue(zkjcs.isJobIdForThisServer("0000005-130521183438837-oozie-rkan-W"));
-            assertTrue(zkjcs.isJobIdForThisServer("0000006-130521183438837-oozie-rkan-W"));
+            for (String id : ids) {
+                assertTrue(zkjcs.isJobIdForThisServer(id));
+            }
             assertTrue(zkjcs.isJobIdForThisServer("blah"));
         }
         finally {
@@ -178,51 +158,29 @@ public class TestZKJobsConcurrencyService extends ZKXTestCase {
     public void testGetJobIdsForThisServer() throws Exception {
         ZKJobsConcurrencyService zkjcs = new ZKJobsConcurrencyService();
         // We'll use some DummyZKXOozies here to pretend to be other Oozie servers that will influence getJobIdsForThisServer()
-        // once they are running in that the indecies of the job ids will cause each job id to belong to different Oozie "servers"
+        // once they are running in that the job ids will belong to different Oozie "servers" on the ring
         DummyZKOozie dummyOozie = null;
         DummyZKOozie dummyOozie2 = null;
         try {
-            List<String> ids = new ArrayList<String>();
-            ids.add("0000000-130521183438837-oozie-rkan-W");
-            ids.add("0000001-130521183438837-oozie-rkan-W");
-            ids.add("0000002-130521183438837-oozie-rkan-W");
-            ids.add("0000003-130521183438837-oozie-rkan-W");
-            ids.add("0000004-130521183438837-oozie-rkan-W");
-            ids.add("0000005-130521183438837-oozie-rkan-W");
-            ids.add("0000006-130521183438837-oozie-rkan-W");
+            List<String> ids = getJobIds(100);
             ids.add("blah");
             dummyOozie = new DummyZKOozie("a", "http://blah");
             zkjcs.init(Services.get());
             List<String> ids2 = zkjcs.getJobIdsForThisServer(ids);
-            List<String> ids3 = new ArrayList<String>();
-            ids3.add("0000001-130521183438837-oozie-rkan-W");
-            ids3.add("0000003-130521183438837-oozie-rkan-W");
-            ids3.add("0000005-130521183438837-oozie-rkan-W");
-            ids3.add("blah");
-            assertEquals(4, ids2.size());
-            assertTrue(ids2.containsAll(ids3));
+            assertEquals(getExpectedJobIds(ids, "a", ZK_ID), ids2);
+            assertTrue(ids2.contains("blah"));
             dummyOozie2 = new DummyZKOozie("b", "http://blah");
-            ids2 = zkjcs.getJobIdsForThisServer(ids);
-            ids3 = new ArrayList<String>();
-            ids3.add("0000001-130521183438837-oozie-rkan-W");
-            ids3.add("0000004-130521183438837-oozie-rkan-W");
-            ids3.add("blah");
-            assertEquals(3, ids2.size());
+            List<String> ids3 = zkjcs.getJobIdsForThisServer(ids);
+            assertEquals(getExpectedJobIds(ids, "a", "b", ZK_ID), ids3);
+            // a joining server only takes jobs away
             assertTrue(ids2.containsAll(ids3));
+            assertTrue(ids3.size() < ids2.size());
             dummyOozie.teardown();
             ids2 = zkjcs.getJobIdsForThisServer(ids);
-            ids3 = new ArrayList<String>();
-            ids3.add("0000000-130521183438837-oozie-rkan-W");
-            ids3.add("0000002-130521183438837-oozie-rkan-W");
-            ids3.add("0000004-130521183438837-oozie-rkan-W");
-            ids3.add("0000006-130521183438837-oozie-rkan-W");
-            ids3.add("blah");
-            assertEquals(5, ids2.size());
-            assertTrue(ids2.containsAll(ids3));
+            assertEquals(getExpectedJobIds(ids, "b", ZK_ID), ids2);
             dummyOozie2.teardown();
             ids2 = zkjcs.getJobIdsForThisServer(ids);
-            assertEquals(8, ids2.size());
-            assertTrue(ids2.containsAll(ids));
+            assertEquals(ids, ids2);
         }
         finally {
             zkjcs.destroy();
@@ -235,6 +193,144 @@ public class TestZKJobsConcurrencyService extends ZKXTestCase {
         }
     }
 
+    public void testServerWithoutWeight() throws Exception {
+        ZKJobsConcurrencyService zkjcs = new ZKJobsConcurrencyService();
+        DummyZKOozie dummyOozie = null;
+        DummyZKOozie dummyOozie2 = null;
+        try {
+            List<String> ids = getJobIds(100);
+            zkjcs.init(Services.get());
+            dummyOozie = new DummyZKOozie("a", "http://blah");
+            checkJobIdsForThisServer(zkjcs, ids, "a", ZK_ID);
+            // an older Oozie server does not know the ring, all the servers assign the jobs by id modulo their number
+            dummyOozie2 = new DummyZKOozie("b", "http://blah", false, null);
+            for (int i = 0; i < ids.size(); i++) {
+                assertEquals(ids.get(i), i % 3 == 0, zkjcs.isJobIdForThisServer(ids.get(i)));
+            }
+            dummyOozie2.teardown();
+            dummyOozie2 = null;
+            checkJobIdsForThisServer(zkjcs, ids, "a", ZK_ID);
+        }
+        finally {
+            zkjcs.destroy();
+            if (dummyOozie != null) {
+                dummyOozie.teardown();
+            }
+            if (dummyOozie2 != null) {
+                dummyOozie2.teardown();
+            }
+        }
+    }
+
+    public void testServersWithoutPositiveWeight() throws Exception {
+        ConfigurationService.set(ZKUtils.ZK_WEIGHT, "0");
+        ZKJobsConcurrencyService zkjcs = new ZKJobsConcurrencyService();
+        DummyZKOozie dummyOozie = null;
+        try {
+            List<String> ids = getJobIds(100);
+            zkjcs.init(Services.get());
+            // the ring of servers of weight 0 is empty, the servers assign the jobs by id modulo their number instead
+            // of each claiming all the jobs
+            dummyOozie = new DummyZKOozie("a", "http://blah", false, "0");
+            for (int i = 0; i < ids.size(); i++) {
+                assertEquals(ids.get(i), i % 2 == 0, zkjcs.isJobIdForThisServer(ids.get(i)));
+            }
+        }
+        finally {
+            zkjcs.destroy();
+            if (dummyOozie != null) {
+                dummyOozie.teardown();
+            }
+        }
+    }
+
+    public void testActionsBelongToTheirJob() throws Exception {
+        ZKJobsConcurrencyService zkjcs = new ZKJobsConcurrencyService();
+        DummyZKOozie dummyOozie = null;
+        try {
+            dummyOozie = new DummyZKOozie("a", "http://blah");
+            zkjcs.init(Services.get());
+            for (String id : getJobIds(50)) {
+                assertEquals(zkjcs.isJobIdForThisServer(id), zkjcs.isJobIdForThisServer(id + "@action"));
+            }
+        }
+        finally {
+            zkjcs.destroy();
+            if (dummyOozie != null) {
+                dummyOozie.teardown();
+            }
+        }
+    }
+
+    public void testMembershipEpoch() throws Exception {
+        ZKJobsConcurrencyService zkjcs = new ZKJobsConcurrencyService();
+        DummyZKOozie dummyOozie = null;
+        try {
+            zkjcs.init(Services.get());
+            Instrumentation instr = new Instrumentation();
+            zkjcs.instrument(instr);
+            long epoch = zkjcs.getMembershipEpoch();
+            assertTrue(epoch > 0);
+            assertTrue(zkjcs.isJobIdForThisServer("0000001-130521183438837-oozie-rkan-W"));
+            assertEquals(epoch, zkjcs.getMembershipEpoch());
+            assertEquals(1L, instr.getTimers().get("jobsconcurrency").get(
+                    ZKJobsConcurrencyService.INSTR_OWNERSHIP_CHECK_TIMER).getValue().getTicks());
+
+            dummyOozie = new DummyZKOozie("a", "http://blah");
+            assertEquals(epoch + 1, zkjcs.getMembershipEpoch());
+            assertEquals(epoch + 1, instr.getVariables().get("jobsconcurrency").get(
+                    ZKJobsConcurrencyService.INSTR_MEMBERSHIP_EPOCH).getValue());
+            dummyOozie.teardown();
+            dummyOozie = null;
+            assertEquals(epoch + 2, zkjcs.getMembershipEpoch());
+            assertEquals(2L, (long) instr.getCounters().get("jobsconcurrency").get(
+                    ZKJobsConcurrencyService.INSTR_MEMBERSHIP_CHANGES_COUNTER).getValue());
+
+            zkjcs.getJobIdsForThisServer(getJobIds(10));
+            assertEquals(2L, instr.getTimers().get("jobsconcurrency").get(
+                    ZKJobsConcurrencyService.INSTR_OWNERSHIP_CHECK_TIMER).getValue().getTicks());
+        }
+        finally {
+            zkjcs.destroy();
+            if (dummyOozie != null) {
+                dummyOozie.teardown();
+            }
+        }
+    }
+
+    private static List<String> getJobIds(int count) {
+        List<String> ids = new ArrayList<String>();
+        for (int i = 0; i < count; i++) {
+            ids.add(String.format("%07d-130521183438837-oozie-rkan-W", i));
+        }
+        return ids;
+    }
+
+    private static List<String> getExpectedJobIds(List<String> ids, String... servers) {
+        Map<String, Integer> weights = new HashMap<String, Integer>();
+        for (String server : servers) {
+            weights.put(server, 1);
+        }
+        ConsistentHashRing ring = new ConsistentHashRing(weights,
+                ConfigurationService.getInt(ZKJobsConcurrencyService.CONF_VIRTUAL_NODES));
+        List<String> expected = new ArrayList<String>();
+        for (String id : ids) {
+            if (!id.matches("\\d{7}-.*") || ring.getNode(id).equals(ZK_ID)) {
+                expected.add(id);
+            }
+        }
+        return expected;
+    }
+
+    private static void checkJobIdsForThisServer(ZKJobsConcurrencyService zkjcs, List<String> ids, String... servers) {
+        List<String> expected = getExpectedJobIds(ids, servers);
+        // with several servers, some of the jobs belong to the others
+        assertTrue(expected.size() < ids.size());
+        for (String id : ids) {
+            assertEquals(id, expected.contains(id), zkjcs.isJobIdForThisServer(id));
+        }
+    }
+
     public void testGetServerUrls() throws Exception {
         ZKJobsConcurrencyService zkjcs = new ZKJobsConcurrencyService();
         // We'll use some DummyZKXOozies here to pretend to be other Oozie servers that will influence getServerUrls()
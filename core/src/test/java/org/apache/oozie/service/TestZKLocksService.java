@@ -18,14 +18,18 @@
 
 package org.apache.oozie.service;
 
+import java.util.Arrays;
+import java.util.Map;
 import java.util.UUID;
 
 import org.apache.curator.framework.recipes.locks.InterProcessMutex;
 import org.apache.curator.framework.recipes.locks.InterProcessReadWriteLock;
+import org.apache.oozie.lock.CompositeLockToken;
 import org.apache.oozie.lock.LockToken;
 import org.apache.oozie.lock.TestMemoryLocks;
 import org.apache.oozie.service.ZKLocksService.ZKLockToken;
 import org.apache.oozie.test.ZKXTestCase;
+import org.apache.oozie.util.Instrumentation;
 import org.apache.oozie.util.XLog;
 import org.apache.oozie.util.ZKUtils;
 import org.apache.zookeeper.KeeperException.ConnectionLossException;
@@ -110,7 +114,7 @@ public class TestZKLocksService extends ZKXTestCase {
             }
         }
 
-        protected abstract ZKLocksService.ZKLockToken getLock() throws InterruptedException;
+        protected abstract LockToken getLock() throws InterruptedException;
     }
 
     public class ReadLocker extends Locker {
@@ -120,8 +124,8 @@ public class TestZKLocksService extends ZKXTestCase {
         }
 
         @Override
-        protected ZKLocksService.ZKLockToken getLock() throws InterruptedException {
-            return (ZKLocksService.ZKLockToken)zkls.getReadLock(name, timeout);
+        protected LockToken getLock() throws InterruptedException {
+            return zkls.getReadLock(name, timeout);
         }
     }
 
@@ -132,8 +136,8 @@ public class TestZKLocksService extends ZKXTestCase {
         }
 
         @Override
-        protected ZKLocksService.ZKLockToken getLock() throws InterruptedException {
-            return (ZKLocksService.ZKLockToken)zkls.getWriteLock(name, timeout);
+        protected LockToken getLock() throws InterruptedException {
+            return zkls.getWriteLock(name, timeout);
         }
     }
 
@@ -607,6 +611,173 @@ public class TestZKLocksService extends ZKXTestCase {
         }
     }
 
+    public void testLeaseReentersWithoutZooKeeper() throws Exception {
+        ConfigurationService.set(ZKLocksService.LEASE_DURATION, "60000");
+        final String path = UUID.randomUUID().toString();
+        ZKLocksService zkls = new ZKLocksService();
+        try {
+            zkls.init(Services.get());
+            Instrumentation instr = new Instrumentation();
+            zkls.instrument(instr);
+            // i.e. signal, action start and action end commands of a workflow job
+            for (int i = 0; i < 3; i++) {
+                LockToken lock = zkls.getWriteLock(path, TestMemoryLocks.DEFAULT_LOCK_TIMEOUT);
+                assertNotNull(lock);
+                lock.release();
+            }
+            LockToken lock = zkls.getReadLock(path, TestMemoryLocks.DEFAULT_LOCK_TIMEOUT);
+            assertNotNull(lock);
+            lock.release();
+            assertEquals(1L, getVariable(instr, "leases.acquired"));
+            assertEquals(3L, getVariable(instr, "leases.reentered"));
+            assertEquals(1, getVariable(instr, "leases"));
+            assertNotNull(getClient().checkExists().forPath(ZKLocksService.LEASES_NODE + "/" + path));
+            assertTrue(zkls.getLocks().isEmpty());
+        }
+        finally {
+            zkls.destroy();
+        }
+        assertNull(getClient().checkExists().forPath(ZKLocksService.LEASES_NODE + "/" + path));
+    }
+
+    public void testLeaseExcludesOtherOozies() throws Exception {
+        ConfigurationService.set(ZKLocksService.LEASE_DURATION, "60000");
+        final String path = UUID.randomUUID().toString();
+        ZKLocksService zkls1 = new ZKLocksService();
+        ZKLocksService zkls2 = new ZKLocksService();
+        try {
+            zkls1.init(Services.get());
+            zkls2.init(Services.get());
+            LockToken lock = zkls1.getWriteLock(path, TestMemoryLocks.DEFAULT_LOCK_TIMEOUT);
+            lock.release();
+            assertNull(zkls2.getWriteLock(path, 0));
+            assertNull(zkls2.getReadLock(path, 500));
+            zkls1.destroy();
+            lock = zkls2.getWriteLock(path, TestMemoryLocks.DEFAULT_LOCK_TIMEOUT);
+            assertNotNull(lock);
+            lock.release();
+        }
+        finally {
+            zkls1.destroy();
+            zkls2.destroy();
+        }
+    }
+
+    public void testLeaseExpires() throws Exception {
+        ConfigurationService.set(ZKLocksService.LEASE_DURATION, "200");
+        final String path = UUID.randomUUID().toString();
+        ZKLocksService zkls1 = new ZKLocksService();
+        ZKLocksService zkls2 = new ZKLocksService();
+        try {
+            zkls1.init(Services.get());
+            zkls2.init(Services.get());
+            LockToken lock = zkls1.getWriteLock(path, TestMemoryLocks.DEFAULT_LOCK_TIMEOUT);
+            assertNull(zkls2.getWriteLock(path, 0));
+            lock.release();
+            lock = zkls2.getWriteLock(path, TestMemoryLocks.DEFAULT_LOCK_TIMEOUT);
+            assertNotNull(lock);
+            assertNull(zkls1.getWriteLock(path, 0));
+            lock.release();
+        }
+        finally {
+            zkls1.destroy();
+            zkls2.destroy();
+        }
+    }
+
+    public void testLeaseSharedByThreads() throws Exception {
+        ConfigurationService.set(ZKLocksService.LEASE_DURATION, "60000");
+        final String path = UUID.randomUUID().toString();
+        final ZKLocksService zkls = new ZKLocksService();
+        try {
+            zkls.init(Services.get());
+            StringBuffer sb = new StringBuffer("");
+            Locker l1 = new WriteLocker(path, 1, -1, sb, zkls);
+            Locker l2 = new WriteLocker(path, 2, -1, sb, zkls);
+            new Thread(l1).start();
+            sleep(500);
+            new Thread(l2).start();
+            sleep(500);
+            l1.finish();
+            sleep(500);
+            l2.finish();
+            sleep(500);
+            assertEquals(path + ":1-L " + path + ":1-U " + path + ":2-L " + path + ":2-U", sb.toString().trim());
+        }
+        finally {
+            zkls.destroy();
+        }
+    }
+
+    public void testBatchedLeases() throws Exception {
+        ConfigurationService.set(ZKLocksService.LEASE_DURATION, "60000");
+        String prefix = UUID.randomUUID().toString();
+        String a = prefix + "-a";
+        String b = prefix + "-b";
+        String c = prefix + "-c";
+        String d = prefix + "-d";
+        ZKLocksService zkls1 = new ZKLocksService();
+        ZKLocksService zkls2 = new ZKLocksService();
+        try {
+            zkls1.init(Services.get());
+            zkls2.init(Services.get());
+            Instrumentation instr = new Instrumentation();
+            zkls1.instrument(instr);
+
+            LockToken lock = zkls1.getWriteLocks(Arrays.asList(c, a, b), TestMemoryLocks.DEFAULT_LOCK_TIMEOUT);
+            assertEquals(3, ((CompositeLockToken) lock).getTokens().size());
+            assertEquals(1L, getVariable(instr, "leases.batches"));
+            assertEquals(3L, getVariable(instr, "leases.acquired"));
+            for (String resource : Arrays.asList(a, b, c)) {
+                assertNotNull(getClient().checkExists().forPath(ZKLocksService.LEASES_NODE + "/" + resource));
+            }
+            lock.release();
+
+            // the leases are kept, no ZooKeeper call
+            lock = zkls1.getWriteLocks(Arrays.asList(a, b), TestMemoryLocks.DEFAULT_LOCK_TIMEOUT);
+            assertEquals(1L, getVariable(instr, "leases.batches"));
+            assertEquals(2L, getVariable(instr, "leases.reentered"));
+            lock.release();
+
+            // all or none
+            assertNull(zkls2.getWriteLocks(Arrays.asList(c, d), 500));
+            assertNull(getClient().checkExists().forPath(ZKLocksService.LEASES_NODE + "/" + d));
+            assertEquals(0, zkls2.getMemoryLocks().size());
+
+            zkls1.destroy();
+            lock = zkls2.getWriteLocks(Arrays.asList(c, d), TestMemoryLocks.DEFAULT_LOCK_TIMEOUT);
+            assertNotNull(lock);
+            lock.release();
+        }
+        finally {
+            zkls1.destroy();
+            zkls2.destroy();
+        }
+    }
+
+    public void testBatchedLocksWithoutLeases() throws Exception {
+        String prefix = UUID.randomUUID().toString();
+        ZKLocksService zkls = new ZKLocksService();
+        try {
+            zkls.init(Services.get());
+            LockToken lock = zkls.getWriteLocks(Arrays.asList(prefix + "-b", prefix + "-a"),
+                    TestMemoryLocks.DEFAULT_LOCK_TIMEOUT);
+            assertEquals(2, ((CompositeLockToken) lock).getTokens().size());
+            assertTrue(zkls.getLocks().get(prefix + "-a").writeLock().isAcquiredInThisProcess());
+            assertTrue(zkls.getLocks().get(prefix + "-b").writeLock().isAcquiredInThisProcess());
+            lock.release();
+            checkLockRelease(prefix + "-a", zkls);
+            checkLockRelease(prefix + "-b", zkls);
+        }
+        finally {
+            zkls.destroy();
+        }
+    }
+
+    private static Object getVariable(Instrumentation instr, String name) {
+        Map<String, Instrumentation.Element<Instrumentation.Variable>> variables = instr.getVariables().get("locks");
+        return variables.get(name).getValue();
+    }
 
     private void checkLockRelease(String path, ZKLocksService zkls) {
         if (zkls.getLocks().get(path) == null) {
@@ -815,6 +815,45 @@ public class TestSLACalculatorMemory extends XDataTestCase {
         assertFalse(slaCalcMemory.isJobIdInHistorySet(job1.getId()));
     }
 
+    public void testHistoryPurgeInBatches() throws Exception {
+        Configuration conf = new Configuration(Services.get().get(ConfigurationService.class).getConf());
+        conf.setInt(SLAService.CONF_SLA_HISTORY_PURGE_BATCH_SIZE, 1);
+        conf.setInt(SLAService.CONF_SLA_HISTORY_PURGE_THREADS, 2);
+        SLACalculatorMemory slaCalcMemory = new SLACalculatorMemory();
+        slaCalcMemory.init(conf);
+        WorkflowJobBean job1 = addRecordToWfJobTable(WorkflowJob.Status.SUCCEEDED, WorkflowInstance.Status.SUCCEEDED);
+        WorkflowJobBean job2 = addRecordToWfJobTable(WorkflowJob.Status.RUNNING, WorkflowInstance.Status.RUNNING);
+        SLARegistrationBean slaRegBean = _createSLARegistration(job1.getId(), AppType.WORKFLOW_JOB);
+        slaRegBean.setExpectedStart(new Date(System.currentTimeMillis() - 3600 * 1000));
+        slaRegBean.setExpectedDuration(1000);
+        slaRegBean.setExpectedEnd(new Date(System.currentTimeMillis() - 3600 * 1000));
+        slaCalcMemory.addRegistration(job1.getId(), slaRegBean);
+        slaCalcMemory.updateJobSla(job1.getId());
+        slaCalcMemory.historySet.add(job1.getId());
+        slaCalcMemory.historySet.add(job2.getId());
+        slaCalcMemory.historySet.add("0000000-000000000000000-oozie-none-W");
+
+        Instrumentation instr = Services.get().get(InstrumentationService.class).get();
+        long purged = getCounter(instr, SLACalculatorMemory.SLA_HISTORY_PURGED);
+        long checked = getCounter(instr, SLACalculatorMemory.SLA_HISTORY_CHECKED);
+        slaCalcMemory.new HistoryPurgeWorker().run();
+        assertFalse(slaCalcMemory.isJobIdInHistorySet(job1.getId()));
+        assertTrue(slaCalcMemory.isJobIdInHistorySet(job2.getId()));
+        assertFalse(slaCalcMemory.isJobIdInHistorySet("0000000-000000000000000-oozie-none-W"));
+        assertEquals(8, SLASummaryQueryExecutor.getInstance().get(SLASummaryQuery.GET_SLA_SUMMARY, job1.getId())
+                .getEventProcessed());
+        assertEquals(checked + 3, getCounter(instr, SLACalculatorMemory.SLA_HISTORY_CHECKED));
+        assertEquals(purged + 2, getCounter(instr, SLACalculatorMemory.SLA_HISTORY_PURGED));
+        assertEquals(1L, (long) (Long) (Object) instr.getVariables().get(SLACalculatorMemory.INSTRUMENTATION_GROUP)
+                .get(SLACalculatorMemory.SLA_HISTORY_BACKLOG).getValue());
+    }
+
+    private long getCounter(Instrumentation instr, String name) {
+        Map<String, Instrumentation.Element<Long>> counters = instr.getCounters()
+                .get(SLACalculatorMemory.INSTRUMENTATION_GROUP);
+        return (counters == null || counters.get(name) == null) ? 0 : counters.get(name).getValue();
+    }
+
     public void testErrorLoggingWithJobIdPrefix() throws Exception {
         SLAService slaService = Services.get().get(SLAService.class);
         SLACalculator slaCalculator = slaService.getSLACalculator();
@@ -990,6 +1029,65 @@ public class TestSLACalculatorMemory extends XDataTestCase {
         assertEquals(slaSummaryBean.getJobStatus(), WorkflowInstance.Status.SUCCEEDED.toString());
     }
 
+    @Test
+    public void testCompactMap() throws Exception {
+        SLACalculatorMemory slaCalcMemory = new SLACalculatorMemory();
+        EventHandlerService ehs = Services.get().get(EventHandlerService.class);
+        slaCalcMemory.init(Services.get().get(ConfigurationService.class).getConf());
+        WorkflowJobBean job1 = addRecordToWfJobTable(WorkflowJob.Status.PREP, WorkflowInstance.Status.PREP);
+        SLARegistrationBean slaRegBean = _createSLARegistration(job1.getId(), AppType.WORKFLOW_JOB);
+        slaRegBean.setAppName("app-name");
+        slaRegBean.setUser("user");
+        slaRegBean.setExpectedStart(new Date(System.currentTimeMillis() - 1 * 1 * 3600 * 1000)); // 1 hour back
+        slaRegBean.setExpectedDuration(2 * 3600 * 1000);
+        slaRegBean.setExpectedEnd(new Date(System.currentTimeMillis() + 1 * 1 * 3600 * 1000)); // 1 hour ahead
+        slaRegBean.setNotificationMsg("notificationMsg");
+        slaRegBean.setUpstreamApps("upstreamApps");
+        slaRegBean.setJobData("jobData");
+        slaRegBean.setAlertContact("a@abc.com");
+        slaRegBean.setAlertEvents("START_MISS");
+        String jobId = slaRegBean.getId();
+        slaCalcMemory.addRegistration(jobId, slaRegBean);
+
+        SLACalcStatus slaCalc = slaCalcMemory.get(jobId);
+        assertTrue(slaCalc.isCompact());
+        assertEquals("app-name", slaCalc.getAppName());
+        assertEquals("user", slaCalc.getUser());
+        assertEquals("a@abc.com", slaCalc.getAlertContact());
+        assertNull(slaCalc.getNotificationMsg());
+        assertNull(slaCalc.getJobData());
+        assertNull(slaCalc.getSLASummaryBean());
+        long estimatedMemory = (Long) (Object) instrumentation.getVariables().get(SLACalculatorMemory.INSTRUMENTATION_GROUP)
+                .get(SLACalculatorMemory.SLA_MAP_MEMORY).getValue();
+        assertEquals(slaCalc.getEstimatedSize(), estimatedMemory);
+        assertTrue(estimatedMemory < new SLACalcStatus(slaRegBean).getEstimatedSize());
+
+        // the notification fields are read when the event is sent
+        slaCalcMemory.updateJobSla(jobId);
+        assertEquals(1, ehs.getEventQueue().size());
+        SLACalcStatus event = (SLACalcStatus) ehs.getEventQueue().poll();
+        assertEquals(SLAEvent.EventStatus.START_MISS, event.getEventStatus());
+        assertEquals("notificationMsg", event.getNotificationMsg());
+        assertEquals("upstreamApps", event.getUpstreamApps());
+        assertEquals("jobData", event.getJobData());
+        assertEquals("a@abc.com", event.getAlertContact());
+        assertEquals("START_MISS", event.getAlertEvents());
+        assertEquals("app-name", event.getAppName());
+        assertTrue(slaCalcMemory.get(jobId).isCompact());
+
+        // the fields left in the DB are kept when alerts are disabled
+        slaCalcMemory.disableAlert(Arrays.asList(jobId));
+        SLARegistrationBean regBean = SLARegistrationQueryExecutor.getInstance().get(SLARegQuery.GET_SLA_REG_ALL,
+                jobId);
+        assertEquals("a@abc.com", regBean.getAlertContact());
+        assertEquals("notificationMsg", regBean.getNotificationMsg());
+        assertEquals("true", regBean.getSLAConfigMap().get(OozieClient.SLA_DISABLE_ALERT));
+        slaCalcMemory.enableAlert(Arrays.asList(jobId));
+        regBean = SLARegistrationQueryExecutor.getInstance().get(SLARegQuery.GET_SLA_REG_ALL, jobId);
+        assertEquals("START_MISS", regBean.getAlertEvents());
+        assertFalse(regBean.getSLAConfigMap().containsKey(OozieClient.SLA_DISABLE_ALERT));
+    }
+
     public void testSingleAddUpdateRemoveInstrumentedCorrectly() throws Exception {
         SLACalculatorMemory slaCalcMemory = new SLACalculatorMemory();
         slaCalcMemory.init(Services.get().get(ConfigurationService.class).getConf());
@@ -0,0 +1,176 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.oozie.sla;
+
+import java.text.SimpleDateFormat;
+import java.util.Date;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.oozie.AppType;
+import org.apache.oozie.WorkflowJobBean;
+import org.apache.oozie.client.WorkflowJob;
+import org.apache.oozie.client.event.JobEvent.EventStatus;
+import org.apache.oozie.executor.jpa.SLASummaryQueryExecutor;
+import org.apache.oozie.executor.jpa.SLASummaryQueryExecutor.SLASummaryQuery;
+import org.apache.oozie.executor.jpa.WorkflowJobQueryExecutor;
+import org.apache.oozie.executor.jpa.WorkflowJobQueryExecutor.WorkflowJobQuery;
+import org.apache.oozie.service.ConfigurationService;
+import org.apache.oozie.service.Services;
+import org.apache.oozie.sla.service.SLAService;
+import org.apache.oozie.test.XDataTestCase;
+import org.apache.oozie.workflow.WorkflowInstance;
+
+public class TestSLACalculatorTimingWheel extends XDataTestCase {
+    private static final long HOUR = 3600 * 1000;
+    private Services services;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        services = new Services();
+        Configuration conf = services.get(ConfigurationService.class).getConf();
+        conf.set(Services.CONF_SERVICE_EXT_CLASSES, "org.apache.oozie.service.EventHandlerService," +
+                "org.apache.oozie.sla.service.SLAService," +
+                "org.apache.oozie.service.InstrumentationService");
+        conf.setInt(SLAService.CONF_SLA_CHECK_INTERVAL, 600);
+        services.init();
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        services.destroy();
+        super.tearDown();
+    }
+
+    public void testNextDeadline() throws Exception {
+        long now = System.currentTimeMillis();
+        SLARegistrationBean reg = _createSLARegistration("job-1-W", now + HOUR, 2 * HOUR, now + 3 * HOUR);
+        SLACalcStatus slaCalc = new SLACalcStatus(reg);
+        assertEquals(now + HOUR + 11, SLACalculatorTimingWheel.getNextDeadline(slaCalc, 10));
+
+        // start processed, duration only known once started
+        slaCalc.setEventProcessed(1);
+        assertEquals(now + 3 * HOUR + 11, SLACalculatorTimingWheel.getNextDeadline(slaCalc, 10));
+        slaCalc.setActualStart(new Date(now));
+        assertEquals(now + 2 * HOUR + 11, SLACalculatorTimingWheel.getNextDeadline(slaCalc, 10));
+
+        // only the duration left, waiting for the job to start
+        slaCalc.setEventProcessed(5);
+        slaCalc.setActualStart(null);
+        assertEquals(Long.MAX_VALUE, SLACalculatorTimingWheel.getNextDeadline(slaCalc, 10));
+
+        // due right away
+        slaCalc.setEventProcessed(0);
+        reg.setExpectedStart(null);
+        assertEquals(0, SLACalculatorTimingWheel.getNextDeadline(slaCalc, 10));
+        reg.setExpectedStart(new Date(now + HOUR));
+        reg.setExpectedDuration(-1);
+        assertEquals(0, SLACalculatorTimingWheel.getNextDeadline(slaCalc, 10));
+        slaCalc.setSLARegistrationBean(null);
+        assertEquals(0, SLACalculatorTimingWheel.getNextDeadline(slaCalc, 10));
+    }
+
+    public void testOnlyDueJobsChecked() throws Exception {
+        SLACalculatorTimingWheel slaCalc = new SLACalculatorTimingWheel();
+        slaCalc.init(Services.get().get(ConfigurationService.class).getConf());
+        long now = System.currentTimeMillis();
+        WorkflowJobBean job1 = addRecordToWfJobTable(WorkflowJob.Status.PREP, WorkflowInstance.Status.PREP);
+        WorkflowJobBean job2 = addRecordToWfJobTable(WorkflowJob.Status.PREP, WorkflowInstance.Status.PREP);
+        slaCalc.addRegistration(job1.getId(),
+                _createSLARegistration(job1.getId(), now - HOUR, 2 * HOUR, now - HOUR));
+        slaCalc.addRegistration(job2.getId(),
+                _createSLARegistration(job2.getId(), now + HOUR, 2 * HOUR, now + 2 * HOUR));
+        assertEquals(2, slaCalc.size());
+        assertEquals(2, slaCalc.getScheduledCount());
+
+        slaCalc.updateAllSlaStatus();
+        // both start miss and end miss (101) for the due job
+        assertEquals(5, getEventProcessed(job1.getId()));
+        assertEquals(0, getEventProcessed(job2.getId()));
+        // the due job waits for its start to check the duration
+        assertEquals(2, slaCalc.size());
+        assertEquals(1, slaCalc.getScheduledCount());
+
+        // processed by another server, not checked until due
+        SLASummaryBean summaryBean = new SLASummaryBean();
+        summaryBean.setId(job2.getId());
+        summaryBean.setEventProcessed(8);
+        SLASummaryQueryExecutor.getInstance().executeUpdate(SLASummaryQuery.UPDATE_SLA_SUMMARY_EVENTPROCESSED,
+                summaryBean);
+        slaCalc.updateAllSlaStatus();
+        assertTrue(slaCalc.isJobIdInSLAMap(job2.getId()));
+
+        SimpleDateFormat sdf = new SimpleDateFormat("yyyy-MM-dd");
+        job1.setStatusStr(WorkflowJob.Status.SUCCEEDED.toString());
+        job1.setLastModifiedTime(new Date());
+        job1.setStartTime(sdf.parse("2012-01-01"));
+        job1.setEndTime(sdf.parse("2012-01-02"));
+        WorkflowJobQueryExecutor.getInstance().executeUpdate(
+                WorkflowJobQuery.UPDATE_WORKFLOW_STATUS_INSTANCE_MOD_START_END, job1);
+        slaCalc.addJobStatus(job1.getId(), WorkflowJob.Status.SUCCEEDED.toString(), EventStatus.SUCCESS,
+                sdf.parse("2012-01-01"), sdf.parse("2012-01-02"));
+        assertEquals(8, getEventProcessed(job1.getId()));
+        assertFalse(slaCalc.isJobIdInSLAMap(job1.getId()));
+        assertEquals(1, slaCalc.getScheduledCount());
+
+        slaCalc.clear();
+        assertEquals(0, slaCalc.getScheduledCount());
+    }
+
+    public void testFullCheck() throws Exception {
+        Configuration conf = new Configuration(Services.get().get(ConfigurationService.class).getConf());
+        conf.setInt(SLACalculatorTimingWheel.CONF_FULL_CHECK_INTERVAL, 0);
+        conf.setInt(SLACalculatorTimingWheel.CONF_BATCH_SIZE, 1);
+        SLACalculatorTimingWheel slaCalc = new SLACalculatorTimingWheel();
+        slaCalc.init(conf);
+        long now = System.currentTimeMillis();
+        WorkflowJobBean job1 = addRecordToWfJobTable(WorkflowJob.Status.PREP, WorkflowInstance.Status.PREP);
+        WorkflowJobBean job2 = addRecordToWfJobTable(WorkflowJob.Status.PREP, WorkflowInstance.Status.PREP);
+        slaCalc.addRegistration(job1.getId(),
+                _createSLARegistration(job1.getId(), now + HOUR, 2 * HOUR, now + 2 * HOUR));
+        slaCalc.addRegistration(job2.getId(),
+                _createSLARegistration(job2.getId(), now + HOUR, 2 * HOUR, now + 2 * HOUR));
+
+        // processed by another server
+        SLASummaryBean summaryBean = new SLASummaryBean();
+        summaryBean.setId(job2.getId());
+        summaryBean.setEventProcessed(8);
+        SLASummaryQueryExecutor.getInstance().executeUpdate(SLASummaryQuery.UPDATE_SLA_SUMMARY_EVENTPROCESSED,
+                summaryBean);
+        slaCalc.updateAllSlaStatus();
+        assertTrue(slaCalc.isJobIdInSLAMap(job1.getId()));
+        assertFalse(slaCalc.isJobIdInSLAMap(job2.getId()));
+        assertEquals(1, slaCalc.getScheduledCount());
+    }
+
+    private int getEventProcessed(String jobId) throws Exception {
+        return SLASummaryQueryExecutor.getInstance().get(SLASummaryQuery.GET_SLA_SUMMARY, jobId).getEventProcessed();
+    }
+
+    private SLARegistrationBean _createSLARegistration(String jobId, long expectedStart, long expectedDuration,
+            long expectedEnd) {
+        SLARegistrationBean bean = new SLARegistrationBean();
+        bean.setId(jobId);
+        bean.setAppType(AppType.WORKFLOW_JOB);
+        bean.setExpectedStart(new Date(expectedStart));
+        bean.setExpectedDuration(expectedDuration);
+        bean.setExpectedEnd(new Date(expectedEnd));
+        return bean;
+    }
+}
@@ -70,10 +70,13 @@ import org.apache.log4j.AppenderSkeleton;
 import org.apache.log4j.spi.LoggingEvent;
 import org.apache.oozie.BundleActionBean;
 import org.apache.oozie.BundleJobBean;
+import org.apache.oozie.CompressionDictionaryBean;
 import org.apache.oozie.CoordinatorActionBean;
 import org.apache.oozie.CoordinatorJobBean;
+import org.apache.oozie.PurgeCheckpointBean;
 import org.apache.oozie.SLAEventBean;
 import org.apache.oozie.WorkflowActionBean;
+import org.apache.oozie.WorkflowAppDefBean;
 import org.apache.oozie.WorkflowJobBean;
 import org.apache.oozie.dependency.FSURIHandler;
 import org.apache.oozie.dependency.HCatURIHandler;
@@ -861,6 +864,10 @@ public abstract class XTestCase extends TestCase {
 
         final int wfjSize = getCountAndRemoveAll(entityManager, "GET_WORKFLOWS", WorkflowJobBean.class);
         final int wfaSize = getCountAndRemoveAll(entityManager, "GET_ACTIONS", WorkflowActionBean.class);
+        final int wfdSize = getCountAndRemoveAll(entityManager, "GET_WF_APP_DEFS", WorkflowAppDefBean.class);
+        final int dictSize = getCountAndRemoveAll(entityManager, "GET_COMPRESSION_DICTS",
+                CompressionDictionaryBean.class);
+        final int pcSize = getCountAndRemoveAll(entityManager, "GET_PURGE_CHECKPOINTS", PurgeCheckpointBean.class);
         final int cojSize = getCountAndRemoveAll(entityManager, "GET_COORD_JOBS", CoordinatorJobBean.class);
         final int coaSize = getCountAndRemoveAll(entityManager, "GET_COORD_ACTIONS", CoordinatorActionBean.class);
         final int bjSize = getCountAndRemoveAll(entityManager, "GET_BUNDLE_JOBS", BundleJobBean.class);
@@ -884,6 +891,9 @@ public abstract class XTestCase extends TestCase {
 
         log.info(wfjSize + " entries in WF_JOBS removed from DB!");
         log.info(wfaSize + " entries in WF_ACTIONS removed from DB!");
+        log.info(wfdSize + " entries in WF_APP_DEFS removed from DB!");
+        log.info(dictSize + " entries in COMPRESSION_DICTS removed from DB!");
+        log.info(pcSize + " entries in PURGE_CHECKPOINTS removed from DB!");
         log.info(cojSize + " entries in COORD_JOBS removed from DB!");
         log.info(coaSize + " entries in COORD_ACTIONS removed from DB!");
         log.info(bjSize + " entries in BUNDLE_JOBS removed from DB!");
@@ -177,6 +177,7 @@ public abstract class ZKXTestCase extends XDataTestCase {
         private String zkId;
         private ServiceDiscovery<Map> sDiscovery;
         private String metadataUrl;
+        private String weight;
         private LeaderLatch leaderLatch = null;
 
         /**
@@ -199,8 +200,23 @@ public abstract class ZKXTestCase extends XDataTestCase {
          * @throws Exception
          */
         public DummyZKOozie(String zkId, String metadataUrl, boolean joinConcurrencyLeaderElection) throws Exception {
+            this(zkId, metadataUrl, joinConcurrencyLeaderElection, "1");
+        }
+
+        /**
+         * Creates a DummyZKOozie.
+         *
+         * @param zkId The ID of this new Oozie "server"
+         * @param metadataUrl The URL to advertise for this "server"
+         * @param joinConcurrencyLeaderElection true if should join ZKJobsConcurrencyService leader election; false if not
+         * @param weight The weight to advertise for this "server", null to advertise none like older Oozie servers
+         * @throws Exception
+         */
+        public DummyZKOozie(String zkId, String metadataUrl, boolean joinConcurrencyLeaderElection, String weight)
+                throws Exception {
             this.zkId = zkId;
             this.metadataUrl = metadataUrl;
+            this.weight = weight;
             createClient();
             advertiseService();
             if (joinConcurrencyLeaderElection) {
@@ -275,6 +291,9 @@ public abstract class ZKXTestCase extends XDataTestCase {
             Map<String, String> map = new HashMap<String, String>();
             map.put("OOZIE_ID", zkId);
             map.put("OOZIE_URL", metadataUrl);
+            if (weight != null) {
+                map.put("OOZIE_WEIGHT", weight);
+            }
 
             return ServiceInstance.<Map>builder()
                 .name("servers")
@@ -0,0 +1,412 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.oozie.util;
+
+import junit.framework.TestCase;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.oozie.util.PriorityDelayQueue.QueueElement;
+import org.apache.oozie.util.TestPriorityDelayQueue.TestQueueElement;
+
+public class TestConcurrentPriorityDelayQueue extends TestCase {
+
+    public void testBoundUnboundQueueSize() {
+        PriorityDelayQueue<Integer> q = new ConcurrentPriorityDelayQueue<Integer>(1, 1000, TimeUnit.MILLISECONDS, -1);
+        assertEquals(1, q.getPriorities());
+        assertEquals(-1, q.getMaxSize());
+        assertEquals(1000, q.getMaxWait(TimeUnit.MILLISECONDS));
+        assertEquals(0, q.size());
+        assertTrue(q.offer(new TestQueueElement<Integer>(1)));
+        assertTrue(q.offer(new TestQueueElement<Integer>(1)));
+        assertTrue(q.offer(new TestQueueElement<Integer>(1, 0, 1000, TimeUnit.MILLISECONDS)));
+        assertEquals(3, q.size());
+
+        q = new ConcurrentPriorityDelayQueue<Integer>(1, 1000, TimeUnit.MILLISECONDS, 1);
+        assertEquals(1, q.getMaxSize());
+        assertTrue(q.offer(new TestQueueElement<Integer>(1)));
+        assertEquals(1, q.size());
+        assertFalse(q.offer(new TestQueueElement<Integer>(1)));
+        assertEquals(1, q.size());
+        assertNotNull(q.poll());
+        assertEquals(0, q.size());
+        assertTrue(q.offer(new TestQueueElement<Integer>(1)));
+        assertEquals(1, q.size());
+    }
+
+    public void testOfferInvalid() {
+        PriorityDelayQueue<Integer> q = new ConcurrentPriorityDelayQueue<Integer>(2, 1000, TimeUnit.MILLISECONDS, -1);
+        try {
+            q.offer(new TestQueueElement<Integer>(1, 2, 0, TimeUnit.MILLISECONDS));
+            fail();
+        }
+        catch (IllegalArgumentException ex) {
+        }
+        QueueElement<Integer> e = new TestQueueElement<Integer>(1);
+        assertTrue(q.offer(e));
+        try {
+            q.offer(e);
+            fail();
+        }
+        catch (IllegalStateException ex) {
+        }
+        assertEquals(1, q.size());
+    }
+
+    public void testPoll() throws Exception {
+        PriorityDelayQueue<Integer> q = new ConcurrentPriorityDelayQueue<Integer>(3, 500, TimeUnit.MILLISECONDS, -1);
+
+        q.offer(new TestQueueElement<Integer>(1));
+        assertEquals((Integer) 1, q.poll().getElement().call());
+        assertEquals(0, q.size());
+
+        q.offer(new TestQueueElement<Integer>(2, 0, 10, TimeUnit.MILLISECONDS));
+        assertNull(q.poll());
+        assertEquals(1, q.size());
+        Thread.sleep(11);
+        assertEquals((Integer) 2, q.poll().getElement().call());
+        assertEquals(0, q.size());
+
+        q.offer(new TestQueueElement<Integer>(10, 0, 0, TimeUnit.MILLISECONDS));
+        q.offer(new TestQueueElement<Integer>(30, 2, 0, TimeUnit.MILLISECONDS));
+        q.offer(new TestQueueElement<Integer>(20, 1, 0, TimeUnit.MILLISECONDS));
+        assertEquals((Integer) 30, q.poll().getElement().call());
+        assertEquals((Integer) 20, q.poll().getElement().call());
+        assertEquals((Integer) 10, q.poll().getElement().call());
+        assertNull(q.poll());
+
+        // same priority, elements are served in the order they become ready
+        q.offer(new TestQueueElement<Integer>(1, 1, 0, TimeUnit.MILLISECONDS));
+        q.offer(new TestQueueElement<Integer>(2, 1, 0, TimeUnit.MILLISECONDS));
+        q.offer(new TestQueueElement<Integer>(3, 1, 0, TimeUnit.MILLISECONDS));
+        assertEquals((Integer) 1, q.poll().getElement().call());
+        assertEquals((Integer) 2, q.poll().getElement().call());
+        assertEquals((Integer) 3, q.poll().getElement().call());
+
+        long start = System.currentTimeMillis();
+        q.offer(new TestQueueElement<Integer>(10, 0, 100, TimeUnit.MILLISECONDS));
+        q.offer(new TestQueueElement<Integer>(30, 2, 200, TimeUnit.MILLISECONDS));
+        q.offer(new TestQueueElement<Integer>(20, 1, 0, TimeUnit.MILLISECONDS));
+        assertEquals((Integer) 20, q.poll().getElement().call());
+        Thread.sleep(101 - (System.currentTimeMillis() - start));
+        assertEquals((Integer) 10, q.poll().getElement().call());
+        assertNull(q.poll());
+        Thread.sleep(201 - (System.currentTimeMillis() - start));
+        assertEquals((Integer) 30, q.poll().getElement().call());
+        assertEquals(0, q.size());
+    }
+
+    public void testPeek() throws Exception {
+        PriorityDelayQueue<Integer> q = new ConcurrentPriorityDelayQueue<Integer>(3, 500, TimeUnit.MILLISECONDS, -1);
+        assertNull(q.peek());
+
+        q.offer(new TestQueueElement<Integer>(1, 1, 10, TimeUnit.MILLISECONDS));
+        assertEquals((Integer) 1, q.peek().getElement().call());
+        Thread.sleep(11);
+        assertNotNull(q.poll());
+
+        q.offer(new TestQueueElement<Integer>(10, 0, 0, TimeUnit.MILLISECONDS));
+        q.offer(new TestQueueElement<Integer>(30, 2, 0, TimeUnit.MILLISECONDS));
+        assertEquals((Integer) 30, q.peek().getElement().call());
+        assertNotNull(q.poll());
+        assertEquals((Integer) 10, q.peek().getElement().call());
+        assertNotNull(q.poll());
+
+        q.offer(new TestQueueElement<Integer>(30, 2, 200, TimeUnit.MILLISECONDS));
+        q.offer(new TestQueueElement<Integer>(10, 0, 100, TimeUnit.MILLISECONDS));
+        assertEquals((Integer) 10, q.peek().getElement().call());
+        assertEquals(2, q.size());
+    }
+
+    public void testAntiStarvation() throws Exception {
+        PriorityDelayQueue<Integer> q = new ConcurrentPriorityDelayQueue<Integer>(3, 500, TimeUnit.MILLISECONDS, -1);
+        q.offer(new TestQueueElement<Integer>(1));
+        q.peek();
+        assertEquals(1, q.sizes()[0]);
+        Thread.sleep(600);
+        q.peek();
+        assertEquals(1, q.sizes()[1]);
+        assertEquals(1, q.peek().getPriority());
+        Thread.sleep(600);
+        q.peek();
+        assertEquals(1, q.sizes()[2]);
+        assertEquals(1, q.size());
+        assertEquals(2, q.poll().getPriority());
+        assertEquals(0, q.sizes()[2]);
+    }
+
+    public void testEligibleToPoll() throws Exception {
+        PriorityDelayQueue<Integer> q = new ConcurrentPriorityDelayQueue<Integer>(3, 500, TimeUnit.MILLISECONDS, -1) {
+            @Override
+            protected boolean eligibleToPoll(QueueElement<?> element) {
+                try {
+                    return ((Integer) element.getElement().call()) % 2 == 0;
+                }
+                catch (Exception ex) {
+                    throw new RuntimeException(ex);
+                }
+            }
+        };
+        q.offer(new TestQueueElement<Integer>(1, 2, 0, TimeUnit.MILLISECONDS));
+        q.offer(new TestQueueElement<Integer>(3, 1, 0, TimeUnit.MILLISECONDS));
+        q.offer(new TestQueueElement<Integer>(4, 1, 0, TimeUnit.MILLISECONDS));
+        assertEquals((Integer) 4, q.poll().getElement().call());
+        assertNull(q.poll());
+        assertEquals(2, q.size());
+    }
+
+    public void testRemoveAndClear() throws Exception {
+        PriorityDelayQueue<Integer> q = new ConcurrentPriorityDelayQueue<Integer>(3, 500, TimeUnit.MILLISECONDS, -1);
+        QueueElement<Integer> delayed = new TestQueueElement<Integer>(1, 1, 1000, TimeUnit.MILLISECONDS);
+        QueueElement<Integer> ready = new TestQueueElement<Integer>(2, 2, 0, TimeUnit.MILLISECONDS);
+        q.offer(delayed);
+        q.offer(ready);
+        q.offer(new TestQueueElement<Integer>(3, 0, 0, TimeUnit.MILLISECONDS));
+        assertEquals(3, q.size());
+
+        int count = 0;
+        for (QueueElement<Integer> e : q) {
+            count++;
+        }
+        assertEquals(3, count);
+
+        assertTrue(q.remove(delayed));
+        assertFalse(q.remove(delayed));
+        assertTrue(q.remove(ready));
+        assertEquals(1, q.size());
+        assertEquals(0, q.sizes()[1]);
+        assertEquals(0, q.sizes()[2]);
+
+        // removed elements can be queued again
+        q.offer(delayed);
+        assertEquals(2, q.size());
+        q.clear();
+        assertEquals(0, q.size());
+        assertNull(q.peek());
+
+        q.offer(new TestQueueElement<Integer>(1));
+        q.offer(new TestQueueElement<Integer>(2));
+        q.offer(new TestQueueElement<Integer>(3, 0, 1000, TimeUnit.MILLISECONDS));
+        List<QueueElement<Integer>> drained = new ArrayList<QueueElement<Integer>>();
+        assertEquals(1, q.drainTo(drained, 1));
+        assertEquals(1, q.drainTo(drained));
+        assertEquals(2, drained.size());
+        assertEquals(1, q.size());
+    }
+
+    public void testConcurrency() throws Exception {
+        final int producers = 4;
+        final int perProducer = 2000;
+        final PriorityDelayQueue<Integer> q =
+                new ConcurrentPriorityDelayQueue<Integer>(3, 100, TimeUnit.MILLISECONDS, 500);
+        final ConcurrentHashMap<QueueElement<Integer>, Boolean> polled =
+                new ConcurrentHashMap<QueueElement<Integer>, Boolean>();
+        final AtomicInteger duplicates = new AtomicInteger();
+        final CountDownLatch done = new CountDownLatch(producers);
+
+        for (int i = 0; i < producers; i++) {
+            new Thread(new Runnable() {
+                public void run() {
+                    try {
+                        for (int j = 0; j < perProducer; j++) {
+                            q.put(new TestQueueElement<Integer>(j, (int) (Math.random() * 3),
+                                    (int) (Math.random() * 20), TimeUnit.MILLISECONDS));
+                        }
+                    }
+                    catch (InterruptedException ex) {
+                        throw new RuntimeException(ex);
+                    }
+                    finally {
+                        done.countDown();
+                    }
+                }
+            }).start();
+        }
+        List<Thread> consumers = new ArrayList<Thread>();
+        for (int i = 0; i < producers; i++) {
+            Thread consumer = new Thread(new Runnable() {
+                public void run() {
+                    while (done.getCount() > 0 || q.size() > 0) {
+                        QueueElement<Integer> e = q.poll();
+                        if (e != null && polled.put(e, Boolean.TRUE) != null) {
+                            duplicates.incrementAndGet();
+                        }
+                    }
+                }
+            });
+            consumers.add(consumer);
+            consumer.start();
+        }
+        for (Thread consumer : consumers) {
+            consumer.join(30000);
+        }
+        assertEquals(0, duplicates.get());
+        assertEquals(producers * perProducer, polled.size());
+        assertEquals(0, q.size());
+        for (int size : q.sizes()) {
+            assertEquals(0, size);
+        }
+    }
+
+    public void testPollAndRequeueWhileDelayExpires() throws Exception {
+        final PriorityDelayQueue<Integer> q = new ConcurrentPriorityDelayQueue<Integer>(3, 30000,
+                TimeUnit.MILLISECONDS, -1);
+        final int elements = 500;
+        final int requeues = 10;
+        for (int i = 0; i < elements; i++) {
+            assertTrue(q.offer(new TestQueueElement<Integer>(i, i % 3, 1, TimeUnit.MILLISECONDS)));
+        }
+
+        // the consumers queue the polled elements again with a delay, as CallableQueueService does when the
+        // concurrency limit is reached, while other consumers move the expired elements to their sub-queues
+        final ConcurrentHashMap<QueueElement<Integer>, AtomicInteger> polled =
+                new ConcurrentHashMap<QueueElement<Integer>, AtomicInteger>();
+        final AtomicInteger polls = new AtomicInteger();
+        final long deadline = System.currentTimeMillis() + 30000;
+        List<Thread> consumers = new ArrayList<Thread>();
+        for (int i = 0; i < 4; i++) {
+            Thread consumer = new Thread(new Runnable() {
+                public void run() {
+                    while (polls.get() < elements * (requeues + 1) && System.currentTimeMillis() < deadline) {
+                        QueueElement<Integer> e = q.poll();
+                        if (e == null) {
+                            continue;
+                        }
+                        polled.putIfAbsent(e, new AtomicInteger());
+                        polls.incrementAndGet();
+                        if (polled.get(e).incrementAndGet() <= requeues) {
+                            e.setDelay(1, TimeUnit.MILLISECONDS);
+                            q.offer(e);
+                        }
+                    }
+                }
+            });
+            consumers.add(consumer);
+            consumer.start();
+        }
+        for (Thread consumer : consumers) {
+            consumer.join(60000);
+        }
+        assertEquals(elements, polled.size());
+        for (AtomicInteger count : polled.values()) {
+            assertEquals(requeues + 1, count.get());
+        }
+        assertEquals(0, q.size());
+        for (int size : q.sizes()) {
+            assertEquals(0, size);
+        }
+    }
+
+    public void testRemoveExpiredNotReady() throws Exception {
+        ConcurrentPriorityDelayQueue<Integer> q = new ConcurrentPriorityDelayQueue<Integer>(3, 30000,
+                TimeUnit.MILLISECONDS, -1);
+        QueueElement<Integer> e = new TestQueueElement<Integer>(1, 1, 20, TimeUnit.MILLISECONDS);
+        assertTrue(q.offer(e));
+        Thread.sleep(30);
+
+        // as if the thread advancing the wheel had expired the element but not moved it to its sub-queue yet
+        assertEquals(Arrays.asList(e), q.getTimerWheel().advance(System.currentTimeMillis()));
+        assertTrue(q.remove(e));
+        assertFalse(q.remove(e));
+        assertEquals(0, q.size());
+        assertEquals(0, q.sizes()[1]);
+        assertNull(q.poll());
+
+        // removed elements can be queued again
+        e.setDelay(0, TimeUnit.MILLISECONDS);
+        assertTrue(q.offer(e));
+        assertSame(e, q.poll());
+        assertFalse(q.remove(e));
+    }
+
+    public void testRemoveWhileDelayExpires() throws Exception {
+        final PriorityDelayQueue<Integer> q = new ConcurrentPriorityDelayQueue<Integer>(3, 30000,
+                TimeUnit.MILLISECONDS, -1);
+        final int elements = 100;
+        for (int iteration = 0; iteration < 100; iteration++) {
+            final List<QueueElement<Integer>> offered = new ArrayList<QueueElement<Integer>>();
+            for (int i = 0; i < elements; i++) {
+                QueueElement<Integer> e = new TestQueueElement<Integer>(i, i % 3, 5, TimeUnit.MILLISECONDS);
+                offered.add(e);
+                assertTrue(q.offer(e));
+            }
+            Thread.sleep(10);
+
+            // the delays expire while the elements are removed, each one is either removed or polled
+            final ConcurrentHashMap<QueueElement<Integer>, Boolean> removed =
+                    new ConcurrentHashMap<QueueElement<Integer>, Boolean>();
+            final ConcurrentHashMap<QueueElement<Integer>, Boolean> polled =
+                    new ConcurrentHashMap<QueueElement<Integer>, Boolean>();
+            final CountDownLatch start = new CountDownLatch(1);
+            Thread remover = new Thread(new Runnable() {
+                public void run() {
+                    try {
+                        start.await();
+                    }
+                    catch (InterruptedException ex) {
+                        throw new RuntimeException(ex);
+                    }
+                    for (QueueElement<Integer> e : offered) {
+                        if (q.remove(e)) {
+                            removed.put(e, Boolean.TRUE);
+                        }
+                    }
+                }
+            });
+            Thread poller = new Thread(new Runnable() {
+                public void run() {
+                    try {
+                        start.await();
+                    }
+                    catch (InterruptedException ex) {
+                        throw new RuntimeException(ex);
+                    }
+                    for (int i = 0; i < elements; i++) {
+                        QueueElement<Integer> e = q.poll();
+                        if (e != null) {
+                            polled.put(e, Boolean.TRUE);
+                        }
+                    }
+                }
+            });
+            remover.start();
+            poller.start();
+            start.countDown();
+            remover.join(30000);
+            poller.join(30000);
+            for (QueueElement<Integer> e = q.poll(); e != null; e = q.poll()) {
+                polled.put(e, Boolean.TRUE);
+            }
+            for (QueueElement<Integer> e : offered) {
+                assertTrue("element " + e.getElement().call() + " both removed and polled",
+                        removed.containsKey(e) != polled.containsKey(e));
+            }
+            assertEquals(0, q.size());
+            for (int size : q.sizes()) {
+                assertEquals(0, size);
+            }
+        }
+    }
+}
@@ -0,0 +1,127 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.oozie.util;
+
+import junit.framework.TestCase;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+public class TestConsistentHashRing extends TestCase {
+    private static final int KEYS = 20000;
+
+    public void testEmpty() {
+        ConsistentHashRing ring = new ConsistentHashRing(new HashMap<String, Integer>(), 10);
+        assertEquals(0, ring.size());
+        assertNull(ring.getNode("0000001-130521183438837-oozie-rkan-W"));
+        try {
+            new ConsistentHashRing(weights("a", 1), 0);
+            fail();
+        }
+        catch (IllegalArgumentException ex) {
+        }
+    }
+
+    public void testDeterministic() {
+        Map<String, Integer> weights = weights("a", 1, "b", 1, "c", 1);
+        Map<String, Integer> reversed = new LinkedHashMap<String, Integer>();
+        reversed.put("c", 1);
+        reversed.put("b", 1);
+        reversed.put("a", 1);
+        ConsistentHashRing ring1 = new ConsistentHashRing(weights, 128);
+        ConsistentHashRing ring2 = new ConsistentHashRing(reversed, 128);
+        assertEquals(3 * 128, ring1.size());
+        assertEquals(new HashSet<String>(Arrays.asList("a", "b", "c")), ring1.getNodes());
+        for (int i = 0; i < KEYS; i++) {
+            String key = jobId(i);
+            assertEquals(ring1.getNode(key), ring2.getNode(key));
+        }
+    }
+
+    public void testBalance() {
+        ConsistentHashRing ring = new ConsistentHashRing(weights("a", 1, "b", 1, "c", 1, "d", 1), 128);
+        Map<String, Integer> counts = count(ring);
+        for (int count : counts.values()) {
+            // within 25% of a fair share
+            assertTrue(counts.toString(), Math.abs(count - KEYS / 4) < KEYS / 16);
+        }
+    }
+
+    public void testWeights() {
+        ConsistentHashRing ring = new ConsistentHashRing(weights("a", 1, "b", 3, "c", 0), 128);
+        assertEquals(4 * 128, ring.size());
+        assertFalse(ring.getNodes().contains("c"));
+        Map<String, Integer> counts = count(ring);
+        assertNull(counts.get("c"));
+        double ratio = (double) counts.get("b") / counts.get("a");
+        assertTrue("ratio " + ratio, ratio > 2.2 && ratio < 4.0);
+    }
+
+    public void testMovedKeysOnJoinAndLeave() {
+        ConsistentHashRing ring3 = new ConsistentHashRing(weights("a", 1, "b", 1, "c", 1), 128);
+        ConsistentHashRing ring4 = new ConsistentHashRing(weights("a", 1, "b", 1, "c", 1, "d", 1), 128);
+        int moved = 0;
+        for (int i = 0; i < KEYS; i++) {
+            String key = jobId(i);
+            String before = ring3.getNode(key);
+            String after = ring4.getNode(key);
+            if (!before.equals(after)) {
+                // keys only move to the joining node
+                assertEquals("d", after);
+                moved++;
+            }
+        }
+        // about 1/4 of the keys move, modulo assignment would move about 3/4
+        assertTrue("moved " + moved, moved > KEYS / 6 && moved < KEYS / 3);
+
+        ConsistentHashRing ring2 = new ConsistentHashRing(weights("a", 1, "c", 1), 128);
+        for (int i = 0; i < KEYS; i++) {
+            String key = jobId(i);
+            if (!ring3.getNode(key).equals("b")) {
+                // only the keys of the leaving node move
+                assertEquals(ring3.getNode(key), ring2.getNode(key));
+            }
+        }
+    }
+
+    private static Map<String, Integer> count(ConsistentHashRing ring) {
+        Map<String, Integer> counts = new HashMap<String, Integer>();
+        for (int i = 0; i < KEYS; i++) {
+            String node = ring.getNode(jobId(i));
+            Integer count = counts.get(node);
+            counts.put(node, (count == null) ? 1 : count + 1);
+        }
+        return counts;
+    }
+
+    private static String jobId(int i) {
+        return String.format("%07d-130521183438837-oozie-rkan-W", i);
+    }
+
+    private static Map<String, Integer> weights(Object... nodesAndWeights) {
+        Map<String, Integer> weights = new HashMap<String, Integer>();
+        for (int i = 0; i < nodesAndWeights.length; i += 2) {
+            weights.put((String) nodesAndWeights[i], (Integer) nodesAndWeights[i + 1]);
+        }
+        return weights;
+    }
+}
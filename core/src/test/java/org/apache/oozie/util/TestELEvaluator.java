@@ -199,4 +199,50 @@ public class TestELEvaluator extends XTestCase {
         assertNull(ELEvaluator.getCurrent());
     }
 
+    public void testExpressionCache() throws Exception {
+        try {
+            ELEvaluator.configureExpressionCache(100, 20);
+            assertEquals(0, ELEvaluator.getExpressionCacheSize());
+            ELEvaluator.Context support1 = new ELEvaluator.Context();
+            support1.setVariable("a", "A");
+            support1.addFunction("a", "d", functionD);
+            ELEvaluator.Context support2 = new ELEvaluator.Context();
+            support2.setVariable("a", "B");
+            support2.addFunction("a", "d", functionD);
+            ELEvaluator evaluator1 = new ELEvaluator(support1);
+            ELEvaluator evaluator2 = new ELEvaluator(support2);
+
+            // parsed expressions are shared by evaluators with different contexts
+            assertEquals("A::x", evaluator1.evaluate("${a:d(a, 'x')}", String.class));
+            assertEquals("B::x", evaluator2.evaluate("${a:d(a, 'x')}", String.class));
+            assertEquals(1, ELEvaluator.getExpressionCacheSize());
+            assertEquals(Integer.valueOf(2), evaluator1.evaluate("${1 + 1}", Integer.class));
+            assertEquals(Boolean.TRUE, evaluator1.evaluate("true", Boolean.class));
+            assertEquals("plain", evaluator1.evaluate("plain", String.class));
+            assertEquals(4, ELEvaluator.getExpressionCacheSize());
+
+            // expressions longer than the maximum length are not cached
+            ELEvaluator.configureExpressionCache(100, 20);
+            assertEquals("A::a long expression",
+                    evaluator1.evaluate("${a:d(a, 'a long expression')}", String.class));
+            assertEquals(0, ELEvaluator.getExpressionCacheSize());
+
+            try {
+                evaluator1.evaluate("${a:d(a, 'x'), a}", String.class);
+                fail("Evaluated bad expression");
+            }
+            catch (ELException ignore) {
+            }
+            assertEquals(0, ELEvaluator.getExpressionCacheSize());
+
+            ELEvaluator.configureExpressionCache(0, 20);
+            assertEquals("B::x", evaluator2.evaluate("${a:d(a, 'x')}", String.class));
+            assertEquals(0, ELEvaluator.getExpressionCacheSize());
+            assertTrue(evaluator2.checkForExistence("${a},${a}", ","));
+        }
+        finally {
+            ELEvaluator.configureExpressionCache(ELEvaluator.DEFAULT_EXPRESSION_CACHE_SIZE,
+                    ELEvaluator.DEFAULT_EXPRESSION_CACHE_MAX_LENGTH);
+        }
+    }
 }
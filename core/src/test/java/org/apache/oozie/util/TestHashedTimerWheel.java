@@ -0,0 +1,209 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.oozie.util;
+
+import junit.framework.TestCase;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+public class TestHashedTimerWheel extends TestCase {
+
+    public void testConstructor() {
+        try {
+            new HashedTimerWheel<String>(0, TimeUnit.MILLISECONDS, 4, 1);
+            fail();
+        }
+        catch (IllegalArgumentException ex) {
+        }
+        try {
+            new HashedTimerWheel<String>(1, TimeUnit.MILLISECONDS, 1, 1);
+            fail();
+        }
+        catch (IllegalArgumentException ex) {
+        }
+        try {
+            new HashedTimerWheel<String>(1, TimeUnit.MILLISECONDS, 4, 0);
+            fail();
+        }
+        catch (IllegalArgumentException ex) {
+        }
+        HashedTimerWheel<String> wheel = new HashedTimerWheel<String>(1, TimeUnit.SECONDS, 60, 2);
+        assertEquals(1000, wheel.getTickDuration(TimeUnit.MILLISECONDS));
+        assertEquals(64, wheel.getBucketsPerLevel());
+        assertEquals(2, wheel.getLevels());
+        assertEquals(0, wheel.size());
+    }
+
+    public void testAdvance() {
+        // levels span 40ms, 160ms and 640ms
+        HashedTimerWheel<String> wheel = new HashedTimerWheel<String>(10, TimeUnit.MILLISECONDS, 4, 3);
+        long now = System.currentTimeMillis();
+        wheel.schedule("a", now + 5);
+        wheel.schedule("b", now + 50);
+        wheel.schedule("c", now + 300);
+        wheel.schedule("d", now + 5000);
+        assertEquals(4, wheel.size());
+        assertEquals(4, wheel.elements().size());
+        assertEquals("a", wheel.peek());
+
+        assertEquals(0, wheel.advance(now + 4).size());
+        assertEquals(1, wheel.levelSize(1));
+        assertEquals(1, wheel.levelSize(2));
+        assertEquals(1, sum(wheel.bucketSizes(2)));
+        assertEquals(1, wheel.overflowSize());
+        assertEquals(Arrays.asList("a"), wheel.advance(now + 5));
+        assertEquals(3, wheel.size());
+        assertEquals("b", wheel.peek());
+
+        assertEquals(0, wheel.advance(now + 49).size());
+        assertEquals(Arrays.asList("b"), wheel.advance(now + 50));
+        assertEquals(0, wheel.advance(now + 299).size());
+        assertEquals(Arrays.asList("c"), wheel.advance(now + 300));
+        assertEquals(0, wheel.advance(now + 4999).size());
+        assertEquals(1, wheel.size());
+        assertEquals(Arrays.asList("d"), wheel.advance(now + 5000));
+        assertEquals(0, wheel.size());
+        assertNull(wheel.peek());
+        for (int i = 0; i < wheel.getLevels(); i++) {
+            assertEquals(0, wheel.levelSize(i));
+        }
+        assertEquals(0, wheel.overflowSize());
+    }
+
+    public void testPastDeadline() {
+        HashedTimerWheel<String> wheel = new HashedTimerWheel<String>(10, TimeUnit.MILLISECONDS, 4, 3);
+        long now = System.currentTimeMillis();
+        wheel.schedule("a", now - 1000);
+        assertEquals(Arrays.asList("a"), wheel.advance(now));
+    }
+
+    public void testCancel() {
+        HashedTimerWheel<String> wheel = new HashedTimerWheel<String>(10, TimeUnit.MILLISECONDS, 4, 3);
+        long now = System.currentTimeMillis();
+        HashedTimerWheel.Timeout<String> a = wheel.schedule("a", now + 100);
+        HashedTimerWheel.Timeout<String> b = wheel.schedule("b", now + 100);
+        assertEquals("a", a.getElement());
+        assertEquals(now + 100, a.getDeadline());
+        assertEquals(2, wheel.size());
+
+        assertTrue(a.cancel());
+        assertTrue(a.isCancelled());
+        assertFalse(a.cancel());
+        assertEquals(1, wheel.size());
+        assertEquals(Arrays.asList("b"), wheel.elements());
+
+        assertEquals(Arrays.asList("b"), wheel.advance(now + 100));
+        assertFalse(b.cancel());
+        assertFalse(b.isCancelled());
+        assertEquals(0, wheel.size());
+        assertEquals(0, wheel.advance(now + 1000).size());
+    }
+
+    public void testCancelledEntriesDroppedWhenIdle() {
+        HashedTimerWheel<String> wheel = new HashedTimerWheel<String>(10, TimeUnit.MILLISECONDS, 4, 3);
+        long now = System.currentTimeMillis();
+        HashedTimerWheel.Timeout<String> a = wheel.schedule("a", now + 500);
+        HashedTimerWheel.Timeout<String> b = wheel.schedule("b", now + 100000);
+        assertEquals(0, wheel.advance(now).size());
+        assertEquals(1, wheel.levelSize(2));
+        assertEquals(1, wheel.overflowSize());
+
+        assertTrue(a.cancel());
+        assertTrue(b.cancel());
+        assertEquals(0, wheel.size());
+        // the cancelled entries are dropped right away, not when their ticks are reached
+        assertEquals(0, wheel.advance(now).size());
+        for (int level = 0; level < wheel.getLevels(); level++) {
+            assertEquals(0, wheel.levelSize(level));
+        }
+        assertEquals(0, wheel.overflowSize());
+
+        HashedTimerWheel.Timeout<String> c = wheel.schedule("c", now + 500);
+        assertEquals(0, wheel.advance(now).size());
+        assertEquals(1, wheel.levelSize(2));
+        assertEquals(Arrays.asList("c"), wheel.advance(now + 500));
+        assertFalse(c.cancel());
+    }
+
+    public void testOverflow() {
+        // levels span 64ms, 4s, 4m and 4.6h
+        HashedTimerWheel<String> wheel = new HashedTimerWheel<String>(1, TimeUnit.MILLISECONDS, 64, 4);
+        long now = System.currentTimeMillis();
+        assertEquals(0, wheel.advance(now + TimeUnit.DAYS.toMillis(1)).size());
+        wheel.schedule("a", now + TimeUnit.DAYS.toMillis(365));
+        wheel.schedule("b", now + TimeUnit.DAYS.toMillis(2));
+        assertEquals(0, wheel.advance(now + TimeUnit.DAYS.toMillis(1)).size());
+        assertEquals(2, wheel.overflowSize());
+        assertEquals("b", wheel.peek());
+        assertEquals(0, wheel.advance(now + TimeUnit.DAYS.toMillis(2) - 1).size());
+        assertEquals(1, wheel.overflowSize());
+        assertEquals(Arrays.asList("b"), wheel.advance(now + TimeUnit.DAYS.toMillis(2)));
+        assertEquals(Arrays.asList("a"), wheel.advance(now + TimeUnit.DAYS.toMillis(365)));
+        assertEquals(0, wheel.size());
+        assertEquals(0, wheel.overflowSize());
+    }
+
+    public void testRandomDeadlines() {
+        HashedTimerWheel<Integer> wheel = new HashedTimerWheel<Integer>(10, TimeUnit.MILLISECONDS, 8, 3);
+        Random random = new Random(0);
+        long now = System.currentTimeMillis();
+        Map<Integer, Long> deadlines = new HashMap<Integer, Long>();
+        List<HashedTimerWheel.Timeout<Integer>> timeouts = new ArrayList<HashedTimerWheel.Timeout<Integer>>();
+        for (int i = 0; i < 10000; i++) {
+            long deadline = now + random.nextInt(20000);
+            deadlines.put(i, deadline);
+            timeouts.add(wheel.schedule(i, deadline));
+        }
+        int cancelled = 0;
+        for (int i = 0; i < timeouts.size(); i += 10) {
+            assertTrue(timeouts.get(i).cancel());
+            deadlines.remove(i);
+            cancelled++;
+        }
+        assertEquals(10000 - cancelled, wheel.size());
+
+        long time = now;
+        while (time < now + 20000) {
+            time += random.nextInt(50);
+            for (Integer expired : wheel.advance(time)) {
+                Long deadline = deadlines.remove(expired);
+                assertNotNull("returned twice or cancelled: " + expired, deadline);
+                assertTrue("returned before its deadline: " + expired, deadline <= time);
+                // a deadline is noticed at the first advance past it
+                assertTrue("returned late: " + expired, deadline > time - 50);
+            }
+        }
+        assertTrue(deadlines.isEmpty());
+        assertEquals(0, wheel.size());
+    }
+
+    private static int sum(int[] values) {
+        int sum = 0;
+        for (int value : values) {
+            sum += value;
+        }
+        return sum;
+    }
+}
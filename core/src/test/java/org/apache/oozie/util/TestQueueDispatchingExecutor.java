@@ -0,0 +1,172 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.oozie.util;
+
+import junit.framework.TestCase;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.oozie.util.TestPriorityDelayQueue.TestQueueElement;
+
+public class TestQueueDispatchingExecutor extends TestCase {
+
+    public void testConstructor() {
+        try {
+            new QueueDispatchingExecutor(new LinkedBlockingQueue<Runnable>(), 0, "test");
+            fail();
+        }
+        catch (IllegalArgumentException ex) {
+        }
+        QueueDispatchingExecutor executor = new QueueDispatchingExecutor(new LinkedBlockingQueue<Runnable>(), 2,
+                "test");
+        assertEquals(2, executor.getMaxActive());
+        assertEquals(0, executor.getActiveCount());
+        assertEquals(QueueDispatchingExecutor.newVirtualThreadPerTaskExecutor() != null, executor.isVirtualThreads());
+    }
+
+    public void testMaxActive() throws Exception {
+        final int maxActive = 3;
+        final AtomicInteger running = new AtomicInteger();
+        final AtomicInteger maxRunning = new AtomicInteger();
+        final CountDownLatch done = new CountDownLatch(20);
+        QueueDispatchingExecutor executor = new QueueDispatchingExecutor(new LinkedBlockingQueue<Runnable>(),
+                maxActive, "test");
+        executor.start();
+        try {
+            for (int i = 0; i < 20; i++) {
+                executor.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        int current = running.incrementAndGet();
+                        synchronized (maxRunning) {
+                            maxRunning.set(Math.max(maxRunning.get(), current));
+                        }
+                        try {
+                            Thread.sleep(20);
+                        }
+                        catch (InterruptedException ex) {
+                            throw new RuntimeException(ex);
+                        }
+                        running.decrementAndGet();
+                        done.countDown();
+                    }
+                });
+            }
+            assertTrue(done.await(10, TimeUnit.SECONDS));
+            assertEquals(maxActive, maxRunning.get());
+        }
+        finally {
+            executor.shutdown();
+        }
+        assertTrue(executor.awaitTermination(5, TimeUnit.SECONDS));
+        assertTrue(executor.isTerminated());
+        assertEquals(0, executor.getActiveCount());
+    }
+
+    public void testPriorityQueueOrder() throws Exception {
+        final List<Integer> order = Collections.synchronizedList(new ArrayList<Integer>());
+        PriorityDelayQueue<Integer> queue = new ConcurrentPriorityDelayQueue<Integer>(3, 1000,
+                TimeUnit.MILLISECONDS, -1);
+        @SuppressWarnings({ "unchecked", "rawtypes" })
+        QueueDispatchingExecutor executor = new QueueDispatchingExecutor((BlockingQueue) queue, 1, "test");
+        List<TestQueueElement<Integer>> elements = new ArrayList<TestQueueElement<Integer>>();
+        for (final int priority : new int[]{0, 2, 1}) {
+            elements.add(new TestQueueElement<Integer>(priority, priority, 0, TimeUnit.MILLISECONDS) {
+                @Override
+                protected void done() {
+                    order.add(priority);
+                }
+            });
+        }
+        for (TestQueueElement<Integer> element : elements) {
+            executor.execute(element);
+        }
+        executor.start();
+        try {
+            for (TestQueueElement<Integer> element : elements) {
+                element.get(5, TimeUnit.SECONDS);
+            }
+            assertEquals(0, queue.size());
+        }
+        finally {
+            executor.shutdown();
+        }
+        assertEquals(Arrays.asList(2, 1, 0), order);
+    }
+
+    public void testInvokeAllAndShutdown() throws Exception {
+        QueueDispatchingExecutor executor = new QueueDispatchingExecutor(new LinkedBlockingQueue<Runnable>(), 2,
+                "test");
+        executor.start();
+        List<Callable<Integer>> tasks = new ArrayList<Callable<Integer>>();
+        for (int i = 0; i < 3; i++) {
+            final int value = i;
+            tasks.add(new Callable<Integer>() {
+                @Override
+                public Integer call() throws Exception {
+                    Thread.sleep(10);
+                    return value;
+                }
+            });
+        }
+        int expected = 0;
+        for (Future<Integer> future : executor.invokeAll(tasks)) {
+            assertEquals((Integer) expected++, future.get());
+        }
+        executor.shutdown();
+        assertTrue(executor.isShutdown());
+        try {
+            executor.execute(new NoopRunnable());
+            fail();
+        }
+        catch (RejectedExecutionException ex) {
+        }
+        assertTrue(executor.awaitTermination(5, TimeUnit.SECONDS));
+    }
+
+    public void testQueueFull() throws Exception {
+        QueueDispatchingExecutor executor = new QueueDispatchingExecutor(new LinkedBlockingQueue<Runnable>(1), 1,
+                "test");
+        executor.execute(new NoopRunnable());
+        try {
+            executor.execute(new NoopRunnable());
+            fail();
+        }
+        catch (RejectedExecutionException ex) {
+        }
+        assertEquals(1, executor.shutdownNow().size());
+    }
+
+    private static class NoopRunnable implements Runnable {
+        @Override
+        public void run() {
+        }
+    }
+}
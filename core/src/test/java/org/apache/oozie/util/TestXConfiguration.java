@@ -19,7 +19,11 @@
 package org.apache.oozie.util;
 
 import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.BufferedWriter;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileReader;
@@ -29,6 +33,7 @@ import java.io.Reader;
 import java.io.StringReader;
 import java.io.IOException;
 import java.net.URL;
+import java.util.Map;
 
 import org.apache.hadoop.conf.Configuration;
 import org.apache.oozie.service.ConfigurationService;
@@ -264,4 +269,27 @@ public class TestXConfiguration extends XTestCase {
 
         services.destroy();
     }
+
+    public void testBinary() throws IOException {
+        XConfiguration conf = new XConfiguration();
+        conf.set("oozie.wf.application.path", "hdfs://localhost:8020/user/test/app");
+        conf.set("oozie.wf.rerun.failnodes", "true");
+        conf.set("user.name", "test");
+        conf.set("a", "");
+        conf.set("\u00e9t\u00e9", "\u00e9t\u00e9 ${user.name}");
+
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        DataOutputStream dOut = new DataOutputStream(baos);
+        XConfiguration.writeBinary(conf, dOut);
+        dOut.close();
+        assertTrue(baos.size() < conf.toXmlString().length());
+
+        XConfiguration read = XConfiguration.readBinary(
+                new DataInputStream(new ByteArrayInputStream(baos.toByteArray())));
+        assertEquals(conf.size(), read.size());
+        for (Map.Entry<String, String> entry : conf) {
+            assertEquals(entry.getValue(), read.getRaw(entry.getKey()));
+        }
+        assertEquals("\u00e9t\u00e9 test", read.get("\u00e9t\u00e9"));
+    }
 }
@@ -88,8 +88,9 @@ public class TestZKUtils extends ZKXTestCase {
             assertEquals(ZK_ID, meta.getId());
             assertEquals("servers", meta.getName());
             Map<String, String> data = meta.getPayload();
-            assertEquals(3, data.size());
+            assertEquals(4, data.size());
             assertEquals(ZK_ID, data.get("OOZIE_ID"));
+            assertEquals("1", data.get("OOZIE_WEIGHT"));
             String url = ConfigUtils.getOozieURL(false);
             assertEquals(url, data.get("OOZIE_URL"));
             assertEquals("java.util.HashMap", data.get("@class"));
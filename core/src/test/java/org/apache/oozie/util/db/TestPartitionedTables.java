@@ -0,0 +1,200 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.oozie.util.db;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.List;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.oozie.CoordinatorActionBean;
+import org.apache.oozie.CoordinatorJobBean;
+import org.apache.oozie.ErrorCode;
+import org.apache.oozie.WorkflowActionBean;
+import org.apache.oozie.WorkflowJobBean;
+import org.apache.oozie.client.CoordinatorAction;
+import org.apache.oozie.client.CoordinatorJob;
+import org.apache.oozie.client.WorkflowAction;
+import org.apache.oozie.client.WorkflowJob;
+import org.apache.oozie.executor.jpa.JPAExecutorException;
+import org.apache.oozie.executor.jpa.WorkflowActionGetJPAExecutor;
+import org.apache.oozie.executor.jpa.WorkflowJobGetJPAExecutor;
+import org.apache.oozie.service.ConfigurationService;
+import org.apache.oozie.service.JPAService;
+import org.apache.oozie.service.Services;
+import org.apache.oozie.test.XDataTestCase;
+import org.apache.oozie.util.DateUtils;
+import org.apache.oozie.util.db.PartitionedTables.Partition;
+import org.apache.oozie.util.db.PartitionedTables.Table;
+import org.apache.oozie.workflow.WorkflowInstance;
+
+public class TestPartitionedTables extends XDataTestCase {
+    private Services services;
+    private Connection conn;
+    private PartitionedTables tables;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        services = new Services();
+        services.init();
+        Configuration conf = services.getConf();
+        conn = DriverManager.getConnection(ConfigurationService.get(conf, JPAService.CONF_URL),
+                ConfigurationService.get(conf, JPAService.CONF_USERNAME),
+                ConfigurationService.getPassword(conf, JPAService.CONF_PASSWORD).trim());
+        conn.setAutoCommit(true);
+        // the test tables are never partitioned, use the rows of the months as for Derby and HSQLDB
+        tables = new PartitionedTables("hsqldb");
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        conn.close();
+        services.destroy();
+        super.tearDown();
+    }
+
+    public void testCreateStatements() throws Exception {
+        Calendar cal = Calendar.getInstance();
+        cal.clear();
+        cal.set(2016, Calendar.OCTOBER, 15, 10, 0);
+        Date now = cal.getTime();
+
+        List<String> statements = new PartitionedTables("mysql").getCreateStatements(now, 1);
+        assertEquals(2 * Table.values().length, statements.size());
+        assertEquals("ALTER TABLE WF_JOBS DROP PRIMARY KEY, ADD PRIMARY KEY (id, created_time)", statements.get(0));
+        assertEquals("ALTER TABLE WF_JOBS PARTITION BY RANGE COLUMNS (created_time) (PARTITION P_START VALUES LESS THAN "
+                + "('2016-10-01 00:00:00'), PARTITION P_201610 VALUES LESS THAN ('2016-11-01 00:00:00'), PARTITION "
+                + "P_201611 VALUES LESS THAN ('2016-12-01 00:00:00'), PARTITION P_MAX VALUES LESS THAN (MAXVALUE))",
+                statements.get(1));
+        assertEquals("ALTER TABLE SLA_SUMMARY DROP PRIMARY KEY, ADD PRIMARY KEY (job_id, created_time)",
+                statements.get(8));
+
+        statements = new PartitionedTables("postgresql").getCreateStatements(now, 1);
+        assertTrue(statements.contains("CREATE TABLE COORD_ACTIONS_P_DEFAULT PARTITION OF COORD_ACTIONS DEFAULT"));
+        assertTrue(statements.contains("CREATE TABLE COORD_ACTIONS_P_201611 PARTITION OF COORD_ACTIONS FOR VALUES FROM "
+                + "('2016-11-01 00:00:00') TO ('2016-12-01 00:00:00')"));
+
+        statements = new PartitionedTables("oracle").getCreateStatements(now, 1);
+        assertEquals(Table.values().length, statements.size());
+        assertTrue(statements.get(0).contains("INTERVAL (NUMTOYMINTERVAL(1, 'MONTH'))"));
+
+        assertTrue(new PartitionedTables("derby").getCreateStatements(now, 1).isEmpty());
+        assertTrue(tables.getCreateStatements(now, 1).isEmpty());
+        try {
+            new PartitionedTables("sqlserver");
+            fail();
+        }
+        catch (IllegalArgumentException ex) {
+        }
+    }
+
+    public void testDropPartitions() throws Exception {
+        WorkflowJobBean oldJob = addRecordToWfJobTable(WorkflowJob.Status.SUCCEEDED, WorkflowInstance.Status.SUCCEEDED);
+        WorkflowActionBean oldAction = addRecordToWfActionTable(oldJob.getId(), "1", WorkflowAction.Status.OK);
+        WorkflowJobBean runningJob = addRecordToWfJobTable(WorkflowJob.Status.RUNNING, WorkflowInstance.Status.RUNNING);
+        setTimes("WF_JOBS", oldJob.getId(), "2010-01-10T10:00Z", "2010-01-11T10:00Z");
+        setTimes("WF_ACTIONS", oldAction.getId(), "2010-01-10T10:00Z", null);
+        setTimes("WF_JOBS", runningJob.getId(), "2010-02-10T10:00Z", null);
+        Date olderThan = new Date(System.currentTimeMillis() - 30 * 24L * 60 * 60 * 1000);
+
+        List<Partition> partitions = tables.getPartitions(conn, Table.WF_JOBS);
+        assertTrue(partitions.size() > 2);
+        Partition january = partitions.get(0);
+        assertEquals("P_201001", january.getName());
+        assertEquals(PartitionedTables.getMonthStart(january.getStart(), 1), january.getEnd());
+        Partition february = partitions.get(1);
+        assertEquals(0, tables.countLiveRows(conn, Table.WF_JOBS, january, olderThan, false));
+        assertEquals(1, tables.countLiveRows(conn, Table.WF_JOBS, february, olderThan, false));
+        assertEquals(1, tables.countLiveRows(conn, Table.WF_ACTIONS, january, olderThan, false));
+
+        execute(tables.getDropStatement(Table.WF_JOBS, january));
+        assertEquals(0, tables.countLiveRows(conn, Table.WF_ACTIONS, january, olderThan, false));
+        execute(tables.getDropStatement(Table.WF_ACTIONS, january));
+
+        JPAService jpaService = services.get(JPAService.class);
+        try {
+            jpaService.execute(new WorkflowJobGetJPAExecutor(oldJob.getId()));
+            fail("Workflow Job should have been dropped");
+        }
+        catch (JPAExecutorException je) {
+            assertEquals(ErrorCode.E0604, je.getErrorCode());
+        }
+        try {
+            jpaService.execute(new WorkflowActionGetJPAExecutor(oldAction.getId()));
+            fail("Workflow Action should have been dropped");
+        }
+        catch (JPAExecutorException je) {
+            assertEquals(ErrorCode.E0605, je.getErrorCode());
+        }
+        jpaService.execute(new WorkflowJobGetJPAExecutor(runningJob.getId()));
+    }
+
+    public void testChildWorkflowKeepsParentPartition() throws Exception {
+        WorkflowJobBean parent = addRecordToWfJobTable(WorkflowJob.Status.SUCCEEDED, WorkflowInstance.Status.SUCCEEDED);
+        WorkflowJobBean child = addRecordToWfJobTable(WorkflowJob.Status.RUNNING, WorkflowInstance.Status.RUNNING);
+        setTimes("WF_JOBS", parent.getId(), "2010-01-10T10:00Z", "2010-01-11T10:00Z");
+        setTimes("WF_JOBS", child.getId(), "2010-02-10T10:00Z", null);
+        execute("UPDATE WF_JOBS SET parent_id = '" + parent.getId() + "' WHERE id = '" + child.getId() + "'");
+        Date olderThan = new Date(System.currentTimeMillis() - 30 * 24L * 60 * 60 * 1000);
+
+        List<Partition> partitions = tables.getPartitions(conn, Table.WF_JOBS);
+        assertEquals(1, tables.countLiveRows(conn, Table.WF_JOBS, partitions.get(0), olderThan, false));
+        assertEquals(1, tables.countLiveRows(conn, Table.WF_JOBS, partitions.get(1), olderThan, false));
+    }
+
+    public void testCoordActionPartitions() throws Exception {
+        CoordinatorJobBean coordJob = addRecordToCoordJobTable(CoordinatorJob.Status.RUNNING, false, false);
+        CoordinatorActionBean action = addRecordToCoordActionTable(coordJob.getId(), 1,
+                CoordinatorAction.Status.SUCCEEDED, "coord-action-get.xml", 0);
+        setTimes("COORD_ACTIONS", action.getId(), "2010-01-10T10:00Z", null);
+        execute("UPDATE COORD_ACTIONS SET last_modified_time = created_time, external_id = NULL WHERE id = '"
+                + action.getId() + "'");
+        Date olderThan = new Date(System.currentTimeMillis() - 30 * 24L * 60 * 60 * 1000);
+
+        Partition january = tables.getPartitions(conn, Table.COORD_ACTIONS).get(0);
+        assertEquals(1, tables.countLiveRows(conn, Table.COORD_ACTIONS, january, olderThan, false));
+        assertEquals(0, tables.countLiveRows(conn, Table.COORD_ACTIONS, january, olderThan, true));
+    }
+
+    private void setTimes(String table, String id, String createdTime, String endTime) throws Exception {
+        String sql = "UPDATE " + table + " SET created_time = ?" + ((table.equals("WF_JOBS")) ? ", end_time = ?" : "")
+                + " WHERE id = ?";
+        PreparedStatement ps = conn.prepareStatement(sql);
+        int i = 1;
+        ps.setTimestamp(i++, new Timestamp(DateUtils.parseDateOozieTZ(createdTime).getTime()));
+        if (table.equals("WF_JOBS")) {
+            ps.setTimestamp(i++, (endTime != null) ? new Timestamp(DateUtils.parseDateOozieTZ(endTime).getTime()) : null);
+        }
+        ps.setString(i, id);
+        assertEquals(1, ps.executeUpdate());
+        ps.close();
+    }
+
+    private void execute(String sql) throws Exception {
+        Statement st = conn.createStatement();
+        st.executeUpdate(sql);
+        st.close();
+    }
+}
@@ -20,6 +20,7 @@ package org.apache.oozie.workflow.lite;
 
 
 import org.apache.commons.lang.RandomStringUtils;
+import org.apache.hadoop.conf.Configuration;
 import org.apache.oozie.service.Services;
 import org.apache.oozie.workflow.WorkflowException;
 import org.apache.oozie.workflow.WorkflowInstance;
@@ -28,11 +29,14 @@ import org.apache.oozie.util.WritableUtils;
 import org.apache.oozie.util.XConfiguration;
 import org.apache.oozie.ErrorCode;
 
+import java.io.IOException;
+import java.io.StringReader;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class TestLiteWorkflowLib extends XTestCase {
 
@@ -777,6 +781,187 @@ public class TestLiteWorkflowLib extends XTestCase {
         assertEquals(value, job.getVar("a"));
     }
 
+    public void testCompactJobPersistance() throws Exception {
+        LiteWorkflowApp def = new LiteWorkflowApp("wf", "<worklfow-app/>",
+                new StartNodeDef(TestControlNodeHandler.class, "f"))
+                .addNode(new ForkNodeDef("f", TestControlNodeHandler.class,
+                                         Arrays.asList(new String[]{"one", "two"})))
+                .addNode(new NodeDef("one", null, AsynchNodeHandler.class, Arrays.asList(new String[]{"j"})))
+                .addNode(new NodeDef("two", null, AsynchNodeHandler.class, Arrays.asList(new String[]{"j"})))
+                .addNode(new JoinNodeDef("j", TestControlNodeHandler.class, "end"))
+                .addNode(new EndNodeDef("end", TestControlNodeHandler.class));
+        MapAppDefStore store = new MapAppDefStore();
+
+        LiteWorkflowInstance job = new LiteWorkflowInstance(def, new XConfiguration(), "1");
+        job.setVar("a", RandomStringUtils.randomAlphanumeric(100 * 1024));
+        job.start();
+        assertEquals(WorkflowInstance.Status.RUNNING, job.getStatus());
+
+        byte[] legacy = LiteWorkflowInstanceSerializer.toByteArray(job, null);
+        assertFalse(LiteWorkflowInstanceSerializer.isCompact(legacy));
+        byte[] compact = LiteWorkflowInstanceSerializer.toByteArray(job, store);
+        assertTrue(LiteWorkflowInstanceSerializer.isCompact(compact));
+        assertEquals(1, store.apps.size());
+        assertTrue(store.apps.containsKey(def.getContentHash()));
+        // the compact instance holds the content hash instead of the definition
+        assertTrue(compact.length < legacy.length - WritableUtils.toByteArray(def).length
+                + 2 + 2 + def.getContentHash().length());
+
+        // legacy instances are read with and without a store and migrated when written with a store
+        job = LiteWorkflowInstanceSerializer.fromByteArray(legacy, null);
+        assertTrue(Arrays.equals(compact, LiteWorkflowInstanceSerializer.toByteArray(job, store)));
+        job = LiteWorkflowInstanceSerializer.fromByteArray(compact, store);
+        assertSame(def, job.getApp());
+        assertEquals(WorkflowInstance.Status.RUNNING, job.getStatus());
+        assertEquals(job.getVar("a"), LiteWorkflowInstanceSerializer.fromByteArray(legacy, store).getVar("a"));
+
+        job.signal("/one/", "");
+        job = LiteWorkflowInstanceSerializer.fromByteArray(LiteWorkflowInstanceSerializer.toByteArray(job, store),
+                store);
+        assertEquals(WorkflowInstance.Status.RUNNING, job.getStatus());
+        job.signal("/two/", "");
+        assertEquals(WorkflowInstance.Status.SUCCEEDED, job.getStatus());
+        assertEquals(1, store.apps.size());
+
+        try {
+            LiteWorkflowInstanceSerializer.fromByteArray(compact, new MapAppDefStore());
+            fail();
+        }
+        catch (java.io.IOException ex) {
+            assertTrue(ex.getMessage().contains(def.getContentHash()));
+        }
+        try {
+            LiteWorkflowInstanceSerializer.fromByteArray(compact, null);
+            fail();
+        }
+        catch (java.io.IOException ex) {
+        }
+    }
+
+    public void testCompactJobConf() throws Exception {
+        LiteWorkflowApp def = new LiteWorkflowApp("wf", "<worklfow-app/>",
+                new StartNodeDef(TestControlNodeHandler.class, "one"))
+                .addNode(new NodeDef("one", null, AsynchNodeHandler.class, Arrays.asList(new String[]{"end"})))
+                .addNode(new EndNodeDef("end", TestControlNodeHandler.class));
+        MapAppDefStore store = new MapAppDefStore();
+        XConfiguration conf = new XConfiguration();
+        for (int i = 0; i < 100; i++) {
+            conf.set("oozie.test.property." + i, "value" + i);
+        }
+        String jobConf = conf.toXmlString();
+
+        LiteWorkflowInstance job = new LiteWorkflowInstance(def, conf, "1");
+        job.start();
+        byte[] inline = LiteWorkflowInstanceSerializer.toByteArray(job, store);
+        byte[] reference = LiteWorkflowInstanceSerializer.toByteArray(job, store, jobConf);
+        assertTrue(reference.length < inline.length);
+        assertEquals(1, store.confs.size());
+
+        // instances referencing the job configuration are read from the cached job configuration
+        job = LiteWorkflowInstanceSerializer.fromByteArray(reference, store, jobConf);
+        assertEquals("value99", job.getConf().get("oozie.test.property.99"));
+        assertEquals(100, job.getConf().size());
+        assertEquals("1", job.getId());
+        assertEquals(WorkflowInstance.Status.RUNNING, job.getStatus());
+        assertTrue(Arrays.equals(reference, LiteWorkflowInstanceSerializer.toByteArray(job, store, jobConf)));
+        job = LiteWorkflowInstanceSerializer.fromByteArray(inline, store);
+        assertEquals(conf.size(), job.getConf().size());
+        assertEquals("value0", job.getConf().get("oozie.test.property.0"));
+        try {
+            LiteWorkflowInstanceSerializer.fromByteArray(reference, store);
+            fail();
+        }
+        catch (java.io.IOException ex) {
+        }
+        // the job configuration is loaded only when the instance configuration is accessed
+        final AtomicInteger loads = new AtomicInteger();
+        final String loadedConf = jobConf;
+        job = LiteWorkflowInstanceSerializer.fromByteArray(reference, store,
+                new LiteWorkflowInstanceSerializer.JobConfLoader() {
+                    @Override
+                    public String getJobConf() {
+                        loads.incrementAndGet();
+                        return loadedConf;
+                    }
+                });
+        assertEquals(WorkflowInstance.Status.RUNNING, job.getStatus());
+        assertTrue(Arrays.equals(reference, LiteWorkflowInstanceSerializer.toByteArray(job, store)));
+        assertEquals(0, loads.get());
+        assertEquals("value99", job.getConf().get("oozie.test.property.99"));
+        assertEquals("value0", job.getConf().get("oozie.test.property.0"));
+        assertEquals(1, loads.get());
+
+        // a job configuration changed since the instance was written is used, the instance stays readable
+        job = LiteWorkflowInstanceSerializer.fromByteArray(reference, store, jobConf.replace("value0", "changed"));
+        assertEquals("changed", job.getConf().get("oozie.test.property.0"));
+        assertEquals(WorkflowInstance.Status.RUNNING, job.getStatus());
+
+        // instances with a configuration different from the job configuration store it
+        XConfiguration other = new XConfiguration();
+        XConfiguration.copy(conf, other);
+        other.set("oozie.test.property.0", "other");
+        job = new LiteWorkflowInstance(def, other, "2");
+        job.start();
+        byte[] array = LiteWorkflowInstanceSerializer.toByteArray(job, store, jobConf);
+        assertTrue(array.length > reference.length);
+        assertEquals("other", LiteWorkflowInstanceSerializer.fromByteArray(array, store, jobConf).getConf()
+                .get("oozie.test.property.0"));
+
+        job.signal("/", "");
+        job = LiteWorkflowInstanceSerializer.fromByteArray(LiteWorkflowInstanceSerializer.toByteArray(job, store,
+                jobConf), store, jobConf);
+        assertEquals(WorkflowInstance.Status.SUCCEEDED, job.getStatus());
+    }
+
+    public void testAppContentHash() throws Exception {
+        LiteWorkflowApp def1 = new LiteWorkflowApp("wf", "<worklfow-app/>",
+                new StartNodeDef(TestControlNodeHandler.class, "one"))
+                .addNode(new NodeDef("one", null, SynchNodeHandler.class, Arrays.asList(new String[]{"end"})))
+                .addNode(new EndNodeDef("end", TestControlNodeHandler.class));
+        LiteWorkflowApp def2 = new LiteWorkflowApp("wf", "<worklfow-app/>",
+                new StartNodeDef(TestControlNodeHandler.class, "one"))
+                .addNode(new NodeDef("one", null, SynchNodeHandler.class, Arrays.asList(new String[]{"end"})))
+                .addNode(new EndNodeDef("end", TestControlNodeHandler.class));
+        LiteWorkflowApp def3 = new LiteWorkflowApp("wf", "<worklfow-app/>",
+                new StartNodeDef(TestControlNodeHandler.class, "two"))
+                .addNode(new NodeDef("two", null, SynchNodeHandler.class, Arrays.asList(new String[]{"end"})))
+                .addNode(new EndNodeDef("end", TestControlNodeHandler.class));
+        assertEquals(64, def1.getContentHash().length());
+        assertEquals(def1.getContentHash(), def2.getContentHash());
+        assertFalse(def1.getContentHash().equals(def3.getContentHash()));
+        LiteWorkflowApp read = LiteWorkflowInstanceSerializer.appFromByteArray(
+                LiteWorkflowInstanceSerializer.appToByteArray(def1));
+        assertEquals(def1.getContentHash(), read.getContentHash());
+        assertEquals(def1.getNodeDefs().size(), read.getNodeDefs().size());
+    }
+
+    private static class MapAppDefStore implements LiteWorkflowInstanceSerializer.AppDefStore {
+        private final Map<String, LiteWorkflowApp> apps = new HashMap<String, LiteWorkflowApp>();
+        private final Map<String, Configuration> confs = new HashMap<String, Configuration>();
+
+        @Override
+        public void put(LiteWorkflowApp app) {
+            if (!apps.containsKey(app.getContentHash())) {
+                apps.put(app.getContentHash(), app);
+            }
+        }
+
+        @Override
+        public LiteWorkflowApp get(String contentHash) {
+            return apps.get(contentHash);
+        }
+
+        @Override
+        public Configuration getJobConf(String jobConf, String digest) throws IOException {
+            Configuration conf = confs.get(digest);
+            if (conf == null) {
+                conf = new XConfiguration(new StringReader(jobConf));
+                confs.put(digest, conf);
+            }
+            return conf;
+        }
+    }
+
     public void testImmediateError() throws WorkflowException {
         LiteWorkflowApp workflowDef = new LiteWorkflowApp("testWf", "<worklfow-app/>",
             new StartNodeDef(TestControlNodeHandler.class, "one"))
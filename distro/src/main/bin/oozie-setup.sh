@@ -42,6 +42,8 @@ function printUsage() {
   echo "                                                                file in zip format"
   echo "          import <file>                                         imports the oozie database from the zip file"
   echo "                                                                created by export"
+  echo "          dictionary train -id ID [-samples N] [-size BYTES]    trains a compression dictionary from the oozie"
+  echo "                                                                database and stores it with the given id"
   echo "          (without options prints this usage information)"
   echo
   echo " EXTJS can be downloaded from http://www.extjs.com/learn/Ext_Version_Archives"
@@ -127,7 +129,8 @@ secure=""
 
 while [ $# -gt 0 ]
 do
-  if [ "$1" = "sharelib" ] || [ "$1" = "db" ] || [ "$1" = "export" ] || [ "$1" = "import" ]; then
+  if [ "$1" = "sharelib" ] || [ "$1" = "db" ] || [ "$1" = "export" ] || [ "$1" = "import" ] \
+      || [ "$1" = "dictionary" ]; then
     OOZIE_OPTS="-Doozie.home.dir=${OOZIE_HOME}";
     OOZIE_OPTS="${OOZIE_OPTS} -Doozie.config.dir=${OOZIE_CONFIG}";
     OOZIE_OPTS="${OOZIE_OPTS} -Doozie.log.dir=${OOZIE_LOG}";
@@ -159,6 +162,9 @@ do
       ${JAVA_BIN} ${OOZIE_OPTS} -cp ${OOZIECPPATH} org.apache.oozie.tools.OozieDBExportCLI "${@}"
     elif [ "$1" = "import" ]; then
       ${JAVA_BIN} ${OOZIE_OPTS} -cp ${OOZIECPPATH} org.apache.oozie.tools.OozieDBImportCLI "${@}"
+    elif [ "$1" = "dictionary" ]; then
+      shift
+      ${JAVA_BIN} ${OOZIE_OPTS} -cp ${OOZIECPPATH} org.apache.oozie.tools.OozieDBDictionaryCLI "${@}"
     fi
     exit $?
   elif [ "$1" = "-secure" ]; then
@@ -29,6 +29,7 @@ import org.apache.oozie.cli.CLIParser;
 import org.apache.oozie.service.ConfigurationService;
 import org.apache.oozie.service.JPAService;
 import org.apache.oozie.service.Services;
+import org.apache.oozie.util.db.PartitionedTables;
 
 import java.io.ByteArrayInputStream;
 import java.io.File;
@@ -44,6 +45,7 @@ import java.sql.ResultSet;
 import java.sql.Statement;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -57,8 +59,14 @@ public class OozieDBCLI {
     public static final String CREATE_CMD = "create";
     public static final String UPGRADE_CMD = "upgrade";
     public static final String POST_UPGRADE_CMD = "postupgrade";
+    public static final String PARTITIONS_CMD = "partitions";
     public static final String SQL_FILE_OPT = "sqlfile";
     public static final String RUN_OPT = "run";
+    public static final String PARTITIONED_OPT = "partitioned";
+    public static final String DAYS_OPT = "days";
+    public static final String MONTHS_OPT = "months";
+    public static final String OLD_COORD_ACTION_OPT = "oldcoordaction";
+    private final static int DEFAULT_PARTITION_MONTHS = 3;
     private final static String DB_VERSION_PRE_4_0 = "1";
     private final static String DB_VERSION_FOR_4_0 = "2";
     final static String DB_VERSION_FOR_5_0 = "3";
@@ -91,6 +99,24 @@ public class OozieDBCLI {
         return options;
     }
 
+    protected Options createCreateOptions() {
+        Options options = createUpgradeOptions();
+        options.addOption(new Option(PARTITIONED_OPT, false,
+                "Partition the job tables by creation month, so old jobs can be dropped by partition"));
+        return options;
+    }
+
+    protected Options createPartitionsOptions() {
+        Options options = createUpgradeOptions();
+        options.addOption(new Option(DAYS_OPT, true,
+                "Drop the partitions older than the given number of days with no job still referenced"));
+        options.addOption(new Option(MONTHS_OPT, true, "Number of monthly partitions to create ahead (default "
+                + DEFAULT_PARTITION_MONTHS + ")"));
+        options.addOption(new Option(OLD_COORD_ACTION_OPT, false,
+                "Drop the old coordinator actions of the coordinator jobs not purged yet"));
+        return options;
+    }
+
     public synchronized int run(String[] args) {
         if (used) {
             throw new IllegalStateException("CLI instance already used");
@@ -100,9 +126,11 @@ public class OozieDBCLI {
         CLIParser parser = new CLIParser("ooziedb.sh", HELP_INFO);
         parser.addCommand(HELP_CMD, "", "display usage for all commands or specified command", new Options(), false);
         parser.addCommand(VERSION_CMD, "", "show Oozie DB version information", new Options(), false);
-        parser.addCommand(CREATE_CMD, "", "create Oozie DB schema", createUpgradeOptions(), false);
+        parser.addCommand(CREATE_CMD, "", "create Oozie DB schema", createCreateOptions(), false);
         parser.addCommand(UPGRADE_CMD, "", "upgrade Oozie DB", createUpgradeOptions(), false);
         parser.addCommand(POST_UPGRADE_CMD, "", "post upgrade Oozie DB", createUpgradeOptions(), false);
+        parser.addCommand(PARTITIONS_CMD, "", "add and drop partitions of the partitioned Oozie DB",
+                createPartitionsOptions(), false);
 
         try {
             System.out.println();
@@ -127,7 +155,7 @@ public class OozieDBCLI {
                 }
                 boolean run = commandLine.hasOption(RUN_OPT);
                 if (command.getName().equals(CREATE_CMD)) {
-                    createDB(sqlFile, run);
+                    createDB(sqlFile, run, commandLine.hasOption(PARTITIONED_OPT));
                 }
                 if (command.getName().equals(UPGRADE_CMD)) {
                     upgradeDB(sqlFile, run);
@@ -135,6 +163,13 @@ public class OozieDBCLI {
                 if (command.getName().equals(POST_UPGRADE_CMD)) {
                     postUpgradeDB(sqlFile, run);
                 }
+                if (command.getName().equals(PARTITIONS_CMD)) {
+                    int months = Integer.parseInt(commandLine.getOptionValue(MONTHS_OPT,
+                            String.valueOf(DEFAULT_PARTITION_MONTHS)));
+                    Integer days = commandLine.hasOption(DAYS_OPT)
+                            ? Integer.parseInt(commandLine.getOptionValue(DAYS_OPT)) : null;
+                    maintainPartitions(sqlFile, run, months, days, commandLine.hasOption(OLD_COORD_ACTION_OPT));
+                }
                 System.out.println();
                 System.out.println("The SQL commands have been written to: " + sqlFile);
                 if (!run) {
@@ -182,7 +217,10 @@ public class OozieDBCLI {
         return jdbcConf;
     }
 
-    private void createDB(String sqlFile, boolean run) throws Exception {
+    private void createDB(String sqlFile, boolean run, boolean partitioned) throws Exception {
+        if (partitioned && !PartitionedTables.isSupported(getDBVendor())) {
+            throw new Exception("Partitioned tables are not supported for the database '" + getDBVendor() + "'");
+        }
         validateConnection();
         if (checkDBExists()) {
             return;
@@ -190,7 +228,13 @@ public class OozieDBCLI {
 
         verifyOozieSysTable(false);
         createUpgradeDB(sqlFile, run, true);
+        if (partitioned) {
+            createPartitions(sqlFile, run);
+        }
         createOozieSysTable(sqlFile, run, DB_VERSION_FOR_5_0);
+        if (partitioned) {
+            executeStatements(sqlFile, run, Arrays.asList(SET_OOZIE_PARTITIONED));
+        }
         System.out.println();
         if (run) {
             System.out.println("Oozie DB has been created for Oozie version '" +
@@ -213,7 +257,18 @@ public class OozieDBCLI {
         String ver = getOozieDBVersion().trim();
         String startingVersion = ver;
         if (ver.equals(DB_VERSION_FOR_5_0)) {
-            System.out.println("Oozie DB already upgraded to Oozie version '" + version + "'");
+            if (verifySchemaAddedFor50()) {
+                System.out.println("Oozie DB already upgraded to Oozie version '" + version + "'");
+            }
+            else {
+                System.out.println("Adding the tables and columns missing from the db schema for Oozie " + version);
+                createUpgradeDB(sqlFile, run, false);
+                if (run) {
+                    System.out.println();
+                    System.out.println("Oozie DB has been upgraded to Oozie version '" + version + "'");
+                }
+                System.out.println();
+            }
             return;
         }
         createUpgradeDB(sqlFile, run, false);
@@ -858,6 +913,93 @@ public class OozieDBCLI {
         }
     }
 
+    private void createPartitions(String sqlFile, boolean run) throws Exception {
+        System.out.println("Partition tables by creation month");
+        PartitionedTables tables = new PartitionedTables(getDBVendor());
+        executeStatements(sqlFile, run, tables.getCreateStatements(new Date(), DEFAULT_PARTITION_MONTHS));
+        System.out.println("DONE");
+    }
+
+    private final static String SET_OOZIE_PARTITIONED =
+        "insert into OOZIE_SYS (name, data) values ('db.partitioned', 'true')";
+
+    private final static String GET_OOZIE_PARTITIONED =
+        "select data from OOZIE_SYS where name = 'db.partitioned'";
+
+    private void maintainPartitions(String sqlFile, boolean run, int months, Integer days, boolean oldCoordAction)
+            throws Exception {
+        validateConnection();
+        if (!checkDBExists()) {
+            throw new Exception("Oozie DB doesn't exist");
+        }
+        PartitionedTables tables = new PartitionedTables(getDBVendor());
+        Connection conn = createConnection();
+        try {
+            conn.setAutoCommit(true);
+            Statement st = conn.createStatement();
+            ResultSet rs = st.executeQuery(GET_OOZIE_PARTITIONED);
+            boolean partitioned = rs.next() && Boolean.parseBoolean(rs.getString(1));
+            rs.close();
+            st.close();
+            if (!partitioned) {
+                throw new Exception("Oozie DB tables are not partitioned, they must be created with the '-"
+                        + PARTITIONED_OPT + "' option");
+            }
+            Date now = new Date();
+            System.out.println("Add partitions for the next " + months + " months");
+            executeStatements(sqlFile, run, tables.getAddPartitionStatements(conn, now, months));
+            System.out.println("DONE");
+            if (days != null) {
+                Date olderThan = new Date(now.getTime() - days * 24L * 60 * 60 * 1000);
+                System.out.println("Drop partitions older than " + days + " days");
+                // the partitions not dropped yet still reference the rows of the next tables when not running
+                for (PartitionedTables.Table table : PartitionedTables.Table.values()) {
+                    for (PartitionedTables.Partition partition : tables.getPartitions(conn, table)) {
+                        if (partition.getEnd().after(olderThan)) {
+                            continue;
+                        }
+                        long live = tables.countLiveRows(conn, table, partition, olderThan, oldCoordAction);
+                        if (live > 0) {
+                            System.out.println("Keeping partition '" + partition + "' of table '" + table + "', ["
+                                    + live + "] rows are still referenced");
+                        }
+                        else {
+                            System.out.println("Dropping partition '" + partition + "' of table '" + table + "'");
+                            executeStatements(sqlFile, run, Arrays.asList(tables.getDropStatement(table, partition)));
+                        }
+                    }
+                }
+                System.out.println("DONE");
+            }
+        }
+        finally {
+            conn.close();
+        }
+    }
+
+    private void executeStatements(String sqlFile, boolean run, List<String> statements) throws Exception {
+        PrintWriter writer = new PrintWriter(new FileWriter(sqlFile, true));
+        Connection conn = (run) ? createConnection() : null;
+        try {
+            writer.println();
+            for (String statement : statements) {
+                writer.println(statement + ";");
+                if (run) {
+                    conn.setAutoCommit(true);
+                    Statement st = conn.createStatement();
+                    st.executeUpdate(statement);
+                    st.close();
+                }
+            }
+        }
+        finally {
+            writer.close();
+            if (run) {
+                conn.close();
+            }
+        }
+    }
+
     private final static String[] DROP_AUTH_TOKEN_QUERIES = {"ALTER TABLE BUNDLE_JOBS DROP COLUMN AUTH_TOKEN",
         "ALTER TABLE COORD_JOBS DROP COLUMN AUTH_TOKEN",
         "ALTER TABLE WF_JOBS DROP COLUMN AUTH_TOKEN"};
@@ -904,6 +1046,41 @@ public class OozieDBCLI {
         return schemaExists;
     }
 
+    /**
+     * Queries failing on a db schema for Oozie 5.0 missing the tables and columns added to it since, they are added by the
+     * upgrade without changing the db version.
+     */
+    private final static List<String> SCHEMA_ADDED_FOR_5_0 = Arrays.asList(
+            "select count(app_def_id) from WF_JOBS",
+            "select count(last_used_time) from WF_APP_DEFS",
+            "select count(*) from COMPRESSION_DICTS",
+            "select count(*) from PURGE_CHECKPOINTS");
+
+    private boolean verifySchemaAddedFor50() throws Exception {
+        System.out.println("Check tables and columns added to the db schema for Oozie 5.0 exist");
+        Connection conn = createConnection();
+        try {
+            for (String query : SCHEMA_ADDED_FOR_5_0) {
+                try {
+                    Statement st = conn.createStatement();
+                    ResultSet rs = st.executeQuery(query);
+                    rs.next();
+                    rs.close();
+                    st.close();
+                }
+                catch (Exception ex) {
+                    System.out.println("Missing from the db schema: " + query);
+                    return false;
+                }
+            }
+        }
+        finally {
+            conn.close();
+        }
+        System.out.println("DONE");
+        return true;
+    }
+
     private final static String OOZIE_SYS_EXISTS = "select count(*) from OOZIE_SYS";
 
     private boolean verifyOozieSysTable(boolean exists) throws Exception {
@@ -1086,6 +1263,9 @@ public class OozieDBCLI {
         args.add("true");
         args.add("org.apache.oozie.WorkflowJobBean");
         args.add("org.apache.oozie.WorkflowActionBean");
+        args.add("org.apache.oozie.WorkflowAppDefBean");
+        args.add("org.apache.oozie.PurgeCheckpointBean");
+        args.add("org.apache.oozie.CompressionDictionaryBean");
         args.add("org.apache.oozie.CoordinatorJobBean");
         args.add("org.apache.oozie.CoordinatorActionBean");
         args.add("org.apache.oozie.client.rest.JsonSLAEvent");
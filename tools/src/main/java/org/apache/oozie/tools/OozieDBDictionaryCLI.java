@@ -0,0 +1,174 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.oozie.tools;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.persistence.EntityManager;
+import javax.persistence.Query;
+
+import org.apache.commons.cli.CommandLine;
+import org.apache.commons.cli.Option;
+import org.apache.commons.cli.Options;
+import org.apache.commons.cli.ParseException;
+import org.apache.oozie.CompressionDictionaryBean;
+import org.apache.oozie.StringBlob;
+import org.apache.oozie.cli.CLIParser;
+import org.apache.oozie.compression.CodecFactory;
+import org.apache.oozie.compression.DeflateCompressionCodec;
+import org.apache.oozie.compression.DictionaryTrainer;
+import org.apache.oozie.executor.jpa.CompressionDictionaryGetJPAExecutor;
+import org.apache.oozie.executor.jpa.CompressionDictionaryInsertJPAExecutor;
+import org.apache.oozie.service.JPAService;
+import org.apache.oozie.service.Services;
+
+/**
+ * This class provides the following functionality:
+ * <p/>
+ * <ul>
+ * <li>Trains a compression dictionary from the configurations and XML definitions stored in the Oozie database</li>
+ * <li>Stores the dictionary in the Oozie database, to be used by setting
+ * <code>oozie.output.compression.codec</code> to <code>deflate</code> and
+ * <code>oozie.output.compression.dictionary</code> to the dictionary id</li>
+ * <li>This class uses the current oozie configuration in oozie-site.xml</li>
+ * </ul>
+ * <p/>
+ */
+public class OozieDBDictionaryCLI {
+
+    public static final String ID_OPT = "id";
+    public static final String SAMPLES_OPT = "samples";
+    public static final String SIZE_OPT = "size";
+
+    private static final int DEFAULT_SAMPLES = 1000;
+
+    private static final String[] SAMPLE_QUERIES = {
+            "select w.conf from WorkflowJobBean w order by w.createdTimestamp desc",
+            "select w.protoActionConf from WorkflowJobBean w order by w.createdTimestamp desc",
+            "select a.conf from WorkflowActionBean a order by a.createdTimeTS desc",
+            "select c.conf from CoordinatorJobBean c order by c.createdTimestamp desc",
+            "select c.actionXml from CoordinatorActionBean c order by c.createdTimestamp desc",
+            "select c.createdConf from CoordinatorActionBean c order by c.createdTimestamp desc"
+    };
+
+    private static final String[] HELP_INFO = {
+            "",
+            "OozieDBDictionaryCLI trains a compression dictionary from the Oozie database."
+    };
+    private static final String HELP_CMD = "help";
+    private static final String TRAIN_CMD = "train";
+
+    public static void main(String[] args) {
+
+        CLIParser parser = new CLIParser("oozie-setup.sh dictionary", HELP_INFO);
+        parser.addCommand(HELP_CMD, "", "display usage for all commands or specified command", new Options(), false);
+        parser.addCommand(TRAIN_CMD, "", "trains a dictionary from the database and stores it with the given id",
+                createTrainOptions(), false);
+
+        try {
+            CLIParser.Command command = parser.parse(args);
+            if (command.getName().equals(TRAIN_CMD)) {
+                CommandLine commandLine = command.getCommandLine();
+                if (!commandLine.hasOption(ID_OPT)) {
+                    throw new Exception("'-id <ID>' option must be specified");
+                }
+                int samples = Integer.parseInt(commandLine.getOptionValue(SAMPLES_OPT,
+                        String.valueOf(DEFAULT_SAMPLES)));
+                int size = Integer.parseInt(commandLine.getOptionValue(SIZE_OPT,
+                        String.valueOf(DeflateCompressionCodec.MAX_DICTIONARY_SIZE)));
+                Services services = new Services();
+                services.getConf().set(Services.CONF_SERVICE_CLASSES, JPAService.class.getName());
+                services.getConf().set(Services.CONF_SERVICE_EXT_CLASSES, "");
+                services.init();
+                train(commandLine.getOptionValue(ID_OPT), samples, size);
+            } else if (command.getName().equals(HELP_CMD)) {
+                parser.showHelp(command.getCommandLine());
+            }
+        } catch (ParseException pex) {
+            System.err.println("Invalid sub-command: " + pex.getMessage());
+            System.err.println();
+            System.err.println(parser.shortHelp());
+            System.exit(1);
+        } catch (Exception e) {
+            System.err.println();
+            System.err.println("Error: " + e.getMessage());
+            System.err.println();
+            System.err.println("Stack trace for the error was (for debug purposes):");
+            System.err.println("--------------------------------------");
+            e.printStackTrace(System.err);
+            System.err.println("--------------------------------------");
+            System.err.println();
+            System.exit(1);
+        } finally {
+            if (Services.get() != null) {
+                Services.get().destroy();
+            }
+        }
+    }
+
+    private static Options createTrainOptions() {
+        Options options = new Options();
+        options.addOption(new Option(ID_OPT, true, "id of the dictionary"));
+        options.addOption(new Option(SAMPLES_OPT, true, "number of rows sampled, " + DEFAULT_SAMPLES + " by default"));
+        options.addOption(new Option(SIZE_OPT, true, "maximum size of the dictionary in bytes, "
+                + DeflateCompressionCodec.MAX_DICTIONARY_SIZE + " by default"));
+        return options;
+    }
+
+    private static void train(String id, int samples, int size) throws Exception {
+        JPAService jpaService = Services.get().get(JPAService.class);
+        if (jpaService.execute(new CompressionDictionaryGetJPAExecutor(id)) != null) {
+            throw new Exception("Dictionary [" + id + "] already exists, dictionaries cannot be replaced as blobs "
+                    + "compressed with them reference them");
+        }
+        List<byte[]> sampleBlobs = readSamples(jpaService, Math.max(1, samples / SAMPLE_QUERIES.length));
+        byte[] dictionary = DictionaryTrainer.train(sampleBlobs, size);
+        if (dictionary.length == 0) {
+            throw new Exception("No common data found in the " + sampleBlobs.size() + " sampled rows");
+        }
+        jpaService.execute(new CompressionDictionaryInsertJPAExecutor(
+                new CompressionDictionaryBean(id, DeflateCompressionCodec.CODEC_NAME, dictionary)));
+        System.out.println("Dictionary [" + id + "] of " + dictionary.length + " bytes trained from "
+                + sampleBlobs.size() + " rows");
+        System.out.println("To use it, set " + CodecFactory.COMPRESSION_OUTPUT_CODEC + "="
+                + DeflateCompressionCodec.CODEC_NAME + " and " + CodecFactory.COMPRESSION_OUTPUT_DICTIONARY + "=" + id
+                + " in oozie-site.xml");
+    }
+
+    private static List<byte[]> readSamples(JPAService jpaService, int samplesPerQuery) throws Exception {
+        List<byte[]> samples = new ArrayList<byte[]>();
+        EntityManager manager = jpaService.getEntityManager();
+        try {
+            for (String sampleQuery : SAMPLE_QUERIES) {
+                Query query = manager.createQuery(sampleQuery);
+                query.setMaxResults(samplesPerQuery);
+                for (Object blob : query.getResultList()) {
+                    if (blob != null && ((StringBlob) blob).getString() != null) {
+                        samples.add(((StringBlob) blob).getString().getBytes(CodecFactory.UTF_8_ENCODING));
+                    }
+                }
+            }
+        }
+        finally {
+            manager.close();
+        }
+        return samples;
+    }
+}
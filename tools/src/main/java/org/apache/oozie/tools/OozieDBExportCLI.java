@@ -53,6 +53,8 @@ public class OozieDBExportCLI {
 
     public static final String OOZIEDB_WF_JSON = "ooziedb_wf.json";
     public static final String OOZIEDB_AC_JSON = "ooziedb_ac.json";
+    public static final String OOZIEDB_WFD_JSON = "ooziedb_wfd.json";
+    public static final String OOZIEDB_DICT_JSON = "ooziedb_dict.json";
     public static final String OOZIEDB_CJ_JSON = "ooziedb_cj.json";
     public static final String OOZIEDB_CA_JSON = "ooziedb_ca.json";
     public static final String OOZIEDB_BNJ_JSON = "ooziedb_bnj.json";
@@ -64,6 +66,8 @@ public class OozieDBExportCLI {
     private static final String GET_DB_VERSION = "select name, data from OOZIE_SYS where name = 'db.version'";
     private static final String GET_WORKFLOW_JOBS = "select OBJECT(w) from WorkflowJobBean w";
     private static final String GET_WORKFLOW_ACTIONS = "select OBJECT(a) from WorkflowActionBean a";
+    private static final String GET_WORKFLOW_APP_DEFS = "select OBJECT(w) from WorkflowAppDefBean w";
+    private static final String GET_COMPRESSION_DICTS = "select OBJECT(d) from CompressionDictionaryBean d";
     private static final String GET_COORD_JOBS = "select OBJECT(w) from CoordinatorJobBean w";
     private static final String GET_COORD_ACTIONS = "select OBJECT(w) from CoordinatorActionBean w";
     private static final String GET_BUNDLE_JOBS = "select OBJECT(w) from BundleJobBean w";
@@ -141,6 +145,12 @@ public class OozieDBExportCLI {
             int wfaSize = exportTableToJSON(manager.createQuery(GET_WORKFLOW_ACTIONS), zos, OOZIEDB_AC_JSON);
             System.out.println(wfaSize + " rows exported from WF_ACTIONS");
 
+            int wfdSize = exportTableToJSON(manager.createQuery(GET_WORKFLOW_APP_DEFS), zos, OOZIEDB_WFD_JSON);
+            System.out.println(wfdSize + " rows exported from WF_APP_DEFS");
+
+            int dictSize = exportTableToJSON(manager.createQuery(GET_COMPRESSION_DICTS), zos, OOZIEDB_DICT_JSON);
+            System.out.println(dictSize + " rows exported from COMPRESSION_DICTS");
+
             int cojSize = exportTableToJSON(manager.createQuery(GET_COORD_JOBS), zos, OOZIEDB_CJ_JSON);
             System.out.println(cojSize + " rows exported from COORD_JOBS");
 
@@ -29,9 +29,11 @@ import org.apache.commons.cli.ParseException;
 import org.apache.directory.api.util.Strings;
 import org.apache.oozie.BundleActionBean;
 import org.apache.oozie.BundleJobBean;
+import org.apache.oozie.CompressionDictionaryBean;
 import org.apache.oozie.CoordinatorActionBean;
 import org.apache.oozie.CoordinatorJobBean;
 import org.apache.oozie.WorkflowActionBean;
+import org.apache.oozie.WorkflowAppDefBean;
 import org.apache.oozie.WorkflowJobBean;
 import org.apache.oozie.cli.CLIParser;
 import org.apache.oozie.executor.jpa.JPAExecutorException;
@@ -72,9 +74,11 @@ import static org.apache.oozie.tools.OozieDBExportCLI.OOZIEDB_BNA_JSON;
 import static org.apache.oozie.tools.OozieDBExportCLI.OOZIEDB_BNJ_JSON;
 import static org.apache.oozie.tools.OozieDBExportCLI.OOZIEDB_CA_JSON;
 import static org.apache.oozie.tools.OozieDBExportCLI.OOZIEDB_CJ_JSON;
+import static org.apache.oozie.tools.OozieDBExportCLI.OOZIEDB_DICT_JSON;
 import static org.apache.oozie.tools.OozieDBExportCLI.OOZIEDB_SLAREG_JSON;
 import static org.apache.oozie.tools.OozieDBExportCLI.OOZIEDB_SLASUM_JSON;
 import static org.apache.oozie.tools.OozieDBExportCLI.OOZIEDB_SYS_INFO_JSON;
+import static org.apache.oozie.tools.OozieDBExportCLI.OOZIEDB_WFD_JSON;
 import static org.apache.oozie.tools.OozieDBExportCLI.OOZIEDB_WF_JSON;
 
 /**
@@ -196,6 +200,8 @@ public class OozieDBImportCLI {
 
             importer.importOneInputFileToOneEntityTable(WorkflowJobBean.class, OOZIEDB_WF_JSON);
             importer.importOneInputFileToOneEntityTable(WorkflowActionBean.class, OOZIEDB_AC_JSON);
+            importer.importOneInputFileToOneEntityTable(WorkflowAppDefBean.class, OOZIEDB_WFD_JSON);
+            importer.importOneInputFileToOneEntityTable(CompressionDictionaryBean.class, OOZIEDB_DICT_JSON);
             importer.importOneInputFileToOneEntityTable(CoordinatorJobBean.class, OOZIEDB_CJ_JSON);
             importer.importOneInputFileToOneEntityTable(CoordinatorActionBean.class, OOZIEDB_CA_JSON);
             importer.importOneInputFileToOneEntityTable(BundleJobBean.class, OOZIEDB_BNJ_JSON);
@@ -262,6 +268,8 @@ public class OozieDBImportCLI {
     private void checkTablesArePresentAndEmpty() throws SQLException {
         checkTableIsPresentAndEmpty(WorkflowJobBean.class);
         checkTableIsPresentAndEmpty(WorkflowActionBean.class);
+        checkTableIsPresentAndEmpty(WorkflowAppDefBean.class);
+        checkTableIsPresentAndEmpty(CompressionDictionaryBean.class);
         checkTableIsPresentAndEmpty(CoordinatorJobBean.class);
         checkTableIsPresentAndEmpty(CoordinatorActionBean.class);
         checkTableIsPresentAndEmpty(BundleJobBean.class);
@@ -112,6 +112,17 @@ public class TestOozieDBCLI extends XTestCase {
         finally {
             System.setOut(oldOut);
         }
+        // the tables and columns added to the db schema for Oozie 5.0 since are added by the upgrade
+        execSQL("DROP table WF_APP_DEFS");
+        execSQL("DROP table COMPRESSION_DICTS");
+        execSQL("DROP table PURGE_CHECKPOINTS");
+        File upgradeAdded = new File(getTestCaseConfDir() + File.separator + "updateAdded.sql");
+        String[] argsUpgradeAdded = { "upgrade", "-sqlfile", upgradeAdded.getAbsolutePath(), "-run" };
+        assertEquals(0, execOozieDBCLICommands(argsUpgradeAdded));
+        execSQL("DELETE FROM WF_APP_DEFS");
+        execSQL("DELETE FROM COMPRESSION_DICTS");
+        execSQL("DELETE FROM PURGE_CHECKPOINTS");
+
         // generate an upgrade script
         File upgrade = new File(getTestCaseConfDir() + File.separator + "update.sql");
         execSQL("DROP table OOZIE_SYS");